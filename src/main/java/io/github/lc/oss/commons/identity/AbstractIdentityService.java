@@ -1,14 +1,38 @@
 package io.github.lc.oss.commons.identity;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.pool.PoolStats;
 
 import io.github.lc.oss.commons.api.identity.ApiObject;
 import io.github.lc.oss.commons.api.services.JsonService;
@@ -27,24 +51,166 @@ import io.github.lc.oss.commons.identity.model.UserInfoBatchResponse;
 import io.github.lc.oss.commons.identity.model.UserInfoResponse;
 import io.github.lc.oss.commons.identity.model.UserInfoSet;
 
-public abstract class AbstractIdentityService {
+public abstract class AbstractIdentityService implements AutoCloseable {
     private static final long DEFAULT_APP_TOKEN_TTL = 24 * 60 * 60 * 1000;
     private static final long APP_TOKEN_EXPIRATION_BUFFER = 30 * 1000;
+    private static final long DEFAULT_APP_TOKEN_REFRESH_RETRY_DELAY = 5 * 1000;
+    private static final int DEFAULT_USER_INFO_BATCH_MAX_SIZE = 100;
+    private static final int DEFAULT_USER_INFOS_PARALLELISM = 4;
+    private static final long DEFAULT_USER_INFOS_CHUNK_TARGET_LATENCY = 2 * 1000;
+    private static final long DEFAULT_APPLICATION_INFO_EXPIRY = 24 * 60 * 60 * 1000;
+    private static final long DEFAULT_APPLICATION_INFO_REFRESH_RETRY_DELAY = 5 * 1000;
+    private static final int DEFAULT_FAN_OUT_PARALLELISM = 16;
+    private static final long DEFAULT_JMX_LATENCY_WINDOW = 60 * 1000;
+    private static final Object APPLICATION_INFO = new Object();
     private static final List<String> DEFAULT_APP_TOKEN_PERMISSIONS = Collections.unmodifiableList(Arrays.asList("API"));
 
     private HttpService httpService;
+    private AsyncHttpService asyncHttpService;
     private JsonService jsonService;
+    private UserInfoCache userInfoCache;
+    private final SingleFlight inFlightRequests = new SingleFlight();
+    private UserInfoBatcher userInfoBatcher;
+    private ChunkedUserInfoFetcher userInfoFetcher;
+    private RevalidationCache revalidationCache;
+    private ApplicationInfoCache applicationInfoCache;
+    private RetryPolicy retryPolicy;
+    private HedgingPolicy hedgingPolicy;
+    private IdentityMetrics metrics;
+    private IdentityTracer tracer;
+    private ObjectName jmxName;
+
+    private final AtomicReference<ApplicationToken> applicationToken = new AtomicReference<>();
+    private final AtomicLong applicationTokenGeneration = new AtomicLong();
+    private volatile long applicationTokenMinted;
+    /*
+     * Held while a token is minted, a virtual thread blocked on a monitor would
+     * pin its carrier thread for the duration of the request.
+     */
+    private final ReentrantLock applicationTokenLock = new ReentrantLock();
+    private final AtomicReference<CompletableFuture<ApplicationToken>> pendingApplicationToken = new AtomicReference<>();
+    private ScheduledFuture<?> applicationTokenRefresh;
 
-    private Token applicationToken;
-    private final Object applicationTokenLock = new Object();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile ExecutorService fanOutExecutor;
+    private volatile ExecutorService refreshExecutor;
+    private final Object executorLock = new Object();
+    /*
+     * Guarded by executorLock, once set the executors are not created again
+     */
+    private boolean executorsClosed = false;
+    /*
+     * Keeps work that takes applicationTokenLock off the I/O threads, the lock
+     * can be held for the duration of a blocking mint. Runs the task on the
+     * calling thread once the refresh executor is shut down so that the futures
+     * waiting on it still complete.
+     */
+    private final Executor callbackExecutor = task -> {
+        try {
+            this.getRefreshExecutor().execute(task);
+        } catch (RejectedExecutionException ex) {
+            task.run();
+        }
+    };
 
     public void init(JsonService jsonService) {
-        this.init(jsonService, new InternalHttpService(jsonService));
+        IdentityMetrics metrics = this.resolveMetrics();
+        HttpServiceConfig config = this.newHttpServiceConfig(metrics);
+        this.init(jsonService, new InternalHttpService(jsonService, config), new InternalAsyncHttpService(jsonService, config), metrics);
     }
 
+    /*
+     * Async calls use the same transport as httpService, a JdkHttpService
+     * through its own async client and any other implementation by running its
+     * blocking calls on the invokeAll executor.
+     */
     public void init(JsonService jsonService, HttpService httpService) {
+        IdentityMetrics metrics = this.resolveMetrics();
+        if (httpService instanceof JdkHttpService) {
+            this.init(jsonService, httpService, ((JdkHttpService) httpService).async(), metrics);
+        } else {
+            this.init(jsonService, httpService, new BlockingAsyncHttpService(httpService, this::getFanOutExecutor), metrics);
+        }
+    }
+
+    public void init(JsonService jsonService, HttpService httpService, AsyncHttpService asyncHttpService) {
+        this.init(jsonService, httpService, asyncHttpService, this.resolveMetrics());
+    }
+
+    /*
+     * Metrics are resolved once by the public init methods so that the default
+     * HTTP services, the counters and the MBean all share the same instance.
+     */
+    private void init(JsonService jsonService, HttpService httpService, AsyncHttpService asyncHttpService, IdentityMetrics metrics) {
+        CircuitBreakerConfig circuitBreakerConfig = this.getCircuitBreakerConfig();
         this.jsonService = jsonService;
-        this.httpService = httpService;
+        if (circuitBreakerConfig == null) {
+            this.httpService = httpService;
+            this.asyncHttpService = asyncHttpService;
+        } else {
+            CircuitBreakerHttpService circuitBreakers = new CircuitBreakerHttpService(httpService, circuitBreakerConfig);
+            this.httpService = circuitBreakers;
+            this.asyncHttpService = asyncHttpService == null ? null : circuitBreakers.async(asyncHttpService);
+        }
+        this.retryPolicy = this.getRetryPolicy();
+        this.hedgingPolicy = this.getHedgingPolicy();
+        this.metrics = metrics;
+        this.tracer = this.getTracer();
+
+        UserInfoCacheConfig cacheConfig = this.getUserInfoCacheConfig();
+        this.userInfoCache = cacheConfig == null ? null : new UserInfoCache(cacheConfig);
+
+        int revalidationCacheSize = this.getRevalidationCacheSize();
+        this.revalidationCache = revalidationCacheSize <= 0 ? null : new RevalidationCache(revalidationCacheSize);
+
+        int chunkSize = this.getUserInfosChunkSize();
+        RetryPolicy chunkRetryPolicy = this.retryPolicy != null ? this.retryPolicy : this.getUserInfosChunkRetryPolicy();
+        this.userInfoFetcher = chunkSize <= 0 ? null
+                : new ChunkedUserInfoFetcher(chunkSize, this.getUserInfosParallelism(), this.getUserInfosChunkTargetLatency(),
+                        ids -> this.requestUserInfosAsync(ids, chunkRetryPolicy));
+
+        long applicationInfoRefreshInterval = this.getApplicationInfoRefreshInterval();
+        this.applicationInfoCache = applicationInfoRefreshInterval <= 0 ? null
+                : new ApplicationInfoCache(applicationInfoRefreshInterval, this.getApplicationInfoExpiry(), this.getApplicationInfoRefreshRetryDelay(),
+                        this::getScheduler, this::getRefreshExecutor, this::loadApplicationInfo);
+
+        long batchWindow = this.getUserInfoBatchWindow();
+        this.userInfoBatcher = batchWindow <= 0 ? null
+                : new UserInfoBatcher(batchWindow, this.getUserInfoBatchMaxSize(), this::getScheduler, this::getUserInfosAsync);
+
+        this.registerMBean();
+    }
+
+    @Override
+    public void close() {
+        this.unregisterMBean();
+        if (this.userInfoBatcher != null) {
+            this.userInfoBatcher.close();
+        }
+        if (this.applicationInfoCache != null) {
+            this.applicationInfoCache.close();
+        }
+        if (this.httpService != null) {
+            this.httpService.close();
+        }
+        if (this.asyncHttpService != null) {
+            this.asyncHttpService.close();
+        }
+        synchronized (this.executorLock) {
+            this.executorsClosed = true;
+            if (this.scheduler != null) {
+                this.scheduler.shutdownNow();
+                this.scheduler = null;
+            }
+            if (this.fanOutExecutor != null) {
+                this.fanOutExecutor.shutdownNow();
+                this.fanOutExecutor = null;
+            }
+            if (this.refreshExecutor != null) {
+                this.refreshExecutor.shutdownNow();
+                this.refreshExecutor = null;
+            }
+        }
     }
 
     protected abstract String getApplicationId();
@@ -63,185 +229,1250 @@ public abstract class AbstractIdentityService {
         return AbstractIdentityService.DEFAULT_APP_TOKEN_PERMISSIONS;
     }
 
+    /*
+     * When greater than zero the application token is re-minted in the
+     * background this many milliseconds before it would otherwise be considered
+     * invalid so callers never wait on the mint.
+     */
+    protected long getApplicationTokenRefreshAhead() {
+        return 0;
+    }
+
+    /*
+     * Random amount subtracted from each refresh so that a fleet of services
+     * started together does not mint in lock step.
+     */
+    protected long getApplicationTokenRefreshJitter() {
+        return this.getApplicationTokenRefreshAhead() / 4;
+    }
+
+    protected long getApplicationTokenRefreshRetryDelay() {
+        return AbstractIdentityService.DEFAULT_APP_TOKEN_REFRESH_RETRY_DELAY;
+    }
+
+    protected HttpServiceConfig getHttpServiceConfig() {
+        return new HttpServiceConfig();
+    }
+
+    /*
+     * UserInfo caching is disabled unless a config is returned.
+     */
+    protected UserInfoCacheConfig getUserInfoCacheConfig() {
+        return null;
+    }
+
+    /*
+     * When greater than zero the last getUserInfo responses for up to this many
+     * users, plus the getApplicationInfo response, are kept along with their
+     * ETag. Later calls send If-None-Match and reuse the kept response on a 304,
+     * a Cache-Control max-age is honoured without contacting the server. Only
+     * applies to the synchronous methods.
+     */
+    protected int getRevalidationCacheSize() {
+        return 0;
+    }
+
+    /*
+     * When greater than zero getApplicationInfo is served from memory and
+     * refreshed in the background every this many milliseconds.
+     */
+    protected long getApplicationInfoRefreshInterval() {
+        return 0;
+    }
+
+    /*
+     * While background refreshes are failing the last fetched ApplicationInfo is
+     * served for at most this many milliseconds after it was fetched.
+     */
+    protected long getApplicationInfoExpiry() {
+        return AbstractIdentityService.DEFAULT_APPLICATION_INFO_EXPIRY;
+    }
+
+    protected long getApplicationInfoRefreshRetryDelay() {
+        return AbstractIdentityService.DEFAULT_APPLICATION_INFO_REFRESH_RETRY_DELAY;
+    }
+
+    /*
+     * When enabled concurrent identical lookups (getUserInfo and
+     * getApplicationInfo) share a single in-flight request.
+     */
+    protected boolean isRequestCoalescingEnabled() {
+        return false;
+    }
+
+    /*
+     * When greater than zero getUserInfo(String) lookups issued within this many
+     * milliseconds of each other are sent as a single getUserInfos request. Users
+     * missing from the batch response resolve to null.
+     */
+    protected long getUserInfoBatchWindow() {
+        return 0;
+    }
+
+    /*
+     * A batch is sent as soon as it holds this many distinct users, even if the
+     * window has not elapsed.
+     */
+    protected int getUserInfoBatchMaxSize() {
+        return AbstractIdentityService.DEFAULT_USER_INFO_BATCH_MAX_SIZE;
+    }
+
+    /*
+     * When greater than zero getUserInfos calls for more ids than this are split
+     * into chunks of at most this many ids which are requested concurrently.
+     */
+    protected int getUserInfosChunkSize() {
+        return 0;
+    }
+
+    protected int getUserInfosParallelism() {
+        return AbstractIdentityService.DEFAULT_USER_INFOS_PARALLELISM;
+    }
+
+    /*
+     * Retries a failed chunk of a large getUserInfos call on its own so that one
+     * failure does not fail the whole call. Only used when getRetryPolicy()
+     * returns null, otherwise chunks are retried by that policy. Return null to
+     * fail the call on the first failed chunk.
+     */
+    protected RetryPolicy getUserInfosChunkRetryPolicy() {
+        return new RetryPolicy();
+    }
+
+    /*
+     * Chunks slower than this shrink the chunk size, chunks faster than half of
+     * it grow the chunk size back towards getUserInfosChunkSize().
+     */
+    protected long getUserInfosChunkTargetLatency() {
+        return AbstractIdentityService.DEFAULT_USER_INFOS_CHUNK_TARGET_LATENCY;
+    }
+
+    /*
+     * When true calls run with invokeAll each get their own virtual thread, which
+     * allows thousands of blocking calls to be in flight without a large thread
+     * pool. Ignored on Java versions without virtual threads.
+     */
+    protected boolean isVirtualThreadsEnabled() {
+        return false;
+    }
+
+    /*
+     * Size of the platform thread pool used by invokeAll when virtual threads are
+     * not enabled.
+     */
+    protected int getFanOutParallelism() {
+        return AbstractIdentityService.DEFAULT_FAN_OUT_PARALLELISM;
+    }
+
+    /*
+     * Runs the call for each input concurrently and blocks until all of them have
+     * completed, results are in the same order as the inputs. The first failure
+     * is rethrown and any calls still running are cancelled. Throws
+     * RejectedExecutionException once closed.
+     */
+    public <T, R> List<R> invokeAll(Collection<T> inputs, Function<? super T, ? extends R> call) {
+        return Futures.invokeAll(this.getFanOutExecutor(), inputs, call);
+    }
+
+    /*
+     * When not null calls to the identity server go through a circuit breaker per
+     * endpoint, shared by the sync and async methods. Calls fail with
+     * CircuitBreakerOpenException while the server is unhealthy instead of
+     * waiting for a timeout.
+     */
+    protected CircuitBreakerConfig getCircuitBreakerConfig() {
+        return null;
+    }
+
+    /*
+     * When not null failed calls to the identity server are retried as allowed by
+     * the policy, otherwise only a 401 is retried once with a new application
+     * token.
+     */
+    protected RetryPolicy getRetryPolicy() {
+        return null;
+    }
+
+    /*
+     * When not null user info and application info reads that have not answered
+     * within the policy's observed latency are sent a second time, the first
+     * response is used.
+     */
+    protected HedgingPolicy getHedgingPolicy() {
+        return null;
+    }
+
+    /*
+     * When not null receives request latencies, status codes and sizes as well as
+     * retry and token refresh counts. The default HTTP services are configured
+     * with it, services passed to init must be given it in their
+     * HttpServiceConfig.
+     */
+    protected IdentityMetrics getMetrics() {
+        return null;
+    }
+
+    /*
+     * When not null every call opens spans and the trace context is sent with
+     * each request, see IdentityTracer.
+     */
+    protected IdentityTracer getTracer() {
+        return null;
+    }
+
+    /*
+     * When true an IdentityServiceMXBean is registered with the platform
+     * MBeanServer under getJmxName on init and unregistered on close. Endpoint
+     * statistics are kept in a HistogramMetrics unless getMetrics returns
+     * another listener.
+     */
+    protected boolean isJmxEnabled() {
+        return false;
+    }
+
+    protected String getJmxName() {
+        return "io.github.lc.oss.commons.identity:type=IdentityService,name=" + ObjectName.quote(this.getApplicationId());
+    }
+
+    /*
+     * Latency percentiles reported over JMX cover between one and two windows.
+     */
+    protected long getJmxLatencyWindow() {
+        return AbstractIdentityService.DEFAULT_JMX_LATENCY_WINDOW;
+    }
+
+    /*
+     * Calls getMetrics exactly once, the MBean needs a HistogramMetrics when
+     * there is no other listener.
+     */
+    private IdentityMetrics resolveMetrics() {
+        IdentityMetrics metrics = this.getMetrics();
+        if (metrics == null && this.isJmxEnabled()) {
+            return new HistogramMetrics();
+        }
+        return metrics;
+    }
+
+    /*
+     * The HttpServiceConfig for the default HTTP services, with the metrics
+     * listener set unless one was configured already.
+     */
+    private HttpServiceConfig newHttpServiceConfig(IdentityMetrics metrics) {
+        HttpServiceConfig config = this.getHttpServiceConfig();
+        if (config.getMetrics() == null) {
+            config.setMetrics(metrics);
+        }
+        return config;
+    }
+
+    private void registerMBean() {
+        this.unregisterMBean();
+        if (!this.isJmxEnabled()) {
+            return;
+        }
+
+        try {
+            ObjectName name = new ObjectName(this.getJmxName());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new IdentityServiceJmx(this, this.metrics, this.getJmxLatencyWindow()), name);
+            this.jmxName = name;
+        } catch (JMException ex) {
+            throw new RuntimeException("Error registering MBean", ex);
+        }
+    }
+
+    private void unregisterMBean() {
+        ObjectName name = this.jmxName;
+        if (name == null) {
+            return;
+        }
+
+        this.jmxName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException ex) {
+            /* Already unregistered, nothing left to clean up */
+        }
+    }
+
+    /*
+     * Stats of the connection pools owned by the HTTP services, empty when they
+     * were not created by this library or have not been used yet.
+     */
+    List<PoolStats> getPoolStats() {
+        HttpService httpService = this.httpService;
+        if (httpService instanceof CircuitBreakerHttpService) {
+            httpService = ((CircuitBreakerHttpService) httpService).getDelegate();
+        }
+
+        List<PoolStats> stats = new ArrayList<>();
+        for (Object service : Arrays.asList(httpService, CircuitBreakerHttpService.getDelegate(this.asyncHttpService))) {
+            if (service instanceof PooledHttpService) {
+                PoolStats pool = ((PooledHttpService) service).getPoolStats();
+                if (pool != null) {
+                    stats.add(pool);
+                }
+            }
+        }
+        return stats;
+    }
+
+    ApplicationToken getCurrentApplicationToken() {
+        return this.applicationToken.get();
+    }
+
+    /*
+     * Epoch milliseconds of the last successful mint, 0 if there was none.
+     */
+    long getApplicationTokenMinted() {
+        return this.applicationTokenMinted;
+    }
+
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        if (this.httpService instanceof CircuitBreakerHttpService) {
+            return ((CircuitBreakerHttpService) this.httpService).getCircuitBreakers();
+        }
+        return Collections.emptyList();
+    }
+
+    public long getCoalescedRequestCount() {
+        return this.inFlightRequests.getCoalescedCount();
+    }
+
+    public void invalidateUserInfo(String userExternalId) {
+        UserInfoCache cache = this.userInfoCache;
+        if (cache != null) {
+            cache.invalidate(userExternalId);
+        }
+        RevalidationCache revalidation = this.revalidationCache;
+        if (revalidation != null) {
+            revalidation.invalidate(userExternalId);
+        }
+    }
+
+    public void invalidateUserInfos() {
+        UserInfoCache cache = this.userInfoCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        RevalidationCache revalidation = this.revalidationCache;
+        if (revalidation != null) {
+            revalidation.invalidateAll();
+        }
+    }
+
     public void clearApplicationToken() {
-        synchronized (this.applicationTokenLock) {
-            this.applicationToken = null;
+        this.applicationTokenLock.lock();
+        try {
+            this.applicationToken.set(null);
+            this.cancelApplicationTokenRefresh();
+        } finally {
+            this.applicationTokenLock.unlock();
+        }
+    }
+
+    /*
+     * Only clears the token if it is still the one that was rejected, a 401 for a
+     * stale token must not discard one that was minted in the meantime.
+     */
+    private void clearApplicationToken(ApplicationToken rejected) {
+        this.applicationTokenLock.lock();
+        try {
+            if (this.applicationToken.compareAndSet(rejected, null)) {
+                this.cancelApplicationTokenRefresh();
+            }
+        } finally {
+            this.applicationTokenLock.unlock();
         }
     }
 
     public ApplicationInfo getApplicationInfo() {
-        return this.getApplicationInfo(1);
+        ApplicationInfoCache cache = this.applicationInfoCache;
+        if (cache != null) {
+            return cache.get();
+        }
+        return this.loadApplicationInfo();
+    }
+
+    public void clearApplicationInfo() {
+        ApplicationInfoCache cache = this.applicationInfoCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
     }
 
-    private ApplicationInfo getApplicationInfo(int retryCount) {
+    private ApplicationInfo loadApplicationInfo() {
+        return this.coalesce("applicationInfo", this::fetchApplicationInfo);
+    }
+
+    private ApplicationInfo fetchApplicationInfo() {
         String url = this.getIdentityUrl() + "/svc/v1/applicationInfo";
+        return this.call(IdentityMetrics.APPLICATION_INFO, true, headers -> {
+            ApplicationInfoResponse response = this.hedge(IdentityMetrics.APPLICATION_INFO,
+                    () -> this.get(AbstractIdentityService.APPLICATION_INFO, url, headers, ApplicationInfoResponse.class),
+                    () -> this.asyncHttpService.get(url, headers, ApplicationInfoResponse.class));
+            return this.getResponseValue(response);
+        });
+    }
+
+    public String getApplicationToken() {
+        return this.getValidApplicationToken(null).getValue();
+    }
+
+    /*
+     * The common case is a single volatile read, the lock is only taken when a
+     * new token has to be minted.
+     */
+    private ApplicationToken getValidApplicationToken(IdentitySpan parent) {
+        ApplicationToken token = this.applicationToken.get();
+        if (this.isAppTokenInvalid(token)) {
+            this.applicationTokenLock.lock();
+            try {
+                token = this.applicationToken.get();
+                if (this.isAppTokenInvalid(token)) {
+                    token = this.setApplicationToken(this.mintApplicationToken(parent));
+                }
+            } finally {
+                this.applicationTokenLock.unlock();
+            }
+        }
+        return token;
+    }
+
+    /*
+     * Used by both the on demand mint and the refresh ahead, so both are recorded
+     * as a TokenMintEvent.
+     */
+    private Token mintApplicationToken(IdentitySpan parent) {
+        String url = this.getIdentityUrl() + "/svc/v1/jwt/application";
+        TokenMintEvent event = new TokenMintEvent();
+        event.begin();
+        IdentitySpan span = this.startClientSpan(IdentityMetrics.TOKEN, parent);
         Map<String, String> headers = new HashMap<>();
-        headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + this.getApplicationToken());
+        span.inject(headers);
         try {
-            ApplicationInfoResponse response = this.httpService.get(url, headers, ApplicationInfoResponse.class);
-            return this.getResponseValue(response);
-        } catch (HttpException ex) {
-            if (ex.getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
-                this.clearApplicationToken();
-                return this.getApplicationInfo(retryCount - 1);
-            } else {
-                throw ex;
+            TokenResponse response = this.httpService.post(url, headers, TokenResponse.class, this.newApplicationTokenRequest(),
+                    this.getApplicationPrivateKey());
+            span.end(null);
+            Token token = response.getBody();
+            event.success = token != null;
+            return token;
+        } catch (RuntimeException ex) {
+            span.end(ex);
+            throw ex;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /*
+     * Exposed for testing
+     */
+    ApplicationToken setApplicationToken(Token token) {
+        this.applicationTokenLock.lock();
+        try {
+            ApplicationToken snapshot = null;
+            if (token != null) {
+                snapshot = new ApplicationToken(token, AbstractIdentityService.APP_TOKEN_EXPIRATION_BUFFER,
+                        this.applicationTokenGeneration.incrementAndGet());
+                this.applicationTokenMinted = snapshot.getCreated();
             }
+            this.applicationToken.set(snapshot);
+            this.scheduleApplicationTokenRefresh(snapshot);
+            return snapshot;
+        } finally {
+            this.applicationTokenLock.unlock();
         }
     }
 
-    public String getApplicationToken() {
-        if (this.isAppTokenInvalid()) {
-            synchronized (this.applicationTokenLock) {
-                if (this.isAppTokenInvalid()) {
-                    String url = this.getIdentityUrl() + "/svc/v1/jwt/application";
-
-                    Map<String, Collection<String>> permissions = new HashMap<>();
-                    permissions.put(this.getIdentityId(), this.getApplicationTokenPermissions());
-                    AppJwtRequest body = new AppJwtRequest(this.getApplicationTokenTtl(), permissions);
-
-                    SignedRequest signed = new SignedRequest(System.currentTimeMillis(), this.getApplicationId(),
-                            Encodings.Base64.encode(this.jsonService.to(body)));
-                    TokenResponse response = this.httpService.post(url, new HashMap<>(), TokenResponse.class, signed, this.getApplicationPrivateKey());
-                    this.applicationToken = response.getBody();
+    /*
+     * Must be called while holding applicationTokenLock
+     */
+    private void scheduleApplicationTokenRefresh(ApplicationToken token) {
+        this.cancelApplicationTokenRefresh();
+
+        long refreshAhead = this.getApplicationTokenRefreshAhead();
+        if (refreshAhead <= 0 || token == null || token.getExpiration() <= 0) {
+            return;
+        }
+
+        long jitter = this.getApplicationTokenRefreshJitter();
+        long refreshAt = token.getValidUntil() - refreshAhead;
+        if (jitter > 0) {
+            refreshAt -= ThreadLocalRandom.current().nextLong(jitter);
+        }
+        this.scheduleApplicationTokenRefresh(token, Math.max(0, refreshAt - System.currentTimeMillis()));
+    }
+
+    /*
+     * Must be called while holding applicationTokenLock. The scheduler only
+     * times the refresh, the mint runs on the refresh executor.
+     */
+    private void scheduleApplicationTokenRefresh(ApplicationToken expected, long delay) {
+        try {
+            this.applicationTokenRefresh = this.getScheduler().schedule(() -> {
+                try {
+                    this.getRefreshExecutor().execute(() -> this.refreshApplicationToken(expected));
+                } catch (RejectedExecutionException ex) {
+                    /* Shutting down, the token is minted on demand */
                 }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            this.applicationTokenRefresh = null;
+        }
+    }
+
+    /*
+     * Must be called while holding applicationTokenLock
+     */
+    private void cancelApplicationTokenRefresh() {
+        if (this.applicationTokenRefresh != null) {
+            this.applicationTokenRefresh.cancel(false);
+            this.applicationTokenRefresh = null;
+        }
+    }
+
+    /*
+     * The current token stays in place while the replacement is minted, callers
+     * continue to use it until the new one is swapped in. The replacement is
+     * discarded if the token was cleared or replaced in the meantime.
+     */
+    private void refreshApplicationToken(ApplicationToken expected) {
+        Token token;
+        try {
+            token = this.mintApplicationToken(null);
+        } catch (RuntimeException ex) {
+            this.applicationTokenLock.lock();
+            try {
+                if (this.applicationToken.get() == expected && !this.isAppTokenInvalid(expected)) {
+                    this.scheduleApplicationTokenRefresh(expected, this.getApplicationTokenRefreshRetryDelay());
+                }
+            } finally {
+                this.applicationTokenLock.unlock();
             }
+            return;
         }
-        return this.applicationToken.getToken();
+
+        this.applicationTokenLock.lock();
+        try {
+            if (this.applicationToken.get() == expected) {
+                this.setApplicationToken(token);
+            }
+        } finally {
+            this.applicationTokenLock.unlock();
+        }
+    }
+
+    /*
+     * Throws RejectedExecutionException once closed, as do the other executors
+     */
+    ScheduledExecutorService getScheduler() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null) {
+            synchronized (this.executorLock) {
+                this.checkExecutorsOpen();
+                scheduler = this.scheduler;
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("IdentityService-Scheduler"));
+                    this.scheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    ExecutorService getFanOutExecutor() {
+        ExecutorService executor = this.fanOutExecutor;
+        if (executor == null) {
+            synchronized (this.executorLock) {
+                this.checkExecutorsOpen();
+                executor = this.fanOutExecutor;
+                if (executor == null) {
+                    if (this.isVirtualThreadsEnabled() && VirtualThreads.isSupported()) {
+                        executor = VirtualThreads.newThreadPerTaskExecutor();
+                    } else {
+                        executor = Executors.newFixedThreadPool(this.getFanOutParallelism(), new DaemonThreadFactory("IdentityService-Worker"));
+                    }
+                    this.fanOutExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /*
+     * Runs the blocking background refreshes so that the scheduler thread is
+     * only used for timers, and the completions of async token mints which may
+     * wait on applicationTokenLock.
+     */
+    ExecutorService getRefreshExecutor() {
+        ExecutorService executor = this.refreshExecutor;
+        if (executor == null) {
+            synchronized (this.executorLock) {
+                this.checkExecutorsOpen();
+                executor = this.refreshExecutor;
+                if (executor == null) {
+                    if (this.isVirtualThreadsEnabled() && VirtualThreads.isSupported()) {
+                        executor = VirtualThreads.newThreadPerTaskExecutor();
+                    } else {
+                        executor = Executors.newCachedThreadPool(new DaemonThreadFactory("IdentityService-Refresh"));
+                    }
+                    this.refreshExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /*
+     * Must be called while holding executorLock
+     */
+    private void checkExecutorsOpen() {
+        if (this.executorsClosed) {
+            throw new RejectedExecutionException("IdentityService is closed");
+        }
+    }
+
+    /*
+     * Concurrent callers share a single in-flight mint rather than each issuing
+     * their own request.
+     */
+    public CompletableFuture<String> getApplicationTokenAsync() {
+        return this.getValidApplicationTokenAsync(null).thenApply(ApplicationToken::getValue);
+    }
+
+    private CompletableFuture<ApplicationToken> getValidApplicationTokenAsync(IdentitySpan parent) {
+        ApplicationToken token = this.applicationToken.get();
+        if (!this.isAppTokenInvalid(token)) {
+            return CompletableFuture.completedFuture(token);
+        }
+
+        CompletableFuture<ApplicationToken> pending = this.pendingApplicationToken.get();
+        if (pending != null) {
+            return pending;
+        }
+
+        CompletableFuture<ApplicationToken> created = new CompletableFuture<>();
+        if (!this.pendingApplicationToken.compareAndSet(null, created)) {
+            return this.getValidApplicationTokenAsync(parent);
+        }
+
+        String url = this.getIdentityUrl() + "/svc/v1/jwt/application";
+        TokenMintEvent event = new TokenMintEvent();
+        event.begin();
+        event.async = true;
+        IdentitySpan span = this.startClientSpan(IdentityMetrics.TOKEN, parent);
+        Map<String, String> headers = new HashMap<>();
+        span.inject(headers);
+        try {
+            this.asyncHttpService.post(url, headers, TokenResponse.class, this.newApplicationTokenRequest(), this.getApplicationPrivateKey())
+                    .whenCompleteAsync((response, ex) -> {
+                        span.end(ex == null ? null : Futures.unwrap(ex));
+                        this.onApplicationTokenMinted(created, event, response, ex);
+                    }, this.callbackExecutor);
+        } catch (RuntimeException ex) {
+            span.end(ex);
+            this.onApplicationTokenMinted(created, event, null, ex);
+        }
+        return created;
+    }
+
+    private void onApplicationTokenMinted(CompletableFuture<ApplicationToken> pending, TokenMintEvent event, TokenResponse response, Throwable error) {
+        try {
+            if (error == null) {
+                ApplicationToken token = this.setApplicationToken(response.getBody());
+                this.pendingApplicationToken.compareAndSet(pending, null);
+                event.success = token != null;
+                event.end();
+                pending.complete(Objects.requireNonNull(token, "Application token not issued"));
+                return;
+            }
+        } catch (RuntimeException ex) {
+            error = ex;
+        } finally {
+            event.commit();
+        }
+
+        this.pendingApplicationToken.compareAndSet(pending, null);
+        pending.completeExceptionally(Futures.unwrap(error));
+    }
+
+    private SignedRequest newApplicationTokenRequest() {
+        Map<String, Collection<String>> permissions = new HashMap<>();
+        permissions.put(this.getIdentityId(), this.getApplicationTokenPermissions());
+        AppJwtRequest body = new AppJwtRequest(this.getApplicationTokenTtl(), permissions);
+
+        return new SignedRequest(System.currentTimeMillis(), this.getApplicationId(), Encodings.Base64.encode(this.jsonService.to(body)));
     }
 
     @SuppressWarnings("unchecked")
     public UserInfo getUserInfo(String userExternalId) {
+        UserInfoBatcher batcher = this.userInfoBatcher;
+        if (batcher != null) {
+            return Futures.await(this.getUserInfoBatched(batcher, userExternalId));
+        }
         return this.getUserInfo(userExternalId, UserInfoResponse.class);
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends UserInfo, R extends UserInfoResponse<T>> T getUserInfo(String userExternalId, Class<R> responseClass) {
-        return this.getUserInfo(userExternalId, 1, responseClass);
+        UserInfoCache cache = this.userInfoCache;
+        if (cache != null) {
+            T cached = (T) cache.get(userExternalId, responseClass);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        return this.coalesce(Arrays.asList("userInfo", userExternalId, responseClass), () -> {
+            long stamp = cache == null ? 0 : cache.getStamp(userExternalId);
+            T userInfo = this.fetchUserInfo(userExternalId, responseClass);
+            if (cache != null) {
+                cache.put(userExternalId, responseClass, userInfo, stamp);
+            }
+            return userInfo;
+        });
     }
 
-    private <T extends UserInfo, R extends UserInfoResponse<T>> T getUserInfo(String userExternalId, int retryCount, Class<R> responseClass) {
+    private <T extends UserInfo, R extends UserInfoResponse<T>> T fetchUserInfo(String userExternalId, Class<R> responseClass) {
         String url = this.getIdentityUrl() + "/svc/v1/userInfo/" + userExternalId;
-        Map<String, String> headers = new HashMap<>();
-        headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + this.getApplicationToken());
-        try {
-            UserInfoResponse<T> response = this.httpService.get(url, headers, responseClass);
+        return this.call(IdentityMetrics.USER_INFO, true, headers -> {
+            UserInfoResponse<T> response = this.hedge(IdentityMetrics.USER_INFO, () -> this.get(userExternalId, url, headers, responseClass),
+                    () -> this.asyncHttpService.get(url, headers, responseClass));
             return this.getResponseValue(response);
-        } catch (HttpException ex) {
-            if (ex.getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
-                this.clearApplicationToken();
-                return this.getUserInfo(userExternalId, retryCount - 1, responseClass);
-            } else {
-                throw ex;
-            }
-        }
+        });
     }
 
     public UserInfoSet getUserInfos(String... userExternalIds) {
         return this.getUserInfos(Arrays.asList(userExternalIds));
     }
 
+    /*
+     * Batch results are cached as if they had been fetched with
+     * getUserInfo(String), only ids missing from the cache are requested.
+     */
     public UserInfoSet getUserInfos(Collection<String> userExternalIds) {
-        return this.getUserInfos(userExternalIds, 1);
+        UserInfoCache cache = this.userInfoCache;
+        if (cache == null) {
+            return this.fetchUserInfos(userExternalIds);
+        }
+
+        UserInfoSet result = new UserInfoSet();
+        List<String> misses = new ArrayList<>();
+        Map<String, Long> stamps = new HashMap<>();
+        for (String id : userExternalIds) {
+            UserInfo cached = cache.get(id, UserInfoResponse.class);
+            if (cached == null) {
+                misses.add(id);
+                stamps.put(id, cache.getStamp(id));
+            } else {
+                result.add(cached);
+            }
+        }
+
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        UserInfoSet fetched = this.fetchUserInfos(misses);
+        if (fetched == null) {
+            return result.isEmpty() ? null : result;
+        }
+
+        for (UserInfo userInfo : fetched) {
+            Long stamp = stamps.get(userInfo.getId());
+            if (stamp != null) {
+                cache.put(userInfo.getId(), UserInfoResponse.class, userInfo, stamp);
+            }
+            result.add(userInfo);
+        }
+        return result;
     }
 
-    private UserInfoSet getUserInfos(Collection<String> userExternalIds, int retryCount) {
+    /*
+     * Streams the batch response, each user is handed to the consumer as soon as
+     * it has been read so the full set is never held in memory. Intended for bulk
+     * jobs, results are not added to the UserInfo cache.
+     */
+    public void forEachUserInfo(Collection<String> userExternalIds, Consumer<UserInfo> consumer) {
         String url = this.getIdentityUrl() + "/svc/v1/userInfo";
-        Map<String, String> headers = new HashMap<>();
-        headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + this.getApplicationToken());
         JsonableStringSet ids = new JsonableStringSet(userExternalIds);
-        try {
-            UserInfoBatchResponse response = this.httpService.post(url, headers, UserInfoBatchResponse.class, ids);
-            return this.getResponseValue(response);
-        } catch (HttpException ex) {
-            if (ex.getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
-                this.clearApplicationToken();
-                return this.getUserInfos(userExternalIds, retryCount - 1);
-            } else {
-                throw ex;
+        this.call(IdentityMetrics.USER_INFOS, false, headers -> {
+            this.httpService.postStreaming(url, headers, ids, body -> this.readUserInfos(body, consumer));
+            return null;
+        });
+    }
+
+    private void readUserInfos(Reader body, Consumer<UserInfo> consumer) throws IOException {
+        JsonArrayScanner scanner = new JsonArrayScanner(body);
+        if (!scanner.findArray("body")) {
+            return;
+        }
+
+        String element;
+        while ((element = scanner.nextElement()) != null) {
+            UserInfo userInfo = this.jsonService.from(element, UserInfo.class);
+            if (userInfo != null) {
+                consumer.accept(userInfo);
             }
         }
     }
 
-    public void deleteUserData(String userExternalId, String key) {
-        this.deleteUserData(userExternalId, key, 1);
+    private UserInfoSet fetchUserInfos(Collection<String> userExternalIds) {
+        ChunkedUserInfoFetcher fetcher = this.userInfoFetcher;
+        if (fetcher != null && userExternalIds.size() > fetcher.getMaxChunkSize()) {
+            return Futures.await(fetcher.fetch(userExternalIds));
+        }
+        return this.requestUserInfos(userExternalIds);
     }
 
-    private void deleteUserData(String userExternalId, String key, int retryCount) {
+    /*
+     * The batch lookup is sent as a POST but only reads, it is retried as an
+     * idempotent call.
+     */
+    private UserInfoSet requestUserInfos(Collection<String> userExternalIds) {
+        String url = this.getIdentityUrl() + "/svc/v1/userInfo";
+        JsonableStringSet ids = new JsonableStringSet(userExternalIds);
+        return this.call(IdentityMetrics.USER_INFOS, true, headers -> {
+            UserInfoBatchResponse response = this.hedge(IdentityMetrics.USER_INFOS, () -> this.httpService.post(url, headers, UserInfoBatchResponse.class, ids),
+                    () -> this.asyncHttpService.post(url, headers, UserInfoBatchResponse.class, ids));
+            return this.getResponseValue(response);
+        });
+    }
+
+    public void deleteUserData(String userExternalId, String key) {
         String url = this.getIdentityUrl() + "/svc/v1/userData/" + userExternalId + "/" + key;
-        Map<String, String> headers = new HashMap<>();
-        headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + this.getApplicationToken());
         try {
-            this.httpService.delete(url, headers);
-        } catch (HttpException ex) {
-            if (ex.getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
-                this.clearApplicationToken();
-                this.deleteUserData(userExternalId, key, retryCount - 1);
-            } else {
-                throw ex;
-            }
+            this.call(IdentityMetrics.USER_DATA_DELETE, true, headers -> {
+                this.httpService.delete(url, headers);
+                return null;
+            });
+        } finally {
+            this.invalidateUserInfo(userExternalId);
         }
     }
 
     public void putUserData(String userExternalId, UserData userData) {
-        this.putUserData(userExternalId, userData, 1);
-    }
-
-    private void putUserData(String userExternalId, UserData userData, int retryCount) {
         String url = this.getIdentityUrl() + "/svc/v1/userData/" + userExternalId;
-        Map<String, String> headers = new HashMap<>();
-        headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + this.getApplicationToken());
         try {
-            this.httpService.put(url, headers, userData);
-        } catch (HttpException ex) {
-            if (ex.getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
-                this.clearApplicationToken();
-                this.putUserData(userExternalId, userData, retryCount - 1);
-            } else {
-                throw ex;
-            }
+            this.call(IdentityMetrics.USER_DATA_PUT, true, headers -> {
+                this.httpService.put(url, headers, userData);
+                return null;
+            });
+        } finally {
+            this.invalidateUserInfo(userExternalId);
         }
     }
 
     public String refreshSession(String token) {
-        return this.refreshSession(token, 1);
-    }
-
-    private String refreshSession(String token, int retryCount) {
         ReissueTokenRequest request = new ReissueTokenRequest(token, this.getApplicationId());
-
         String url = this.getIdentityUrl() + "/svc/v1/jwt/reissue";
-        Map<String, String> headers = new HashMap<>();
-        headers.put(HttpHeaders.AUTHORIZATION, "Bearer " + this.getApplicationToken());
-
-        try {
+        return this.call(IdentityMetrics.REISSUE, false, headers -> {
             TokenResponse response = this.httpService.post(url, headers, TokenResponse.class, request);
             if (response == null || response.getBody() == null) {
                 return null;
             }
             return response.getBody().getToken();
+        });
+    }
+
+    public CompletableFuture<ApplicationInfo> getApplicationInfoAsync() {
+        ApplicationInfoCache cache = this.applicationInfoCache;
+        if (cache != null) {
+            ApplicationInfo cached = cache.getIfPresent();
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        String url = this.getIdentityUrl() + "/svc/v1/applicationInfo";
+        CompletableFuture<ApplicationInfo> result = this.coalesceAsync("applicationInfo",
+                () -> this.callAsync(IdentityMetrics.APPLICATION_INFO, true,
+                        headers -> this.hedgeAsync(IdentityMetrics.APPLICATION_INFO,
+                                () -> this.asyncHttpService.get(url, headers, ApplicationInfoResponse.class))) //
+                        .thenApply(response -> this.getResponseValue(response)));
+        if (cache != null) {
+            result = result.thenApply(applicationInfo -> {
+                cache.set(applicationInfo);
+                return applicationInfo;
+            });
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<UserInfo> getUserInfoAsync(String userExternalId) {
+        UserInfoBatcher batcher = this.userInfoBatcher;
+        if (batcher != null) {
+            return this.getUserInfoBatched(batcher, userExternalId);
+        }
+        return this.getUserInfoAsync(userExternalId, UserInfoResponse.class);
+    }
+
+    private CompletableFuture<UserInfo> getUserInfoBatched(UserInfoBatcher batcher, String userExternalId) {
+        UserInfoCache cache = this.userInfoCache;
+        if (cache == null) {
+            return batcher.submit(userExternalId);
+        }
+
+        UserInfo cached = cache.get(userExternalId, UserInfoResponse.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        long stamp = cache.getStamp(userExternalId);
+        return batcher.submit(userExternalId).thenApply(userInfo -> {
+            cache.put(userExternalId, UserInfoResponse.class, userInfo, stamp);
+            return userInfo;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends UserInfo, R extends UserInfoResponse<T>> CompletableFuture<T> getUserInfoAsync(String userExternalId, Class<R> responseClass) {
+        UserInfoCache cache = this.userInfoCache;
+        if (cache != null) {
+            T cached = (T) cache.get(userExternalId, responseClass);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        String url = this.getIdentityUrl() + "/svc/v1/userInfo/" + userExternalId;
+        return this.coalesceAsync(Arrays.asList("userInfo", userExternalId, responseClass), () -> {
+            long stamp = cache == null ? 0 : cache.getStamp(userExternalId);
+            return this.callAsync(IdentityMetrics.USER_INFO, true,
+                    headers -> this.hedgeAsync(IdentityMetrics.USER_INFO, () -> this.asyncHttpService.get(url, headers, responseClass))) //
+                    .thenApply(response -> {
+                        T userInfo = this.getResponseValue(response);
+                        if (cache != null) {
+                            cache.put(userExternalId, responseClass, userInfo, stamp);
+                        }
+                        return userInfo;
+                    });
+        });
+    }
+
+    public CompletableFuture<UserInfoSet> getUserInfosAsync(String... userExternalIds) {
+        return this.getUserInfosAsync(Arrays.asList(userExternalIds));
+    }
+
+    public CompletableFuture<UserInfoSet> getUserInfosAsync(Collection<String> userExternalIds) {
+        ChunkedUserInfoFetcher fetcher = this.userInfoFetcher;
+        if (fetcher != null && userExternalIds.size() > fetcher.getMaxChunkSize()) {
+            return fetcher.fetch(userExternalIds);
+        }
+        return this.requestUserInfosAsync(userExternalIds);
+    }
+
+    private CompletableFuture<UserInfoSet> requestUserInfosAsync(Collection<String> userExternalIds) {
+        return this.requestUserInfosAsync(userExternalIds, this.retryPolicy);
+    }
+
+    private CompletableFuture<UserInfoSet> requestUserInfosAsync(Collection<String> userExternalIds, RetryPolicy policy) {
+        String url = this.getIdentityUrl() + "/svc/v1/userInfo";
+        JsonableStringSet ids = new JsonableStringSet(userExternalIds);
+        return this.callAsync(IdentityMetrics.USER_INFOS, true, policy,
+                headers -> this.hedgeAsync(IdentityMetrics.USER_INFOS, () -> this.asyncHttpService.post(url, headers, UserInfoBatchResponse.class, ids))) //
+                .thenApply(response -> this.getResponseValue(response));
+    }
+
+    public CompletableFuture<Void> deleteUserDataAsync(String userExternalId, String key) {
+        String url = this.getIdentityUrl() + "/svc/v1/userData/" + userExternalId + "/" + key;
+        return this.callAsync(IdentityMetrics.USER_DATA_DELETE, true, headers -> this.asyncHttpService.delete(url, headers)) //
+                .whenComplete((result, ex) -> this.invalidateUserInfo(userExternalId));
+    }
+
+    public CompletableFuture<Void> putUserDataAsync(String userExternalId, UserData userData) {
+        String url = this.getIdentityUrl() + "/svc/v1/userData/" + userExternalId;
+        return this.callAsync(IdentityMetrics.USER_DATA_PUT, true, headers -> this.asyncHttpService.put(url, headers, userData)) //
+                .whenComplete((result, ex) -> this.invalidateUserInfo(userExternalId));
+    }
+
+    public CompletableFuture<String> refreshSessionAsync(String token) {
+        ReissueTokenRequest request = new ReissueTokenRequest(token, this.getApplicationId());
+        String url = this.getIdentityUrl() + "/svc/v1/jwt/reissue";
+        return this.callAsync(IdentityMetrics.REISSUE, false, headers -> this.asyncHttpService.post(url, headers, TokenResponse.class, request)) //
+                .thenApply(response -> {
+                    if (response == null || response.getBody() == null) {
+                        return null;
+                    }
+                    return response.getBody().getToken();
+                });
+    }
+
+    /*
+     * Issues the call with the application token. A 401 clears the token and the
+     * call is re-issued once with a new one, other failures are retried as allowed
+     * by the retry policy.
+     */
+    private <T> T call(String endpoint, boolean idempotent, Function<Map<String, String>, T> call) {
+        IdentitySpan span = this.startSpan(endpoint);
+        try {
+            T result = this.retry(endpoint, idempotent, () -> this.callAuthorized(endpoint, span, call, 1));
+            span.end(null);
+            return result;
+        } catch (RuntimeException ex) {
+            span.end(ex);
+            throw ex;
+        }
+    }
+
+    private <T> T callAuthorized(String endpoint, IdentitySpan parent, Function<Map<String, String>, T> call, int retryCount) {
+        ApplicationToken appToken = this.getValidApplicationToken(parent);
+        IdentitySpan span = this.startClientSpan(endpoint, parent);
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HttpHeaders.AUTHORIZATION, appToken.getAuthorization());
+        span.inject(headers);
+        try {
+            T result = call.apply(headers);
+            span.end(null);
+            return result;
         } catch (HttpException ex) {
+            span.end(ex);
             if (ex.getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
-                this.clearApplicationToken();
-                return this.refreshSession(token, retryCount - 1);
+                this.clearApplicationToken(appToken);
+                this.onTokenRefresh(endpoint);
+                return this.callAuthorized(endpoint, parent, call, retryCount - 1);
             } else {
                 throw ex;
             }
+        } catch (RuntimeException ex) {
+            span.end(ex);
+            throw ex;
+        }
+    }
+
+    private <T> T retry(String endpoint, boolean idempotent, Supplier<T> call) {
+        RetryPolicy policy = this.retryPolicy;
+        if (policy == null) {
+            return call.get();
+        }
+
+        policy.onCall();
+        long started = policy.now();
+        int attempt = 0;
+        while (true) {
+            try {
+                return call.get();
+            } catch (RuntimeException ex) {
+                long delay = policy.getRetryDelay(ex, idempotent, ++attempt, started);
+                if (delay < 0) {
+                    throw ex;
+                }
+
+                this.onRetry(endpoint);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
         }
     }
 
     /*
-     * Exposed for testing only
+     * Hedged requests are sent with the async client so that the losing request
+     * can be cancelled, without a hedging policy the blocking call is used as is.
      */
-    boolean isAppTokenInvalid() {
-        if (this.applicationToken == null) {
-            return true;
+    private <T> T hedge(String operation, Supplier<T> call, Supplier<CompletableFuture<T>> asyncCall) {
+        HedgingPolicy policy = this.hedgingPolicy;
+        if (policy == null) {
+            return call.get();
+        }
+        return Futures.await(policy.hedge(operation, asyncCall, this.getScheduler()));
+    }
+
+    private <T> CompletableFuture<T> hedgeAsync(String operation, Supplier<CompletableFuture<T>> call) {
+        HedgingPolicy policy = this.hedgingPolicy;
+        if (policy == null) {
+            return call.get();
+        }
+        return policy.hedge(operation, call, this.getScheduler());
+    }
+
+    private void onRetry(String endpoint) {
+        IdentityMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onRetry(endpoint);
         }
+    }
 
-        if (System.currentTimeMillis() >= this.applicationToken.getExpiration() - AbstractIdentityService.APP_TOKEN_EXPIRATION_BUFFER) {
-            return true;
+    private void onTokenRefresh(String endpoint) {
+        TokenClearEvent.commit(endpoint);
+        IdentityMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.onTokenRefresh(endpoint);
         }
+    }
 
-        return false;
+    private IdentitySpan startSpan(String name) {
+        IdentityTracer tracer = this.tracer;
+        return tracer == null ? IdentitySpan.NOOP : tracer.startSpan(name, null);
+    }
+
+    private IdentitySpan startClientSpan(String name, IdentitySpan parent) {
+        IdentityTracer tracer = this.tracer;
+        return tracer == null ? IdentitySpan.NOOP : tracer.startClientSpan(name, parent == IdentitySpan.NOOP ? null : parent);
+    }
+
+    /*
+     * The span is ended as a side effect, callers still get the original future
+     * so that cancelling it reaches the request.
+     */
+    private <T> CompletableFuture<T> endSpan(IdentitySpan span, CompletableFuture<T> future) {
+        if (span != IdentitySpan.NOOP) {
+            future.whenComplete((result, ex) -> span.end(ex == null ? null : Futures.unwrap(ex)));
+        }
+        return future;
+    }
+
+    private <T> CompletableFuture<T> callAsync(String endpoint, boolean idempotent, Function<Map<String, String>, CompletableFuture<T>> call) {
+        return this.callAsync(endpoint, idempotent, this.retryPolicy, call);
+    }
+
+    private <T> CompletableFuture<T> callAsync(String endpoint, boolean idempotent, RetryPolicy policy,
+            Function<Map<String, String>, CompletableFuture<T>> call) {
+        IdentitySpan span = this.startSpan(endpoint);
+        if (policy == null) {
+            return this.endSpan(span, this.callAuthorizedAsync(endpoint, span, call, 1));
+        }
+
+        policy.onCall();
+        return this.endSpan(span, this.retryAsync(endpoint, idempotent, span, call, policy, policy.now(), 1));
+    }
+
+    /*
+     * Retries are scheduled rather than waited for so that no thread is held
+     * during the backoff.
+     */
+    private <T> CompletableFuture<T> retryAsync(String endpoint, boolean idempotent, IdentitySpan parent,
+            Function<Map<String, String>, CompletableFuture<T>> call, RetryPolicy policy, long started, int attempt) {
+        return this.callAuthorizedAsync(endpoint, parent, call, 1) //
+                .handle((result, ex) -> {
+                    if (ex == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+
+                    Throwable cause = Futures.unwrap(ex);
+                    long delay = policy.getRetryDelay(cause, idempotent, attempt, started);
+                    if (delay < 0) {
+                        return CompletableFuture.<T>failedFuture(cause);
+                    }
+
+                    this.onRetry(endpoint);
+                    CompletableFuture<T> retried = new CompletableFuture<>();
+                    try {
+                        this.getScheduler().schedule(
+                                () -> this.retryAsync(endpoint, idempotent, parent, call, policy, started, attempt + 1).whenComplete((value, error) -> {
+                                    if (error == null) {
+                                        retried.complete(value);
+                                    } else {
+                                        retried.completeExceptionally(Futures.unwrap(error));
+                                    }
+                                }), delay, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException rejected) {
+                        return CompletableFuture.<T>failedFuture(cause);
+                    }
+                    return retried;
+                }) //
+                .thenCompose(Function.identity());
+    }
+
+    /*
+     * Async equivalent of callAuthorized: a 401 from the call clears the
+     * application token and the call is re-issued with a new one.
+     */
+    private <T> CompletableFuture<T> callAuthorizedAsync(String endpoint, IdentitySpan parent, Function<Map<String, String>, CompletableFuture<T>> call,
+            int retryCount) {
+        return this.getValidApplicationTokenAsync(parent).thenCompose(appToken -> {
+            IdentitySpan span = this.startClientSpan(endpoint, parent);
+            Map<String, String> headers = new HashMap<>();
+            headers.put(HttpHeaders.AUTHORIZATION, appToken.getAuthorization());
+            span.inject(headers);
+            CompletableFuture<T> sent;
+            try {
+                sent = call.apply(headers);
+            } catch (RuntimeException ex) {
+                span.end(ex);
+                throw ex;
+            }
+            return this.endSpan(span, sent) //
+                    .handle((result, ex) -> {
+                        if (ex == null) {
+                            return CompletableFuture.completedFuture(result);
+                        }
+
+                        Throwable cause = Futures.unwrap(ex);
+                        if (cause instanceof HttpException && ((HttpException) cause).getStatus() == HttpStatus.SC_UNAUTHORIZED && retryCount > 0) {
+                            return CompletableFuture.supplyAsync(() -> {
+                                this.clearApplicationToken(appToken);
+                                this.onTokenRefresh(endpoint);
+                                return this.callAuthorizedAsync(endpoint, parent, call, retryCount - 1);
+                            }, this.callbackExecutor).thenCompose(Function.identity());
+                        }
+                        return CompletableFuture.<T>failedFuture(cause);
+                    }) //
+                    .thenCompose(Function.identity());
+        });
+    }
+
+    /*
+     * GET that revalidates against the kept response for owner and type when
+     * revalidation is enabled.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T get(Object owner, String url, Map<String, String> headers, Class<T> responseType) {
+        RevalidationCache cache = this.revalidationCache;
+        if (cache == null) {
+            return this.httpService.get(url, headers, responseType);
+        }
+
+        RevalidationCache.Entry kept = cache.get(owner, responseType);
+        if (kept != null && kept.isFresh(cache.now())) {
+            CacheEvent.commit("revalidation", true);
+            return (T) kept.getValue();
+        }
+        CacheEvent.commit("revalidation", false);
+
+        long stamp = cache.getStamp();
+        ConditionalResponse<T> response = this.httpService.getConditional(url, headers, responseType, kept == null ? null : kept.getETag());
+        T value = response.getValue();
+        if (response.isNotModified()) {
+            if (kept == null) {
+                return null;
+            }
+            value = (T) kept.getValue();
+        }
+        cache.put(owner, responseType, value, response, stamp);
+        return value;
+    }
+
+    private <T> T coalesce(Object key, Supplier<T> call) {
+        if (!this.isRequestCoalescingEnabled()) {
+            return call.get();
+        }
+        return this.inFlightRequests.execute(key, call);
+    }
+
+    private <T> CompletableFuture<T> coalesceAsync(Object key, Supplier<CompletableFuture<T>> call) {
+        if (!this.isRequestCoalescingEnabled()) {
+            return call.get();
+        }
+        return this.inFlightRequests.executeAsync(key, call);
+    }
+
+    /*
+     * Exposed for testing only
+     */
+    boolean isAppTokenInvalid() {
+        return this.isAppTokenInvalid(this.applicationToken.get());
+    }
+
+    /*
+     * Exposed for testing only
+     */
+    boolean isAppTokenInvalid(ApplicationToken token) {
+        return token == null || System.currentTimeMillis() >= token.getValidUntil();
     }
 
     private <T extends ApiObject> T getResponseValue(ApiResponse<T> response) {
@@ -0,0 +1,253 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import io.github.lc.oss.commons.identity.model.ApplicationInfo;
+
+/*
+ * Holds the last known good ApplicationInfo and refreshes it in the background
+ * every refreshInterval. A failed refresh is retried after retryDelay while the
+ * current value keeps being served, until it is older than expiry at which
+ * point callers load it themselves again.
+ *
+ * The scheduler only times the refreshes, the blocking load runs on the
+ * executor. A refresh that completes after invalidate or close is discarded.
+ */
+class ApplicationInfoCache {
+    private static final class Entry {
+        private final ApplicationInfo value;
+        private final long expires;
+
+        public Entry(ApplicationInfo value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final long refreshInterval;
+    private final long expiry;
+    private final long retryDelay;
+    private final Supplier<ScheduledExecutorService> scheduler;
+    private final Supplier<? extends Executor> executor;
+    private final Supplier<ApplicationInfo> loader;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Entry entry;
+    private ScheduledFuture<?> scheduledRefresh;
+    private boolean closed = false;
+    private long invalidations = 0;
+
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    public ApplicationInfoCache(long refreshInterval, long expiry, long retryDelay, Supplier<ScheduledExecutorService> scheduler,
+            Supplier<? extends Executor> executor, Supplier<ApplicationInfo> loader) {
+        this.refreshInterval = refreshInterval;
+        this.expiry = Math.max(refreshInterval, expiry);
+        this.retryDelay = Math.max(1, retryDelay);
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.loader = loader;
+    }
+
+    /*
+     * Loads the value on the caller's thread only when there is no unexpired
+     * value, concurrent callers wait for a single load.
+     */
+    public ApplicationInfo get() {
+        ApplicationInfo value = this.getIfPresent();
+        if (value != null) {
+            return value;
+        }
+
+        this.lock.lock();
+        try {
+            value = this.peek();
+            if (value != null) {
+                return value;
+            }
+
+            value = this.loader.get();
+            this.set(value);
+            return value;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public ApplicationInfo getIfPresent() {
+        ApplicationInfo value = this.peek();
+        CacheEvent.commit("applicationInfo", value != null);
+        return value;
+    }
+
+    private ApplicationInfo peek() {
+        Entry entry = this.entry;
+        if (entry == null || this.now() >= entry.expires) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /*
+     * Null values are not kept
+     */
+    public void set(ApplicationInfo value) {
+        if (value == null) {
+            return;
+        }
+
+        this.lock.lock();
+        try {
+            this.put(value);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Only kept if the cache was not invalidated since the stamp was taken
+     */
+    private void set(ApplicationInfo value, long stamp) {
+        this.lock.lock();
+        try {
+            if (stamp == this.invalidations) {
+                this.put(value);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private void put(ApplicationInfo value) {
+        if (this.closed) {
+            return;
+        }
+
+        this.entry = new Entry(value, this.now() + this.expiry);
+        this.schedule(this.refreshInterval);
+    }
+
+    public void invalidate() {
+        this.lock.lock();
+        try {
+            this.invalidations++;
+            this.entry = null;
+            this.cancel();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.invalidations++;
+            this.entry = null;
+            this.cancel();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getRefreshCount() {
+        return this.refreshes.sum();
+    }
+
+    public long getRefreshFailureCount() {
+        return this.refreshFailures.sum();
+    }
+
+    /*
+     * Exposed for testing
+     */
+    void refresh() {
+        long stamp;
+        this.lock.lock();
+        try {
+            if (this.closed || this.entry == null) {
+                return;
+            }
+            stamp = this.invalidations;
+        } finally {
+            this.lock.unlock();
+        }
+
+        this.refreshes.increment();
+        ApplicationInfo value;
+        try {
+            value = this.loader.get();
+        } catch (RuntimeException ex) {
+            value = null;
+        }
+
+        if (value != null) {
+            this.set(value, stamp);
+            return;
+        }
+
+        this.refreshFailures.increment();
+        this.lock.lock();
+        try {
+            Entry entry = this.entry;
+            if (this.closed || entry == null || stamp != this.invalidations) {
+                return;
+            }
+
+            long remaining = entry.expires - this.now();
+            if (remaining > 0) {
+                this.schedule(Math.min(this.retryDelay, remaining));
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private void schedule(long delay) {
+        this.cancel();
+        try {
+            this.scheduledRefresh = this.scheduler.get().schedule(this::submitRefresh, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            this.scheduledRefresh = null;
+        }
+    }
+
+    private void submitRefresh() {
+        try {
+            this.executor.get().execute(this::refresh);
+        } catch (RejectedExecutionException ex) {
+            /* Shutting down, the value expires as usual */
+        }
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private void cancel() {
+        if (this.scheduledRefresh != null) {
+            this.scheduledRefresh.cancel(false);
+            this.scheduledRefresh = null;
+        }
+    }
+}
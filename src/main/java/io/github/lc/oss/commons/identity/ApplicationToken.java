@@ -0,0 +1,50 @@
+package io.github.lc.oss.commons.identity;
+
+import io.github.lc.oss.commons.identity.model.Token;
+
+/*
+ * Immutable snapshot of the current application token. Everything the request
+ * path needs is computed once when the token is stored so reading it requires
+ * neither locking nor allocation.
+ */
+final class ApplicationToken {
+    private final String value;
+    private final String authorization;
+    private final long expiration;
+    private final long validUntil;
+    private final long generation;
+    private final long created;
+
+    ApplicationToken(Token token, long expirationBuffer, long generation) {
+        this.value = token.getToken();
+        this.authorization = "Bearer " + token.getToken();
+        this.expiration = token.getExpiration() == null ? 0 : token.getExpiration();
+        this.validUntil = this.expiration - expirationBuffer;
+        this.generation = generation;
+        this.created = System.currentTimeMillis();
+    }
+
+    public String getValue() {
+        return this.value;
+    }
+
+    public String getAuthorization() {
+        return this.authorization;
+    }
+
+    public long getExpiration() {
+        return this.expiration;
+    }
+
+    public long getValidUntil() {
+        return this.validUntil;
+    }
+
+    public long getGeneration() {
+        return this.generation;
+    }
+
+    public long getCreated() {
+        return this.created;
+    }
+}
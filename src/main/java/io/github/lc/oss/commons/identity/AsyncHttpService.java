@@ -0,0 +1,23 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+public interface AsyncHttpService extends AutoCloseable {
+
+    CompletableFuture<Void> delete(String url, Map<String, String> headers);
+
+    <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType);
+
+    <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody);
+
+    <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey);
+
+    CompletableFuture<Void> put(String url, Map<String, String> headers, Jsonable requestBody);
+
+    @Override
+    default void close() {
+    }
+}
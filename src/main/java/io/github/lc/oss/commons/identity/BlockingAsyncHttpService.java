@@ -0,0 +1,85 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+/*
+ * Adapts a blocking HttpService to AsyncHttpService by running each call on the
+ * executor, so async calls use the same transport as the blocking ones.
+ * Cancelling a returned future interrupts the call. Closing does nothing, the
+ * HttpService is closed by its owner.
+ */
+class BlockingAsyncHttpService implements AsyncHttpService {
+    private final HttpService delegate;
+    private final Supplier<? extends ExecutorService> executor;
+
+    public BlockingAsyncHttpService(HttpService delegate, Supplier<? extends ExecutorService> executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    HttpService getDelegate() {
+        return this.delegate;
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String url, Map<String, String> headers) {
+        return this.call(() -> {
+            this.delegate.delete(url, headers);
+            return null;
+        });
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType) {
+        return this.call(() -> this.delegate.get(url, headers, responseType));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+        return this.call(() -> this.delegate.post(url, headers, responseType, requestBody));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+        return this.call(() -> this.delegate.post(url, headers, responseType, requestBody, privateKey));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String url, Map<String, String> headers, Jsonable requestBody) {
+        return this.call(() -> {
+            this.delegate.put(url, headers, requestBody);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = this.executor.get().submit(() -> {
+                try {
+                    result.complete(call.get());
+                } catch (RuntimeException | Error ex) {
+                    result.completeExceptionally(ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(new IllegalStateException("HttpService is closed", ex));
+            return result;
+        }
+
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Fails the read, rather than silently truncating, once more than maxSize bytes
+ * have been read. A maxSize less than or equal to zero is unbounded.
+ */
+class BoundedInputStream extends FilterInputStream {
+    private final long maxSize;
+    private long count = 0;
+
+    public BoundedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            this.count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            this.count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        if (skipped > 0) {
+            this.count(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long read) throws IOException {
+        this.count += read;
+        if (this.maxSize > 0 && this.count > this.maxSize) {
+            throw BoundedInputStream.tooLarge(this.maxSize);
+        }
+    }
+
+    static IOException tooLarge(long maxSize) {
+        return new IOException("Response exceeds maximum size of " + maxSize + " bytes");
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.nio.entity.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/*
+ * Buffers the response body like the default SimpleResponseConsumer but fails
+ * the exchange as soon as the body is known to exceed maxSize, from the
+ * Content-Length when there is one or otherwise once that many bytes have
+ * arrived. The limit applies to the body as received, any decoding is checked
+ * again afterwards. A maxSize less than or equal to zero is unbounded.
+ */
+class BoundedResponseConsumer extends AbstractBinResponseConsumer<SimpleHttpResponse> {
+    private static final int CAPACITY_INCREMENT = 8 * 1024;
+
+    private final long maxSize;
+    private SimpleHttpResponse response;
+    private ContentType contentType;
+    private ByteArrayOutputStream body;
+
+    public BoundedResponseConsumer(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) {
+    }
+
+    @Override
+    protected void start(HttpResponse response, ContentType contentType) throws IOException {
+        if (this.maxSize > 0 && BoundedResponseConsumer.getContentLength(response) > this.maxSize) {
+            throw BoundedInputStream.tooLarge(this.maxSize);
+        }
+
+        this.response = SimpleHttpResponse.copy(response);
+        this.contentType = contentType;
+        this.body = contentType == null ? null : new ByteArrayOutputStream();
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return BoundedResponseConsumer.CAPACITY_INCREMENT;
+    }
+
+    @Override
+    protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+        if (this.body == null || !src.hasRemaining()) {
+            return;
+        }
+
+        int length = src.remaining();
+        if (this.maxSize > 0 && this.body.size() + (long) length > this.maxSize) {
+            throw BoundedInputStream.tooLarge(this.maxSize);
+        }
+
+        if (src.hasArray()) {
+            this.body.write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+        } else {
+            byte[] bytes = new byte[length];
+            src.get(bytes);
+            this.body.write(bytes, 0, length);
+        }
+    }
+
+    @Override
+    protected SimpleHttpResponse buildResult() {
+        if (this.body != null) {
+            this.response.setBody(this.body.toByteArray(), this.contentType);
+        }
+        return this.response;
+    }
+
+    @Override
+    public void releaseResources() {
+        this.body = null;
+    }
+
+    private static long getContentLength(HttpResponse response) {
+        Header header = response.getFirstHeader(HttpHeaders.CONTENT_LENGTH);
+        if (header == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(header.getValue().trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
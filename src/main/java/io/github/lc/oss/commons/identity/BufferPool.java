@@ -0,0 +1,188 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Striped pool of byte buffers in power of two size classes. Buffers larger
+ * than the largest class are handed out but never retained, and the pool never
+ * retains more than maxRetainedBytes in total.
+ */
+public class BufferPool {
+    public static final int MIN_BUFFER_SIZE = 4 * 1024;
+    public static final int MAX_BUFFER_SIZE = 256 * 1024;
+
+    private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE) + 1;
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<ArrayDeque<byte[]>> classes = new ArrayList<>(CLASS_COUNT);
+
+        public Stripe() {
+            for (int i = 0; i < CLASS_COUNT; i++) {
+                this.classes.add(new ArrayDeque<>());
+            }
+        }
+
+        private ArrayDeque<byte[]> get(int sizeClass) {
+            return this.classes.get(sizeClass);
+        }
+    }
+
+    private final long maxRetainedBytes;
+    private final Stripe[] stripes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BufferPool(long maxRetainedBytes) {
+        this(maxRetainedBytes, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BufferPool(long maxRetainedBytes, int stripes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+        int count = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /*
+     * Returns a buffer of at least minSize bytes, contents are undefined.
+     */
+    public byte[] acquire(int minSize) {
+        if (minSize > MAX_BUFFER_SIZE) {
+            this.misses.increment();
+            return new byte[minSize];
+        }
+
+        int sizeClass = BufferPool.sizeClass(minSize);
+        Stripe stripe = this.stripe();
+        byte[] buffer;
+        stripe.lock.lock();
+        try {
+            buffer = stripe.get(sizeClass).pollFirst();
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        if (buffer == null) {
+            this.misses.increment();
+            return new byte[MIN_BUFFER_SIZE << sizeClass];
+        }
+
+        this.retainedBytes.addAndGet(-buffer.length);
+        this.hits.increment();
+        return buffer;
+    }
+
+    /*
+     * The caller must not use the buffer after releasing it.
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length > MAX_BUFFER_SIZE || buffer.length < MIN_BUFFER_SIZE || Integer.bitCount(buffer.length) != 1) {
+            return;
+        }
+
+        long retained;
+        do {
+            retained = this.retainedBytes.get();
+            if (retained + buffer.length > this.maxRetainedBytes) {
+                return;
+            }
+        } while (!this.retainedBytes.compareAndSet(retained, retained + buffer.length));
+
+        Stripe stripe = this.stripe();
+        stripe.lock.lock();
+        try {
+            stripe.get(BufferPool.sizeClass(buffer.length)).offerFirst(buffer);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /*
+     * Reads the remainder of the stream into a String, sizeHint is the expected
+     * length in bytes or less than zero if unknown.
+     */
+    public String readString(InputStream in, Charset charset, long sizeHint) throws IOException {
+        int size = sizeHint < 0 ? MIN_BUFFER_SIZE : (int) Math.min(sizeHint + 1, MAX_BUFFER_SIZE);
+        byte[] buffer = this.acquire(size);
+        int length = 0;
+        try {
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (length == buffer.length) {
+                    byte[] larger = this.acquire(buffer.length << 1);
+                    System.arraycopy(buffer, 0, larger, 0, length);
+                    this.release(buffer);
+                    buffer = larger;
+                }
+            }
+            return new String(buffer, 0, length, charset);
+        } finally {
+            this.release(buffer);
+        }
+    }
+
+    public long getMaxRetainedBytes() {
+        return this.maxRetainedBytes;
+    }
+
+    public long getRetainedBytes() {
+        return this.retainedBytes.get();
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = this.getHitCount();
+        long total = hits + this.getMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    int getPooledCount() {
+        int count = 0;
+        for (Stripe stripe : this.stripes) {
+            stripe.lock.lock();
+            try {
+                count += stripe.classes.stream().mapToInt(ArrayDeque::size).sum();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    private Stripe stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16);
+        return this.stripes[hash & (this.stripes.length - 1)];
+    }
+
+    static int sizeClass(int size) {
+        if (size <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.lc.oss.commons.identity;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Disabled by default, a lookup is cheap enough that recording every one would
+ * dominate a recording. Enable with
+ * io.github.lc.oss.commons.identity.Cache#enabled=true.
+ */
+@Name("io.github.lc.oss.commons.identity.Cache")
+@Label("Identity Cache Lookup")
+@Category("Identity")
+@Enabled(false)
+@StackTrace(false)
+class CacheEvent extends jdk.jfr.Event {
+    @Label("Cache")
+    @Description("userInfo, applicationInfo or revalidation")
+    String cache;
+
+    @Label("Hit")
+    boolean hit;
+
+    static void commit(String cache, boolean hit) {
+        CacheEvent event = new CacheEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+}
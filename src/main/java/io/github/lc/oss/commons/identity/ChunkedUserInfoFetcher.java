@@ -0,0 +1,171 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import io.github.lc.oss.commons.identity.model.UserInfoSet;
+
+/*
+ * Splits large id collections into chunks that are requested concurrently,
+ * with at most parallelism chunks in flight at once. The chunk size shrinks
+ * when chunks take longer than the target latency and grows back when they are
+ * comfortably faster, it is shared across calls so later calls start from what
+ * has been learned. Each chunk is retried on its own as allowed by the
+ * RetryPolicy of the request it is sent with. A chunk that still fails fails
+ * the whole call, no further chunks are sent and those in flight are
+ * cancelled, as they are when the caller cancels.
+ */
+class ChunkedUserInfoFetcher {
+    private final class Run {
+        private final List<String> ids;
+        private final UserInfoSet result = new UserInfoSet();
+        private final CompletableFuture<UserInfoSet> future = new CompletableFuture<>();
+        private final Set<CompletableFuture<UserInfoSet>> pending = new HashSet<>();
+        private int next = 0;
+        private int inFlight = 0;
+
+        public Run(Collection<String> ids) {
+            this.ids = new ArrayList<>(ids);
+            this.future.whenComplete((result, ex) -> {
+                if (ex != null) {
+                    this.cancelPending();
+                }
+            });
+        }
+
+        private void cancelPending() {
+            List<CompletableFuture<UserInfoSet>> pending;
+            synchronized (this) {
+                pending = new ArrayList<>(this.pending);
+                this.pending.clear();
+            }
+            pending.forEach(response -> response.cancel(true));
+        }
+
+        private void dispatch() {
+            List<List<String>> chunks = new ArrayList<>();
+            boolean done;
+            synchronized (this) {
+                while (!this.future.isDone() && this.inFlight < ChunkedUserInfoFetcher.this.parallelism && this.next < this.ids.size()) {
+                    int end = Math.min(this.ids.size(), this.next + ChunkedUserInfoFetcher.this.chunkSize.get());
+                    chunks.add(this.ids.subList(this.next, end));
+                    this.next = end;
+                    this.inFlight++;
+                }
+                done = this.inFlight == 0 && this.next >= this.ids.size();
+            }
+
+            if (done) {
+                this.future.complete(this.result);
+                return;
+            }
+
+            for (List<String> chunk : chunks) {
+                this.send(chunk);
+            }
+        }
+
+        private void send(List<String> chunk) {
+            ChunkedUserInfoFetcher.this.chunks.increment();
+            long start = System.nanoTime();
+
+            CompletableFuture<UserInfoSet> response;
+            try {
+                response = ChunkedUserInfoFetcher.this.fetch.apply(new ArrayList<>(chunk));
+            } catch (RuntimeException ex) {
+                response = CompletableFuture.failedFuture(ex);
+            }
+
+            boolean cancelled;
+            synchronized (this) {
+                cancelled = this.future.isDone();
+                if (!cancelled) {
+                    this.pending.add(response);
+                }
+            }
+            if (cancelled) {
+                response.cancel(true);
+                return;
+            }
+
+            CompletableFuture<UserInfoSet> sent = response;
+            response.whenComplete((userInfos, ex) -> {
+                if (ex == null) {
+                    ChunkedUserInfoFetcher.this.adapt(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    synchronized (this) {
+                        this.pending.remove(sent);
+                        if (userInfos != null) {
+                            this.result.addAll(userInfos);
+                        }
+                        this.inFlight--;
+                    }
+                    this.dispatch();
+                } else {
+                    this.future.completeExceptionally(Futures.unwrap(ex));
+                }
+            });
+        }
+    }
+
+    private final Function<Collection<String>, CompletableFuture<UserInfoSet>> fetch;
+    private final int maxChunkSize;
+    private final int minChunkSize;
+    private final int parallelism;
+    private final long targetLatency;
+    private final AtomicInteger chunkSize;
+
+    private final LongAdder chunks = new LongAdder();
+
+    public ChunkedUserInfoFetcher(int maxChunkSize, int parallelism, long targetLatency, Function<Collection<String>, CompletableFuture<UserInfoSet>> fetch) {
+        this.maxChunkSize = Math.max(1, maxChunkSize);
+        this.minChunkSize = Math.max(1, this.maxChunkSize / 16);
+        this.parallelism = Math.max(1, parallelism);
+        this.targetLatency = targetLatency;
+        this.chunkSize = new AtomicInteger(this.maxChunkSize);
+        this.fetch = fetch;
+    }
+
+    public CompletableFuture<UserInfoSet> fetch(Collection<String> userExternalIds) {
+        Run run = new Run(userExternalIds);
+        run.dispatch();
+        return run.future;
+    }
+
+    public int getMaxChunkSize() {
+        return this.maxChunkSize;
+    }
+
+    public int getChunkSize() {
+        return this.chunkSize.get();
+    }
+
+    public long getChunkCount() {
+        return this.chunks.sum();
+    }
+
+    private void adapt(long latency) {
+        if (this.targetLatency <= 0) {
+            return;
+        }
+
+        int current = this.chunkSize.get();
+        int updated = current;
+        if (latency > this.targetLatency) {
+            updated = Math.max(this.minChunkSize, current / 2);
+        } else if (latency < this.targetLatency / 2) {
+            updated = Math.min(this.maxChunkSize, current + Math.max(1, current / 4));
+        }
+
+        if (updated != current) {
+            this.chunkSize.compareAndSet(current, updated);
+        }
+    }
+}
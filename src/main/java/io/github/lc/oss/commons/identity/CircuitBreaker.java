@@ -0,0 +1,206 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Count based circuit breaker. While closed the outcome of the last windowSize
+ * calls is tracked, once the failure rate or the slow call rate reaches its
+ * threshold the circuit opens and calls are rejected until openDuration has
+ * elapsed. A limited number of trial calls are then let through, the circuit
+ * closes if all of them succeed and opens again otherwise.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int FAILED = 1;
+    private static final int SLOW = 2;
+
+    private final String endpoint;
+    private final CircuitBreakerConfig config;
+    private final int[] outcomes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+
+    private volatile State state = State.CLOSED;
+    private int size = 0;
+    private int next = 0;
+    private int failures = 0;
+    private int slowCalls = 0;
+    private long openedAt = 0;
+    private int trialsIssued = 0;
+    private int trialsSucceeded = 0;
+    /*
+     * Incremented on every state change so that calls admitted under a previous
+     * state are not recorded against the current one.
+     */
+    private long generation = 0;
+
+    public CircuitBreaker(String endpoint, CircuitBreakerConfig config) {
+        this.endpoint = endpoint;
+        this.config = config;
+        this.outcomes = new int[Math.max(1, config.getWindowSize())];
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public double getFailureRate() {
+        this.lock.lock();
+        try {
+            return this.size == 0 ? 0 : (double) this.failures / this.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public double getSlowCallRate() {
+        this.lock.lock();
+        try {
+            return this.size == 0 ? 0 : (double) this.slowCalls / this.size;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+
+    public long getOpenedCount() {
+        return this.opened.sum();
+    }
+
+    /*
+     * Returns a permit to pass to onResult, or throws if the call is not
+     * allowed.
+     */
+    long acquire() {
+        this.lock.lock();
+        try {
+            if (this.state == State.OPEN) {
+                long remaining = this.openedAt + this.config.getOpenDuration() - this.now();
+                if (remaining > 0) {
+                    this.rejected.increment();
+                    throw new CircuitBreakerOpenException(this.endpoint, remaining);
+                }
+                this.transition(State.HALF_OPEN);
+            }
+
+            if (this.state == State.HALF_OPEN) {
+                if (this.trialsIssued >= Math.max(1, this.config.getHalfOpenCalls())) {
+                    this.rejected.increment();
+                    throw new CircuitBreakerOpenException(this.endpoint, 0);
+                }
+                this.trialsIssued++;
+            }
+            return this.generation;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    void onResult(long permit, long duration, boolean failed) {
+        boolean slow = this.config.getSlowCallDuration() > 0 && duration >= this.config.getSlowCallDuration();
+
+        this.lock.lock();
+        try {
+            if (permit != this.generation) {
+                return;
+            }
+
+            if (this.state == State.HALF_OPEN) {
+                if (failed || slow) {
+                    this.transition(State.OPEN);
+                } else if (++this.trialsSucceeded >= Math.max(1, this.config.getHalfOpenCalls())) {
+                    this.transition(State.CLOSED);
+                }
+                return;
+            }
+
+            this.record((failed ? CircuitBreaker.FAILED : 0) | (slow ? CircuitBreaker.SLOW : 0));
+            if (this.size >= Math.max(1, this.config.getMinimumCalls()) && this.isAboveThreshold()) {
+                this.transition(State.OPEN);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * For calls that were abandoned before they completed, such as hedged
+     * attempts that lost, nothing is recorded but a trial permit is returned so
+     * another call can be let through.
+     */
+    void release(long permit) {
+        this.lock.lock();
+        try {
+            if (permit == this.generation && this.state == State.HALF_OPEN && this.trialsIssued > 0) {
+                this.trialsIssued--;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private void record(int outcome) {
+        if (this.size == this.outcomes.length) {
+            int evicted = this.outcomes[this.next];
+            this.failures -= evicted & CircuitBreaker.FAILED;
+            this.slowCalls -= (evicted & CircuitBreaker.SLOW) >> 1;
+        } else {
+            this.size++;
+        }
+
+        this.outcomes[this.next] = outcome;
+        this.failures += outcome & CircuitBreaker.FAILED;
+        this.slowCalls += (outcome & CircuitBreaker.SLOW) >> 1;
+        this.next = (this.next + 1) % this.outcomes.length;
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private boolean isAboveThreshold() {
+        double failureRate = (double) this.failures / this.size;
+        double slowCallRate = (double) this.slowCalls / this.size;
+        return (this.config.getFailureRateThreshold() > 0 && failureRate >= this.config.getFailureRateThreshold())
+                || (this.config.getSlowCallRateThreshold() > 0 && slowCallRate >= this.config.getSlowCallRateThreshold());
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private void transition(State state) {
+        this.state = state;
+        this.generation++;
+        this.size = 0;
+        this.next = 0;
+        this.failures = 0;
+        this.slowCalls = 0;
+        this.trialsIssued = 0;
+        this.trialsSucceeded = 0;
+        if (state == State.OPEN) {
+            this.openedAt = this.now();
+            this.opened.increment();
+        }
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+}
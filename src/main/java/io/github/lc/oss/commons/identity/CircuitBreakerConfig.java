@@ -0,0 +1,85 @@
+package io.github.lc.oss.commons.identity;
+
+/*
+ * All time values are in milliseconds, rates are between 0 and 1. Values less
+ * than or equal to zero disable the associated threshold.
+ */
+public class CircuitBreakerConfig {
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private double failureRateThreshold = 0.5;
+    private long slowCallDuration = 5 * 1000;
+    private double slowCallRateThreshold = 0.8;
+    private long openDuration = 30 * 1000;
+    private int halfOpenCalls = 3;
+
+    /*
+     * Number of most recent calls the rates are calculated over.
+     */
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /*
+     * The circuit does not open until at least this many calls have been
+     * recorded.
+     */
+    public int getMinimumCalls() {
+        return this.minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return this.failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public long getSlowCallDuration() {
+        return this.slowCallDuration;
+    }
+
+    public void setSlowCallDuration(long slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return this.slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /*
+     * How long an open circuit rejects calls before trial calls are let through.
+     */
+    public long getOpenDuration() {
+        return this.openDuration;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    /*
+     * Number of trial calls let through while half open, the circuit closes once
+     * all of them succeed and opens again on the first failure.
+     */
+    public int getHalfOpenCalls() {
+        return this.halfOpenCalls;
+    }
+
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+}
@@ -0,0 +1,272 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.hc.core5.http.HttpStatus;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+/*
+ * Fails calls fast while the identity server is unhealthy rather than letting
+ * every caller wait for the full timeout. Errors other than HttpException, such
+ * as connection failures and timeouts, count as failures as do 429 and 5xx
+ * responses. Other HTTP errors mean the server is responding and count as
+ * successful calls.
+ *
+ * Calls to an open circuit throw CircuitBreakerOpenException unless fallback is
+ * overridden to return a value instead.
+ *
+ * Each identity endpoint gets its own circuit, named as in IdentityMetrics.
+ * async(asyncHttpService) wraps an AsyncHttpService in the same circuits so
+ * that sync and async calls to an endpoint open and close it together, its
+ * futures complete exceptionally where the sync calls would throw. Async calls
+ * that are cancelled, such as hedged attempts that lost, are not recorded.
+ */
+public class CircuitBreakerHttpService implements HttpService {
+    private class Async implements AsyncHttpService {
+        private final AsyncHttpService delegate;
+
+        public Async(AsyncHttpService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableFuture<Void> delete(String url, Map<String, String> headers) {
+            return CircuitBreakerHttpService.this.callAsync("DELETE", url, Void.class, () -> this.delegate.delete(url, headers));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType) {
+            return CircuitBreakerHttpService.this.callAsync("GET", url, responseType, () -> this.delegate.get(url, headers, responseType));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+            return CircuitBreakerHttpService.this.callAsync("POST", url, responseType,
+                    () -> this.delegate.post(url, headers, responseType, requestBody));
+        }
+
+        @Override
+        public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody,
+                String privateKey) {
+            return CircuitBreakerHttpService.this.callAsync("POST", url, responseType,
+                    () -> this.delegate.post(url, headers, responseType, requestBody, privateKey));
+        }
+
+        @Override
+        public CompletableFuture<Void> put(String url, Map<String, String> headers, Jsonable requestBody) {
+            return CircuitBreakerHttpService.this.callAsync("PUT", url, Void.class, () -> this.delegate.put(url, headers, requestBody));
+        }
+
+        @Override
+        public void close() {
+            this.delegate.close();
+        }
+    }
+
+    private final HttpService delegate;
+    private final CircuitBreakerConfig config;
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    public CircuitBreakerHttpService(HttpService delegate) {
+        this(delegate, new CircuitBreakerConfig());
+    }
+
+    public CircuitBreakerHttpService(HttpService delegate, CircuitBreakerConfig config) {
+        this.delegate = delegate;
+        this.config = config;
+    }
+
+    HttpService getDelegate() {
+        return this.delegate;
+    }
+
+    /*
+     * Unwraps an AsyncHttpService returned by async, others are returned as is
+     */
+    static AsyncHttpService getDelegate(AsyncHttpService asyncHttpService) {
+        if (asyncHttpService instanceof Async) {
+            return ((Async) asyncHttpService).delegate;
+        }
+        return asyncHttpService;
+    }
+
+    public AsyncHttpService async(AsyncHttpService delegate) {
+        return new Async(delegate);
+    }
+
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableCollection(this.circuitBreakers.values());
+    }
+
+    public CircuitBreaker getCircuitBreaker(String method, String url) {
+        return this.circuitBreakers.computeIfAbsent(this.getEndpoint(method, url), this::newCircuitBreaker);
+    }
+
+    @Override
+    public void close() {
+        this.delegate.close();
+    }
+
+    @Override
+    public void delete(String url, Map<String, String> headers) {
+        this.call("DELETE", url, Void.class, () -> {
+            this.delegate.delete(url, headers);
+            return null;
+        });
+    }
+
+    @Override
+    public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+        return this.call("GET", url, responseType, () -> this.delegate.get(url, headers, responseType));
+    }
+
+    @Override
+    public <T> ConditionalResponse<T> getConditional(String url, Map<String, String> headers, Class<T> responseType, String etag) {
+        CircuitBreaker circuitBreaker = this.getCircuitBreaker("GET", url);
+        long permit;
+        try {
+            permit = circuitBreaker.acquire();
+        } catch (CircuitBreakerOpenException ex) {
+            return new ConditionalResponse<>(this.fallback(url, responseType, ex));
+        }
+        return this.call(circuitBreaker, permit, () -> this.delegate.getConditional(url, headers, responseType, etag));
+    }
+
+    @Override
+    public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+        return this.call("POST", url, responseType, () -> this.delegate.post(url, headers, responseType, requestBody));
+    }
+
+    @Override
+    public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+        return this.call("POST", url, responseType, () -> this.delegate.post(url, headers, responseType, requestBody, privateKey));
+    }
+
+    @Override
+    public void postStreaming(String url, Map<String, String> headers, Jsonable requestBody, ResponseReader responseReader) {
+        this.call("POST", url, Void.class, () -> {
+            this.delegate.postStreaming(url, headers, requestBody, responseReader);
+            return null;
+        });
+    }
+
+    @Override
+    public void put(String url, Map<String, String> headers, Jsonable requestBody) {
+        this.call("PUT", url, Void.class, () -> {
+            this.delegate.put(url, headers, requestBody);
+            return null;
+        });
+    }
+
+    /*
+     * Called instead of the request while the circuit is open, the default
+     * rethrows the exception. Return values are ignored for delete, put and
+     * postStreaming.
+     */
+    protected <T> T fallback(String url, Class<T> responseType, CircuitBreakerOpenException ex) {
+        throw ex;
+    }
+
+    protected boolean isFailure(RuntimeException ex) {
+        if (ex instanceof HttpException) {
+            int status = ((HttpException) ex).getStatus();
+            return status == HttpStatus.SC_TOO_MANY_REQUESTS || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+        }
+        return true;
+    }
+
+    private <T> T call(String method, String url, Class<T> responseType, Supplier<T> call) {
+        CircuitBreaker circuitBreaker = this.getCircuitBreaker(method, url);
+        long permit;
+        try {
+            permit = circuitBreaker.acquire();
+        } catch (CircuitBreakerOpenException ex) {
+            return this.fallback(url, responseType, ex);
+        }
+        return this.call(circuitBreaker, permit, call);
+    }
+
+    private <T> T call(CircuitBreaker circuitBreaker, long permit, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            circuitBreaker.onResult(permit, this.elapsed(start), false);
+            return result;
+        } catch (RuntimeException ex) {
+            circuitBreaker.onResult(permit, this.elapsed(start), this.isFailure(ex));
+            throw ex;
+        } catch (Error ex) {
+            circuitBreaker.onResult(permit, this.elapsed(start), true);
+            throw ex;
+        }
+    }
+
+    private <T> CompletableFuture<T> callAsync(String method, String url, Class<T> responseType, Supplier<CompletableFuture<T>> call) {
+        CircuitBreaker circuitBreaker = this.getCircuitBreaker(method, url);
+        long permit;
+        try {
+            permit = circuitBreaker.acquire();
+        } catch (CircuitBreakerOpenException ex) {
+            try {
+                return CompletableFuture.completedFuture(this.fallback(url, responseType, ex));
+            } catch (RuntimeException fallbackEx) {
+                return CompletableFuture.failedFuture(fallbackEx);
+            }
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException ex) {
+            circuitBreaker.onResult(permit, this.elapsed(start), this.isFailure(ex));
+            throw ex;
+        } catch (Error ex) {
+            circuitBreaker.onResult(permit, this.elapsed(start), true);
+            throw ex;
+        }
+
+        /*
+         * The delegate's future is returned so that cancelling it still cancels
+         * the request
+         */
+        future.whenComplete((result, ex) -> {
+            Throwable cause = ex == null ? null : Futures.unwrap(ex);
+            if (cause instanceof CancellationException) {
+                circuitBreaker.release(permit);
+            } else if (cause instanceof RuntimeException) {
+                circuitBreaker.onResult(permit, this.elapsed(start), this.isFailure((RuntimeException) cause));
+            } else {
+                circuitBreaker.onResult(permit, this.elapsed(start), cause != null);
+            }
+        });
+        return future;
+    }
+
+    private long elapsed(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /*
+     * Exposed for testing
+     */
+    String getEndpoint(String method, String url) {
+        return Endpoints.of(method, url);
+    }
+
+    /*
+     * Exposed for testing
+     */
+    CircuitBreaker newCircuitBreaker(String endpoint) {
+        return new CircuitBreaker(endpoint, this.config);
+    }
+}
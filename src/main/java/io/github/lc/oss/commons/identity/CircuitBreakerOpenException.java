@@ -0,0 +1,26 @@
+package io.github.lc.oss.commons.identity;
+
+public class CircuitBreakerOpenException extends RuntimeException {
+    private static final long serialVersionUID = 4217190538641702893L;
+
+    private final String endpoint;
+    private final long retryAfter;
+
+    public CircuitBreakerOpenException(String endpoint, long retryAfter) {
+        super("Circuit breaker open for " + endpoint);
+        this.endpoint = endpoint;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    /*
+     * Milliseconds until trial calls are let through again, zero when the circuit
+     * is already half open and all trial calls are in flight.
+     */
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+}
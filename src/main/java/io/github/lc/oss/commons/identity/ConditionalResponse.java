@@ -0,0 +1,93 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Locale;
+
+/*
+ * Result of a conditional GET. When notModified is set the server returned 304
+ * and value is null, the caller's cached value is still current.
+ */
+public class ConditionalResponse<T> {
+    private final T value;
+    private final String etag;
+    private final long maxAge;
+    private final boolean noStore;
+    private final boolean notModified;
+
+    public static <T> ConditionalResponse<T> notModified(String etag, String cacheControl) {
+        return new ConditionalResponse<>(null, etag, cacheControl, true);
+    }
+
+    public ConditionalResponse(T value) {
+        this(value, null, null, false);
+    }
+
+    public ConditionalResponse(T value, String etag, String cacheControl) {
+        this(value, etag, cacheControl, false);
+    }
+
+    private ConditionalResponse(T value, String etag, String cacheControl, boolean notModified) {
+        this.value = value;
+        this.etag = etag;
+        this.maxAge = ConditionalResponse.getMaxAge(cacheControl);
+        this.noStore = ConditionalResponse.hasDirective(cacheControl, "no-store");
+        this.notModified = notModified;
+    }
+
+    public T getValue() {
+        return this.value;
+    }
+
+    public String getETag() {
+        return this.etag;
+    }
+
+    /*
+     * In milliseconds, less than zero if the response did not specify a max-age
+     */
+    public long getMaxAge() {
+        return this.maxAge;
+    }
+
+    public boolean isNoStore() {
+        return this.noStore;
+    }
+
+    public boolean isNotModified() {
+        return this.notModified;
+    }
+
+    static long getMaxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+
+        long maxAge = -1;
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim().toLowerCase(Locale.ROOT);
+            if (d.equals("no-cache")) {
+                return 0;
+            }
+            if (d.startsWith("max-age=")) {
+                try {
+                    maxAge = Math.max(0, Long.parseLong(d.substring(8).replace("\"", ""))) * 1000;
+                } catch (NumberFormatException ex) {
+                    /* ignore malformed values */
+                }
+            }
+        }
+        return maxAge;
+    }
+
+    private static boolean hasDirective(String cacheControl, String name) {
+        if (cacheControl == null) {
+            return false;
+        }
+
+        for (String directive : cacheControl.split(",")) {
+            if (directive.trim().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
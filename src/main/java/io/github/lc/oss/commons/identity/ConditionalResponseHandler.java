@@ -0,0 +1,57 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+
+import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+/*
+ * Like the other handlers but also accepts 304 Not Modified and keeps the
+ * ETag and Cache-Control headers. The body, if any, is read by bodyHandler.
+ */
+class ConditionalResponseHandler<T> implements HttpClientResponseHandler<ConditionalResponse<T>> {
+    private final StringResponseHandler errorHandler;
+    private final AbstractHttpClientResponseHandler<T> bodyHandler;
+    private final String etag;
+
+    public ConditionalResponseHandler(StringResponseHandler errorHandler, AbstractHttpClientResponseHandler<T> bodyHandler, String etag) {
+        this.errorHandler = errorHandler;
+        this.bodyHandler = bodyHandler;
+        this.etag = etag;
+    }
+
+    @Override
+    public ConditionalResponse<T> handleResponse(final ClassicHttpResponse response) throws IOException {
+        String etag = this.getHeader(response, HttpHeaders.ETAG);
+        String cacheControl = this.getHeader(response, HttpHeaders.CACHE_CONTROL);
+        HttpEntity entity = response.getEntity();
+
+        int status = response.getCode();
+        switch (status) {
+            case HttpStatus.SC_NOT_MODIFIED:
+                EntityUtils.consume(entity);
+                return ConditionalResponse.notModified(etag == null ? this.etag : etag, cacheControl);
+            case HttpStatus.SC_NO_CONTENT:
+                EntityUtils.consume(entity);
+                return new ConditionalResponse<>(null, etag, cacheControl);
+            case HttpStatus.SC_OK:
+                break;
+            default:
+                throw new HttpException("Error making request", status, this.errorHandler.getMessages(response), HttpException.getRetryAfter(response));
+        }
+
+        T value = entity == null ? null : this.bodyHandler.handleEntity(entity);
+        return new ConditionalResponse<>(value, etag, cacheControl);
+    }
+
+    private String getHeader(ClassicHttpResponse response, String name) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? null : header.getValue();
+    }
+}
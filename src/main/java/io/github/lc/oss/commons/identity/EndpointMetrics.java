@@ -0,0 +1,118 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Measurements of a single endpoint, see HistogramMetrics. Status codes outside
+ * of 0 - 599 are not counted.
+ */
+public class EndpointMetrics {
+    private static final int MAX_STATUS = 600;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLongArray statuses = new AtomicLongArray(EndpointMetrics.MAX_STATUS);
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder tokenRefreshes = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+
+    EndpointMetrics() {
+    }
+
+    void onRequestStart() {
+        this.inFlight.increment();
+    }
+
+    void onRequest(int status, long duration, long requestBytes, long responseBytes) {
+        this.inFlight.decrement();
+        this.latency.record(duration);
+        if (status >= 0 && status < EndpointMetrics.MAX_STATUS) {
+            this.statuses.incrementAndGet(status);
+        }
+        if (requestBytes > 0) {
+            this.requestBytes.add(requestBytes);
+        }
+        if (responseBytes > 0) {
+            this.responseBytes.add(responseBytes);
+        }
+    }
+
+    void onRetry() {
+        this.retries.increment();
+    }
+
+    void onTokenRefresh() {
+        this.tokenRefreshes.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    public long getStatusCount(int status) {
+        if (status < 0 || status >= EndpointMetrics.MAX_STATUS) {
+            return 0;
+        }
+        return this.statuses.get(status);
+    }
+
+    /*
+     * Counts by status code, 0 counts requests that received no response.
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (int i = 0; i < EndpointMetrics.MAX_STATUS; i++) {
+            long count = this.statuses.get(i);
+            if (count > 0) {
+                counts.put(i, count);
+            }
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /*
+     * Requests that received no response or an error status.
+     */
+    public long getFailureCount() {
+        long count = this.statuses.get(0);
+        for (int i = 400; i < EndpointMetrics.MAX_STATUS; i++) {
+            count += this.statuses.get(i);
+        }
+        return count;
+    }
+
+    /*
+     * Requests sent that have not completed yet. Only counted when the HTTP
+     * service reports the start of requests.
+     */
+    public long getInFlightCount() {
+        return this.inFlight.sum();
+    }
+
+    public long getRetryCount() {
+        return this.retries.sum();
+    }
+
+    public long getTokenRefreshCount() {
+        return this.tokenRefreshes.sum();
+    }
+
+    /*
+     * Total of the known request sizes.
+     */
+    public long getRequestBytes() {
+        return this.requestBytes.sum();
+    }
+
+    /*
+     * Total of the known response sizes.
+     */
+    public long getResponseBytes() {
+        return this.responseBytes.sum();
+    }
+}
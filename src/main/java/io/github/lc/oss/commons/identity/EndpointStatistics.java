@@ -0,0 +1,70 @@
+package io.github.lc.oss.commons.identity;
+
+import javax.management.ConstructorParameters;
+
+/*
+ * Point in time view of an endpoint for JMX. Counts are totals since the
+ * service was initialized, latencies are in milliseconds and cover roughly the
+ * last one to two rolling windows.
+ */
+public class EndpointStatistics {
+    private final String endpoint;
+    private final long inFlight;
+    private final long count;
+    private final long failures;
+    private final long retries;
+    private final double p50;
+    private final double p95;
+    private final double p99;
+    private final double max;
+
+    @ConstructorParameters({ "endpoint", "inFlight", "count", "failures", "retries", "p50", "p95", "p99", "max" })
+    public EndpointStatistics(String endpoint, long inFlight, long count, long failures, long retries, double p50, double p95, double p99,
+            double max) {
+        this.endpoint = endpoint;
+        this.inFlight = inFlight;
+        this.count = count;
+        this.failures = failures;
+        this.retries = retries;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    public long getInFlight() {
+        return this.inFlight;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getFailures() {
+        return this.failures;
+    }
+
+    public long getRetries() {
+        return this.retries;
+    }
+
+    public double getP50() {
+        return this.p50;
+    }
+
+    public double getP95() {
+        return this.p95;
+    }
+
+    public double getP99() {
+        return this.p99;
+    }
+
+    public double getMax() {
+        return this.max;
+    }
+}
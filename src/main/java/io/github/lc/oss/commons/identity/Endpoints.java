@@ -0,0 +1,36 @@
+package io.github.lc.oss.commons.identity;
+
+/*
+ * Maps request URLs to IdentityMetrics endpoint names.
+ */
+final class Endpoints {
+    private static final String PREFIX = "/svc/v1/";
+
+    static String of(String method, String url) {
+        int index = url == null ? -1 : url.indexOf(Endpoints.PREFIX);
+        if (index < 0) {
+            return method;
+        }
+
+        int path = index + Endpoints.PREFIX.length();
+        if (url.startsWith("jwt/application", path)) {
+            return IdentityMetrics.TOKEN;
+        }
+        if (url.startsWith("jwt/reissue", path)) {
+            return IdentityMetrics.REISSUE;
+        }
+        if (url.startsWith("applicationInfo", path)) {
+            return IdentityMetrics.APPLICATION_INFO;
+        }
+        if (url.startsWith("userInfo", path)) {
+            return "POST".equals(method) ? IdentityMetrics.USER_INFOS : IdentityMetrics.USER_INFO;
+        }
+        if (url.startsWith("userData", path)) {
+            return "DELETE".equals(method) ? IdentityMetrics.USER_DATA_DELETE : IdentityMetrics.USER_DATA_PUT;
+        }
+        return method;
+    }
+
+    private Endpoints() {
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+final class Futures {
+    /*
+     * Blocks for the result, rethrowing the original exception the future was
+     * completed with rather than the ExecutionException wrapping it.
+     */
+    static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for request", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = Futures.unwrap(ex);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Error making request", cause);
+        }
+    }
+
+    /*
+     * Submits a task per input and waits for all of them, results are returned in
+     * input order. Tasks still running when one fails are cancelled.
+     */
+    static <T, R> List<R> invokeAll(ExecutorService executor, Collection<T> inputs, Function<? super T, ? extends R> call) {
+        List<Future<? extends R>> futures = new ArrayList<>(inputs.size());
+        try {
+            for (T input : inputs) {
+                futures.add(executor.submit(() -> call.apply(input)));
+            }
+
+            List<R> results = new ArrayList<>(futures.size());
+            for (Future<? extends R> future : futures) {
+                results.add(Futures.await(future));
+            }
+            return results;
+        } finally {
+            for (Future<? extends R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    static Throwable unwrap(Throwable ex) {
+        Throwable cause = ex;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private Futures() {
+    }
+}
@@ -0,0 +1,270 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * Sends a second, identical request when the first has not answered within the
+ * observed percentile latency of recent requests for the same operation. The
+ * first successful response wins and the other request is cancelled. Only used
+ * for idempotent reads.
+ *
+ * The latency recorded is that of the whole call. When the hedge wins this is
+ * a lower bound on the cancelled first request, recording only the attempts
+ * that answered would leave out the slow ones and pull the percentile down.
+ *
+ * Hedges are limited by a budget: every call deposits budgetRatio tokens up to
+ * budgetCapacity and every hedge withdraws one. No hedges are sent until
+ * minSamples latencies have been observed.
+ *
+ * All time values are in milliseconds, values less than or equal to zero
+ * disable the associated limit.
+ */
+public class HedgingPolicy {
+    private class LatencyWindow {
+        private final long[] samples = new long[Math.max(1, HedgingPolicy.this.getWindowSize())];
+        private final ReentrantLock lock = new ReentrantLock();
+        private int size = 0;
+        private int next = 0;
+        private long recorded = 0;
+        private volatile long threshold = -1;
+
+        public void record(long latency) {
+            this.lock.lock();
+            try {
+                this.samples[this.next] = latency;
+                this.next = (this.next + 1) % this.samples.length;
+                this.size = Math.min(this.samples.length, this.size + 1);
+                this.recorded++;
+
+                /*
+                 * Recalculated periodically rather than on every sample, the
+                 * percentile of a sliding window changes slowly
+                 */
+                if (this.size >= HedgingPolicy.this.getMinSamples()
+                        && (this.threshold < 0 || this.recorded % Math.max(1, this.samples.length / 10) == 0)) {
+                    long[] sorted = Arrays.copyOf(this.samples, this.size);
+                    Arrays.sort(sorted);
+                    int index = (int) Math.ceil(HedgingPolicy.this.getPercentile() * sorted.length) - 1;
+                    this.threshold = sorted[Math.min(sorted.length - 1, Math.max(0, index))];
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        public long getThreshold() {
+            return this.threshold;
+        }
+    }
+
+    private double percentile = 0.95;
+    private long minDelay = 5;
+    private long maxDelay = 0;
+    private int minSamples = 20;
+    private int windowSize = 500;
+    private double budgetRatio = 0.05;
+    private int budgetCapacity = 10;
+
+    private final ConcurrentMap<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final TokenBudget budget = new TokenBudget();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /*
+     * Lower bound on the hedge delay, avoids hedging calls that are only slow
+     * relative to a very fast percentile.
+     */
+    public long getMinDelay() {
+        return this.minDelay;
+    }
+
+    public void setMinDelay(long minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public int getMinSamples() {
+        return this.minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    /*
+     * Number of most recent latencies per operation the percentile is calculated
+     * over.
+     */
+    public int getWindowSize() {
+        return this.windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public double getBudgetRatio() {
+        return this.budgetRatio;
+    }
+
+    public void setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+    }
+
+    public int getBudgetCapacity() {
+        return this.budgetCapacity;
+    }
+
+    public void setBudgetCapacity(int budgetCapacity) {
+        this.budgetCapacity = budgetCapacity;
+    }
+
+    public long getCallCount() {
+        return this.calls.sum();
+    }
+
+    /*
+     * Number of hedge requests sent.
+     */
+    public long getHedgeCount() {
+        return this.hedges.sum();
+    }
+
+    /*
+     * Number of calls answered by the hedge request rather than the first one.
+     */
+    public long getHedgeWinCount() {
+        return this.wins.sum();
+    }
+
+    public long getBudgetExhaustedCount() {
+        return this.budgetExhausted.sum();
+    }
+
+    /*
+     * Current hedge delay for the operation, -1 while too few latencies have been
+     * observed.
+     */
+    public long getDelay(String operation) {
+        LatencyWindow window = this.windows.get(operation);
+        long threshold = window == null ? -1 : window.getThreshold();
+        if (threshold < 0) {
+            return -1;
+        }
+
+        long delay = Math.max(threshold, this.getMinDelay());
+        return this.getMaxDelay() > 0 ? Math.min(delay, this.getMaxDelay()) : delay;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    void record(String operation, long latency) {
+        this.windows.computeIfAbsent(operation, k -> new LatencyWindow()).record(latency);
+    }
+
+    <T> CompletableFuture<T> hedge(String operation, Supplier<CompletableFuture<T>> call, ScheduledExecutorService scheduler) {
+        this.calls.increment();
+        this.budget.deposit(this.getBudgetRatio(), this.getBudgetCapacity());
+
+        LatencyWindow window = this.windows.computeIfAbsent(operation, k -> new LatencyWindow());
+        long delay = this.getDelay(operation);
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean answered = new AtomicBoolean();
+
+        this.attempt(call, result, attempts, pending, answered, false);
+        if (delay >= 0 && !result.isDone()) {
+            try {
+                ScheduledFuture<?> timer = scheduler.schedule(() -> {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    if (!this.budget.withdraw(this.getBudgetCapacity())) {
+                        this.budgetExhausted.increment();
+                        return;
+                    }
+
+                    this.hedges.increment();
+                    pending.incrementAndGet();
+                    this.attempt(call, result, attempts, pending, answered, true);
+                }, delay, TimeUnit.MILLISECONDS);
+                result.whenComplete((value, ex) -> timer.cancel(false));
+            } catch (RejectedExecutionException ex) {
+                /* scheduler is shut down, the call continues without a hedge */
+            }
+        }
+
+        result.whenComplete((value, ex) -> {
+            if (ex == null) {
+                window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            attempts.forEach(attempt -> attempt.cancel(true));
+        });
+        return result;
+    }
+
+    /*
+     * The call only fails once every attempt that was sent has failed.
+     */
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result, List<CompletableFuture<T>> attempts, AtomicInteger pending,
+            AtomicBoolean answered, boolean hedge) {
+        CompletableFuture<T> attempt;
+        try {
+            attempt = call.get();
+        } catch (RuntimeException ex) {
+            attempt = CompletableFuture.failedFuture(ex);
+        }
+
+        attempts.add(attempt);
+        if (result.isDone()) {
+            attempt.cancel(true);
+        }
+
+        attempt.whenComplete((value, ex) -> {
+            if (ex == null) {
+                if (answered.compareAndSet(false, true)) {
+                    if (hedge) {
+                        this.wins.increment();
+                    }
+                    result.complete(value);
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(Futures.unwrap(ex));
+            }
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * In memory IdentityMetrics keeping a latency histogram, status code counts,
+ * in-flight, retry and token refresh counts and byte totals per endpoint.
+ * Recording is lock free once an endpoint has been seen.
+ */
+public class HistogramMetrics implements IdentityMetrics {
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRequestStart(String endpoint) {
+        this.get(endpoint).onRequestStart();
+    }
+
+    @Override
+    public void onRequest(String endpoint, int status, long duration, long requestBytes, long responseBytes) {
+        this.get(endpoint).onRequest(status, duration, requestBytes, responseBytes);
+    }
+
+    @Override
+    public void onRetry(String endpoint) {
+        this.get(endpoint).onRetry();
+    }
+
+    @Override
+    public void onTokenRefresh(String endpoint) {
+        this.get(endpoint).onTokenRefresh();
+    }
+
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableMap(this.endpoints);
+    }
+
+    /*
+     * Null until a call to the endpoint has been recorded.
+     */
+    public EndpointMetrics getEndpoint(String endpoint) {
+        return this.endpoints.get(endpoint);
+    }
+
+    private EndpointMetrics get(String endpoint) {
+        EndpointMetrics metrics = this.endpoints.get(endpoint);
+        if (metrics == null) {
+            metrics = this.endpoints.computeIfAbsent(endpoint, k -> new EndpointMetrics());
+        }
+        return metrics;
+    }
+}
@@ -1,7 +1,14 @@
 package io.github.lc.oss.commons.identity;
 
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Collection;
 
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.MessageHeaders;
+
 import io.github.lc.oss.commons.api.identity.Messages;
 
 public class HttpException extends RuntimeException {
@@ -9,11 +16,17 @@ public class HttpException extends RuntimeException {
 
     private final Collection<Messages> messages;
     private final int status;
+    private final long retryAfter;
 
     public HttpException(String message, int status, Collection<Messages> messages) {
+        this(message, status, messages, -1);
+    }
+
+    public HttpException(String message, int status, Collection<Messages> messages, long retryAfter) {
         super(message);
         this.status = status;
         this.messages = messages;
+        this.retryAfter = retryAfter;
     }
 
     public Collection<Messages> getMessages() {
@@ -23,4 +36,42 @@ public class HttpException extends RuntimeException {
     public int getStatus() {
         return this.status;
     }
+
+    /*
+     * Milliseconds the server asked clients to wait before retrying, -1 when the
+     * response did not include a Retry-After header.
+     */
+    public long getRetryAfter() {
+        return this.retryAfter;
+    }
+
+    static long getRetryAfter(MessageHeaders headers) {
+        Header header = headers.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        return HttpException.parseRetryAfter(header == null ? null : header.getValue());
+    }
+
+    /*
+     * Retry-After is either a number of seconds or an HTTP-date, invalid values
+     * are treated as absent.
+     */
+    static long parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? -1 : seconds * 1000;
+        } catch (NumberFormatException ex) {
+            /* not delay-seconds, try HTTP-date */
+        }
+
+        try {
+            long until = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, until - System.currentTimeMillis());
+        } catch (DateTimeParseException ex) {
+            return -1;
+        }
+    }
 }
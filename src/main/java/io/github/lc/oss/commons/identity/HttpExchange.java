@@ -0,0 +1,55 @@
+package io.github.lc.oss.commons.identity;
+
+/*
+ * Measures a single HTTP request for the IdentityMetrics listener, if any, and
+ * JFR. Created when the request is sent, end must be called exactly once
+ * however the request completes.
+ */
+final class HttpExchange {
+    private final IdentityMetrics metrics;
+    private final String method;
+    private final String url;
+    private final String endpoint;
+    private final HttpExchangeEvent event;
+    private final long start;
+
+    HttpExchange(IdentityMetrics metrics, String method, String url) {
+        this.metrics = metrics;
+        this.method = method;
+        this.url = url;
+        this.endpoint = metrics == null ? null : Endpoints.of(method, url);
+        if (metrics != null) {
+            metrics.onRequestStart(this.endpoint);
+        }
+        this.event = HttpExchangeEvent.start();
+        this.start = System.nanoTime();
+    }
+
+    /*
+     * False when there is no listener and the JFR event is disabled, callers can
+     * skip measuring sizes.
+     */
+    boolean isRecording() {
+        return this.metrics != null || this.event != null;
+    }
+
+    void end(int status, long requestBytes, long responseBytes) {
+        long duration = System.nanoTime() - this.start;
+        boolean commit = false;
+        if (this.event != null) {
+            this.event.end();
+            commit = this.event.shouldCommit();
+        }
+        if (this.metrics != null) {
+            this.metrics.onRequest(this.endpoint, status, duration, requestBytes, responseBytes);
+        }
+        if (commit) {
+            this.event.endpoint = this.endpoint == null ? Endpoints.of(this.method, this.url) : this.endpoint;
+            this.event.method = this.method;
+            this.event.status = status;
+            this.event.requestBytes = requestBytes;
+            this.event.responseBytes = responseBytes;
+            this.event.commit();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.lc.oss.commons.identity;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * URLs are not recorded, they contain user ids.
+ */
+@Name("io.github.lc.oss.commons.identity.HttpExchange")
+@Label("Identity HTTP Exchange")
+@Description("A request to the identity server")
+@Category("Identity")
+class HttpExchangeEvent extends jdk.jfr.Event {
+    private static final EventType TYPE = EventType.getEventType(HttpExchangeEvent.class);
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Method")
+    String method;
+
+    @Label("Status")
+    @Description("0 when no response was received")
+    int status;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    @Description("-1 when not known")
+    long responseBytes;
+
+    /*
+     * Returns a started event, or null without allocating when no recording has
+     * the event enabled.
+     */
+    static HttpExchangeEvent start() {
+        if (!HttpExchangeEvent.TYPE.isEnabled()) {
+            return null;
+        }
+        HttpExchangeEvent event = new HttpExchangeEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -1,19 +1,49 @@
 package io.github.lc.oss.commons.identity;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.Map;
 
 import io.github.lc.oss.commons.serialization.Jsonable;
 
-public interface HttpService {
+public interface HttpService extends AutoCloseable {
 
     void delete(String url, Map<String, String> headers);
 
     <T> T get(String url, Map<String, String> headers, Class<T> responseType);
 
+    /*
+     * Sends If-None-Match when etag is not null. The default implementation
+     * does not support revalidation and always returns the full response.
+     */
+    default <T> ConditionalResponse<T> getConditional(String url, Map<String, String> headers, Class<T> responseType, String etag) {
+        return new ConditionalResponse<>(this.get(url, headers, responseType));
+    }
+
     <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody);
 
     <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey);
 
     void put(String url, Map<String, String> headers, Jsonable requestBody);
 
+    /*
+     * Hands the response body to the reader as it is received. The default
+     * implementation buffers the whole response first.
+     */
+    default void postStreaming(String url, Map<String, String> headers, Jsonable requestBody, ResponseReader responseReader) {
+        String response = this.post(url, headers, String.class, requestBody);
+        if (response == null) {
+            return;
+        }
+
+        try {
+            responseReader.read(new StringReader(response));
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        }
+    }
+
+    @Override
+    default void close() {
+    }
 }
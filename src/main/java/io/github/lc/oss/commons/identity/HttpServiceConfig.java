@@ -0,0 +1,220 @@
+package io.github.lc.oss.commons.identity;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/*
+ * All time values are in milliseconds, values less than or equal to zero
+ * disable the associated behavior.
+ */
+public class HttpServiceConfig {
+    private int maxConnections = 20;
+    private int maxConnectionsPerRoute = 20;
+    private long connectTimeout = 10 * 1000;
+    private long connectionRequestTimeout = 10 * 1000;
+    private long responseTimeout = 30 * 1000;
+    private long keepAlive = 30 * 1000;
+    private long idleTimeout = 60 * 1000;
+    private long connectionTimeToLive = 0;
+    private long validateAfterInactivity = 2 * 1000;
+    private boolean evictExpiredConnections = true;
+    private long maxResponseSize = 0;
+    private BufferPool bufferPool = null;
+    private boolean compressResponses = false;
+    private long requestCompressionThreshold = 0;
+    private IdentityMetrics metrics = null;
+    private long slowCallThreshold = 0;
+    private double slowCallSampleRate = 1;
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return this.maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public long getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getConnectionRequestTimeout() {
+        return this.connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(long connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public long getResponseTimeout() {
+        return this.responseTimeout;
+    }
+
+    public void setResponseTimeout(long responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public long getKeepAlive() {
+        return this.keepAlive;
+    }
+
+    public void setKeepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public long getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getConnectionTimeToLive() {
+        return this.connectionTimeToLive;
+    }
+
+    public void setConnectionTimeToLive(long connectionTimeToLive) {
+        this.connectionTimeToLive = connectionTimeToLive;
+    }
+
+    public long getValidateAfterInactivity() {
+        return this.validateAfterInactivity;
+    }
+
+    public void setValidateAfterInactivity(long validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+
+    public boolean isEvictExpiredConnections() {
+        return this.evictExpiredConnections;
+    }
+
+    public void setEvictExpiredConnections(boolean evictExpiredConnections) {
+        this.evictExpiredConnections = evictExpiredConnections;
+    }
+
+    /*
+     * In bytes
+     */
+    public long getMaxResponseSize() {
+        return this.maxResponseSize;
+    }
+
+    public void setMaxResponseSize(long maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /*
+     * Optional, may be shared between services. Null disables pooling.
+     */
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /*
+     * Sends Accept-Encoding: gzip, deflate and decodes compressed responses. The
+     * default HttpService always accepts compressed responses, as HttpClient
+     * does out of the box, this enables it for the async and JDK services.
+     */
+    public boolean isCompressResponses() {
+        return this.compressResponses;
+    }
+
+    public void setCompressResponses(boolean compressResponses) {
+        this.compressResponses = compressResponses;
+    }
+
+    /*
+     * In bytes, request bodies of at least this size are gzipped. Bodies of
+     * unknown length are always gzipped when enabled.
+     */
+    public long getRequestCompressionThreshold() {
+        return this.requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    /*
+     * Optional, receives the status, duration and size of every request.
+     */
+    public IdentityMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public void setMetrics(IdentityMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /*
+     * Requests taking at least this long are logged at WARNING with their phase
+     * timings to the io.github.lc.oss.commons.identity.SlowCalls System.Logger.
+     * Only supported by the default HttpService.
+     */
+    public long getSlowCallThreshold() {
+        return this.slowCallThreshold;
+    }
+
+    public void setSlowCallThreshold(long slowCallThreshold) {
+        this.slowCallThreshold = slowCallThreshold;
+    }
+
+    /*
+     * Fraction of the slow calls that are logged, between 0 and 1.
+     */
+    public double getSlowCallSampleRate() {
+        return this.slowCallSampleRate;
+    }
+
+    public void setSlowCallSampleRate(double slowCallSampleRate) {
+        this.slowCallSampleRate = slowCallSampleRate;
+    }
+
+    ConnectionConfig toConnectionConfig() {
+        ConnectionConfig.Builder builder = ConnectionConfig.custom();
+        if (this.getConnectTimeout() > 0) {
+            builder.setConnectTimeout(Timeout.ofMilliseconds(this.getConnectTimeout()));
+        }
+        if (this.getConnectionTimeToLive() > 0) {
+            builder.setTimeToLive(TimeValue.ofMilliseconds(this.getConnectionTimeToLive()));
+        }
+        if (this.getValidateAfterInactivity() > 0) {
+            builder.setValidateAfterInactivity(TimeValue.ofMilliseconds(this.getValidateAfterInactivity()));
+        }
+        return builder.build();
+    }
+
+    RequestConfig toRequestConfig() {
+        RequestConfig.Builder builder = RequestConfig.custom();
+        if (this.getConnectionRequestTimeout() > 0) {
+            builder.setConnectionRequestTimeout(Timeout.ofMilliseconds(this.getConnectionRequestTimeout()));
+        }
+        if (this.getResponseTimeout() > 0) {
+            builder.setResponseTimeout(Timeout.ofMilliseconds(this.getResponseTimeout()));
+        }
+        if (this.getKeepAlive() > 0) {
+            builder.setConnectionKeepAlive(TimeValue.ofMilliseconds(this.getKeepAlive()));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.lc.oss.commons.identity;
+
+/*
+ * Receives measurements of calls to the identity server. Implementations are
+ * called on the request path from any thread, they must be thread safe and
+ * should not block.
+ *
+ * Requests are named by endpoint, see the constants below. Requests to other
+ * paths are named by their HTTP method.
+ */
+public interface IdentityMetrics {
+    String TOKEN = "token";
+    String USER_INFO = "userInfo";
+    String USER_INFOS = "userInfos";
+    String USER_DATA_PUT = "userData.put";
+    String USER_DATA_DELETE = "userData.delete";
+    String REISSUE = "reissue";
+    String APPLICATION_INFO = "applicationInfo";
+
+    /*
+     * Called when an HTTP request is sent, every call is followed by exactly one
+     * call to onRequest for the same endpoint.
+     */
+    default void onRequestStart(String endpoint) {
+    }
+
+    /*
+     * Called once per HTTP request when it completes. Duration is in
+     * nanoseconds, status is 0 when no response was received and sizes are -1
+     * when not known. Sizes are as sent, after any compression.
+     */
+    default void onRequest(String endpoint, int status, long duration, long requestBytes, long responseBytes) {
+    }
+
+    /*
+     * Called after onRequest with the time spent in each phase of the request.
+     * Only reported by the default HttpService.
+     */
+    default void onPhases(RequestPhases phases) {
+    }
+
+    /*
+     * Called when a failed call is retried by the RetryPolicy.
+     */
+    default void onRetry(String endpoint) {
+    }
+
+    /*
+     * Called when a call is re-issued with a new application token after a 401.
+     */
+    default void onTokenRefresh(String endpoint) {
+    }
+}
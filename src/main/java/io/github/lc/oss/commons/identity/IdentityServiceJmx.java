@@ -0,0 +1,170 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.ToIntFunction;
+
+import org.apache.hc.core5.pool.PoolStats;
+
+/*
+ * Latency percentiles are computed from the difference between the histogram
+ * now and a snapshot taken one to two windows ago, snapshots are only taken
+ * when the attributes are read so nothing runs in the background.
+ */
+class IdentityServiceJmx implements IdentityServiceMXBean {
+    private static final double NANOS_PER_MILLI = 1000d * 1000d;
+
+    private static final class Window {
+        private long[] older;
+        private long[] previous;
+        private long rotated;
+    }
+
+    private final AbstractIdentityService service;
+    private final IdentityMetrics metrics;
+    private final long window;
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public IdentityServiceJmx(AbstractIdentityService service, IdentityMetrics metrics, long window) {
+        this.service = service;
+        this.metrics = metrics;
+        this.window = window;
+    }
+
+    @Override
+    public long getApplicationTokenExpiration() {
+        ApplicationToken token = this.service.getCurrentApplicationToken();
+        return token == null ? -1 : token.getExpiration();
+    }
+
+    @Override
+    public long getApplicationTokenTimeToExpiration() {
+        ApplicationToken token = this.service.getCurrentApplicationToken();
+        if (token == null || token.getExpiration() <= 0) {
+            return -1;
+        }
+        return Math.max(0, token.getExpiration() - this.now());
+    }
+
+    @Override
+    public long getTimeSinceLastApplicationTokenMint() {
+        long minted = this.service.getApplicationTokenMinted();
+        return minted <= 0 ? -1 : Math.max(0, this.now() - minted);
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        return this.sumPoolStats(PoolStats::getLeased);
+    }
+
+    @Override
+    public int getAvailableConnections() {
+        return this.sumPoolStats(PoolStats::getAvailable);
+    }
+
+    @Override
+    public int getPendingConnections() {
+        return this.sumPoolStats(PoolStats::getPending);
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return this.sumPoolStats(PoolStats::getMax);
+    }
+
+    @Override
+    public long getCoalescedRequestCount() {
+        return this.service.getCoalescedRequestCount();
+    }
+
+    @Override
+    public List<EndpointStatistics> getEndpoints() {
+        if (!(this.metrics instanceof HistogramMetrics)) {
+            return Collections.emptyList();
+        }
+
+        long now = this.now();
+        Map<String, EndpointMetrics> endpoints = new TreeMap<>(((HistogramMetrics) this.metrics).getEndpoints());
+        List<EndpointStatistics> statistics = new ArrayList<>(endpoints.size());
+        for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+            EndpointMetrics endpoint = entry.getValue();
+            LatencyHistogram latency = endpoint.getLatency();
+            long[] recent = this.getRecent(entry.getKey(), latency, now);
+            long max = latency.getMax();
+            statistics.add(new EndpointStatistics(entry.getKey(), endpoint.getInFlightCount(), latency.getCount(), endpoint.getFailureCount(),
+                    endpoint.getRetryCount(), //
+                    LatencyHistogram.getPercentile(recent, 0.5, max) / IdentityServiceJmx.NANOS_PER_MILLI, //
+                    LatencyHistogram.getPercentile(recent, 0.95, max) / IdentityServiceJmx.NANOS_PER_MILLI, //
+                    LatencyHistogram.getPercentile(recent, 0.99, max) / IdentityServiceJmx.NANOS_PER_MILLI, //
+                    LatencyHistogram.getPercentile(recent, 1, max) / IdentityServiceJmx.NANOS_PER_MILLI));
+        }
+        return statistics;
+    }
+
+    @Override
+    public void clearApplicationToken() {
+        this.service.clearApplicationToken();
+    }
+
+    @Override
+    public void clearApplicationInfo() {
+        this.service.clearApplicationInfo();
+    }
+
+    @Override
+    public void invalidateUserInfo(String userExternalId) {
+        this.service.invalidateUserInfo(userExternalId);
+    }
+
+    @Override
+    public void invalidateUserInfos() {
+        this.service.invalidateUserInfos();
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private long[] getRecent(String endpoint, LatencyHistogram latency, long now) {
+        Window window = this.windows.computeIfAbsent(endpoint, k -> new Window());
+        synchronized (window) {
+            long[] current = latency.getCounts();
+            if (window.previous == null) {
+                window.older = new long[current.length];
+                window.previous = current;
+                window.rotated = now;
+            } else if (now - window.rotated >= this.window) {
+                window.older = window.previous;
+                window.previous = current;
+                window.rotated = now;
+            }
+
+            long[] recent = new long[current.length];
+            for (int i = 0; i < recent.length; i++) {
+                recent[i] = current[i] - window.older[i];
+            }
+            return recent;
+        }
+    }
+
+    private int sumPoolStats(ToIntFunction<PoolStats> value) {
+        List<PoolStats> pools = this.service.getPoolStats();
+        if (pools.isEmpty()) {
+            return -1;
+        }
+
+        int sum = 0;
+        for (PoolStats stats : pools) {
+            sum += value.applyAsInt(stats);
+        }
+        return sum;
+    }
+}
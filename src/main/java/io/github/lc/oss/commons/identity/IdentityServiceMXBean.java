@@ -0,0 +1,47 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.List;
+
+/*
+ * Management interface registered for an AbstractIdentityService when
+ * isJmxEnabled returns true. Times are in milliseconds, values that are not
+ * known yet are -1.
+ */
+public interface IdentityServiceMXBean {
+    /*
+     * Epoch milliseconds, 0 when the identity server did not set one
+     */
+    long getApplicationTokenExpiration();
+
+    long getApplicationTokenTimeToExpiration();
+
+    long getTimeSinceLastApplicationTokenMint();
+
+    /*
+     * Connection pool totals of the default HTTP services, summed over the sync
+     * and async pools
+     */
+    int getLeasedConnections();
+
+    int getAvailableConnections();
+
+    int getPendingConnections();
+
+    int getMaxConnections();
+
+    long getCoalescedRequestCount();
+
+    /*
+     * Empty unless the metrics are a HistogramMetrics, which is the case when
+     * getMetrics is not overridden.
+     */
+    List<EndpointStatistics> getEndpoints();
+
+    void clearApplicationToken();
+
+    void clearApplicationInfo();
+
+    void invalidateUserInfo(String userExternalId);
+
+    void invalidateUserInfos();
+}
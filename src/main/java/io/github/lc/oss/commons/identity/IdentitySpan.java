@@ -0,0 +1,29 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Map;
+
+public interface IdentitySpan {
+    /*
+     * Used when no tracer is configured
+     */
+    IdentitySpan NOOP = new IdentitySpan() {
+        @Override
+        public void inject(Map<String, String> headers) {
+        }
+
+        @Override
+        public void end(Throwable error) {
+        }
+    };
+
+    /*
+     * Adds the trace context headers, traceparent and optionally tracestate, to
+     * the headers of the request made for a client span.
+     */
+    void inject(Map<String, String> headers);
+
+    /*
+     * Error is null when the call succeeded
+     */
+    void end(Throwable error);
+}
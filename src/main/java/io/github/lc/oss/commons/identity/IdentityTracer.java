@@ -0,0 +1,22 @@
+package io.github.lc.oss.commons.identity;
+
+/*
+ * Opens spans for calls to the identity server, see
+ * AbstractIdentityService.getTracer. Each call into the service is an operation
+ * span with a client span for every HTTP request it makes: the attempts, any
+ * retries, the re-issued request after a 401 and a token mint the call had to
+ * wait for. Spans are ended exactly once, possibly on another thread.
+ *
+ * Parent is null for spans that do not belong to an operation, implementations
+ * would normally use their current context instead.
+ *
+ * An OpenTelemetry adapter maps startSpan and startClientSpan to a span
+ * builder with SpanKind INTERNAL and CLIENT, using the parent's context when
+ * set, and implements IdentitySpan.inject with the W3C trace context
+ * propagator. TraceParent formats the header for other tracers.
+ */
+public interface IdentityTracer {
+    IdentitySpan startSpan(String name, IdentitySpan parent);
+
+    IdentitySpan startClientSpan(String name, IdentitySpan parent);
+}
@@ -0,0 +1,317 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.util.CloseableUtil;
+
+class InternalAsyncHttpService implements AsyncHttpService, PooledHttpService {
+    private JsonService jsonService;
+    private StringResponseHandler responseHandler;
+    private final HttpServiceConfig config;
+
+    private volatile CloseableHttpAsyncClient httpClient;
+    private volatile boolean closed = false;
+    private volatile ConnPoolControl<?> connectionPool;
+    private final Object httpClientLock = new Object();
+
+    public InternalAsyncHttpService(JsonService jsonService) {
+        this(jsonService, new HttpServiceConfig());
+    }
+
+    public InternalAsyncHttpService(JsonService jsonService, HttpServiceConfig config) {
+        this.jsonService = jsonService;
+        this.config = config;
+        this.responseHandler = new StringResponseHandler(jsonService, config.getMaxResponseSize());
+    }
+
+    @Override
+    public void close() {
+        CloseableHttpAsyncClient client;
+        synchronized (this.httpClientLock) {
+            this.closed = true;
+            client = this.httpClient;
+            this.httpClient = null;
+            this.connectionPool = null;
+        }
+        CloseableUtil.close(client);
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        ConnPoolControl<?> pool = this.connectionPool;
+        return pool == null ? null : pool.getTotalStats();
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String url, Map<String, String> headers) {
+        SimpleRequestBuilder request = SimpleRequestBuilder.delete(url);
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+        this.setHeaders(request, headers);
+
+        return this.call(request.build(), Void.class);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType) {
+        SimpleRequestBuilder request = SimpleRequestBuilder.get(url);
+        this.setHeaders(request, headers);
+
+        return this.call(request.build(), responseType);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+        return this.post(url, headers, responseType, requestBody, null);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+        RequestSigner.sign(requestBody, privateKey);
+
+        SimpleRequestBuilder request = SimpleRequestBuilder.post(url);
+        this.setHeaders(request, headers);
+        this.setBody(request, requestBody);
+
+        return this.call(request.build(), responseType);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String url, Map<String, String> headers, Jsonable requestBody) {
+        SimpleRequestBuilder request = SimpleRequestBuilder.put(url);
+        this.setHeaders(request, headers);
+        this.setBody(request, requestBody);
+
+        return this.call(request.build(), Void.class);
+    }
+
+    private void setHeaders(SimpleRequestBuilder request, Map<String, String> headers) {
+        if (this.config.isCompressResponses()) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, Compression.ACCEPT_ENCODING);
+        }
+        if (headers != null) {
+            headers.forEach((k, v) -> request.setHeader(k, v));
+        }
+    }
+
+    private void setBody(SimpleRequestBuilder request, Jsonable requestBody) {
+        String json = this.jsonService.to(requestBody);
+        long threshold = this.config.getRequestCompressionThreshold();
+        if (threshold <= 0) {
+            request.setBody(json, ContentType.APPLICATION_JSON);
+            return;
+        }
+
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < threshold) {
+            request.setBody(bytes, ContentType.APPLICATION_JSON);
+            return;
+        }
+
+        request.setHeader(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+        request.setBody(Compression.gzip(bytes), ContentType.APPLICATION_JSON);
+    }
+
+    /*
+     * Exposed for testing
+     */
+    <T> CompletableFuture<T> call(SimpleHttpRequest request, Class<T> responseType) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        HttpExchange exchange = new HttpExchange(this.config.getMetrics(), request.getMethod(), request.getRequestUri());
+        Future<SimpleHttpResponse> pending;
+        try {
+            pending = this.execute(request, new FutureCallback<SimpleHttpResponse>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    InternalAsyncHttpService.record(exchange, request, response);
+                    try {
+                        result.complete(InternalAsyncHttpService.this.toResult(response, responseType));
+                    } catch (RuntimeException ex) {
+                        result.completeExceptionally(ex);
+                    }
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    InternalAsyncHttpService.record(exchange, request, null);
+                    result.completeExceptionally(new RuntimeException("Error making request", ex));
+                }
+
+                @Override
+                public void cancelled() {
+                    InternalAsyncHttpService.record(exchange, request, null);
+                    result.cancel(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            InternalAsyncHttpService.record(exchange, request, null);
+            result.completeExceptionally(ex);
+            return result;
+        }
+
+        result.whenComplete((value, ex) -> {
+            if (ex instanceof CancellationException && pending != null) {
+                pending.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static void record(HttpExchange exchange, SimpleHttpRequest request, SimpleHttpResponse response) {
+        if (!exchange.isRecording()) {
+            return;
+        }
+
+        byte[] requestBody = request.getBodyBytes();
+        long requestBytes = requestBody == null ? 0 : requestBody.length;
+        if (response == null) {
+            exchange.end(0, requestBytes, -1);
+        } else {
+            byte[] responseBody = response.getBodyBytes();
+            exchange.end(response.getCode(), requestBytes, responseBody == null ? 0 : responseBody.length);
+        }
+    }
+
+    /*
+     * Exposed for testing
+     */
+    Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+        return this.getClient().execute(SimpleRequestProducer.create(request), new BoundedResponseConsumer(this.config.getMaxResponseSize()), callback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T toResult(SimpleHttpResponse response, Class<T> responseType) {
+        int status = response.getCode();
+        byte[] bytes = this.getBodyBytes(response);
+
+        if (status == HttpStatus.SC_OK && bytes != null && responseType != null && Jsonable.class.isAssignableFrom(responseType)
+                && this.jsonService instanceof StreamingJsonService) {
+            try {
+                return (T) ((StreamingJsonService) this.jsonService).from(new ByteArrayInputStream(bytes), this.getCharset(response),
+                        responseType.asSubclass(Jsonable.class));
+            } catch (IOException ex) {
+                throw new RuntimeException("Error making request", ex);
+            }
+        }
+
+        String body = bytes == null ? null : new String(bytes, this.getCharset(response));
+        switch (status) {
+            case HttpStatus.SC_NO_CONTENT:
+                return null;
+            case HttpStatus.SC_OK:
+                break;
+            default:
+                throw new HttpException("Error making request", status, body == null ? null : this.responseHandler.getMessages(body),
+                        HttpException.getRetryAfter(response));
+        }
+
+        if (responseType != null && Jsonable.class.isAssignableFrom(responseType)) {
+            Class<? extends Jsonable> type = responseType.asSubclass(Jsonable.class);
+            return (T) this.jsonService.from(body, type);
+        }
+
+        if (responseType == Void.class) {
+            return null;
+        }
+
+        return (T) body;
+    }
+
+    /*
+     * Decoded and size checked, the maximum size applies to the decoded body. The
+     * body as received is already bounded by BoundedResponseConsumer.
+     */
+    private byte[] getBodyBytes(SimpleHttpResponse response) {
+        long maxResponseSize = this.config.getMaxResponseSize();
+        byte[] bytes = response.getBodyBytes();
+        Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if (bytes == null || contentEncoding == null) {
+            if (maxResponseSize > 0 && bytes != null && bytes.length > maxResponseSize) {
+                throw new RuntimeException("Error making request", BoundedInputStream.tooLarge(maxResponseSize));
+            }
+            return bytes;
+        }
+
+        try (InputStream in = new BoundedInputStream(Compression.decode(new ByteArrayInputStream(bytes), contentEncoding.getValue()), maxResponseSize)) {
+            return in.readAllBytes();
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        }
+    }
+
+    private Charset getCharset(SimpleHttpResponse response) {
+        ContentType contentType = response.getContentType();
+        if (contentType == null) {
+            return StandardCharsets.UTF_8;
+        }
+        return contentType.getCharset(StandardCharsets.UTF_8);
+    }
+
+    CloseableHttpAsyncClient getClient() {
+        CloseableHttpAsyncClient client = this.httpClient;
+        if (client == null) {
+            synchronized (this.httpClientLock) {
+                if (this.closed) {
+                    throw new IllegalStateException("HttpService is closed");
+                }
+
+                client = this.httpClient;
+                if (client == null) {
+                    client = this.createClient();
+                    client.start();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    CloseableHttpAsyncClient createClient() {
+        PoolingAsyncClientConnectionManager manager = PoolingAsyncClientConnectionManagerBuilder.create() //
+                .setMaxConnTotal(this.config.getMaxConnections()) //
+                .setMaxConnPerRoute(this.config.getMaxConnectionsPerRoute()) //
+                .setDefaultConnectionConfig(this.config.toConnectionConfig()) //
+                .build();
+        this.connectionPool = manager;
+        HttpAsyncClientBuilder builder = HttpAsyncClients.custom() //
+                .setConnectionManager(manager) //
+                .setDefaultRequestConfig(this.config.toRequestConfig());
+        if (this.config.isEvictExpiredConnections()) {
+            builder.evictExpiredConnections();
+        }
+        if (this.config.getIdleTimeout() > 0) {
+            builder.evictIdleConnections(TimeValue.ofMilliseconds(this.config.getIdleTimeout()));
+        }
+        return builder.build();
+    }
+}
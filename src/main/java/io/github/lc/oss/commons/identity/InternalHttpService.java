@@ -9,25 +9,87 @@ import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
 import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.entity.GzipCompressingEntity;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.HttpClientResponseHandler;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
 
 import io.github.lc.oss.commons.api.services.JsonService;
-import io.github.lc.oss.commons.identity.model.SignedRequest;
 import io.github.lc.oss.commons.serialization.Jsonable;
-import io.github.lc.oss.commons.signing.Algorithms;
 import io.github.lc.oss.commons.util.CloseableUtil;
 
-class InternalHttpService implements HttpService {
+class InternalHttpService implements HttpService, PooledHttpService {
+    private static final class MeteredResponseHandler<T> implements HttpClientResponseHandler<T> {
+        private final HttpClientResponseHandler<T> handler;
+        private final PhaseTimer timer;
+        private int status = 0;
+        private long responseBytes = -1;
+
+        public MeteredResponseHandler(HttpClientResponseHandler<T> handler, PhaseTimer timer) {
+            this.handler = handler;
+            this.timer = timer;
+        }
+
+        @Override
+        public T handleResponse(ClassicHttpResponse response) throws IOException, org.apache.hc.core5.http.HttpException {
+            this.status = response.getCode();
+            this.responseBytes = response.getEntity() == null ? 0 : response.getEntity().getContentLength();
+            T result = this.handler.handleResponse(response);
+            if (this.timer != null) {
+                this.timer.exit();
+            }
+            return result;
+        }
+    }
+
     private JsonService jsonService;
     private StringResponseHandler responseHandler;
+    private final HttpServiceConfig config;
+
+    private volatile CloseableHttpClient httpClient;
+    private volatile boolean closed = false;
+    private volatile ConnPoolControl<?> connectionPool;
+    private final Object httpClientLock = new Object();
 
     public InternalHttpService(JsonService jsonService) {
+        this(jsonService, new HttpServiceConfig());
+    }
+
+    public InternalHttpService(JsonService jsonService, HttpServiceConfig config) {
         this.jsonService = jsonService;
-        this.responseHandler = new StringResponseHandler(jsonService);
+        this.config = config;
+        this.responseHandler = new StringResponseHandler(jsonService, config.getMaxResponseSize(), config.getBufferPool());
+    }
+
+    @Override
+    public void close() {
+        CloseableHttpClient client;
+        synchronized (this.httpClientLock) {
+            this.closed = true;
+            client = this.httpClient;
+            this.httpClient = null;
+            this.connectionPool = null;
+        }
+        CloseableUtil.close(client);
+    }
+
+    @Override
+    public PoolStats getPoolStats() {
+        ConnPoolControl<?> pool = this.connectionPool;
+        return pool == null ? null : pool.getTotalStats();
     }
 
     @Override
@@ -51,6 +113,26 @@ class InternalHttpService implements HttpService {
         return this.call(request, responseType);
     }
 
+    @Override
+    public <T> ConditionalResponse<T> getConditional(String url, Map<String, String> headers, Class<T> responseType, String etag) {
+        HttpGet request = new HttpGet(url);
+        if (headers != null) {
+            headers.forEach((k, v) -> request.setHeader(k, v));
+        }
+        if (etag != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        this.setAcceptEncoding(request);
+
+        try {
+            return this.execute(request, new ConditionalResponseHandler<>(this.responseHandler, this.getBodyHandler(responseType), etag));
+        } catch (HttpException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        }
+    }
+
     @Override
     public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
         return this.post(url, headers, responseType, requestBody, null);
@@ -58,18 +140,39 @@ class InternalHttpService implements HttpService {
 
     @Override
     public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
-        if (requestBody instanceof SignedRequest) {
-            SignedRequest signed = (SignedRequest) requestBody;
-            String signature = Algorithms.ED448.getSignature(privateKey, signed.getSignatureData());
-            signed.setSignautre(signature);
+        RequestSigner.sign(requestBody, privateKey);
+
+        HttpPost request = new HttpPost(url);
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+        headers.forEach((k, v) -> request.setHeader(k, v));
+        HttpEntity entity = this.toEntity(requestBody);
+        request.setEntity(entity);
+
+        try {
+            return this.call(request, responseType);
+        } finally {
+            CloseableUtil.close(entity);
         }
+    }
 
+    @Override
+    public void postStreaming(String url, Map<String, String> headers, Jsonable requestBody, ResponseReader responseReader) {
         HttpPost request = new HttpPost(url);
         request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         headers.forEach((k, v) -> request.setHeader(k, v));
-        request.setEntity(new StringEntity(this.jsonService.to(requestBody), StandardCharsets.UTF_8));
+        HttpEntity entity = this.toEntity(requestBody);
+        request.setEntity(entity);
+        this.setAcceptEncoding(request);
 
-        return this.call(request, responseType);
+        try {
+            this.execute(request, new ReaderResponseHandler(this.responseHandler, responseReader));
+        } catch (HttpException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        } finally {
+            CloseableUtil.close(entity);
+        }
     }
 
     @Override
@@ -77,9 +180,14 @@ class InternalHttpService implements HttpService {
         HttpPut request = new HttpPut(url);
         request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         headers.forEach((k, v) -> request.setHeader(k, v));
-        request.setEntity(new StringEntity(this.jsonService.to(requestBody), StandardCharsets.UTF_8));
+        HttpEntity entity = this.toEntity(requestBody);
+        request.setEntity(entity);
 
-        this.call(request);
+        try {
+            this.call(request);
+        } finally {
+            CloseableUtil.close(entity);
+        }
     }
 
     private void call(HttpUriRequestBase request) {
@@ -91,34 +199,178 @@ class InternalHttpService implements HttpService {
      */
     @SuppressWarnings("unchecked")
     <T> T call(HttpUriRequestBase request, Class<T> responseType) {
-        CloseableHttpClient httpClient = null;
+        this.setAcceptEncoding(request);
         try {
-            httpClient = this.createClient();
-            String response = httpClient.execute(request, this.getResponseHandler());
-
-            if (responseType != null && Jsonable.class.isAssignableFrom(responseType)) {
+            if (responseType != null && Jsonable.class.isAssignableFrom(responseType) && this.jsonService instanceof StreamingJsonService) {
                 Class<? extends Jsonable> type = responseType.asSubclass(Jsonable.class);
-                return (T) this.jsonService.from(response, type);
+                return (T) this.execute(request, this.getJsonResponseHandler(type));
             }
 
-            return (T) response;
+            PhaseTimer timer = PhaseTimer.of(this.config, request.getMethod(), request.getRequestUri());
+            try {
+                String response = this.execute(request, this.getResponseHandler(), timer);
+                if (timer != null && responseType != null) {
+                    timer.enter(RequestPhase.DESERIALIZE);
+                }
+                return this.toResult(response, responseType);
+            } finally {
+                if (timer != null) {
+                    timer.end();
+                }
+            }
         } catch (HttpException ex) {
             throw ex;
         } catch (IOException ex) {
             throw new RuntimeException("Error making request", ex);
+        }
+    }
+
+    private <T> T execute(HttpUriRequestBase request, HttpClientResponseHandler<T> handler) throws IOException {
+        PhaseTimer timer = PhaseTimer.of(this.config, request.getMethod(), request.getRequestUri());
+        try {
+            return this.execute(request, handler, timer);
         } finally {
-            CloseableUtil.close(httpClient);
+            if (timer != null) {
+                timer.end();
+            }
+        }
+    }
+
+    /*
+     * Response sizes are taken from Content-Length and are unknown for chunked
+     * responses. The timer, if any, is ended by the caller so that it can time
+     * deserializing the response as well.
+     */
+    private <T> T execute(HttpUriRequestBase request, HttpClientResponseHandler<T> handler, PhaseTimer timer) throws IOException {
+        HttpExchange exchange = new HttpExchange(this.config.getMetrics(), request.getMethod(), request.getRequestUri());
+        if (!exchange.isRecording() && timer == null) {
+            return this.getClient().execute(request, handler);
+        }
+
+        MeteredResponseHandler<T> metered = new MeteredResponseHandler<>(handler, timer);
+        HttpEntity entity = request.getEntity();
+        try {
+            if (timer == null) {
+                return this.getClient().execute(request, metered);
+            }
+
+            if (entity != null) {
+                request.setEntity(timer.wrap(entity));
+            }
+            return this.getClient().execute(request, timer.newContext(), metered);
+        } finally {
+            if (timer != null) {
+                timer.setStatus(metered.status);
+            }
+            exchange.end(metered.status, entity == null ? 0 : entity.getContentLength(), metered.responseBytes);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T toResult(String response, Class<T> responseType) {
+        if (responseType != null && Jsonable.class.isAssignableFrom(responseType)) {
+            Class<? extends Jsonable> type = responseType.asSubclass(Jsonable.class);
+            return (T) this.jsonService.from(response, type);
+        }
+
+        return (T) response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> AbstractHttpClientResponseHandler<T> getBodyHandler(Class<T> responseType) {
+        if (responseType != null && Jsonable.class.isAssignableFrom(responseType) && this.jsonService instanceof StreamingJsonService) {
+            return (AbstractHttpClientResponseHandler<T>) this.getJsonResponseHandler(responseType.asSubclass(Jsonable.class));
+        }
+
+        return new AbstractHttpClientResponseHandler<T>() {
+            @Override
+            public T handleEntity(HttpEntity entity) throws IOException {
+                return InternalHttpService.this.toResult(InternalHttpService.this.responseHandler.handleEntity(entity), responseType);
+            }
+        };
+    }
+
+    /*
+     * The client is thread safe and owns the connection pool so a single instance
+     * is shared by all calls until this service is closed.
+     */
+    CloseableHttpClient getClient() {
+        CloseableHttpClient client = this.httpClient;
+        if (client == null) {
+            synchronized (this.httpClientLock) {
+                if (this.closed) {
+                    throw new IllegalStateException("HttpService is closed");
+                }
+
+                client = this.httpClient;
+                if (client == null) {
+                    client = this.createClient();
+                    this.httpClient = client;
+                }
+            }
         }
+        return client;
     }
 
     /*
      * Exposed for testing
      */
     CloseableHttpClient createClient() {
-        return HttpClients.createDefault();
+        HttpClientBuilder builder = HttpClients.custom() //
+                .setConnectionManager(this.createConnectionManager()) //
+                .setDefaultRequestConfig(this.config.toRequestConfig()) //
+                .addExecInterceptorBefore(ChainElement.CONNECT.name(), "phaseTimerLease", PhaseTimer::beforeConnect) //
+                .addExecInterceptorBefore(ChainElement.MAIN_TRANSPORT.name(), "phaseTimerTransport", PhaseTimer::afterConnect);
+        if (this.config.isEvictExpiredConnections()) {
+            builder.evictExpiredConnections();
+        }
+        if (this.config.getIdleTimeout() > 0) {
+            builder.evictIdleConnections(TimeValue.ofMilliseconds(this.config.getIdleTimeout()));
+        }
+        return builder.build();
+    }
+
+    private PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager manager = PoolingHttpClientConnectionManagerBuilder.create() //
+                .setMaxConnTotal(this.config.getMaxConnections()) //
+                .setMaxConnPerRoute(this.config.getMaxConnectionsPerRoute()) //
+                .setDefaultConnectionConfig(this.config.toConnectionConfig()) //
+                .build();
+        this.connectionPool = manager;
+        return manager;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    HttpEntity toEntity(Jsonable requestBody) {
+        HttpEntity entity;
+        if (this.jsonService instanceof StreamingJsonService) {
+            entity = new JsonableEntity((StreamingJsonService) this.jsonService, requestBody);
+        } else if (this.config.getBufferPool() != null) {
+            entity = new PooledStringEntity(this.jsonService.to(requestBody), this.config.getBufferPool());
+        } else {
+            entity = new StringEntity(this.jsonService.to(requestBody), StandardCharsets.UTF_8);
+        }
+
+        long threshold = this.config.getRequestCompressionThreshold();
+        if (threshold > 0 && (entity.getContentLength() < 0 || entity.getContentLength() >= threshold)) {
+            return new GzipCompressingEntity(entity);
+        }
+        return entity;
+    }
+
+    private void setAcceptEncoding(HttpUriRequestBase request) {
+        if (this.config.isCompressResponses()) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, Compression.ACCEPT_ENCODING);
+        }
     }
 
     private StringResponseHandler getResponseHandler() {
         return this.responseHandler;
     }
+
+    private <T extends Jsonable> JsonResponseHandler<T> getJsonResponseHandler(Class<T> responseType) {
+        return new JsonResponseHandler<>((StreamingJsonService) this.jsonService, this.responseHandler, responseType, this.config.getMaxResponseSize());
+    }
 }
@@ -0,0 +1,448 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.util.CloseableUtil;
+
+/*
+ * HttpService backed by java.net.http.HttpClient. HTTP/2 is preferred, over TLS
+ * it is negotiated with ALPN and over plain http with an h2c upgrade, falling
+ * back to HTTP/1.1 when the server does not support it. Concurrent requests to
+ * an HTTP/2 server are multiplexed over a single connection.
+ *
+ * async() returns an AsyncHttpService that shares the same client, passing this
+ * service to AbstractIdentityService.init(jsonService, httpService) uses it for
+ * the async methods.
+ *
+ * Connection pool sizes and keep alive are managed by the JDK (see the
+ * jdk.httpclient.* system properties), the other HttpServiceConfig settings
+ * apply as they do for the default implementation.
+ *
+ * With a StreamingJsonService request bodies are serialized as the client asks
+ * for them, each on a writer thread. Writers are virtual threads where
+ * supported, otherwise at most maxConnections platform threads and further
+ * bodies wait for one of them.
+ */
+public class JdkHttpService implements HttpService {
+    private class Async implements AsyncHttpService {
+        @Override
+        public CompletableFuture<Void> delete(String url, Map<String, String> headers) {
+            HttpRequest.Builder request = JdkHttpService.this.newRequest(url, headers);
+            request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+            return JdkHttpService.this.callAsync(request.DELETE().build(), Void.class);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType) {
+            return JdkHttpService.this.callAsync(JdkHttpService.this.newRequest(url, headers).GET().build(), responseType);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+            return this.post(url, headers, responseType, requestBody, null);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+            HttpRequest request;
+            try {
+                request = JdkHttpService.this.newPost(url, headers, requestBody, privateKey);
+            } catch (RuntimeException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            return JdkHttpService.this.callAsync(request, responseType);
+        }
+
+        @Override
+        public CompletableFuture<Void> put(String url, Map<String, String> headers, Jsonable requestBody) {
+            HttpRequest.Builder request = JdkHttpService.this.newRequest(url, headers);
+            try {
+                request.PUT(JdkHttpService.this.toBody(request, requestBody));
+            } catch (RuntimeException ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            return JdkHttpService.this.callAsync(request.build(), Void.class);
+        }
+
+        @Override
+        public void close() {
+            JdkHttpService.this.close();
+        }
+    }
+
+    private final JsonService jsonService;
+    private final StringResponseHandler responseHandler;
+    private final HttpServiceConfig config;
+    private final AsyncHttpService async = new Async();
+
+    private volatile HttpClient httpClient;
+    private volatile ExecutorService writer;
+    private volatile boolean closed = false;
+    private final Object httpClientLock = new Object();
+
+    public JdkHttpService(JsonService jsonService) {
+        this(jsonService, new HttpServiceConfig());
+    }
+
+    public JdkHttpService(JsonService jsonService, HttpServiceConfig config) {
+        this.jsonService = jsonService;
+        this.config = config;
+        this.responseHandler = new StringResponseHandler(jsonService, config.getMaxResponseSize(), config.getBufferPool());
+    }
+
+    public AsyncHttpService async() {
+        return this.async;
+    }
+
+    @Override
+    public void close() {
+        HttpClient client;
+        ExecutorService writer;
+        synchronized (this.httpClientLock) {
+            this.closed = true;
+            client = this.httpClient;
+            this.httpClient = null;
+            writer = this.writer;
+            this.writer = null;
+        }
+
+        if (writer != null) {
+            writer.shutdownNow();
+        }
+
+        /*
+         * HttpClient is only AutoCloseable from Java 21, on older versions its
+         * resources are released once it is no longer referenced
+         */
+        if (client instanceof AutoCloseable) {
+            CloseableUtil.close((AutoCloseable) client);
+        }
+    }
+
+    @Override
+    public void delete(String url, Map<String, String> headers) {
+        HttpRequest.Builder request = this.newRequest(url, headers);
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+        this.call(request.DELETE().build(), Void.class);
+    }
+
+    @Override
+    public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+        return this.call(this.newRequest(url, headers).GET().build(), responseType);
+    }
+
+    @Override
+    public <T> ConditionalResponse<T> getConditional(String url, Map<String, String> headers, Class<T> responseType, String etag) {
+        HttpRequest.Builder request = this.newRequest(url, headers);
+        if (etag != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+
+        HttpResponse<InputStream> response = this.execute(request.GET().build());
+        String responseETag = response.headers().firstValue(HttpHeaders.ETAG).orElse(null);
+        String cacheControl = response.headers().firstValue(HttpHeaders.CACHE_CONTROL).orElse(null);
+        if (response.statusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            CloseableUtil.close(response.body());
+            return ConditionalResponse.notModified(responseETag == null ? etag : responseETag, cacheControl);
+        }
+
+        return new ConditionalResponse<>(this.toResult(response, responseType), responseETag, cacheControl);
+    }
+
+    @Override
+    public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+        return this.post(url, headers, responseType, requestBody, null);
+    }
+
+    @Override
+    public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+        return this.call(this.newPost(url, headers, requestBody, privateKey), responseType);
+    }
+
+    @Override
+    public void postStreaming(String url, Map<String, String> headers, Jsonable requestBody, ResponseReader responseReader) {
+        HttpResponse<InputStream> response = this.execute(this.newPost(url, headers, requestBody, null));
+        if (response.statusCode() != HttpStatus.SC_OK) {
+            this.toResult(response, Void.class);
+            return;
+        }
+
+        Charset charset = StringResponseHandler.getCharset(response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null));
+        String contentEncoding = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null);
+        try (InputStream body = response.body(); Reader reader = new InputStreamReader(Compression.decode(body, contentEncoding), charset)) {
+            responseReader.read(reader);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        }
+    }
+
+    @Override
+    public void put(String url, Map<String, String> headers, Jsonable requestBody) {
+        HttpRequest.Builder request = this.newRequest(url, headers);
+        this.call(request.PUT(this.toBody(request, requestBody)).build(), Void.class);
+    }
+
+    private HttpRequest.Builder newRequest(String url, Map<String, String> headers) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        if (this.config.getResponseTimeout() > 0) {
+            request.timeout(Duration.ofMillis(this.config.getResponseTimeout()));
+        }
+        if (this.config.isCompressResponses()) {
+            request.setHeader(HttpHeaders.ACCEPT_ENCODING, Compression.ACCEPT_ENCODING);
+        }
+        if (headers != null) {
+            headers.forEach((k, v) -> request.setHeader(k, v));
+        }
+        return request;
+    }
+
+    private HttpRequest newPost(String url, Map<String, String> headers, Jsonable requestBody, String privateKey) {
+        RequestSigner.sign(requestBody, privateKey);
+
+        HttpRequest.Builder request = this.newRequest(url, headers);
+        return request.POST(this.toBody(request, requestBody)).build();
+    }
+
+    /*
+     * Exposed for testing
+     */
+    HttpRequest.BodyPublisher toBody(HttpRequest.Builder request, Jsonable requestBody) {
+        request.setHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
+
+        long threshold = this.config.getRequestCompressionThreshold();
+        if (this.jsonService instanceof StreamingJsonService) {
+            /*
+             * The length is not known up front, so as with the default
+             * implementation a streamed body is always compressed when enabled
+             */
+            if (threshold > 0) {
+                request.setHeader(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+            }
+            return new JsonablePublisher((StreamingJsonService) this.jsonService, requestBody, threshold > 0, this.getWriter());
+        }
+
+        byte[] bytes = this.jsonService.to(requestBody).getBytes(StandardCharsets.UTF_8);
+        if (threshold > 0 && bytes.length >= threshold) {
+            request.setHeader(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+            bytes = Compression.gzip(bytes);
+        }
+        return HttpRequest.BodyPublishers.ofByteArray(bytes);
+    }
+
+    private <T> T call(HttpRequest request, Class<T> responseType) {
+        return this.toResult(this.execute(request), responseType);
+    }
+
+    /*
+     * The duration is measured to the response headers, the body is read by the
+     * caller. Response sizes are taken from Content-Length.
+     */
+    private HttpResponse<InputStream> execute(HttpRequest request) {
+        HttpExchange exchange = new HttpExchange(this.config.getMetrics(), request.method(), request.uri().getPath());
+        HttpResponse<InputStream> response = null;
+        try {
+            response = this.send(request);
+            return response;
+        } finally {
+            JdkHttpService.closeBody(request);
+            if (exchange.isRecording()) {
+                exchange.end(response == null ? 0 : response.statusCode(), JdkHttpService.getContentLength(request),
+                        response == null ? -1 : response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1));
+            }
+        }
+    }
+
+    private static long getContentLength(HttpRequest request) {
+        return request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L);
+    }
+
+    /*
+     * Once the response has arrived the server will not read any more of the
+     * body, a writer still waiting for demand is released
+     */
+    private static void closeBody(HttpRequest request) {
+        request.bodyPublisher().filter(JsonablePublisher.class::isInstance).ifPresent(publisher -> ((JsonablePublisher) publisher).close());
+    }
+
+    /*
+     * Exposed for testing
+     */
+    HttpResponse<InputStream> send(HttpRequest request) {
+        try {
+            return this.getClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Error making request", ex);
+        }
+    }
+
+    private <T> CompletableFuture<T> callAsync(HttpRequest request, Class<T> responseType) {
+        HttpExchange exchange = new HttpExchange(this.config.getMetrics(), request.method(), request.uri().getPath());
+        CompletableFuture<HttpResponse<byte[]>> pending;
+        try {
+            pending = this.sendAsync(request);
+        } catch (RuntimeException ex) {
+            JdkHttpService.closeBody(request);
+            exchange.end(0, JdkHttpService.getContentLength(request), -1);
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        CompletableFuture<T> result = pending.handle((response, ex) -> {
+            JdkHttpService.closeBody(request);
+            if (exchange.isRecording()) {
+                exchange.end(ex == null ? response.statusCode() : 0, JdkHttpService.getContentLength(request), ex == null ? response.body().length : -1);
+            }
+            if (ex != null) {
+                throw new CompletionException(new RuntimeException("Error making request", Futures.unwrap(ex)));
+            }
+
+            return this.toResult(response.statusCode(), response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null),
+                    response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null),
+                    response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null), new ByteArrayInputStream(response.body()), responseType);
+        });
+        result.whenComplete((value, ex) -> {
+            if (ex instanceof CancellationException) {
+                pending.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request) {
+        return this.getClient().sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private <T> T toResult(HttpResponse<InputStream> response, Class<T> responseType) {
+        return this.toResult(response.statusCode(), response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null),
+                response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null), response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null),
+                response.body(), responseType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T toResult(int status, String contentType, String contentEncoding, String retryAfter, InputStream body, Class<T> responseType) {
+        Charset charset = StringResponseHandler.getCharset(contentType);
+        try (InputStream in = new BoundedInputStream(Compression.decode(body, contentEncoding), this.config.getMaxResponseSize())) {
+            switch (status) {
+                case HttpStatus.SC_NO_CONTENT:
+                    return null;
+                case HttpStatus.SC_OK:
+                    break;
+                default:
+                    String error = this.read(in, charset);
+                    throw new HttpException("Error making request", status, error.isEmpty() ? null : this.responseHandler.getMessages(error),
+                            HttpException.parseRetryAfter(retryAfter));
+            }
+
+            if (responseType == null || responseType == Void.class) {
+                return null;
+            }
+
+            if (Jsonable.class.isAssignableFrom(responseType)) {
+                Class<? extends Jsonable> type = responseType.asSubclass(Jsonable.class);
+                if (this.jsonService instanceof StreamingJsonService) {
+                    return (T) ((StreamingJsonService) this.jsonService).from(in, charset, type);
+                }
+                return (T) this.jsonService.from(this.read(in, charset), type);
+            }
+
+            return (T) this.read(in, charset);
+        } catch (IOException ex) {
+            throw new RuntimeException("Error making request", ex);
+        }
+    }
+
+    private String read(InputStream in, Charset charset) throws IOException {
+        BufferPool bufferPool = this.config.getBufferPool();
+        if (bufferPool == null) {
+            return new String(in.readAllBytes(), charset);
+        }
+        return bufferPool.readString(in, charset, -1);
+    }
+
+    HttpClient getClient() {
+        HttpClient client = this.httpClient;
+        if (client == null) {
+            synchronized (this.httpClientLock) {
+                if (this.closed) {
+                    throw new IllegalStateException("HttpService is closed");
+                }
+
+                client = this.httpClient;
+                if (client == null) {
+                    client = this.createClient();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private ExecutorService getWriter() {
+        ExecutorService writer = this.writer;
+        if (writer == null) {
+            synchronized (this.httpClientLock) {
+                if (this.closed) {
+                    throw new IllegalStateException("HttpService is closed");
+                }
+
+                writer = this.writer;
+                if (writer == null) {
+                    if (VirtualThreads.isSupported()) {
+                        writer = VirtualThreads.newThreadPerTaskExecutor();
+                    } else {
+                        int threads = Math.max(1, this.config.getMaxConnections());
+                        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                new DaemonThreadFactory("JdkHttpService-Writer"));
+                        pool.allowCoreThreadTimeOut(true);
+                        writer = pool;
+                    }
+                    this.writer = writer;
+                }
+            }
+        }
+        return writer;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    HttpClient createClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder() //
+                .version(HttpClient.Version.HTTP_2) //
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (this.config.getConnectTimeout() > 0) {
+            builder.connectTimeout(Duration.ofMillis(this.config.getConnectTimeout()));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/*
+ * Minimal pull scanner that locates an array field of the top level JSON object
+ * and returns its elements one at a time as raw JSON text, only a single
+ * element is ever held in memory.
+ */
+class JsonArrayScanner {
+    private static final int EOF = -1;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private int pushedBack = JsonArrayScanner.NONE;
+    private boolean inArray = false;
+
+    public JsonArrayScanner(Reader reader) {
+        this.reader = reader;
+    }
+
+    /*
+     * Positions the scanner at the start of the named array. Returns false if the
+     * field is missing or null.
+     */
+    public boolean findArray(String field) throws IOException {
+        this.expect('{');
+        int c = this.nextNonWhitespace();
+        if (c == '}') {
+            return false;
+        }
+        this.pushBack(c);
+
+        while (true) {
+            this.expect('"');
+            String name = this.readString(new StringBuilder()).toString();
+            this.expect(':');
+
+            if (name.equals(field)) {
+                c = this.nextNonWhitespace();
+                if (c == '[') {
+                    this.inArray = true;
+                    return true;
+                }
+                this.pushBack(c);
+                String value = this.readValue(new StringBuilder()).toString();
+                if (value.equals("null")) {
+                    return false;
+                }
+                throw this.malformed();
+            }
+
+            this.readValue(null);
+            c = this.nextNonWhitespace();
+            if (c == '}') {
+                return false;
+            }
+            if (c != ',') {
+                throw this.malformed();
+            }
+        }
+    }
+
+    /*
+     * Returns the next element of the array, or null once the array has been
+     * fully read.
+     */
+    public String nextElement() throws IOException {
+        if (!this.inArray) {
+            return null;
+        }
+
+        int c = this.nextNonWhitespace();
+        if (c == ']') {
+            this.inArray = false;
+            return null;
+        }
+        this.pushBack(c);
+
+        String element = this.readValue(new StringBuilder()).toString();
+
+        c = this.nextNonWhitespace();
+        if (c == ']') {
+            this.inArray = false;
+        } else if (c != ',') {
+            throw this.malformed();
+        }
+        return element;
+    }
+
+    /*
+     * Reads a complete value, appending it to out when out is not null.
+     */
+    private StringBuilder readValue(StringBuilder out) throws IOException {
+        int c = this.nextNonWhitespace();
+        if (c == '"') {
+            this.append(out, c);
+            this.readString(out);
+            this.append(out, '"');
+            return out;
+        }
+
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (true) {
+                if (c == JsonArrayScanner.EOF) {
+                    throw this.malformed();
+                }
+                this.append(out, c);
+                if (c == '"') {
+                    this.readString(out);
+                    this.append(out, '"');
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return out;
+                    }
+                }
+                c = this.next();
+            }
+        }
+
+        boolean empty = true;
+        while (c != JsonArrayScanner.EOF && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            this.append(out, c);
+            empty = false;
+            c = this.next();
+        }
+        if (empty) {
+            throw this.malformed();
+        }
+        this.pushBack(c);
+        return out;
+    }
+
+    /*
+     * Reads the remainder of a string after its opening quote. The raw, still
+     * escaped, text is appended to out, the closing quote is consumed but not
+     * appended.
+     */
+    private StringBuilder readString(StringBuilder out) throws IOException {
+        while (true) {
+            int c = this.next();
+            if (c == JsonArrayScanner.EOF) {
+                throw this.malformed();
+            }
+            if (c == '"') {
+                return out;
+            }
+            this.append(out, c);
+            if (c == '\\') {
+                c = this.next();
+                if (c == JsonArrayScanner.EOF) {
+                    throw this.malformed();
+                }
+                this.append(out, c);
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (this.nextNonWhitespace() != expected) {
+            throw this.malformed();
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = this.next();
+        } while (c != JsonArrayScanner.EOF && Character.isWhitespace(c));
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (this.pushedBack != JsonArrayScanner.NONE) {
+            int c = this.pushedBack;
+            this.pushedBack = JsonArrayScanner.NONE;
+            return c;
+        }
+
+        if (this.position >= this.limit) {
+            this.limit = this.reader.read(this.buffer);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return JsonArrayScanner.EOF;
+            }
+        }
+        return this.buffer[this.position++];
+    }
+
+    private void pushBack(int c) {
+        this.pushedBack = c;
+    }
+
+    private void append(StringBuilder out, int c) {
+        if (out != null) {
+            out.append((char) c);
+        }
+    }
+
+    private IOException malformed() {
+        return new IOException("Malformed JSON response");
+    }
+}
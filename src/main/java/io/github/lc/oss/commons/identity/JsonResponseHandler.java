@@ -0,0 +1,55 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+/*
+ * Deserializes the response directly from the entity stream, the payload is
+ * never held in memory as a String.
+ */
+class JsonResponseHandler<T extends Jsonable> extends AbstractHttpClientResponseHandler<T> {
+    private final StreamingJsonService jsonService;
+    private final StringResponseHandler errorHandler;
+    private final Class<T> responseType;
+    private final long maxResponseSize;
+
+    public JsonResponseHandler(StreamingJsonService jsonService, StringResponseHandler errorHandler, Class<T> responseType, long maxResponseSize) {
+        this.jsonService = jsonService;
+        this.errorHandler = errorHandler;
+        this.responseType = responseType;
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    @Override
+    public T handleEntity(final HttpEntity entity) throws IOException {
+        if (this.maxResponseSize > 0 && entity.getContentEncoding() == null && entity.getContentLength() > this.maxResponseSize) {
+            throw BoundedInputStream.tooLarge(this.maxResponseSize);
+        }
+
+        try (InputStream in = new BoundedInputStream(Compression.decode(entity.getContent(), entity.getContentEncoding()), this.maxResponseSize)) {
+            return this.jsonService.from(in, StringResponseHandler.getCharset(entity.getContentType()), this.responseType);
+        }
+    }
+
+    @Override
+    public T handleResponse(final ClassicHttpResponse response) throws IOException {
+        int status = response.getCode();
+        switch (status) {
+            case HttpStatus.SC_NO_CONTENT:
+                return null;
+            case HttpStatus.SC_OK:
+                break;
+            default:
+                throw new HttpException("Error making request", status, this.errorHandler.getMessages(response), HttpException.getRetryAfter(response));
+        }
+
+        return super.handleResponse(response);
+    }
+}
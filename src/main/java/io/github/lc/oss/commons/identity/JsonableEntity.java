@@ -0,0 +1,62 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+/*
+ * Serializes the value directly to the connection as the request is written.
+ * The length is not known up front so the body is sent chunked.
+ */
+class JsonableEntity extends AbstractHttpEntity {
+    private final StreamingJsonService jsonService;
+    private final Jsonable value;
+
+    public JsonableEntity(StreamingJsonService jsonService, Jsonable value) {
+        super(ContentType.APPLICATION_JSON, null, true);
+        this.jsonService = jsonService;
+        this.value = value;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /*
+     * Only used if something other than the client needs the body, the client
+     * itself always calls writeTo
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        this.jsonService.to(this.value, outStream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+}
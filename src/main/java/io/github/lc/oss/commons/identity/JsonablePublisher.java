@@ -0,0 +1,257 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+/*
+ * Serializes the value as the client requests the body, so the body is never
+ * held in memory in full. The length is not known up front so the body is sent
+ * chunked.
+ *
+ * The value is written on the executor, each chunk is handed to the client
+ * from the writer thread once it has been requested and the writer waits while
+ * there is no demand. A failed write is signalled to the client so the request
+ * fails rather than sending a truncated body. close() releases any writer still
+ * waiting on a client that stopped requesting.
+ */
+class JsonablePublisher implements HttpRequest.BodyPublisher, AutoCloseable {
+    private class Subscription extends OutputStream implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition demanded = this.lock.newCondition();
+        private long demand = 0;
+        /*
+         * Set when the subscriber cancels or once onComplete or onError is sent
+         */
+        private boolean done = false;
+        private Throwable failure;
+        private byte[] buffer = new byte[JsonablePublisher.CHUNK_SIZE];
+        private int count = 0;
+
+        public Subscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            this.lock.lock();
+            try {
+                if (n <= 0) {
+                    this.abort(new IllegalArgumentException("Demand must be positive"));
+                } else {
+                    this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+                    this.demanded.signalAll();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            this.lock.lock();
+            try {
+                this.done = true;
+                this.demanded.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /*
+         * The writer stops at its next chunk and the failure is signalled
+         * instead of the rest of the body
+         */
+        void abort(Throwable failure) {
+            this.lock.lock();
+            try {
+                if (this.failure == null) {
+                    this.failure = failure;
+                }
+                this.demanded.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (this.count == this.buffer.length) {
+                this.emit();
+            }
+            this.buffer[this.count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (this.count == this.buffer.length) {
+                    this.emit();
+                }
+                int n = Math.min(len, this.buffer.length - this.count);
+                System.arraycopy(b, off, this.buffer, this.count, n);
+                this.count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /*
+         * Called on the writer thread, the only thread that signals the
+         * subscriber after onSubscribe
+         */
+        private void emit() throws IOException {
+            this.lock.lock();
+            try {
+                while (this.demand == 0 && !this.done && this.failure == null) {
+                    this.demanded.await();
+                }
+                if (this.done) {
+                    throw new IOException("Request body cancelled");
+                }
+                if (this.failure != null) {
+                    throw new IOException("Error writing request body", this.failure);
+                }
+                this.demand--;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted writing request body");
+            } finally {
+                this.lock.unlock();
+            }
+
+            /*
+             * The client may hold on to the chunk, a new buffer is used for the
+             * next one
+             */
+            ByteBuffer chunk = ByteBuffer.wrap(this.buffer, 0, this.count);
+            this.buffer = new byte[JsonablePublisher.CHUNK_SIZE];
+            this.count = 0;
+            this.subscriber.onNext(chunk);
+        }
+
+        void write() {
+            try {
+                OutputStream out = JsonablePublisher.this.gzip ? new GZIPOutputStream(this, JsonablePublisher.CHUNK_SIZE) : this;
+                JsonablePublisher.this.jsonService.to(JsonablePublisher.this.value, out);
+                out.close();
+                if (this.count > 0) {
+                    this.emit();
+                }
+                this.complete();
+            } catch (IOException ex) {
+                this.fail(ex);
+            } catch (RuntimeException ex) {
+                this.fail(new IOException("Error writing request body", ex));
+            } finally {
+                JsonablePublisher.this.remove(this);
+            }
+        }
+
+        private void complete() throws IOException {
+            this.lock.lock();
+            try {
+                if (this.failure != null) {
+                    throw new IOException("Error writing request body", this.failure);
+                }
+                if (this.done) {
+                    return;
+                }
+                this.done = true;
+            } finally {
+                this.lock.unlock();
+            }
+            this.subscriber.onComplete();
+        }
+
+        void fail(IOException ex) {
+            this.lock.lock();
+            try {
+                if (this.done) {
+                    return;
+                }
+                this.done = true;
+            } finally {
+                this.lock.unlock();
+            }
+            this.subscriber.onError(ex);
+        }
+    }
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final StreamingJsonService jsonService;
+    private final Jsonable value;
+    private final boolean gzip;
+    private final Executor executor;
+    private final Set<Subscription> subscriptions = new HashSet<>();
+    private boolean closed = false;
+
+    public JsonablePublisher(StreamingJsonService jsonService, Jsonable value, boolean gzip, Executor executor) {
+        this.jsonService = jsonService;
+        this.value = value;
+        this.gzip = gzip;
+        this.executor = executor;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    /*
+     * Called by the client each time the body is sent
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Subscription subscription = new Subscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        synchronized (this.subscriptions) {
+            if (this.closed) {
+                subscription.fail(new IOException("Request body is closed"));
+                return;
+            }
+            this.subscriptions.add(subscription);
+        }
+
+        try {
+            this.executor.execute(subscription::write);
+        } catch (RejectedExecutionException ex) {
+            this.remove(subscription);
+            subscription.fail(new IOException("Error writing request body", ex));
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Subscription> subscriptions;
+        synchronized (this.subscriptions) {
+            this.closed = true;
+            subscriptions = new ArrayList<>(this.subscriptions);
+            this.subscriptions.clear();
+        }
+        subscriptions.forEach(subscription -> subscription.abort(new IOException("Request body is closed")));
+    }
+
+    private void remove(Subscription subscription) {
+        synchronized (this.subscriptions) {
+            this.subscriptions.remove(subscription);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Lock free histogram of durations in nanoseconds. Each power of two is split
+ * into 8 linear buckets, percentiles are accurate to within 12.5% of the
+ * recorded value. Recording a value is a few atomic increments and never
+ * allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+    private static final int LINEAR = LatencyHistogram.SUB_BUCKETS * 2;
+    private static final int BUCKETS = LatencyHistogram.LINEAR + (63 - LatencyHistogram.SUB_BUCKET_BITS) * LatencyHistogram.SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(LatencyHistogram.BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long duration) {
+        long value = Math.max(0, duration);
+        this.buckets.incrementAndGet(LatencyHistogram.getBucket(value));
+        this.count.increment();
+        this.sum.add(value);
+        if (value > this.max.get()) {
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    public double getMean() {
+        long count = this.count.sum();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+
+    /*
+     * Upper bound of the bucket holding the percentile, percentile is between 0
+     * and 1. Returns 0 when nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        return LatencyHistogram.getPercentile(this.getCounts(), percentile, this.getMax());
+    }
+
+    public long getPercentile(double percentile, TimeUnit unit) {
+        return unit.convert(this.getPercentile(percentile), TimeUnit.NANOSECONDS);
+    }
+
+    /*
+     * Snapshot of the bucket counts, subtracting an earlier snapshot gives the
+     * distribution of the values recorded in between.
+     */
+    long[] getCounts() {
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets.get(i);
+        }
+        return counts;
+    }
+
+    static long getPercentile(long[] counts, double percentile, long max) {
+        long count = 0;
+        for (long c : counts) {
+            count += c;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, percentile)) * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.getUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int getBucket(long value) {
+        if (value < LatencyHistogram.LINEAR) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - LatencyHistogram.SUB_BUCKET_BITS)) & (LatencyHistogram.SUB_BUCKETS - 1);
+        return LatencyHistogram.LINEAR + (exponent - LatencyHistogram.SUB_BUCKET_BITS - 1) * LatencyHistogram.SUB_BUCKETS + subBucket;
+    }
+
+    static long getUpperBound(int bucket) {
+        if (bucket < LatencyHistogram.LINEAR) {
+            return bucket;
+        }
+
+        int offset = bucket - LatencyHistogram.LINEAR;
+        int shift = offset / LatencyHistogram.SUB_BUCKETS + 1;
+        long subBucket = LatencyHistogram.SUB_BUCKETS + offset % LatencyHistogram.SUB_BUCKETS;
+        long upper = ((subBucket + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
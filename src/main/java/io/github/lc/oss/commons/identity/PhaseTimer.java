@@ -0,0 +1,158 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.ExecChain;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+
+/*
+ * Collects the RequestPhases of a single request made by InternalHttpService,
+ * only created when there is a metrics listener or the slow call log is
+ * enabled. The classic client runs the whole request on the calling thread so
+ * no synchronization is needed.
+ *
+ * Each phase runs until the next one is entered, whichever phase is current
+ * when the request fails is charged with the remaining time.
+ */
+final class PhaseTimer {
+    private static final String ATTRIBUTE = PhaseTimer.class.getName();
+    private static final System.Logger SLOW_CALLS = System.getLogger("io.github.lc.oss.commons.identity.SlowCalls");
+
+    private final IdentityMetrics metrics;
+    private final String endpoint;
+    private final long slowCallThreshold;
+    private final double slowCallSampleRate;
+    private final long start = System.nanoTime();
+    private final long[] durations = new long[RequestPhase.values().length];
+    private RequestPhase current;
+    private long entered;
+    private boolean newConnection;
+    private int status;
+
+    private PhaseTimer(IdentityMetrics metrics, String endpoint, long slowCallThreshold, double slowCallSampleRate) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        this.slowCallThreshold = TimeUnit.MILLISECONDS.toNanos(slowCallThreshold);
+        this.slowCallSampleRate = slowCallSampleRate;
+        Arrays.fill(this.durations, -1);
+    }
+
+    /*
+     * Null when neither the listener nor the slow call log would use the timings
+     */
+    static PhaseTimer of(HttpServiceConfig config, String method, String url) {
+        if (config.getMetrics() == null && config.getSlowCallThreshold() <= 0) {
+            return null;
+        }
+        return new PhaseTimer(config.getMetrics(), Endpoints.of(method, url), config.getSlowCallThreshold(), config.getSlowCallSampleRate());
+    }
+
+    static PhaseTimer get(HttpClientContext context) {
+        Object timer = context == null ? null : context.getAttribute(PhaseTimer.ATTRIBUTE);
+        return timer instanceof PhaseTimer ? (PhaseTimer) timer : null;
+    }
+
+    /*
+     * Runs before the client's connect step. The endpoint is leased here rather
+     * than by the connect step, which skips leasing when one is already held, so
+     * that waiting for the pool and connecting are timed separately.
+     */
+    static ClassicHttpResponse beforeConnect(ClassicHttpRequest request, ExecChain.Scope scope, ExecChain chain)
+            throws IOException, org.apache.hc.core5.http.HttpException {
+        PhaseTimer timer = PhaseTimer.get(scope.clientContext);
+        if (timer != null) {
+            timer.enter(RequestPhase.LEASE);
+            if (!scope.execRuntime.isEndpointAcquired()) {
+                scope.execRuntime.acquireEndpoint(scope.exchangeId, scope.route, scope.clientContext.getUserToken(), scope.clientContext);
+            }
+            timer.newConnection |= !scope.execRuntime.isEndpointConnected();
+            timer.enter(RequestPhase.CONNECT);
+        }
+        return chain.proceed(request, scope);
+    }
+
+    /*
+     * Runs before the main transport step, the connection is established and
+     * the response returned has its headers but the body has not been read.
+     */
+    static ClassicHttpResponse afterConnect(ClassicHttpRequest request, ExecChain.Scope scope, ExecChain chain)
+            throws IOException, org.apache.hc.core5.http.HttpException {
+        PhaseTimer timer = PhaseTimer.get(scope.clientContext);
+        if (timer == null) {
+            return chain.proceed(request, scope);
+        }
+
+        timer.enter(request.getEntity() == null ? RequestPhase.FIRST_BYTE : RequestPhase.WRITE);
+        ClassicHttpResponse response = chain.proceed(request, scope);
+        timer.enter(RequestPhase.READ);
+        return response;
+    }
+
+    HttpClientContext newContext() {
+        HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(PhaseTimer.ATTRIBUTE, this);
+        return context;
+    }
+
+    /*
+     * The body is written by the transport, the wrapper marks when it is done
+     */
+    HttpEntity wrap(HttpEntity entity) {
+        return new HttpEntityWrapper(entity) {
+            @Override
+            public void writeTo(OutputStream outStream) throws IOException {
+                super.writeTo(outStream);
+                PhaseTimer.this.enter(RequestPhase.FIRST_BYTE);
+            }
+        };
+    }
+
+    void enter(RequestPhase phase) {
+        long now = System.nanoTime();
+        this.exit(now);
+        this.current = phase;
+        this.entered = now;
+    }
+
+    void exit() {
+        this.exit(System.nanoTime());
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    void end() {
+        long now = System.nanoTime();
+        this.exit(now);
+
+        RequestPhases phases = new RequestPhases(this.endpoint, this.status, now - this.start, this.newConnection, this.durations);
+        if (this.metrics != null) {
+            this.metrics.onPhases(phases);
+        }
+        if (this.slowCallThreshold > 0 && phases.getTotal() >= this.slowCallThreshold && this.isSampled()) {
+            PhaseTimer.SLOW_CALLS.log(Level.WARNING, "Slow identity call: {0}", phases);
+        }
+    }
+
+    private void exit(long now) {
+        if (this.current != null) {
+            int i = this.current.ordinal();
+            this.durations[i] = Math.max(0, this.durations[i]) + now - this.entered;
+            this.current = null;
+        }
+    }
+
+    private boolean isSampled() {
+        return this.slowCallSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < this.slowCallSampleRate;
+    }
+}
@@ -0,0 +1,13 @@
+package io.github.lc.oss.commons.identity;
+
+import org.apache.hc.core5.pool.PoolStats;
+
+/*
+ * Implemented by the internal services that own a connection pool.
+ */
+interface PooledHttpService {
+    /*
+     * Null until the first request has created the pool
+     */
+    PoolStats getPoolStats();
+}
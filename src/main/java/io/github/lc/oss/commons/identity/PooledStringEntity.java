@@ -0,0 +1,90 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
+
+/*
+ * UTF-8 encodes the value into a pooled buffer, the buffer is returned to the
+ * pool when the entity is closed. Unpaired surrogates are replaced, as
+ * String.getBytes and StringEntity do, rather than ending the body early.
+ */
+class PooledStringEntity extends AbstractHttpEntity {
+    private final BufferPool bufferPool;
+    private byte[] buffer;
+    private final int length;
+
+    public PooledStringEntity(String value, BufferPool bufferPool) {
+        super(ContentType.APPLICATION_JSON, null, false);
+        this.bufferPool = bufferPool;
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder() //
+                .onMalformedInput(CodingErrorAction.REPLACE) //
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        byte[] buffer = bufferPool.acquire(value.length());
+        while (true) {
+            ByteBuffer out = ByteBuffer.wrap(buffer);
+            CoderResult result = encoder.encode(CharBuffer.wrap(value), out, true);
+            if (!result.isOverflow()) {
+                result = encoder.flush(out);
+            }
+            if (!result.isOverflow()) {
+                this.buffer = buffer;
+                this.length = out.position();
+                return;
+            }
+
+            bufferPool.release(buffer);
+            buffer = bufferPool.acquire(buffer.length << 1);
+            encoder.reset();
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return this.length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return new ByteArrayInputStream(this.getBuffer(), 0, this.length);
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        outStream.write(this.getBuffer(), 0, this.length);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        this.bufferPool.release(this.buffer);
+        this.buffer = null;
+    }
+
+    private synchronized byte[] getBuffer() throws IOException {
+        if (this.buffer == null) {
+            throw new IOException("Entity is closed");
+        }
+        return this.buffer;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+
+/*
+ * Hands the response body to a ResponseReader while it is still being
+ * received. The maximum response size is intentionally not applied, streamed
+ * responses are never held in memory as a whole.
+ */
+class ReaderResponseHandler extends AbstractHttpClientResponseHandler<Void> {
+    private final StringResponseHandler errorHandler;
+    private final ResponseReader responseReader;
+
+    public ReaderResponseHandler(StringResponseHandler errorHandler, ResponseReader responseReader) {
+        this.errorHandler = errorHandler;
+        this.responseReader = responseReader;
+    }
+
+    @Override
+    public Void handleEntity(final HttpEntity entity) throws IOException {
+        Charset charset = StringResponseHandler.getCharset(entity.getContentType());
+        try (Reader body = new InputStreamReader(Compression.decode(entity.getContent(), entity.getContentEncoding()), charset)) {
+            this.responseReader.read(body);
+        }
+        return null;
+    }
+
+    @Override
+    public Void handleResponse(final ClassicHttpResponse response) throws IOException {
+        int status = response.getCode();
+        switch (status) {
+            case HttpStatus.SC_NO_CONTENT:
+                return null;
+            case HttpStatus.SC_OK:
+                break;
+            default:
+                throw new HttpException("Error making request", status, this.errorHandler.getMessages(response), HttpException.getRetryAfter(response));
+        }
+
+        return super.handleResponse(response);
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.lc.oss.commons.identity;
+
+/*
+ * The parts of an HTTP request timed by RequestPhases, in the order they
+ * happen.
+ */
+public enum RequestPhase {
+    /* Waiting for a connection from the pool */
+    LEASE,
+    /* Opening a new connection, including the TLS handshake */
+    CONNECT,
+    /* Sending the request body */
+    WRITE,
+    /* Waiting for the response headers */
+    FIRST_BYTE,
+    /* Reading the response body, including parsing when the JSON is streamed */
+    READ,
+    /* Parsing a response body that was read in full */
+    DESERIALIZE
+}
@@ -0,0 +1,72 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+ * Where the time of a single HTTP request went. Durations are in nanoseconds
+ * and are -1 for phases the request did not reach or that were not measured.
+ * Retried attempts add to the same phases.
+ */
+public final class RequestPhases {
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final String endpoint;
+    private final int status;
+    private final long total;
+    private final boolean newConnection;
+    private final long[] durations;
+
+    RequestPhases(String endpoint, int status, long total, boolean newConnection, long[] durations) {
+        this.endpoint = endpoint;
+        this.status = status;
+        this.total = total;
+        this.newConnection = newConnection;
+        this.durations = Arrays.copyOf(durations, durations.length);
+    }
+
+    public String getEndpoint() {
+        return this.endpoint;
+    }
+
+    /*
+     * 0 when no response was received
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    public boolean isNewConnection() {
+        return this.newConnection;
+    }
+
+    public long get(RequestPhase phase) {
+        return this.durations[phase.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(this.endpoint).append(" status=").append(this.status);
+        RequestPhases.appendMillis(sb.append(" total="), this.total);
+        for (RequestPhase phase : RequestPhases.PHASES) {
+            long duration = this.get(phase);
+            if (duration >= 0) {
+                RequestPhases.appendMillis(sb.append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append('='), duration);
+            }
+        }
+        if (this.newConnection) {
+            sb.append(" newConnection");
+        }
+        return sb.toString();
+    }
+
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        long micros = nanos / 1000;
+        sb.append(micros / 1000).append('.').append(micros / 100 % 10).append("ms");
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.lc.oss.commons.identity;
+
+import io.github.lc.oss.commons.identity.model.SignedRequest;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.signing.Algorithms;
+
+final class RequestSigner {
+    /*
+     * Signs the body with the Ed448 private key when it is a SignedRequest, other
+     * bodies are left as is.
+     */
+    static void sign(Jsonable requestBody, String privateKey) {
+        if (!(requestBody instanceof SignedRequest)) {
+            return;
+        }
+
+        SigningEvent event = new SigningEvent();
+        event.begin();
+        SignedRequest signed = (SignedRequest) requestBody;
+        String signature = Algorithms.ED448.getSignature(privateKey, signed.getSignatureData());
+        signed.setSignautre(signature);
+        event.commit();
+    }
+
+    private RequestSigner() {
+    }
+}
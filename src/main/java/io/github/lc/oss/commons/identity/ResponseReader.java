@@ -0,0 +1,9 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.Reader;
+
+@FunctionalInterface
+public interface ResponseReader {
+    void read(Reader body) throws IOException;
+}
@@ -0,0 +1,226 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.ConnectionClosedException;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.NoHttpResponseException;
+
+/*
+ * Retries failed calls with exponential backoff and full jitter, a Retry-After
+ * header on the response takes precedence over the backoff.
+ *
+ * Idempotent calls are retried on transport errors, such as a reset connection,
+ * a timeout or no response, and on 429, 502, 503 and 504 responses. Other I/O
+ * errors, such as a response that is too large or cannot be decoded or parsed,
+ * would fail the same way again and are not retried. Other calls are only retried when the connection could not be
+ * established, in which case the request was never sent.
+ *
+ * Retries are limited by a budget: every call deposits budgetRatio tokens up to
+ * budgetCapacity and every retry withdraws one, so during an outage retries add
+ * at most budgetRatio extra load. No retry is made that would not start before
+ * the deadline of the call.
+ *
+ * All time values are in milliseconds, values less than or equal to zero
+ * disable the associated limit.
+ */
+public class RetryPolicy {
+    private int maxAttempts = 3;
+    private long baseDelay = 100;
+    private long maxDelay = 5 * 1000;
+    private long deadline = 30 * 1000;
+    private double budgetRatio = 0.1;
+    private int budgetCapacity = 10;
+
+    private final TokenBudget budget = new TokenBudget();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    /*
+     * Total number of attempts including the first.
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getBaseDelay() {
+        return this.baseDelay;
+    }
+
+    public void setBaseDelay(long baseDelay) {
+        this.baseDelay = baseDelay;
+    }
+
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /*
+     * Time from the first attempt after which no further retries are started.
+     */
+    public long getDeadline() {
+        return this.deadline;
+    }
+
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public double getBudgetRatio() {
+        return this.budgetRatio;
+    }
+
+    public void setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+    }
+
+    /*
+     * Maximum number of retries that can be saved up, the budget starts full.
+     */
+    public int getBudgetCapacity() {
+        return this.budgetCapacity;
+    }
+
+    public void setBudgetCapacity(int budgetCapacity) {
+        this.budgetCapacity = budgetCapacity;
+    }
+
+    public long getRetryCount() {
+        return this.retries.sum();
+    }
+
+    public long getBudgetExhaustedCount() {
+        return this.budgetExhausted.sum();
+    }
+
+    /*
+     * Called once per call, not per attempt.
+     */
+    void onCall() {
+        this.budget.deposit(this.getBudgetRatio(), this.getBudgetCapacity());
+    }
+
+    /*
+     * Returns how long to wait before the next attempt, or -1 if the failure must
+     * not be retried. attempt is the number of attempts made so far and started
+     * is when the first one was made.
+     */
+    long getRetryDelay(Throwable failure, boolean idempotent, int attempt, long started) {
+        if (attempt >= this.getMaxAttempts() || !this.isRetryable(failure, idempotent)) {
+            return -1;
+        }
+
+        long delay = failure instanceof HttpException ? ((HttpException) failure).getRetryAfter() : -1;
+        if (delay < 0) {
+            delay = this.getBackoff(attempt);
+        }
+
+        if (this.getDeadline() > 0 && this.now() + delay >= started + this.getDeadline()) {
+            return -1;
+        }
+
+        if (!this.budget.withdraw(this.getBudgetCapacity())) {
+            this.budgetExhausted.increment();
+            return -1;
+        }
+
+        this.retries.increment();
+        return delay;
+    }
+
+    boolean isRetryable(Throwable failure, boolean idempotent) {
+        if (failure instanceof CircuitBreakerOpenException) {
+            return false;
+        }
+
+        if (RetryPolicy.isConnectionFailure(failure)) {
+            return true;
+        }
+
+        if (!idempotent) {
+            return false;
+        }
+
+        if (failure instanceof HttpException) {
+            switch (((HttpException) failure).getStatus()) {
+                case HttpStatus.SC_TOO_MANY_REQUESTS:
+                case HttpStatus.SC_BAD_GATEWAY:
+                case HttpStatus.SC_SERVICE_UNAVAILABLE:
+                case HttpStatus.SC_GATEWAY_TIMEOUT:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        return RetryPolicy.isTransportFailure(failure);
+    }
+
+    /*
+     * Full jitter, a random delay between zero and the exponential backoff.
+     */
+    long getBackoff(int attempt) {
+        long base = Math.max(0, this.getBaseDelay());
+        long cap = this.getMaxDelay() > 0 ? this.getMaxDelay() : Long.MAX_VALUE;
+        int shift = Math.min(Math.max(0, attempt - 1), 30);
+        long backoff = base > (cap >> shift) ? cap : Math.min(cap, base << shift);
+        if (backoff <= 0) {
+            return 0;
+        }
+        return this.random(backoff == Long.MAX_VALUE ? backoff : backoff + 1);
+    }
+
+    static boolean isConnectionFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException
+                    || cause instanceof ConnectTimeoutException || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isTransportFailure(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketException || cause instanceof InterruptedIOException || cause instanceof HttpTimeoutException
+                    || cause instanceof NoHttpResponseException || cause instanceof ConnectionClosedException || cause instanceof EOFException
+                    || cause instanceof ClosedChannelException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long random(long bound) {
+        return ThreadLocalRandom.current().nextLong(bound);
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Keeps the last response and its validators for conditional requests. Entries
+ * are grouped by owner (a user id) so all of a user's entries can be dropped at
+ * once, the least recently used owners are evicted first.
+ */
+class RevalidationCache {
+    static final class Entry {
+        private final Object value;
+        private final String etag;
+        private final long expires;
+
+        private Entry(Object value, String etag, long expires) {
+            this.value = value;
+            this.etag = etag;
+            this.expires = expires;
+        }
+
+        public Object getValue() {
+            return this.value;
+        }
+
+        public String getETag() {
+            return this.etag;
+        }
+
+        public boolean isFresh(long now) {
+            return now < this.expires;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<Object, Map<Class<?>, Entry>> entries;
+    private long stamp = 0;
+
+    public RevalidationCache(int maxOwners) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Map<Class<?>, Entry>> eldest) {
+                return this.size() > maxOwners;
+            }
+        };
+    }
+
+    public Entry get(Object owner, Class<?> type) {
+        this.lock.lock();
+        try {
+            Map<Class<?>, Entry> owned = this.entries.get(owner);
+            return owned == null ? null : owned.get(type);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Stamp to pass to put, a put is discarded if anything was invalidated after
+     * its stamp was taken so a response that raced an update is never kept.
+     */
+    public long getStamp() {
+        this.lock.lock();
+        try {
+            return this.stamp;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Responses without validators or freshness, or marked no-store, are
+     * dropped rather than kept.
+     */
+    public void put(Object owner, Class<?> type, Object value, ConditionalResponse<?> response, long stamp) {
+        boolean keep = value != null && !response.isNoStore() && (response.getETag() != null || response.getMaxAge() > 0);
+        long now = this.now();
+
+        this.lock.lock();
+        try {
+            if (stamp != this.stamp) {
+                return;
+            }
+
+            if (!keep) {
+                Map<Class<?>, Entry> owned = this.entries.get(owner);
+                if (owned != null) {
+                    owned.remove(type);
+                }
+                return;
+            }
+
+            Entry entry = new Entry(value, response.getETag(), response.getMaxAge() > 0 ? now + response.getMaxAge() : now);
+            this.entries.computeIfAbsent(owner, k -> new HashMap<>()).put(type, entry);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void invalidate(Object owner) {
+        this.lock.lock();
+        try {
+            this.stamp++;
+            this.entries.remove(owner);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        this.lock.lock();
+        try {
+            this.stamp++;
+            this.entries.clear();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.lock();
+        try {
+            return this.entries.values().stream().mapToInt(Map::size).sum();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+}
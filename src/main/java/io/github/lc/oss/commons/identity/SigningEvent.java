@@ -0,0 +1,13 @@
+package io.github.lc.oss.commons.identity;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.github.lc.oss.commons.identity.Signing")
+@Label("Identity Request Signing")
+@Description("Ed448 signature of a signed request")
+@Category("Identity")
+class SigningEvent extends jdk.jfr.Event {
+}
@@ -0,0 +1,88 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * Concurrent calls for the same key share a single in-flight call, every caller
+ * receives its result or its exception. Synchronous and asynchronous callers of
+ * the same key share with each other.
+ */
+class SingleFlight {
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public <V> V execute(Object key, Supplier<V> call) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            this.coalesced.increment();
+            return (V) Futures.await(existing);
+        }
+
+        this.calls.increment();
+        try {
+            V value = call.get();
+            this.inFlight.remove(key, created);
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            this.inFlight.remove(key, created);
+            created.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /*
+     * Each caller receives its own dependent future so that one caller
+     * cancelling does not cancel the call for everyone else.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> executeAsync(Object key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            this.coalesced.increment();
+            return existing.thenApply(value -> (V) value);
+        }
+
+        this.calls.increment();
+        try {
+            call.get().whenComplete((value, ex) -> {
+                this.inFlight.remove(key, created);
+                if (ex == null) {
+                    created.complete(value);
+                } else {
+                    created.completeExceptionally(Futures.unwrap(ex));
+                }
+            });
+        } catch (RuntimeException | Error ex) {
+            this.inFlight.remove(key, created);
+            created.completeExceptionally(ex);
+        }
+        return created.thenApply(value -> (V) value);
+    }
+
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    /*
+     * Number of calls actually made.
+     */
+    public long getCallCount() {
+        return this.calls.sum();
+    }
+
+    /*
+     * Number of calls that were served by joining a call already in flight.
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.sum();
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.serialization.Jsonable;
+
+/*
+ * JsonService implementations that also implement this interface have
+ * responses deserialized directly from the response stream, and request bodies
+ * serialized directly to the request stream, rather than via an intermediate
+ * String.
+ */
+public interface StreamingJsonService extends JsonService {
+    <T extends Jsonable> T from(InputStream json, Charset charset, Class<T> type) throws IOException;
+
+    /*
+     * Must write UTF-8 and must not close the stream
+     */
+    void to(Jsonable value, OutputStream json) throws IOException;
+}
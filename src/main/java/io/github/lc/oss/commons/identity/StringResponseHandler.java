@@ -1,10 +1,14 @@
 package io.github.lc.oss.commons.identity;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
 import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
@@ -16,16 +20,40 @@ import io.github.lc.oss.commons.identity.model.ApiResponse;
 
 public class StringResponseHandler extends AbstractHttpClientResponseHandler<String> {
     private JsonService jsonService;
+    private final long maxResponseSize;
+    private final BufferPool bufferPool;
 
     public StringResponseHandler(JsonService jsonService) {
+        this(jsonService, 0);
+    }
+
+    public StringResponseHandler(JsonService jsonService, long maxResponseSize) {
+        this(jsonService, maxResponseSize, null);
+    }
+
+    public StringResponseHandler(JsonService jsonService, long maxResponseSize, BufferPool bufferPool) {
         this.jsonService = jsonService;
+        this.maxResponseSize = maxResponseSize;
+        this.bufferPool = bufferPool;
     }
 
     @Override
     public String handleEntity(final HttpEntity entity) throws IOException {
+        if (this.maxResponseSize <= 0 && this.bufferPool == null && entity.getContentEncoding() == null) {
+            try {
+                return EntityUtils.toString(entity);
+            } catch (ParseException | IOException ex) {
+                throw new IOException("Error reading entity response.", ex);
+            }
+        }
+
+        if (this.maxResponseSize > 0 && entity.getContentEncoding() == null && entity.getContentLength() > this.maxResponseSize) {
+            throw BoundedInputStream.tooLarge(this.maxResponseSize);
+        }
+
         try {
-            return EntityUtils.toString(entity);
-        } catch (ParseException | IOException ex) {
+            return this.read(entity, this.maxResponseSize);
+        } catch (IOException ex) {
             throw new IOException("Error reading entity response.", ex);
         }
     }
@@ -39,28 +67,51 @@ public class StringResponseHandler extends AbstractHttpClientResponseHandler<Str
             case HttpStatus.SC_OK:
                 break;
             default:
-                throw new HttpException("Error making request", status, this.getMessages(response));
+                throw new HttpException("Error making request", status, this.getMessages(response), HttpException.getRetryAfter(response));
         }
 
         return super.handleResponse(response);
     }
 
-    private Collection<Messages> getMessages(ClassicHttpResponse response) throws IOException {
+    Collection<Messages> getMessages(ClassicHttpResponse response) throws IOException {
         HttpEntity entity = response.getEntity();
         if (entity == null) {
             return null;
         }
 
+        String json;
         try {
-            String json = EntityUtils.toString(entity);
-            ApiResponse<?> apiResponse = this.jsonService.from(json, ApiResponse.class);
-            if (apiResponse == null) {
-                return null;
-            }
-
-            return apiResponse.getMessages();
+            json = this.bufferPool == null && entity.getContentEncoding() == null ? EntityUtils.toString(entity) : this.read(entity, 0);
         } catch (ParseException | IOException ex) {
             throw new RuntimeException("Error getting messages", ex);
         }
+        return this.getMessages(json);
+    }
+
+    Collection<Messages> getMessages(String json) {
+        ApiResponse<?> apiResponse = this.jsonService.from(json, ApiResponse.class);
+        if (apiResponse == null) {
+            return null;
+        }
+
+        return apiResponse.getMessages();
+    }
+
+    private String read(HttpEntity entity, long maxSize) throws IOException {
+        Charset charset = StringResponseHandler.getCharset(entity.getContentType());
+        try (InputStream in = new BoundedInputStream(Compression.decode(entity.getContent(), entity.getContentEncoding()), maxSize)) {
+            if (this.bufferPool == null) {
+                return new String(in.readAllBytes(), charset);
+            }
+            return this.bufferPool.readString(in, charset, entity.getContentLength());
+        }
+    }
+
+    static Charset getCharset(String contentType) {
+        ContentType type = contentType == null ? null : ContentType.parseLenient(contentType);
+        if (type == null) {
+            return StandardCharsets.UTF_8;
+        }
+        return type.getCharset(StandardCharsets.UTF_8);
     }
 }
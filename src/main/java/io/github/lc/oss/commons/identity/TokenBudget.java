@@ -0,0 +1,34 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Token bucket limiting extra requests, such as retries or hedges, to a ratio of
+ * calls. Every call deposits ratio tokens up to capacity and every extra request
+ * withdraws one. The bucket starts full.
+ */
+class TokenBudget {
+    private static final long TOKEN = 1000;
+
+    private final AtomicLong tokens = new AtomicLong(-1);
+
+    public void deposit(double ratio, int capacity) {
+        long max = capacity * TokenBudget.TOKEN;
+        long deposit = (long) (ratio * TokenBudget.TOKEN);
+        this.tokens.updateAndGet(current -> Math.min(max, (current < 0 ? max : current) + deposit));
+    }
+
+    public boolean withdraw(int capacity) {
+        long max = capacity * TokenBudget.TOKEN;
+        while (true) {
+            long current = this.tokens.get();
+            long available = current < 0 ? max : current;
+            if (available < TokenBudget.TOKEN) {
+                return false;
+            }
+            if (this.tokens.compareAndSet(current, available - TokenBudget.TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.lc.oss.commons.identity;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("io.github.lc.oss.commons.identity.TokenClear")
+@Label("Identity Application Token Cleared")
+@Description("The application token was rejected with a 401 and cleared, the call is re-issued with a new one")
+@Category("Identity")
+class TokenClearEvent extends jdk.jfr.Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    static void commit(String endpoint) {
+        TokenClearEvent event = new TokenClearEvent();
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint;
+            event.commit();
+        }
+    }
+}
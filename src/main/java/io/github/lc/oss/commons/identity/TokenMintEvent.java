@@ -0,0 +1,22 @@
+package io.github.lc.oss.commons.identity;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * Spans the whole mint, the Ed448 signature is recorded as a nested
+ * SigningEvent on the same thread and the request as an HttpExchangeEvent.
+ */
+@Name("io.github.lc.oss.commons.identity.TokenMint")
+@Label("Identity Application Token Mint")
+@Description("An application token was requested from the identity server")
+@Category("Identity")
+class TokenMintEvent extends jdk.jfr.Event {
+    @Label("Async")
+    boolean async;
+
+    @Label("Success")
+    boolean success;
+}
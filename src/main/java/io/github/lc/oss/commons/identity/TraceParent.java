@@ -0,0 +1,60 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * The W3C Trace Context traceparent header for IdentitySpan implementations
+ * without a propagator of their own. Trace ids are 32 and span ids 16 lower
+ * case hex characters and must not be all zeros.
+ */
+public final class TraceParent {
+    public static final String HEADER = "traceparent";
+
+    private static final String VERSION = "00";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private TraceParent() {
+    }
+
+    public static String format(String traceId, String spanId, boolean sampled) {
+        if (!TraceParent.isValidId(traceId, 32) || !TraceParent.isValidId(spanId, 16)) {
+            throw new IllegalArgumentException("Invalid trace context");
+        }
+        return TraceParent.VERSION + "-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+    }
+
+    public static String newTraceId() {
+        return TraceParent.newId(32);
+    }
+
+    public static String newSpanId() {
+        return TraceParent.newId(16);
+    }
+
+    static boolean isValidId(String id, int length) {
+        if (id == null || id.length() != length) {
+            return false;
+        }
+
+        boolean zero = true;
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+            zero &= c == '0';
+        }
+        return !zero;
+    }
+
+    private static String newId(int length) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] id = new char[length];
+        do {
+            for (int i = 0; i < length; i++) {
+                id[i] = TraceParent.HEX[random.nextInt(16)];
+            }
+        } while (!TraceParent.isValidId(new String(id), length));
+        return new String(id);
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.github.lc.oss.commons.identity.model.UserInfo;
+import io.github.lc.oss.commons.identity.model.UserInfoSet;
+
+/*
+ * Collects single user lookups and sends them as one batch request once the
+ * window has elapsed since the first lookup, or as soon as the batch is full.
+ * Users missing from the batch response complete with null.
+ */
+class UserInfoBatcher {
+    private final long window;
+    private final int maxSize;
+    private final Supplier<ScheduledExecutorService> scheduler;
+    private final Function<Collection<String>, CompletableFuture<UserInfoSet>> fetch;
+
+    private final Object lock = new Object();
+    private Map<String, CompletableFuture<UserInfo>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed = false;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+
+    public UserInfoBatcher(long window, int maxSize, Supplier<ScheduledExecutorService> scheduler,
+            Function<Collection<String>, CompletableFuture<UserInfoSet>> fetch) {
+        this.window = window;
+        this.maxSize = Math.max(1, maxSize);
+        this.scheduler = scheduler;
+        this.fetch = fetch;
+    }
+
+    /*
+     * Each caller receives its own dependent future so that one caller
+     * cancelling does not affect others waiting on the same user.
+     */
+    public CompletableFuture<UserInfo> submit(String userExternalId) {
+        CompletableFuture<UserInfo> future;
+        Map<String, CompletableFuture<UserInfo>> ready = null;
+        synchronized (this.lock) {
+            if (this.closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("UserInfoBatcher is closed"));
+            }
+
+            this.requests.increment();
+            future = this.pending.get(userExternalId);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                this.pending.put(userExternalId, future);
+            }
+
+            if (this.pending.size() >= this.maxSize) {
+                ready = this.takePending();
+            } else if (this.scheduledFlush == null) {
+                ready = this.scheduleFlush();
+            }
+        }
+
+        if (ready != null) {
+            this.dispatch(ready);
+        }
+        return future.thenApply(Function.identity());
+    }
+
+    public void flush() {
+        Map<String, CompletableFuture<UserInfo>> ready;
+        synchronized (this.lock) {
+            ready = this.takePending();
+        }
+
+        if (!ready.isEmpty()) {
+            this.dispatch(ready);
+        }
+    }
+
+    public void close() {
+        Map<String, CompletableFuture<UserInfo>> abandoned;
+        synchronized (this.lock) {
+            this.closed = true;
+            abandoned = this.takePending();
+        }
+
+        IllegalStateException ex = new IllegalStateException("UserInfoBatcher is closed");
+        abandoned.values().forEach(future -> future.completeExceptionally(ex));
+    }
+
+    public long getBatchCount() {
+        return this.batches.sum();
+    }
+
+    public long getRequestCount() {
+        return this.requests.sum();
+    }
+
+    /*
+     * Must be called while holding lock. If the flush cannot be scheduled the
+     * pending batch is returned so it can be sent immediately.
+     */
+    private Map<String, CompletableFuture<UserInfo>> scheduleFlush() {
+        try {
+            this.scheduledFlush = this.scheduler.get().schedule(this::flush, this.window, TimeUnit.MILLISECONDS);
+            return null;
+        } catch (RejectedExecutionException ex) {
+            return this.takePending();
+        }
+    }
+
+    /*
+     * Must be called while holding lock
+     */
+    private Map<String, CompletableFuture<UserInfo>> takePending() {
+        Map<String, CompletableFuture<UserInfo>> ready = this.pending;
+        this.pending = new LinkedHashMap<>();
+        if (this.scheduledFlush != null) {
+            this.scheduledFlush.cancel(false);
+            this.scheduledFlush = null;
+        }
+        return ready;
+    }
+
+    private void dispatch(Map<String, CompletableFuture<UserInfo>> batch) {
+        this.batches.increment();
+
+        CompletableFuture<UserInfoSet> response;
+        try {
+            response = this.fetch.apply(new ArrayList<>(batch.keySet()));
+        } catch (RuntimeException ex) {
+            response = CompletableFuture.failedFuture(ex);
+        }
+
+        response.whenComplete((userInfos, ex) -> {
+            if (ex != null) {
+                Throwable cause = Futures.unwrap(ex);
+                batch.values().forEach(future -> future.completeExceptionally(cause));
+                return;
+            }
+
+            Map<String, UserInfo> byId = new HashMap<>();
+            if (userInfos != null) {
+                for (UserInfo userInfo : userInfos) {
+                    byId.put(userInfo.getId(), userInfo);
+                }
+            }
+            batch.forEach((id, future) -> future.complete(byId.get(id)));
+        });
+    }
+}
@@ -0,0 +1,298 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+import io.github.lc.oss.commons.identity.model.UserInfo;
+
+/*
+ * Striped LRU cache. Entries for a user always land in the same segment,
+ * regardless of response type, so a user can be invalidated by locking a single
+ * segment.
+ *
+ * maxEntries and maxWeight are split evenly between the segments and rounded
+ * down, so the cache never holds more than either bound. When a bound is
+ * smaller than the concurrency level fewer segments are used.
+ */
+class UserInfoCache {
+    private static final class Key {
+        private final String userId;
+        private final Class<?> type;
+
+        public Key(String userId, Class<?> type) {
+            this.userId = userId;
+            this.type = type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.userId.hashCode() + this.type.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.userId.equals(other.userId) && this.type == other.type;
+        }
+    }
+
+    private static final class Entry {
+        private final UserInfo value;
+        private final long weight;
+        private final long written;
+        private long accessed;
+
+        public Entry(UserInfo value, long weight, long now) {
+            this.value = value;
+            this.weight = weight;
+            this.written = now;
+            this.accessed = now;
+        }
+    }
+
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight = 0;
+        private long invalidations = 0;
+
+        private UserInfo get(Key key, long now) {
+            this.lock.lock();
+            try {
+                Entry entry = this.entries.get(key);
+                if (entry == null) {
+                    return null;
+                }
+
+                if (UserInfoCache.this.isExpired(entry, now)) {
+                    this.remove(key);
+                    return null;
+                }
+
+                entry.accessed = now;
+                return entry.value;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void put(Key key, UserInfo value, long stamp, long now) {
+            Entry entry = new Entry(value, UserInfoCache.this.weigh(value), now);
+            this.lock.lock();
+            try {
+                if (stamp != this.invalidations) {
+                    return;
+                }
+
+                this.remove(key);
+                this.entries.put(key, entry);
+                this.weight += entry.weight;
+                this.evict();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void evict() {
+            Iterator<Entry> iterator = this.entries.values().iterator();
+            while (iterator.hasNext() && this.isOverCapacity()) {
+                Entry eldest = iterator.next();
+                iterator.remove();
+                this.weight -= eldest.weight;
+                UserInfoCache.this.evictions.increment();
+            }
+        }
+
+        private boolean isOverCapacity() {
+            if (UserInfoCache.this.maxEntriesPerSegment > 0 && this.entries.size() > UserInfoCache.this.maxEntriesPerSegment) {
+                return true;
+            }
+            return UserInfoCache.this.maxWeightPerSegment > 0 && this.weight > UserInfoCache.this.maxWeightPerSegment;
+        }
+
+        private void remove(Key key) {
+            Entry removed = this.entries.remove(key);
+            if (removed != null) {
+                this.weight -= removed.weight;
+            }
+        }
+
+        private long getStamp() {
+            this.lock.lock();
+            try {
+                return this.invalidations;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void invalidate(String userId) {
+            this.lock.lock();
+            try {
+                this.invalidations++;
+                Iterator<Map.Entry<Key, Entry>> iterator = this.entries.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Key, Entry> entry = iterator.next();
+                    if (entry.getKey().userId.equals(userId)) {
+                        iterator.remove();
+                        this.weight -= entry.getValue().weight;
+                    }
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private void invalidateAll() {
+            this.lock.lock();
+            try {
+                this.invalidations++;
+                this.entries.clear();
+                this.weight = 0;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        private int size() {
+            this.lock.lock();
+            try {
+                return this.entries.size();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private final Segment[] segments;
+    private final long maxEntriesPerSegment;
+    private final long maxWeightPerSegment;
+    private final ToLongFunction<UserInfo> weigher;
+    private final long expireAfterWrite;
+    private final long expireAfterAccess;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public UserInfoCache(UserInfoCacheConfig config) {
+        this.weigher = config.getWeigher();
+        long maxEntries = config.getMaxEntries() > 0 ? config.getMaxEntries() : 0;
+        long maxWeight = this.weigher != null && config.getMaxWeight() > 0 ? config.getMaxWeight() : 0;
+
+        int count = 1;
+        while (count < config.getConcurrencyLevel()) {
+            count <<= 1;
+        }
+        while (count > 1 && ((maxEntries > 0 && count > maxEntries) || (maxWeight > 0 && count > maxWeight))) {
+            count >>= 1;
+        }
+
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment();
+        }
+
+        this.maxEntriesPerSegment = maxEntries / count;
+        this.maxWeightPerSegment = maxWeight / count;
+        this.expireAfterWrite = config.getExpireAfterWrite();
+        this.expireAfterAccess = config.getExpireAfterAccess();
+    }
+
+    public UserInfo get(String userId, Class<?> type) {
+        UserInfo value = this.segmentFor(userId).get(new Key(userId, type), this.now());
+        if (value == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+        }
+        CacheEvent.commit("userInfo", value != null);
+        return value;
+    }
+
+    /*
+     * The stamp must be taken before the value is fetched, if the user was
+     * invalidated while the fetch was in flight the (possibly stale) value is
+     * discarded.
+     */
+    public long getStamp(String userId) {
+        return this.segmentFor(userId).getStamp();
+    }
+
+    public void put(String userId, Class<?> type, UserInfo value, long stamp) {
+        if (userId == null || value == null) {
+            return;
+        }
+
+        this.segmentFor(userId).put(new Key(userId, type), value, stamp, this.now());
+    }
+
+    public void invalidate(String userId) {
+        if (userId == null) {
+            return;
+        }
+
+        this.segmentFor(userId).invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : this.segments) {
+            segment.invalidateAll();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    private Segment segmentFor(String userId) {
+        int hash = Objects.hashCode(userId);
+        hash ^= (hash >>> 16);
+        return this.segments[hash & (this.segments.length - 1)];
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        if (this.expireAfterWrite > 0 && now - entry.written >= this.expireAfterWrite) {
+            return true;
+        }
+        return this.expireAfterAccess > 0 && now - entry.accessed >= this.expireAfterAccess;
+    }
+
+    private long weigh(UserInfo value) {
+        return this.weigher == null ? 1 : Math.max(0, this.weigher.applyAsLong(value));
+    }
+
+    /*
+     * Exposed for testing
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+}
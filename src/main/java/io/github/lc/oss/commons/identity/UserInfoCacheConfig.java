@@ -0,0 +1,72 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.function.ToLongFunction;
+
+import io.github.lc.oss.commons.identity.model.UserInfo;
+
+/*
+ * All time values are in milliseconds, values less than or equal to zero
+ * disable the associated limit.
+ */
+public class UserInfoCacheConfig {
+    private long maxEntries = 10000;
+    private long maxWeight = 0;
+    private ToLongFunction<UserInfo> weigher;
+    private long expireAfterWrite = 60 * 1000;
+    private long expireAfterAccess = 0;
+    private int concurrencyLevel = Runtime.getRuntime().availableProcessors() * 2;
+
+    public long getMaxEntries() {
+        return this.maxEntries;
+    }
+
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /*
+     * Only applies when a weigher is set.
+     */
+    public long getMaxWeight() {
+        return this.maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public ToLongFunction<UserInfo> getWeigher() {
+        return this.weigher;
+    }
+
+    public void setWeigher(ToLongFunction<UserInfo> weigher) {
+        this.weigher = weigher;
+    }
+
+    public long getExpireAfterWrite() {
+        return this.expireAfterWrite;
+    }
+
+    public void setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    public long getExpireAfterAccess() {
+        return this.expireAfterAccess;
+    }
+
+    public void setExpireAfterAccess(long expireAfterAccess) {
+        this.expireAfterAccess = expireAfterAccess;
+    }
+
+    /*
+     * Number of independently locked segments the cache is split into.
+     */
+    public int getConcurrencyLevel() {
+        return this.concurrencyLevel;
+    }
+
+    public void setConcurrencyLevel(int concurrencyLevel) {
+        this.concurrencyLevel = concurrencyLevel;
+    }
+}
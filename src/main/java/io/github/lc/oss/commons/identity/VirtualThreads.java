@@ -0,0 +1,40 @@
+package io.github.lc.oss.commons.identity;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Virtual threads are only available from Java 21, they are looked up
+ * reflectively so that this library continues to run on older versions.
+ */
+final class VirtualThreads {
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = VirtualThreads.find();
+
+    static boolean isSupported() {
+        return VirtualThreads.NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    static ExecutorService newThreadPerTaskExecutor() {
+        if (!VirtualThreads.isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads are not supported");
+        }
+
+        try {
+            return (ExecutorService) VirtualThreads.NEW_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Error creating virtual thread executor", ex);
+        }
+    }
+
+    private static Method find() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+    private VirtualThreads() {
+    }
+}
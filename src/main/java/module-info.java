@@ -4,6 +4,9 @@ module io.github.lc.oss.commons.identity {
     requires io.github.lc.oss.commons.util;
     requires io.github.lc.oss.commons.encoding;
     requires io.github.lc.oss.commons.signing;
+    requires java.management;
+    requires java.net.http;
+    requires jdk.jfr;
 
     requires transitive org.apache.httpcomponents.client5.httpclient5;
     requires transitive org.apache.httpcomponents.core5.httpcore5;
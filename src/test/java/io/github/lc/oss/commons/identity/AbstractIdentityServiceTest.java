@@ -1,10 +1,24 @@
 package io.github.lc.oss.commons.identity;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hc.core5.http.HttpStatus;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
@@ -24,6 +38,8 @@ import io.github.lc.oss.commons.identity.model.UserInfoBatchResponse;
 import io.github.lc.oss.commons.identity.model.UserInfoResponse;
 import io.github.lc.oss.commons.identity.model.UserInfoSet;
 import io.github.lc.oss.commons.testing.AbstractMockTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
 
 public class AbstractIdentityServiceTest extends AbstractMockTest {
     private static class TestService extends AbstractIdentityService {
@@ -86,6 +102,8 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
     private JsonService jsonService;
     @Mock
     private HttpService httpService;
+    @Mock
+    private AsyncHttpService asyncHttpService;
 
     private AbstractIdentityService service;
 
@@ -94,8 +112,9 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         this.service = new TestService();
         this.setField("jsonService", this.jsonService, this.service);
         this.setField("httpService", this.httpService, this.service);
+        this.setField("asyncHttpService", this.asyncHttpService, this.service);
 
-        this.setField("applicationToken", new Token(System.currentTimeMillis() + 100000, "token-value"), this.service);
+        this.service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
     }
 
     @Test
@@ -106,17 +125,181 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         service.init(this.jsonService);
 
         Assertions.assertNotNull(this.getField("httpService", service));
+        Assertions.assertNotNull(this.getField("asyncHttpService", service));
+        service.close();
+    }
+
+    @Test
+    public void test_init_httpService() {
+        AbstractIdentityService service = new TestService();
+
+        service.init(this.jsonService, this.httpService);
+
+        Assertions.assertSame(this.httpService, this.getField("httpService", service));
+        AsyncHttpService asyncHttpService = this.getField("asyncHttpService", service);
+        Assertions.assertTrue(asyncHttpService instanceof BlockingAsyncHttpService);
+        Assertions.assertSame(this.httpService, ((BlockingAsyncHttpService) asyncHttpService).getDelegate());
+
+        /*
+         * async calls go through the injected service
+         */
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(new ApplicationInfoResponse());
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        service.getApplicationInfoAsync().join();
+        Mockito.verify(this.httpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        service.close();
+    }
+
+    @Test
+    public void test_init_jdkHttpService() {
+        AbstractIdentityService service = new TestService();
+        JdkHttpService httpService = new JdkHttpService(this.jsonService);
+
+        service.init(this.jsonService, httpService);
+
+        Assertions.assertSame(httpService, this.getField("httpService", service));
+        Assertions.assertSame(httpService.async(), this.getField("asyncHttpService", service));
+        service.close();
+    }
+
+    @Test
+    public void test_init_circuitBreaker() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected CircuitBreakerConfig getCircuitBreakerConfig() {
+                return new CircuitBreakerConfig();
+            }
+        };
+        Assertions.assertTrue(service.getCircuitBreakers().isEmpty());
+
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+
+        Assertions.assertTrue(this.getField("httpService", service) instanceof CircuitBreakerHttpService);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(new ApplicationInfoResponse());
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        service.getApplicationInfo();
+        Assertions.assertEquals(1, service.getCircuitBreakers().size());
+
+        service.close();
+        Mockito.verify(this.httpService).close();
+    }
+
+    @Test
+    public void test_init_circuitBreaker_async() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected CircuitBreakerConfig getCircuitBreakerConfig() {
+                CircuitBreakerConfig config = new CircuitBreakerConfig();
+                config.setWindowSize(1);
+                config.setMinimumCalls(1);
+                return config;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.asyncHttpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Error making request")));
+        try {
+            service.getUserInfoAsync("euid").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error making request", Futures.unwrap(ex).getMessage());
+        }
+
+        /*
+         * the sync call shares the circuit opened by the async one
+         */
+        Assertions.assertEquals(1, service.getCircuitBreakers().size());
+        CircuitBreaker circuitBreaker = service.getCircuitBreakers().iterator().next();
+        Assertions.assertEquals(IdentityMetrics.USER_INFO, circuitBreaker.getEndpoint());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        try {
+            service.getUserInfo("euid");
+            Assertions.fail("Expected exception");
+        } catch (CircuitBreakerOpenException ex) {
+            Assertions.assertEquals(IdentityMetrics.USER_INFO, ex.getEndpoint());
+        }
+        Mockito.verify(this.httpService, Mockito.never()).get(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        service.close();
+        Mockito.verify(this.asyncHttpService).close();
+    }
+
+    @Test
+    public void test_init_metrics() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        HttpServiceConfig config = new HttpServiceConfig();
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected HttpServiceConfig getHttpServiceConfig() {
+                return config;
+            }
+
+            @Override
+            protected IdentityMetrics getMetrics() {
+                return metrics;
+            }
+        };
+
+        service.init(this.jsonService);
+
+        Assertions.assertSame(metrics, config.getMetrics());
+        Assertions.assertSame(metrics, this.getField("metrics", service));
+        service.close();
+    }
+
+    @Test
+    public void test_init_metricsResolvedOnce() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        CallHelper calls = new CallHelper();
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected HttpServiceConfig getHttpServiceConfig() {
+                return config;
+            }
+
+            @Override
+            protected IdentityMetrics getMetrics() {
+                calls.count++;
+                return new HistogramMetrics();
+            }
+        };
+
+        service.init(this.jsonService);
+
+        Assertions.assertEquals(1, calls.count);
+        Assertions.assertSame(config.getMetrics(), this.getField("metrics", service));
+        service.close();
+    }
+
+    @Test
+    public void test_close() {
+        this.service.close();
+
+        Mockito.verify(this.httpService).close();
+        Mockito.verify(this.asyncHttpService).close();
+    }
+
+    @Test
+    public void test_close_notInitialized() {
+        AbstractIdentityService service = new TestService();
+
+        service.close();
     }
 
     @Test
     public void test_clearApplicationToken() {
         AbstractIdentityService service = new TestService();
 
-        this.setField("applicationToken", new Token(-1l, "token-value"), service);
-        Assertions.assertNotNull(this.getField("applicationToken", service));
+        AtomicReference<?> applicationToken = this.getField("applicationToken", service);
+        service.setApplicationToken(new Token(-1l, "token-value"));
+        Assertions.assertNotNull(applicationToken.get());
 
         service.clearApplicationToken();
-        Assertions.assertNull(this.getField("applicationToken", service));
+        Assertions.assertNull(applicationToken.get());
     }
 
     @Test
@@ -131,6 +314,63 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Assertions.assertSame(appInfo, result);
     }
 
+    @Test
+    public void test_getApplicationInfo_cached() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationInfoRefreshInterval() {
+                return 60000;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        Assertions.assertNotNull(this.getField("applicationInfoCache", service));
+
+        ApplicationInfoResponse response = new ApplicationInfoResponse();
+        ApplicationInfo appInfo = new ApplicationInfo();
+        response.setBody(appInfo);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenReturn(response);
+
+        Assertions.assertSame(appInfo, service.getApplicationInfo());
+        Assertions.assertSame(appInfo, service.getApplicationInfo());
+        Assertions.assertSame(appInfo, service.getApplicationInfoAsync().join());
+        Mockito.verify(this.httpService, Mockito.times(1)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        Mockito.verifyNoInteractions(this.asyncHttpService);
+
+        service.clearApplicationInfo();
+        Assertions.assertSame(appInfo, service.getApplicationInfo());
+        Mockito.verify(this.httpService, Mockito.times(2)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        service.close();
+    }
+
+    @Test
+    public void test_getApplicationInfoAsync_cached() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationInfoRefreshInterval() {
+                return 60000;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        ApplicationInfoResponse response = new ApplicationInfoResponse();
+        ApplicationInfo appInfo = new ApplicationInfo();
+        response.setBody(appInfo);
+        Mockito.doReturn(CompletableFuture.completedFuture(response)).when(this.asyncHttpService).get(ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertSame(appInfo, service.getApplicationInfoAsync().join());
+        Assertions.assertSame(appInfo, service.getApplicationInfoAsync().join());
+        Assertions.assertSame(appInfo, service.getApplicationInfo());
+        Mockito.verify(this.asyncHttpService, Mockito.times(1)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        Mockito.verifyNoInteractions(this.httpService);
+        service.close();
+
+        service.clearApplicationInfo();
+        this.service.clearApplicationInfo();
+    }
+
     @Test
     public void test_getApplicationInfo_notFound() {
         Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
@@ -235,6 +475,34 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Assertions.assertSame(result1, result2);
     }
 
+    @Test
+    public void test_getApplicationToken_event() throws Exception {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+
+        try (Recording recording = new Recording()) {
+            recording.enable(TokenMintEvent.class);
+            recording.start();
+
+            service.getApplicationToken();
+            service.getApplicationToken();
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "TokenMint");
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertFalse(events.get(0).getBoolean("async"));
+            Assertions.assertTrue(events.get(0).getBoolean("success"));
+        }
+    }
+
     @Test
     public void test_getApplicationToken_expired() {
         AbstractIdentityService service = new TestService();
@@ -251,7 +519,7 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
                 this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenReturn(tokenResponse);
 
-        this.setField("applicationToken", token1, service);
+        service.setApplicationToken(token1);
 
         final String result1 = service.getApplicationToken();
         Assertions.assertEquals(tokenResponse.getBody().getToken(), result1);
@@ -277,7 +545,7 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
                 this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenReturn(tokenResponse);
 
-        this.setField("applicationToken", token1, service);
+        service.setApplicationToken(token1);
 
         final String result1 = service.getApplicationToken();
         Assertions.assertEquals(tokenResponse.getBody().getToken(), result1);
@@ -293,7 +561,7 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
             private int callCount = 0;
 
             @Override
-            protected boolean isAppTokenInvalid() {
+            protected boolean isAppTokenInvalid(ApplicationToken token) {
                 if (this.callCount < 1) {
                     this.callCount++;
                     return true;
@@ -306,7 +574,7 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
 
         Token token1 = new Token(System.currentTimeMillis() - 100000, "token-value1");
 
-        this.setField("applicationToken", token1, service);
+        service.setApplicationToken(token1);
 
         final String result1 = service.getApplicationToken();
         Assertions.assertEquals(token1.getToken(), result1);
@@ -315,6 +583,168 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Assertions.assertSame(result1, result2);
     }
 
+    @Test
+    public void test_getApplicationToken_refreshAhead() throws Exception {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationTokenRefreshAhead() {
+                return 200000;
+            }
+
+            @Override
+            protected long getApplicationTokenRefreshJitter() {
+                return 0;
+            }
+        };
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse1 = new TokenResponse();
+        tokenResponse1.setBody(new Token(System.currentTimeMillis() + 100000, "token-value1"));
+        TokenResponse tokenResponse2 = new TokenResponse();
+        tokenResponse2.setBody(new Token(System.currentTimeMillis() + 10000000, "token-value2"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse1, tokenResponse2);
+
+        try (Recording recording = new Recording()) {
+            recording.enable(TokenMintEvent.class);
+            recording.start();
+
+            Assertions.assertEquals("token-value1", service.getApplicationToken());
+
+            this.waitUntil(() -> "token-value2".equals(service.getApplicationToken()), 5000);
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "TokenMint");
+            Assertions.assertEquals(2, events.size());
+            Assertions.assertTrue(events.get(1).getBoolean("success"));
+        }
+
+        Mockito.verify(this.httpService, Mockito.times(2)).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+        Assertions.assertNotNull(this.getField("applicationTokenRefresh", service));
+
+        service.close();
+    }
+
+    @Test
+    public void test_getApplicationToken_refreshAhead_retry() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationTokenRefreshAhead() {
+                return 200000;
+            }
+
+            @Override
+            protected long getApplicationTokenRefreshRetryDelay() {
+                return 10;
+            }
+        };
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse1 = new TokenResponse();
+        tokenResponse1.setBody(new Token(System.currentTimeMillis() + 100000, "token-value1"));
+        TokenResponse tokenResponse2 = new TokenResponse();
+        tokenResponse2.setBody(new Token(System.currentTimeMillis() + 10000000, "token-value2"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse1) //
+                .thenThrow(new HttpException("Bad Gateway", HttpStatus.SC_BAD_GATEWAY, null)) //
+                .thenReturn(tokenResponse2);
+
+        Assertions.assertEquals("token-value1", service.getApplicationToken());
+
+        this.waitUntil(() -> "token-value2".equals(service.getApplicationToken()), 5000);
+
+        Mockito.verify(this.httpService, Mockito.times(3)).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        service.close();
+    }
+
+    @Test
+    public void test_getApplicationToken_refreshAhead_clearedWhileMinting() throws Exception {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationTokenRefreshAhead() {
+                return 200000;
+            }
+
+            @Override
+            protected long getApplicationTokenRefreshJitter() {
+                return 0;
+            }
+        };
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse1 = new TokenResponse();
+        tokenResponse1.setBody(new Token(System.currentTimeMillis() + 100000, "token-value1"));
+        TokenResponse tokenResponse2 = new TokenResponse();
+        tokenResponse2.setBody(new Token(System.currentTimeMillis() + 10000000, "token-value2"));
+        AtomicReference<String> refreshThread = new AtomicReference<>();
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse1) //
+                .thenAnswer(invocation -> {
+                    refreshThread.set(Thread.currentThread().getName());
+                    service.clearApplicationToken();
+                    return tokenResponse2;
+                });
+
+        Assertions.assertEquals("token-value1", service.getApplicationToken());
+
+        ExecutorService executor = service.getRefreshExecutor();
+        this.waitUntil(() -> refreshThread.get() != null, 5000);
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        /*
+         * the clear during the mint wins and the refresh does not run on the
+         * scheduler
+         */
+        Assertions.assertNull(service.getCurrentApplicationToken());
+        Assertions.assertTrue(refreshThread.get().startsWith("IdentityService-Refresh-"));
+
+        service.close();
+    }
+
+    @Test
+    public void test_getApplicationToken_refreshAhead_clear() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationTokenRefreshAhead() {
+                return 1000;
+            }
+        };
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 10000000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+
+        service.getApplicationToken();
+        Assertions.assertNotNull(this.getField("applicationTokenRefresh", service));
+
+        service.clearApplicationToken();
+        Assertions.assertNull(this.getField("applicationTokenRefresh", service));
+
+        service.close();
+        Assertions.assertNull(this.getField("scheduler", service));
+    }
+
     @Test
     public void test_getAppToken_threading() {
         AbstractIdentityService service = new TestService();
@@ -366,7 +796,7 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
 
         Assertions.assertEquals(0, helper.count);
 
-        this.setField("applicationToken", null, service);
+        service.clearApplicationToken();
 
         // --- begin!
         getter1.unlock();
@@ -435,7 +865,7 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
 
         Assertions.assertEquals(0, helper.count);
 
-        this.setField("applicationToken", null, service);
+        service.clearApplicationToken();
 
         // --- begin!
         getter1.unlock();
@@ -537,14 +967,15 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
     }
 
     @Test
-    public void test_getUserInfoNotFound_retryFail() {
+    public void test_getUserInfo_retry_event() throws Exception {
         AbstractIdentityService service = new TestService();
         this.setField("jsonService", this.jsonService, service);
         this.setField("httpService", this.httpService, service);
 
+        final CallHelper helper = new CallHelper();
+
         UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
-        UserInfo userInfo = new UserInfo();
-        response.setBody(userInfo);
+        response.setBody(new UserInfo());
 
         TokenResponse tokenResponse = new TokenResponse();
         tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
@@ -556,91 +987,66 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Mockito.doAnswer(new Answer<UserInfoResponse<UserInfo>>() {
             @Override
             public UserInfoResponse<UserInfo> answer(InvocationOnMock invocation) throws Throwable {
-                throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+                if (helper.count < 1) {
+                    helper.count++;
+                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+                }
+
+                return response;
             }
         }).when(this.httpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
-        try {
+        try (Recording recording = new Recording()) {
+            recording.enable(TokenClearEvent.class);
+            recording.start();
+
             service.getUserInfo("euid");
-            Assertions.fail("Expected exception");
-        } catch (HttpException ex) {
-            Assertions.assertEquals(401, ex.getStatus());
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "TokenClear");
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals(IdentityMetrics.USER_INFO, events.get(0).getString("endpoint"));
         }
     }
 
     @Test
-    public void test_getUserInfos() {
-        UserInfoBatchResponse response = new UserInfoBatchResponse();
-        UserInfoSet userInfoSet = new UserInfoSet();
-        response.setBody(userInfoSet);
+    public void test_getUserInfo_retry_tokenAlreadyReplaced() {
+        final CallHelper helper = new CallHelper();
 
-        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
-                .thenReturn(response);
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
 
-        UserInfoSet result = this.service.getUserInfos("euid");
-        Assertions.assertSame(userInfoSet, result);
-    }
-
-    @Test
-    public void test_getUserInfos_notFound() {
-        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
-                .thenThrow(new HttpException("NotFound", 404, null));
-
-        try {
-            this.service.getUserInfos("euid");
-            Assertions.fail("Expected exception");
-        } catch (HttpException ex) {
-            Assertions.assertEquals(404, ex.getStatus());
-        }
-    }
-
-    @Test
-    public void test_getUserInfos_retry() {
-        AbstractIdentityService service = new TestService();
-        this.setField("jsonService", this.jsonService, service);
-        this.setField("httpService", this.httpService, service);
-
-        final CallHelper helper = new CallHelper();
-
-        UserInfoBatchResponse response = new UserInfoBatchResponse();
-        UserInfoSet userInfoSet = new UserInfoSet();
-        response.setBody(userInfoSet);
-
-        TokenResponse tokenResponse = new TokenResponse();
-        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
-
-        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
-        Mockito.when(
-                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<UserInfoBatchResponse>() {
-            @Override
-            public UserInfoBatchResponse answer(InvocationOnMock invocation) throws Throwable {
-                if (helper.count < 1) {
-                    helper.count++;
-                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
-                }
+        Mockito.doAnswer(new Answer<UserInfoResponse<UserInfo>>() {
+            @Override
+            public UserInfoResponse<UserInfo> answer(InvocationOnMock invocation) throws Throwable {
+                if (helper.count < 1) {
+                    helper.count++;
+                    // another caller replaced the token while this request was in flight
+                    AbstractIdentityServiceTest.this.service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value2"));
+                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+                }
 
                 return response;
             }
-        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
-
-        Assertions.assertEquals(0, helper.count);
+        }).when(this.httpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
-        service.getUserInfos("euid");
+        UserInfo result = this.service.getUserInfo("euid");
 
-        Assertions.assertEquals(1, helper.count);
+        Assertions.assertSame(userInfo, result);
+        Assertions.assertEquals("token-value2", this.service.getApplicationToken());
+        Mockito.verify(this.httpService, Mockito.never()).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
     }
 
     @Test
-    public void test_getUserInfos_retryFail() {
+    public void test_getUserInfoNotFound_retryFail() {
         AbstractIdentityService service = new TestService();
         this.setField("jsonService", this.jsonService, service);
         this.setField("httpService", this.httpService, service);
 
-        UserInfoBatchResponse response = new UserInfoBatchResponse();
-        UserInfoSet userInfoSet = new UserInfoSet();
-        response.setBody(userInfoSet);
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
 
         TokenResponse tokenResponse = new TokenResponse();
         tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
@@ -649,15 +1055,15 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Mockito.when(
                 this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<UserInfoBatchResponse>() {
+        Mockito.doAnswer(new Answer<UserInfoResponse<UserInfo>>() {
             @Override
-            public UserInfoBatchResponse answer(InvocationOnMock invocation) throws Throwable {
+            public UserInfoResponse<UserInfo> answer(InvocationOnMock invocation) throws Throwable {
                 throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
             }
-        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        }).when(this.httpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
         try {
-            service.getUserInfos("euid");
+            service.getUserInfo("euid");
             Assertions.fail("Expected exception");
         } catch (HttpException ex) {
             Assertions.assertEquals(401, ex.getStatus());
@@ -665,21 +1071,25 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
     }
 
     @Test
-    public void test_deleteUserData() {
-        this.service.deleteUserData("euid", "key");
+    public void test_getUserInfos() {
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        UserInfoSet userInfoSet = new UserInfoSet();
+        response.setBody(userInfoSet);
+
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(response);
+
+        UserInfoSet result = this.service.getUserInfos("euid");
+        Assertions.assertSame(userInfoSet, result);
     }
 
     @Test
-    public void test_deleteUserData_notFound() {
-        Mockito.doAnswer(new Answer<Void>() {
-            @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
-                throw new HttpException("NotFound", 404, null);
-            }
-        }).when(this.httpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+    public void test_getUserInfos_notFound() {
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenThrow(new HttpException("NotFound", 404, null));
 
         try {
-            this.service.deleteUserData("euid", "key");
+            this.service.getUserInfos("euid");
             Assertions.fail("Expected exception");
         } catch (HttpException ex) {
             Assertions.assertEquals(404, ex.getStatus());
@@ -687,13 +1097,17 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
     }
 
     @Test
-    public void test_deleteUserData_retry() {
+    public void test_getUserInfos_retry() {
         AbstractIdentityService service = new TestService();
         this.setField("jsonService", this.jsonService, service);
         this.setField("httpService", this.httpService, service);
 
         final CallHelper helper = new CallHelper();
 
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        UserInfoSet userInfoSet = new UserInfoSet();
+        response.setBody(userInfoSet);
+
         TokenResponse tokenResponse = new TokenResponse();
         tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
 
@@ -701,30 +1115,35 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Mockito.when(
                 this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<Void>() {
+        Mockito.doAnswer(new Answer<UserInfoBatchResponse>() {
             @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
+            public UserInfoBatchResponse answer(InvocationOnMock invocation) throws Throwable {
                 if (helper.count < 1) {
                     helper.count++;
                     throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
                 }
-                return null;
+
+                return response;
             }
-        }).when(this.httpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
         Assertions.assertEquals(0, helper.count);
 
-        service.deleteUserData("euid", "key");
+        service.getUserInfos("euid");
 
         Assertions.assertEquals(1, helper.count);
     }
 
     @Test
-    public void test_deleteUserData_retryFail() {
+    public void test_getUserInfos_retryFail() {
         AbstractIdentityService service = new TestService();
         this.setField("jsonService", this.jsonService, service);
         this.setField("httpService", this.httpService, service);
 
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        UserInfoSet userInfoSet = new UserInfoSet();
+        response.setBody(userInfoSet);
+
         TokenResponse tokenResponse = new TokenResponse();
         tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
 
@@ -732,15 +1151,15 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
         Mockito.when(
                 this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
                 .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<Void>() {
+        Mockito.doAnswer(new Answer<UserInfoBatchResponse>() {
             @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
+            public UserInfoBatchResponse answer(InvocationOnMock invocation) throws Throwable {
                 throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
             }
-        }).when(this.httpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
         try {
-            service.deleteUserData("euid", "key");
+            service.getUserInfos("euid");
             Assertions.fail("Expected exception");
         } catch (HttpException ex) {
             Assertions.assertEquals(401, ex.getStatus());
@@ -748,156 +1167,837 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
     }
 
     @Test
-    public void test_putUserData() {
-        this.service.putUserData("euid", new UserData());
-    }
-
-    @Test
-    public void test_putUserData_notFound() {
-        Mockito.doAnswer(new Answer<Void>() {
+    public void test_init_userInfoCache() {
+        AbstractIdentityService service = new TestService() {
             @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
-                throw new HttpException("NotFound", 404, null);
+            protected UserInfoCacheConfig getUserInfoCacheConfig() {
+                return new UserInfoCacheConfig();
             }
-        }).when(this.httpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        };
+        Assertions.assertNull(this.getField("userInfoCache", service));
 
-        try {
-            this.service.putUserData("euid", new UserData());
-            Assertions.fail("Expected exception");
-        } catch (HttpException ex) {
-            Assertions.assertEquals(404, ex.getStatus());
-        }
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+
+        Assertions.assertNotNull(this.getField("userInfoCache", service));
     }
 
     @Test
-    public void test_putUserData_retry() {
-        AbstractIdentityService service = new TestService();
-        this.setField("jsonService", this.jsonService, service);
-        this.setField("httpService", this.httpService, service);
+    public void test_getUserInfo_cached() {
+        this.setField("userInfoCache", new UserInfoCache(new UserInfoCacheConfig()), this.service);
 
-        final CallHelper helper = new CallHelper();
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
 
-        TokenResponse tokenResponse = new TokenResponse();
-        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenReturn(response);
 
-        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
-        Mockito.when(
-                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<Void>() {
-            @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
-                if (helper.count < 1) {
-                    helper.count++;
-                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
-                }
-                return null;
-            }
-        }).when(this.httpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Assertions.assertSame(userInfo, this.service.getUserInfoAsync("euid").join());
 
-        Assertions.assertEquals(0, helper.count);
+        Mockito.verify(this.httpService, Mockito.times(1)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
-        service.putUserData("euid", new UserData());
+        this.service.invalidateUserInfo("euid");
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
 
-        Assertions.assertEquals(1, helper.count);
+        this.service.invalidateUserInfos();
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+
+        Mockito.verify(this.httpService, Mockito.times(3)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
     }
 
     @Test
-    public void test_putUserData_retryFail() {
-        AbstractIdentityService service = new TestService();
-        this.setField("jsonService", this.jsonService, service);
-        this.setField("httpService", this.httpService, service);
+    public void test_getUserInfo_cached_invalidatedByWrite() {
+        this.setField("userInfoCache", new UserInfoCache(new UserInfoCacheConfig()), this.service);
 
-        TokenResponse tokenResponse = new TokenResponse();
-        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        response.setBody(new UserInfo());
 
-        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
-        Mockito.when(
-                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<Void>() {
-            @Override
-            public Void answer(InvocationOnMock invocation) throws Throwable {
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenReturn(response);
+        Mockito.when(this.asyncHttpService.put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        Mockito.when(this.asyncHttpService.delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(null));
 
-                throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
-            }
-        }).when(this.httpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        this.service.getUserInfo("euid");
+        this.service.putUserData("euid", new UserData());
+        this.service.getUserInfo("euid");
+        this.service.deleteUserData("euid", "key");
+        this.service.getUserInfo("euid");
+        this.service.putUserDataAsync("euid", new UserData()).join();
+        this.service.getUserInfo("euid");
+        this.service.deleteUserDataAsync("euid", "key").join();
+        this.service.getUserInfo("euid");
 
-        try {
-            service.putUserData("euid", new UserData());
-            Assertions.fail("Expected exception");
-        } catch (HttpException ex) {
-            Assertions.assertEquals(401, ex.getStatus());
-        }
+        Mockito.verify(this.httpService, Mockito.times(5)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
     }
 
     @Test
-    public void test_refreshSession() {
-        TokenResponse response = new TokenResponse();
-        Token token = new Token(-1l, "value");
-        response.setBody(token);
+    public void test_getUserInfo_cached_notFound() {
+        this.setField("userInfoCache", new UserInfoCache(new UserInfoCacheConfig()), this.service);
 
-        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
-                .thenReturn(response);
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenReturn(response);
+        Mockito.when(this.asyncHttpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(response));
 
-        String result = this.service.refreshSession("token");
-        Assertions.assertSame(token.getToken(), result);
+        Assertions.assertNull(this.service.getUserInfo("euid"));
+        Assertions.assertNull(this.service.getUserInfoAsync("euid").join());
+        Assertions.assertNull(this.service.getUserInfo("euid"));
+
+        Mockito.verify(this.httpService, Mockito.times(2)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
     }
 
     @Test
-    public void test_refreshSession_null() {
-        TokenResponse response = new TokenResponse();
-        response.setBody(null);
-
+    public void test_getUserInfos_cached() {
+        this.setField("userInfoCache", new UserInfoCache(new UserInfoCacheConfig()), this.service);
+
+        UserInfo cached = new UserInfo();
+        cached.setId("euid1");
+        UserInfoResponse<UserInfo> single = new UserInfoResponse<>();
+        single.setBody(cached);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenReturn(single);
+        this.service.getUserInfo("euid1");
+
+        UserInfo fetched = new UserInfo();
+        fetched.setId("euid2");
+        UserInfo unexpected = new UserInfo();
+        unexpected.setId("other");
+        UserInfoSet userInfoSet = new UserInfoSet();
+        userInfoSet.add(fetched);
+        userInfoSet.add(unexpected);
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        response.setBody(userInfoSet);
         Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
                 .thenReturn(response);
 
-        String result = this.service.refreshSession("token");
-        Assertions.assertNull(result);
-    }
+        UserInfoSet result = this.service.getUserInfos("euid1", "euid2");
+        Assertions.assertEquals(3, result.size());
+        Assertions.assertTrue(result.contains(cached));
+        Assertions.assertTrue(result.contains(fetched));
 
-    @Test
-    public void test_refreshSession_null_v2() {
-        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
-                .thenReturn(null);
+        result = this.service.getUserInfos("euid1", "euid2");
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertTrue(result.contains(cached));
+        Assertions.assertTrue(result.contains(fetched));
+        Assertions.assertSame(fetched, this.service.getUserInfo("euid2"));
 
-        String result = this.service.refreshSession("token");
-        Assertions.assertNull(result);
+        Mockito.verify(this.httpService, Mockito.times(1)).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+        Mockito.verify(this.httpService, Mockito.times(1)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
     }
 
     @Test
-    public void test_refreshSession_notFound() {
+    public void test_getUserInfos_cached_notFound() {
+        this.setField("userInfoCache", new UserInfoCache(new UserInfoCacheConfig()), this.service);
+
         Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
-                .thenThrow(new HttpException("NotFound", 404, null));
+                .thenReturn(new UserInfoBatchResponse());
 
-        try {
-            this.service.refreshSession("token");
-            Assertions.fail("Expected exception");
-        } catch (HttpException ex) {
-            Assertions.assertEquals(404, ex.getStatus());
-        }
+        Assertions.assertNull(this.service.getUserInfos("euid1"));
     }
 
     @Test
-    public void test_refreshSession_retry() {
-        AbstractIdentityService service = new TestService();
+    public void test_getUserInfo_coalesced() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected boolean isRequestCoalescingEnabled() {
+                return true;
+            }
+        };
         this.setField("jsonService", this.jsonService, service);
         this.setField("httpService", this.httpService, service);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
 
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        final BlockingQueue<Object> release = new ArrayBlockingQueue<>(1);
+        final BlockingQueue<Object> threadLock = new ArrayBlockingQueue<>(2);
         final CallHelper helper = new CallHelper();
 
-        TokenResponse response = new TokenResponse();
-        Token token = new Token(-1l, "value");
-        response.setBody(token);
-
-        TokenResponse tokenResponse = new TokenResponse();
-        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        Mockito.doAnswer(new Answer<UserInfoResponse<UserInfo>>() {
+            @Override
+            public UserInfoResponse<UserInfo> answer(InvocationOnMock invocation) throws Throwable {
+                helper.count++;
+                release.take();
+                return response;
+            }
+        }).when(this.httpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
 
-        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
-        Mockito.when(
-                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<TokenResponse>() {
+        ThreadHelper getter1 = new ThreadHelper(service) {
+            @Override
+            protected void process() {
+                Assertions.assertSame(userInfo, this.identityService.getUserInfo("euid"));
+                threadLock.offer(new Object());
+            }
+        };
+
+        ThreadHelper getter2 = new ThreadHelper(service) {
+            @Override
+            protected void process() {
+                Assertions.assertSame(userInfo, this.identityService.getUserInfo("euid"));
+                threadLock.offer(new Object());
+            }
+        };
+
+        Thread getterT1 = new Thread(getter1);
+        getterT1.setDaemon(true);
+        getterT1.setName("Junit-AbstractIdentityService-Getter-1");
+        getterT1.start();
+
+        Thread getterT2 = new Thread(getter2);
+        getterT2.setDaemon(true);
+        getterT2.setName("Junit-AbstractIdentityService-Getter-2");
+        getterT2.start();
+
+        getter1.unlock();
+        getter2.unlock();
+
+        this.waitUntil(() -> service.getCoalescedRequestCount() == 1, 5000);
+        release.offer(new Object());
+
+        this.waitUntil(() -> threadLock.poll() != null, 5000);
+        this.waitUntil(() -> threadLock.poll() != null, 5000);
+
+        Assertions.assertEquals(1, helper.count);
+    }
+
+    @Test
+    public void test_getApplicationInfo_coalesced() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected boolean isRequestCoalescingEnabled() {
+                return true;
+            }
+        };
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        ApplicationInfoResponse response = new ApplicationInfoResponse();
+        ApplicationInfo appInfo = new ApplicationInfo();
+        response.setBody(appInfo);
+        CompletableFuture<ApplicationInfoResponse> pending = new CompletableFuture<>();
+
+        Mockito.doReturn(pending).when(this.asyncHttpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        CompletableFuture<ApplicationInfo> first = service.getApplicationInfoAsync();
+        CompletableFuture<ApplicationInfo> second = service.getApplicationInfoAsync();
+        CompletableFuture<ApplicationInfo> third = CompletableFuture.supplyAsync(() -> service.getApplicationInfo());
+
+        this.waitUntil(() -> service.getCoalescedRequestCount() == 2, 5000);
+        pending.complete(response);
+
+        Assertions.assertSame(appInfo, first.join());
+        Assertions.assertSame(appInfo, second.join());
+        Assertions.assertSame(appInfo, third.join());
+
+        Mockito.verify(this.asyncHttpService, Mockito.times(1)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        Mockito.verifyNoInteractions(this.httpService);
+    }
+
+    @Test
+    public void test_getUserInfoAsync_coalesced_error() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected boolean isRequestCoalescingEnabled() {
+                return true;
+            }
+        };
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        CompletableFuture<UserInfoResponse<UserInfo>> pending = new CompletableFuture<>();
+        Mockito.doReturn(pending).when(this.asyncHttpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        CompletableFuture<UserInfo> first = service.getUserInfoAsync("euid");
+        CompletableFuture<UserInfo> second = service.getUserInfoAsync("euid");
+        pending.completeExceptionally(new HttpException("NotFound", 404, null));
+
+        for (CompletableFuture<UserInfo> result : Arrays.asList(first, second)) {
+            try {
+                result.join();
+                Assertions.fail("Expected exception");
+            } catch (CompletionException ex) {
+                Assertions.assertEquals(404, ((HttpException) ex.getCause()).getStatus());
+            }
+        }
+        Assertions.assertEquals(1, service.getCoalescedRequestCount());
+    }
+
+    @Test
+    public void test_getUserInfo_batched() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getUserInfoBatchWindow() {
+                return 60 * 1000;
+            }
+
+            @Override
+            protected int getUserInfoBatchMaxSize() {
+                return 2;
+            }
+
+            @Override
+            protected UserInfoCacheConfig getUserInfoCacheConfig() {
+                return new UserInfoCacheConfig();
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        UserInfo userInfo1 = new UserInfo();
+        userInfo1.setId("euid1");
+        UserInfoSet userInfos = new UserInfoSet();
+        userInfos.add(userInfo1);
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        response.setBody(userInfos);
+        Mockito.doReturn(CompletableFuture.completedFuture(response)).when(this.asyncHttpService).post(ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        CompletableFuture<UserInfo> first = service.getUserInfoAsync("euid1");
+        Assertions.assertFalse(first.isDone());
+        UserInfo second = service.getUserInfo("euid2");
+
+        Assertions.assertSame(userInfo1, first.join());
+        Assertions.assertNull(second);
+        Assertions.assertSame(userInfo1, service.getUserInfo("euid1"));
+
+        Mockito.verify(this.asyncHttpService, Mockito.times(1)).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+        Mockito.verifyNoInteractions(this.httpService);
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfo_batched_error() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getUserInfoBatchWindow() {
+                return 1;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.doReturn(CompletableFuture.failedFuture(new HttpException("Unavailable", 503, null))).when(this.asyncHttpService)
+                .post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            service.getUserInfo("euid");
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(503, ex.getStatus());
+        }
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfos_chunked() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected int getUserInfosChunkSize() {
+                return 2;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        UserInfo userInfo = new UserInfo();
+        UserInfoSet userInfos = new UserInfoSet();
+        userInfos.add(userInfo);
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        response.setBody(userInfos);
+        Mockito.doReturn(CompletableFuture.completedFuture(response)).when(this.asyncHttpService).post(ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(response);
+
+        UserInfoSet result = service.getUserInfos("euid1", "euid2", "euid3");
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertTrue(result.contains(userInfo));
+
+        result = service.getUserInfosAsync("euid1", "euid2", "euid3", "euid4", "euid5").join();
+        Assertions.assertEquals(1, result.size());
+
+        Mockito.verify(this.asyncHttpService, Mockito.times(5)).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+
+        result = service.getUserInfos("euid1", "euid2");
+        Assertions.assertSame(userInfos, result);
+        Mockito.verify(this.httpService, Mockito.times(1)).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfos_chunked_retry() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected int getUserInfosChunkSize() {
+                return 2;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        UserInfoSet userInfos = new UserInfoSet();
+        userInfos.add(new UserInfo());
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        response.setBody(userInfos);
+        Mockito.doReturn(CompletableFuture.failedFuture(new HttpException("Unavailable", 503, null)), CompletableFuture.completedFuture(response))
+                .when(this.asyncHttpService)
+                .post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        /*
+         * the failed chunk is retried on its own without a RetryPolicy configured
+         */
+        Assertions.assertEquals(1, service.getUserInfosAsync("euid1", "euid2", "euid3").join().size());
+        Mockito.verify(this.asyncHttpService, Mockito.times(3)).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfos_chunked_retryDisabled() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected int getUserInfosChunkSize() {
+                return 2;
+            }
+
+            @Override
+            protected RetryPolicy getUserInfosChunkRetryPolicy() {
+                return null;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.doReturn(CompletableFuture.failedFuture(new HttpException("Unavailable", 503, null))).when(this.asyncHttpService)
+                .post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            service.getUserInfosAsync("euid1", "euid2", "euid3").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(503, ((HttpException) ex.getCause()).getStatus());
+        }
+        service.close();
+    }
+
+    @Test
+    public void test_forEachUserInfo() {
+        UserInfo userInfo1 = new UserInfo();
+        UserInfo userInfo2 = new UserInfo();
+        Mockito.when(this.jsonService.from("{\"id\":\"euid1\"}", UserInfo.class)).thenReturn(userInfo1);
+        Mockito.when(this.jsonService.from("{\"id\":\"euid2\"}", UserInfo.class)).thenReturn(userInfo2);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ResponseReader reader = invocation.getArgument(3);
+                reader.read(new StringReader("{\"body\":[{\"id\":\"euid1\"},{\"id\":\"euid2\"},{}]}"));
+                return null;
+            }
+        }).when(this.httpService).postStreaming(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+
+        List<UserInfo> result = new ArrayList<>();
+        this.service.forEachUserInfo(Arrays.asList("euid1", "euid2", "euid3"), result::add);
+
+        Assertions.assertEquals(Arrays.asList(userInfo1, userInfo2), result);
+    }
+
+    @Test
+    public void test_forEachUserInfo_noBody() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ResponseReader reader = invocation.getArgument(3);
+                reader.read(new StringReader("{\"messages\":[]}"));
+                return null;
+            }
+        }).when(this.httpService).postStreaming(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+
+        this.service.forEachUserInfo(Arrays.asList("euid1"), userInfo -> Assertions.fail("Unexpected call"));
+    }
+
+    @Test
+    public void test_forEachUserInfo_retry() {
+        final CallHelper helper = new CallHelper();
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "new-token"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                helper.count++;
+                if (helper.count == 1) {
+                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+                }
+                return null;
+            }
+        }).when(this.httpService).postStreaming(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull());
+
+        this.service.forEachUserInfo(Arrays.asList("euid1"), userInfo -> Assertions.fail("Unexpected call"));
+
+        Assertions.assertEquals(2, helper.count);
+        Assertions.assertEquals("new-token", this.service.getApplicationToken());
+    }
+
+    @Test
+    public void test_forEachUserInfo_retryFail() {
+        Mockito.doThrow(new HttpException("NotFound", 404, null)).when(this.httpService).postStreaming(ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            this.service.forEachUserInfo(Arrays.asList("euid1"), userInfo -> Assertions.fail("Unexpected call"));
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_init_revalidationCache() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected int getRevalidationCacheSize() {
+                return 10;
+            }
+        };
+        Assertions.assertNull(this.getField("revalidationCache", service));
+
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+
+        Assertions.assertNotNull(this.getField("revalidationCache", service));
+    }
+
+    @Test
+    public void test_getUserInfo_revalidated() {
+        this.setField("revalidationCache", new RevalidationCache(10), this.service);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+
+        Mockito.when(this.httpService.getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.eq(UserInfoResponse.class),
+                ArgumentMatchers.isNull())).thenReturn(new ConditionalResponse<>(response, "\"v1\"", null));
+        Mockito.when(this.httpService.getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.eq(UserInfoResponse.class),
+                ArgumentMatchers.eq("\"v1\""))).thenReturn(ConditionalResponse.notModified(null, null));
+
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+
+        Mockito.verify(this.httpService, Mockito.times(1)).getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(UserInfoResponse.class), ArgumentMatchers.isNull());
+        Mockito.verify(this.httpService, Mockito.times(2)).getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(UserInfoResponse.class), ArgumentMatchers.eq("\"v1\""));
+        Mockito.verify(this.httpService, Mockito.never()).get(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        this.service.putUserData("euid", new UserData());
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Mockito.verify(this.httpService, Mockito.times(2)).getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(UserInfoResponse.class), ArgumentMatchers.isNull());
+    }
+
+    @Test
+    public void test_getUserInfo_revalidated_maxAge() {
+        this.setField("revalidationCache", new RevalidationCache(10), this.service);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+
+        Mockito.when(this.httpService.getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.eq(UserInfoResponse.class),
+                ArgumentMatchers.isNull())).thenReturn(new ConditionalResponse<>(response, null, "max-age=60"));
+
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+
+        Mockito.verify(this.httpService, Mockito.times(1)).getConditional(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any());
+
+        this.service.invalidateUserInfos();
+        Assertions.assertSame(userInfo, this.service.getUserInfo("euid"));
+        Mockito.verify(this.httpService, Mockito.times(2)).getConditional(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_getUserInfo_revalidated_unexpectedNotModified() {
+        this.setField("revalidationCache", new RevalidationCache(10), this.service);
+
+        Mockito.when(this.httpService.getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.eq(UserInfoResponse.class),
+                ArgumentMatchers.isNull())).thenReturn(ConditionalResponse.notModified(null, null));
+
+        Assertions.assertNull(this.service.getUserInfo("euid"));
+    }
+
+    @Test
+    public void test_getApplicationInfo_revalidated() {
+        this.setField("revalidationCache", new RevalidationCache(10), this.service);
+
+        ApplicationInfoResponse response = new ApplicationInfoResponse();
+        ApplicationInfo applicationInfo = new ApplicationInfo();
+        response.setBody(applicationInfo);
+
+        Mockito.when(this.httpService.getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(ApplicationInfoResponse.class), ArgumentMatchers.isNull())).thenReturn(new ConditionalResponse<>(response, "\"a1\"", null));
+        Mockito.when(this.httpService.getConditional(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.eq(ApplicationInfoResponse.class), ArgumentMatchers.eq("\"a1\""))).thenReturn(ConditionalResponse.notModified("\"a1\"", "max-age=60"));
+
+        Assertions.assertSame(applicationInfo, this.service.getApplicationInfo());
+        Assertions.assertSame(applicationInfo, this.service.getApplicationInfo());
+        Assertions.assertSame(applicationInfo, this.service.getApplicationInfo());
+
+        Mockito.verify(this.httpService, Mockito.times(2)).getConditional(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_deleteUserData() {
+        this.service.deleteUserData("euid", "key");
+    }
+
+    @Test
+    public void test_deleteUserData_notFound() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                throw new HttpException("NotFound", 404, null);
+            }
+        }).when(this.httpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            this.service.deleteUserData("euid", "key");
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_deleteUserData_retry() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        final CallHelper helper = new CallHelper();
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                if (helper.count < 1) {
+                    helper.count++;
+                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+                }
+                return null;
+            }
+        }).when(this.httpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertEquals(0, helper.count);
+
+        service.deleteUserData("euid", "key");
+
+        Assertions.assertEquals(1, helper.count);
+    }
+
+    @Test
+    public void test_deleteUserData_retryFail() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+            }
+        }).when(this.httpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            service.deleteUserData("euid", "key");
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(401, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_putUserData() {
+        this.service.putUserData("euid", new UserData());
+    }
+
+    @Test
+    public void test_putUserData_notFound() {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                throw new HttpException("NotFound", 404, null);
+            }
+        }).when(this.httpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            this.service.putUserData("euid", new UserData());
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_putUserData_retry() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        final CallHelper helper = new CallHelper();
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                if (helper.count < 1) {
+                    helper.count++;
+                    throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+                }
+                return null;
+            }
+        }).when(this.httpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertEquals(0, helper.count);
+
+        service.putUserData("euid", new UserData());
+
+        Assertions.assertEquals(1, helper.count);
+    }
+
+    @Test
+    public void test_putUserData_retryFail() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+
+                throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+            }
+        }).when(this.httpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            service.putUserData("euid", new UserData());
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(401, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_refreshSession() {
+        TokenResponse response = new TokenResponse();
+        Token token = new Token(-1l, "value");
+        response.setBody(token);
+
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(response);
+
+        String result = this.service.refreshSession("token");
+        Assertions.assertSame(token.getToken(), result);
+    }
+
+    @Test
+    public void test_refreshSession_null() {
+        TokenResponse response = new TokenResponse();
+        response.setBody(null);
+
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(response);
+
+        String result = this.service.refreshSession("token");
+        Assertions.assertNull(result);
+    }
+
+    @Test
+    public void test_refreshSession_null_v2() {
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(null);
+
+        String result = this.service.refreshSession("token");
+        Assertions.assertNull(result);
+    }
+
+    @Test
+    public void test_refreshSession_notFound() {
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenThrow(new HttpException("NotFound", 404, null));
+
+        try {
+            this.service.refreshSession("token");
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_refreshSession_retry() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        final CallHelper helper = new CallHelper();
+
+        TokenResponse response = new TokenResponse();
+        Token token = new Token(-1l, "value");
+        response.setBody(token);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<TokenResponse>() {
             @Override
             public TokenResponse answer(InvocationOnMock invocation) throws Throwable {
                 if (helper.count < 1) {
@@ -905,46 +2005,955 @@ public class AbstractIdentityServiceTest extends AbstractMockTest {
                     throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
                 }
 
-                return response;
+                return response;
+            }
+        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertEquals(0, helper.count);
+
+        service.refreshSession("token");
+
+        Assertions.assertEquals(1, helper.count);
+    }
+
+    @Test
+    public void test_refreshSession_retryFail() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("httpService", this.httpService, service);
+
+        TokenResponse response = new TokenResponse();
+        Token token = new Token(-1l, "value");
+        response.setBody(token);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(
+                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(tokenResponse);
+        Mockito.doAnswer(new Answer<TokenResponse>() {
+            @Override
+            public TokenResponse answer(InvocationOnMock invocation) throws Throwable {
+                throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+            }
+        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            service.refreshSession("token");
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(401, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_valid() {
+        Assertions.assertEquals("token-value", this.service.getApplicationTokenAsync().join());
+
+        Mockito.verify(this.asyncHttpService, Mockito.never()).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_shared() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        CompletableFuture<TokenResponse> mint = new CompletableFuture<>();
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.doReturn(mint).when(this.asyncHttpService).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        CompletableFuture<String> result1 = service.getApplicationTokenAsync();
+        CompletableFuture<String> result2 = service.getApplicationTokenAsync();
+        Assertions.assertFalse(result1.isDone());
+        Assertions.assertFalse(result2.isDone());
+
+        mint.complete(tokenResponse);
+
+        Assertions.assertEquals("token-value", result1.join());
+        Assertions.assertEquals("token-value", result2.join());
+        Assertions.assertEquals("token-value", service.getApplicationToken());
+        AtomicReference<?> pending = this.getField("pendingApplicationToken", service);
+        Assertions.assertNull(pending.get());
+        Mockito.verify(this.asyncHttpService, Mockito.times(1)).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_completesOffIoThread() throws Exception {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        CompletableFuture<TokenResponse> mint = new CompletableFuture<>();
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.doReturn(mint).when(this.asyncHttpService).post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+
+        CompletableFuture<String> result = service.getApplicationTokenAsync().thenApply(token -> Thread.currentThread().getName());
+        Thread io = new Thread(() -> mint.complete(tokenResponse), "I/O dispatcher");
+        io.start();
+        io.join();
+
+        Assertions.assertTrue(result.get(5, TimeUnit.SECONDS).startsWith("IdentityService-Refresh-"));
+        Assertions.assertEquals("token-value", service.getApplicationToken());
+        service.close();
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_error() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(CompletableFuture.failedFuture(new HttpException("Forbidden", 403, null)));
+
+        try {
+            service.getApplicationTokenAsync().join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(403, ((HttpException) ex.getCause()).getStatus());
+        }
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_event() throws Exception {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(CompletableFuture.failedFuture(new HttpException("Forbidden", 403, null)),
+                        CompletableFuture.completedFuture(tokenResponse));
+
+        try (Recording recording = new Recording()) {
+            recording.enable(TokenMintEvent.class);
+            recording.start();
+
+            try {
+                service.getApplicationTokenAsync().join();
+                Assertions.fail("Expected exception");
+            } catch (CompletionException ex) {
+                Assertions.assertEquals(403, ((HttpException) ex.getCause()).getStatus());
+            }
+            Assertions.assertEquals("token-value", service.getApplicationTokenAsync().join());
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "TokenMint");
+            Assertions.assertEquals(2, events.size());
+            Assertions.assertTrue(events.get(0).getBoolean("async"));
+            Assertions.assertFalse(events.get(0).getBoolean("success"));
+            Assertions.assertTrue(events.get(1).getBoolean("async"));
+            Assertions.assertTrue(events.get(1).getBoolean("success"));
+        }
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_nullBody() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(CompletableFuture.completedFuture(new TokenResponse()));
+
+        try {
+            service.getApplicationTokenAsync().join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertTrue(ex.getCause() instanceof NullPointerException);
+        }
+    }
+
+    @Test
+    public void test_getApplicationTokenAsync_postThrows() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenThrow(new IllegalStateException("HttpService is closed"));
+
+        try {
+            service.getApplicationTokenAsync().join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_getApplicationInfoAsync() {
+        ApplicationInfoResponse response = new ApplicationInfoResponse();
+        ApplicationInfo appInfo = new ApplicationInfo();
+        response.setBody(appInfo);
+
+        Mockito.when(this.asyncHttpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        ApplicationInfo result = this.service.getApplicationInfoAsync().join();
+        Assertions.assertSame(appInfo, result);
+    }
+
+    @Test
+    public void test_getUserInfoAsync() {
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+
+        Mockito.when(this.asyncHttpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(response));
+
+        UserInfo result = this.service.getUserInfoAsync("euid").join();
+        Assertions.assertSame(userInfo, result);
+    }
+
+    @Test
+    public void test_getUserInfoAsync_notFound() {
+        Mockito.when(this.asyncHttpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.failedFuture(new HttpException("Not Found", 404, null)));
+
+        try {
+            this.service.getUserInfoAsync("euid").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(404, ((HttpException) ex.getCause()).getStatus());
+        }
+    }
+
+    @Test
+    public void test_getUserInfoAsync_retry() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value1"));
+
+        final CallHelper helper = new CallHelper();
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value2"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(CompletableFuture.completedFuture(tokenResponse));
+        Mockito.doAnswer(new Answer<CompletableFuture<UserInfoResponse<UserInfo>>>() {
+            @Override
+            public CompletableFuture<UserInfoResponse<UserInfo>> answer(InvocationOnMock invocation) throws Throwable {
+                if (helper.count < 1) {
+                    helper.count++;
+                    return CompletableFuture.failedFuture(new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null));
+                }
+
+                return CompletableFuture.completedFuture(response);
+            }
+        }).when(this.asyncHttpService).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        UserInfo result = service.getUserInfoAsync("euid").join();
+
+        Assertions.assertSame(userInfo, result);
+        Assertions.assertEquals(1, helper.count);
+        Assertions.assertEquals("token-value2", service.getApplicationToken());
+    }
+
+    @Test
+    public void test_getUserInfoAsync_retryFail() {
+        AbstractIdentityService service = new TestService();
+        this.setField("jsonService", this.jsonService, service);
+        this.setField("asyncHttpService", this.asyncHttpService, service);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(CompletableFuture.completedFuture(tokenResponse));
+        Mockito.when(this.asyncHttpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.failedFuture(new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null)));
+
+        try {
+            service.getUserInfoAsync("euid").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(401, ((HttpException) ex.getCause()).getStatus());
+        }
+        Mockito.verify(this.asyncHttpService, Mockito.times(2)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+    }
+
+    @Test
+    public void test_getUserInfosAsync() {
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        UserInfoSet userInfos = new UserInfoSet();
+        response.setBody(userInfos);
+
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull())).thenReturn(CompletableFuture.completedFuture(response));
+
+        UserInfoSet result = this.service.getUserInfosAsync("euid1", "euid2").join();
+        Assertions.assertSame(userInfos, result);
+    }
+
+    @Test
+    public void test_deleteUserDataAsync() {
+        Mockito.when(this.asyncHttpService.delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        this.service.deleteUserDataAsync("euid", "key").join();
+
+        Mockito.verify(this.asyncHttpService).delete(ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+    }
+
+    @Test
+    public void test_putUserDataAsync() {
+        Mockito.when(this.asyncHttpService.put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        this.service.putUserDataAsync("euid", new UserData()).join();
+
+        Mockito.verify(this.asyncHttpService).put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+    }
+
+    @Test
+    public void test_refreshSessionAsync() {
+        TokenResponse response = new TokenResponse();
+        response.setBody(new Token(System.currentTimeMillis() + 100000, "new-token"));
+
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull())).thenReturn(CompletableFuture.completedFuture(response));
+
+        Assertions.assertEquals("new-token", this.service.refreshSessionAsync("old-token").join());
+    }
+
+    @Test
+    public void test_refreshSessionAsync_null() {
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull())).thenReturn(CompletableFuture.completedFuture(new TokenResponse()));
+
+        Assertions.assertNull(this.service.refreshSessionAsync("old-token").join());
+    }
+
+    @Test
+    public void test_invokeAll() {
+        List<String> result = this.service.invokeAll(Arrays.asList("a", "b", "c"), id -> id.toUpperCase());
+
+        Assertions.assertEquals(Arrays.asList("A", "B", "C"), result);
+        this.service.close();
+    }
+
+    @Test
+    public void test_invokeAll_error() {
+        RuntimeException error = new RuntimeException("BOOM!");
+
+        try {
+            this.service.invokeAll(Arrays.asList("a", "b", "c"), id -> {
+                if (id.equals("b")) {
+                    throw error;
+                }
+                return id;
+            });
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertSame(error, ex);
+        }
+        this.service.close();
+    }
+
+    @Test
+    public void test_getFanOutExecutor() {
+        ExecutorService executor = this.service.getFanOutExecutor();
+        Assertions.assertTrue(executor instanceof ThreadPoolExecutor);
+        Assertions.assertEquals(16, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+        Assertions.assertSame(executor, this.service.getFanOutExecutor());
+
+        this.service.close();
+        Assertions.assertTrue(executor.isShutdown());
+        Assertions.assertNull(this.getField("fanOutExecutor", this.service));
+    }
+
+    @Test
+    public void test_getFanOutExecutor_closed() {
+        this.service.close();
+
+        try {
+            this.service.getFanOutExecutor();
+            Assertions.fail("Expected exception");
+        } catch (RejectedExecutionException ex) {
+            Assertions.assertEquals("IdentityService is closed", ex.getMessage());
+        }
+        try {
+            this.service.invokeAll(List.of("a", "b"), value -> value);
+            Assertions.fail("Expected exception");
+        } catch (RejectedExecutionException ex) {
+            Assertions.assertEquals("IdentityService is closed", ex.getMessage());
+        }
+        Assertions.assertNull(this.getField("fanOutExecutor", this.service));
+    }
+
+    @Test
+    public void test_getFanOutExecutor_virtualThreads() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected boolean isVirtualThreadsEnabled() {
+                return true;
             }
-        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        };
 
-        Assertions.assertEquals(0, helper.count);
+        ExecutorService executor = service.getFanOutExecutor();
+        Assertions.assertEquals(VirtualThreads.isSupported(), !(executor instanceof ThreadPoolExecutor));
+        service.close();
+    }
 
-        service.refreshSession("token");
+    @Test
+    public void test_getRefreshExecutor() {
+        ExecutorService executor = this.service.getRefreshExecutor();
+        Assertions.assertTrue(executor instanceof ThreadPoolExecutor);
+        Assertions.assertNotSame(this.service.getScheduler(), executor);
+        Assertions.assertSame(executor, this.service.getRefreshExecutor());
+
+        this.service.close();
+        Assertions.assertTrue(executor.isShutdown());
+        Assertions.assertNull(this.getField("refreshExecutor", this.service));
+    }
 
-        Assertions.assertEquals(1, helper.count);
+    @Test
+    public void test_executors_closed() {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected long getApplicationTokenRefreshAhead() {
+                return 1000;
+            }
+        };
+        service.close();
+
+        try {
+            service.getScheduler();
+            Assertions.fail("Expected exception");
+        } catch (RejectedExecutionException ex) {
+            Assertions.assertEquals("IdentityService is closed", ex.getMessage());
+        }
+        try {
+            service.getRefreshExecutor();
+            Assertions.fail("Expected exception");
+        } catch (RejectedExecutionException ex) {
+            Assertions.assertEquals("IdentityService is closed", ex.getMessage());
+        }
+
+        /*
+         * a token set after close is kept without scheduling a refresh
+         */
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        Assertions.assertEquals("token-value", service.getApplicationToken());
+        Assertions.assertNull(this.getField("applicationTokenRefresh", service));
+        Assertions.assertNull(this.getField("scheduler", service));
+        Assertions.assertNull(this.getField("refreshExecutor", service));
     }
 
+    /*
+     * 10k concurrent blocking lookups, each on its own virtual thread, against a
+     * stub that takes 50ms per call. All callers wait on the same token mint.
+     */
     @Test
-    public void test_refreshSession_retryFail() {
-        AbstractIdentityService service = new TestService();
+    public void test_invokeAll_virtualThreads_stress() {
+        Assumptions.assumeTrue(VirtualThreads.isSupported());
+
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected boolean isVirtualThreadsEnabled() {
+                return true;
+            }
+        };
         this.setField("jsonService", this.jsonService, service);
         this.setField("httpService", this.httpService, service);
 
-        TokenResponse response = new TokenResponse();
-        Token token = new Token(-1l, "value");
-        response.setBody(token);
-
         TokenResponse tokenResponse = new TokenResponse();
         tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.any())).thenAnswer(invocation -> {
+                    Thread.sleep(50);
+                    return tokenResponse;
+                });
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+            response.setBody(new UserInfo());
+            return response;
+        });
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add("user-" + i);
+        }
 
-        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
-        Mockito.when(
-                this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any()))
-                .thenReturn(tokenResponse);
-        Mockito.doAnswer(new Answer<TokenResponse>() {
+        List<UserInfo> result = service.invokeAll(ids, service::getUserInfo);
+
+        Assertions.assertEquals(10000, result.size());
+        Assertions.assertFalse(result.contains(null));
+        Mockito.verify(this.httpService, Mockito.times(1)).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.any());
+        Mockito.verify(this.httpService, Mockito.times(10000)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        service.close();
+    }
+
+    private AbstractIdentityService newRetryService(RetryPolicy policy) {
+        AbstractIdentityService service = new TestService() {
             @Override
-            public TokenResponse answer(InvocationOnMock invocation) throws Throwable {
-                throw new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null);
+            protected RetryPolicy getRetryPolicy() {
+                return policy;
             }
-        }).when(this.httpService).post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        return service;
+    }
+
+    private RetryPolicy newRetryPolicy() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setBaseDelay(1);
+        policy.setMaxDelay(1);
+        return policy;
+    }
+
+    @Test
+    public void test_getUserInfo_retryPolicy() {
+        RetryPolicy policy = this.newRetryPolicy();
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())) //
+                .thenThrow(new HttpException("Error making request", HttpStatus.SC_SERVICE_UNAVAILABLE, null)) //
+                .thenThrow(new RuntimeException("Error making request", new java.net.SocketTimeoutException())) //
+                .thenReturn(response);
+
+        Assertions.assertSame(userInfo, service.getUserInfo("euid"));
+        Assertions.assertEquals(2, policy.getRetryCount());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfo_retryPolicy_responseTooLarge() {
+        RetryPolicy policy = this.newRetryPolicy();
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        RuntimeException error = new RuntimeException("Error making request",
+                new IOException("Error reading entity response.", BoundedInputStream.tooLarge(10)));
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenThrow(error);
+
+        try {
+            service.getUserInfo("euid");
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertSame(error, ex);
+        }
+        Mockito.verify(this.httpService, Mockito.times(1)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        Assertions.assertEquals(0, policy.getRetryCount());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfo_retryPolicy_exhausted() {
+        RetryPolicy policy = this.newRetryPolicy();
+        policy.setMaxAttempts(2);
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        HttpException error = new HttpException("Error making request", HttpStatus.SC_SERVICE_UNAVAILABLE, null);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenThrow(error);
+
+        try {
+            service.getUserInfo("euid");
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertSame(error, ex);
+        }
+        Mockito.verify(this.httpService, Mockito.times(2)).get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfo_retryPolicy_unauthorized() {
+        RetryPolicy policy = this.newRetryPolicy();
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value2"));
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(tokenResponse);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())) //
+                .thenThrow(new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null)) //
+                .thenReturn(response);
+
+        Assertions.assertSame(userInfo, service.getUserInfo("euid"));
+        Assertions.assertEquals(0, policy.getRetryCount());
+        Assertions.assertEquals("token-value2", service.getApplicationToken());
+        service.close();
+    }
+
+    @Test
+    public void test_refreshSession_retryPolicy() {
+        RetryPolicy policy = this.newRetryPolicy();
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        TokenResponse response = new TokenResponse();
+        response.setBody(new Token(-1l, "value"));
+        HttpException unavailable = new HttpException("Error making request", HttpStatus.SC_SERVICE_UNAVAILABLE, null);
+        Mockito.when(this.httpService.post(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull()))
+                .thenThrow(new RuntimeException("Error making request", new java.net.ConnectException())) //
+                .thenThrow(unavailable) //
+                .thenReturn(response);
 
         try {
             service.refreshSession("token");
             Assertions.fail("Expected exception");
         } catch (HttpException ex) {
-            Assertions.assertEquals(401, ex.getStatus());
+            Assertions.assertSame(unavailable, ex);
+        }
+        Assertions.assertEquals(1, policy.getRetryCount());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfoAsync_retryPolicy() {
+        RetryPolicy policy = this.newRetryPolicy();
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        Mockito.doReturn(CompletableFuture.failedFuture(new HttpException("Error making request", HttpStatus.SC_TOO_MANY_REQUESTS, null, 1)),
+                CompletableFuture.completedFuture(response)).when(this.asyncHttpService)
+                .get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertSame(userInfo, service.getUserInfoAsync("euid").join());
+        Assertions.assertEquals(1, policy.getRetryCount());
+        service.close();
+    }
+
+    @Test
+    public void test_refreshSessionAsync_retryPolicy() {
+        RetryPolicy policy = this.newRetryPolicy();
+        AbstractIdentityService service = this.newRetryService(policy);
+
+        HttpException unavailable = new HttpException("Error making request", HttpStatus.SC_SERVICE_UNAVAILABLE, null);
+        Mockito.doReturn(CompletableFuture.failedFuture(unavailable)).when(this.asyncHttpService).post(ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        try {
+            service.refreshSessionAsync("token").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertSame(unavailable, ex.getCause());
+        }
+        Assertions.assertEquals(0, policy.getRetryCount());
+        service.close();
+    }
+
+    private AbstractIdentityService newHedgingService(HedgingPolicy policy) {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected HedgingPolicy getHedgingPolicy() {
+                return policy;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        return service;
+    }
+
+    private HedgingPolicy newHedgingPolicy(String operation) {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setMinSamples(1);
+        policy.setMinDelay(1);
+        policy.record(operation, 0);
+        return policy;
+    }
+
+    @Test
+    public void test_getUserInfo_hedgingPolicy() {
+        HedgingPolicy policy = this.newHedgingPolicy("userInfo");
+        AbstractIdentityService service = this.newHedgingService(policy);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        CompletableFuture<UserInfoResponse<UserInfo>> slow = new CompletableFuture<>();
+        Mockito.doReturn(slow, CompletableFuture.completedFuture(response)).when(this.asyncHttpService).get(ArgumentMatchers.notNull(),
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertSame(userInfo, service.getUserInfo("euid"));
+        Assertions.assertTrue(slow.isCancelled());
+        Assertions.assertEquals(1, policy.getHedgeWinCount());
+        Mockito.verify(this.httpService, Mockito.never()).get(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfos_hedgingPolicy() {
+        HedgingPolicy policy = this.newHedgingPolicy("userInfos");
+        AbstractIdentityService service = this.newHedgingService(policy);
+
+        UserInfoBatchResponse response = new UserInfoBatchResponse();
+        UserInfoSet userInfos = new UserInfoSet();
+        response.setBody(userInfos);
+        Mockito.doReturn(new CompletableFuture<>(), CompletableFuture.completedFuture(response)).when(this.asyncHttpService).post(
+                ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertSame(userInfos, service.getUserInfos("euid-1", "euid-2"));
+        Assertions.assertEquals(1, policy.getHedgeWinCount());
+        service.close();
+    }
+
+    @Test
+    public void test_getApplicationInfoAsync_hedgingPolicy() {
+        HedgingPolicy policy = this.newHedgingPolicy("applicationInfo");
+        AbstractIdentityService service = this.newHedgingService(policy);
+
+        ApplicationInfoResponse response = new ApplicationInfoResponse();
+        ApplicationInfo applicationInfo = new ApplicationInfo();
+        response.setBody(applicationInfo);
+        Mockito.doReturn(new CompletableFuture<>(), CompletableFuture.completedFuture(response)).when(this.asyncHttpService)
+                .get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        Assertions.assertSame(applicationInfo, service.getApplicationInfoAsync().join());
+        Assertions.assertEquals(1, policy.getHedgeCount());
+        Assertions.assertEquals(1, policy.getHedgeWinCount());
+        service.close();
+    }
+
+    private AbstractIdentityService newMetricsService(HistogramMetrics metrics, RetryPolicy policy) {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected IdentityMetrics getMetrics() {
+                return metrics;
+            }
+
+            @Override
+            protected RetryPolicy getRetryPolicy() {
+                return policy;
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        return service;
+    }
+
+    @Test
+    public void test_getUserInfo_metrics() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        AbstractIdentityService service = this.newMetricsService(metrics, this.newRetryPolicy());
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value2"));
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(tokenResponse);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())) //
+                .thenThrow(new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null)) //
+                .thenThrow(new HttpException("Error making request", HttpStatus.SC_SERVICE_UNAVAILABLE, null)) //
+                .thenReturn(response);
+
+        Assertions.assertSame(userInfo, service.getUserInfo("euid"));
+        EndpointMetrics endpoint = metrics.getEndpoint(IdentityMetrics.USER_INFO);
+        Assertions.assertEquals(1, endpoint.getTokenRefreshCount());
+        Assertions.assertEquals(1, endpoint.getRetryCount());
+        service.close();
+    }
+
+    @Test
+    public void test_putUserDataAsync_metrics() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        AbstractIdentityService service = this.newMetricsService(metrics, this.newRetryPolicy());
+
+        Mockito.doReturn(CompletableFuture.failedFuture(new HttpException("Error making request", HttpStatus.SC_BAD_GATEWAY, null)),
+                CompletableFuture.completedFuture(null)).when(this.asyncHttpService)
+                .put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        service.putUserDataAsync("euid", new UserData()).join();
+        Assertions.assertEquals(1, metrics.getEndpoint(IdentityMetrics.USER_DATA_PUT).getRetryCount());
+        Assertions.assertNull(metrics.getEndpoint(IdentityMetrics.USER_INFO));
+        service.close();
+    }
+
+    private static class TestTracer implements IdentityTracer {
+        private final List<String> spans = new ArrayList<>();
+
+        private class TestSpan implements IdentitySpan {
+            private final String name;
+
+            public TestSpan(String name) {
+                this.name = name;
+            }
+
+            @Override
+            public void inject(Map<String, String> headers) {
+                headers.put(TraceParent.HEADER, TraceParent.format(TraceParent.newTraceId(), TraceParent.newSpanId(), true));
+            }
+
+            @Override
+            public void end(Throwable error) {
+                synchronized (TestTracer.this.spans) {
+                    TestTracer.this.spans.add("end " + this.name + (error == null ? "" : " " + error.getClass().getSimpleName()));
+                }
+            }
+        }
+
+        @Override
+        public IdentitySpan startSpan(String name, IdentitySpan parent) {
+            return this.start("span " + name + (parent == null ? "" : " < " + ((TestSpan) parent).name));
         }
+
+        @Override
+        public IdentitySpan startClientSpan(String name, IdentitySpan parent) {
+            return this.start("client " + name + (parent == null ? "" : " < " + ((TestSpan) parent).name));
+        }
+
+        public List<String> getSpans(int expected) {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (System.currentTimeMillis() < deadline) {
+                synchronized (this.spans) {
+                    if (this.spans.size() >= expected) {
+                        return new ArrayList<>(this.spans);
+                    }
+                }
+                Thread.onSpinWait();
+            }
+            synchronized (this.spans) {
+                return new ArrayList<>(this.spans);
+            }
+        }
+
+        private IdentitySpan start(String name) {
+            synchronized (this.spans) {
+                this.spans.add("start " + name);
+            }
+            return new TestSpan(name);
+        }
+    }
+
+    private AbstractIdentityService newTracingService(TestTracer tracer) {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected IdentityTracer getTracer() {
+                return tracer;
+            }
+
+            @Override
+            protected RetryPolicy getRetryPolicy() {
+                return AbstractIdentityServiceTest.this.newRetryPolicy();
+            }
+        };
+        service.init(this.jsonService, this.httpService, this.asyncHttpService);
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token-value"));
+        return service;
+    }
+
+    @Test
+    public void test_getUserInfo_tracing() {
+        TestTracer tracer = new TestTracer();
+        AbstractIdentityService service = this.newTracingService(tracer);
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value2"));
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.httpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(tokenResponse);
+
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        UserInfo userInfo = new UserInfo();
+        response.setBody(userInfo);
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())) //
+                .thenThrow(new HttpException("Unauthorized", HttpStatus.SC_UNAUTHORIZED, null)) //
+                .thenThrow(new HttpException("Error making request", HttpStatus.SC_SERVICE_UNAVAILABLE, null)) //
+                .thenReturn(response);
+
+        Assertions.assertSame(userInfo, service.getUserInfo("euid"));
+        Assertions.assertEquals(Arrays.asList( //
+                "start span userInfo", //
+                "start client userInfo < span userInfo", //
+                "end client userInfo < span userInfo HttpException", //
+                "start client token < span userInfo", //
+                "end client token < span userInfo", //
+                "start client userInfo < span userInfo", //
+                "end client userInfo < span userInfo HttpException", //
+                "start client userInfo < span userInfo", //
+                "end client userInfo < span userInfo", //
+                "end span userInfo"), tracer.getSpans(10));
+
+        Mockito.verify(this.httpService, Mockito.times(3)).get(ArgumentMatchers.notNull(),
+                ArgumentMatchers.argThat((Map<String, String> headers) -> headers.containsKey(TraceParent.HEADER)), ArgumentMatchers.notNull());
+        Mockito.verify(this.httpService).post(ArgumentMatchers.any(),
+                ArgumentMatchers.argThat((Map<String, String> headers) -> headers.containsKey(TraceParent.HEADER)), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any());
+        service.close();
+    }
+
+    @Test
+    public void test_putUserDataAsync_tracing() {
+        TestTracer tracer = new TestTracer();
+        AbstractIdentityService service = this.newTracingService(tracer);
+        service.clearApplicationToken();
+
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setBody(new Token(System.currentTimeMillis() + 100000, "token-value2"));
+        Mockito.when(this.jsonService.to(ArgumentMatchers.notNull())).thenReturn("signed-json");
+        Mockito.when(this.asyncHttpService.post(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+                ArgumentMatchers.any())).thenReturn(CompletableFuture.completedFuture(tokenResponse));
+        Mockito.doReturn(CompletableFuture.failedFuture(new HttpException("Error making request", HttpStatus.SC_BAD_GATEWAY, null)),
+                CompletableFuture.completedFuture(null)).when(this.asyncHttpService)
+                .put(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull());
+
+        service.putUserDataAsync("euid", new UserData()).join();
+        /* The operation span is ended after the future returned completes */
+        Assertions.assertEquals(Arrays.asList( //
+                "start span userData.put", //
+                "start client token < span userData.put", //
+                "end client token < span userData.put", //
+                "start client userData.put < span userData.put", //
+                "end client userData.put < span userData.put HttpException", //
+                "start client userData.put < span userData.put", //
+                "end client userData.put < span userData.put", //
+                "end span userData.put"), tracer.getSpans(8));
+        service.close();
+    }
+
+    @Test
+    public void test_getUserInfo_tracingDisabled() {
+        UserInfoResponse<UserInfo> response = new UserInfoResponse<>();
+        response.setBody(new UserInfo());
+        Mockito.when(this.httpService.get(ArgumentMatchers.notNull(), ArgumentMatchers.notNull(), ArgumentMatchers.notNull())).thenReturn(response);
+
+        this.service.getUserInfo("euid");
+
+        Mockito.verify(this.httpService).get(ArgumentMatchers.notNull(),
+                ArgumentMatchers.argThat((Map<String, String> headers) -> !headers.containsKey(TraceParent.HEADER)), ArgumentMatchers.notNull());
     }
 }
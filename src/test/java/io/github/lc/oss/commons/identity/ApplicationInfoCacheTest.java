@@ -0,0 +1,251 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.ApplicationInfo;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+
+public class ApplicationInfoCacheTest extends AbstractMockTest {
+    private class TestCache extends ApplicationInfoCache {
+        private long now = 1000;
+
+        public TestCache(long refreshInterval, long expiry, long retryDelay) {
+            super(refreshInterval, expiry, retryDelay, () -> ApplicationInfoCacheTest.this.scheduler, () -> ApplicationInfoCacheTest.this.executor,
+                    () -> {
+                        ApplicationInfoCacheTest.this.loads.incrementAndGet();
+                        ApplicationInfoCacheTest.this.loadThread = Thread.currentThread().getName();
+                        Object next = ApplicationInfoCacheTest.this.results.poll();
+                        if (next instanceof RuntimeException) {
+                            throw (RuntimeException) next;
+                        }
+                        if (next instanceof Supplier) {
+                            return (ApplicationInfo) ((Supplier<?>) next).get();
+                        }
+                        return (ApplicationInfo) next;
+                    });
+        }
+
+        @Override
+        long now() {
+            return this.now;
+        }
+    }
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+    private Deque<Object> results;
+    private AtomicInteger loads;
+    private volatile String loadThread;
+
+    @BeforeEach
+    public void setup() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "Refresh"));
+        this.results = new ArrayDeque<>();
+        this.loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.scheduler.shutdownNow();
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void test_get() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        ApplicationInfo info = new ApplicationInfo();
+        this.results.add(info);
+
+        Assertions.assertNull(cache.getIfPresent());
+        Assertions.assertSame(info, cache.get());
+        Assertions.assertSame(info, cache.get());
+        Assertions.assertSame(info, cache.getIfPresent());
+        Assertions.assertEquals(1, this.loads.get());
+        Assertions.assertEquals(0, cache.getRefreshCount());
+
+        cache.now = 121000;
+        Assertions.assertNull(cache.getIfPresent());
+        ApplicationInfo info2 = new ApplicationInfo();
+        this.results.add(info2);
+        Assertions.assertSame(info2, cache.get());
+        Assertions.assertEquals(2, this.loads.get());
+    }
+
+    @Test
+    public void test_getIfPresent_event() throws Exception {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+
+        try (Recording recording = new Recording()) {
+            recording.enable(CacheEvent.class);
+            recording.start();
+
+            cache.getIfPresent();
+            cache.set(new ApplicationInfo());
+            cache.getIfPresent();
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "Cache");
+            Assertions.assertEquals(2, events.size());
+            Assertions.assertEquals("applicationInfo", events.get(0).getString("cache"));
+            Assertions.assertFalse(events.get(0).getBoolean("hit"));
+            Assertions.assertEquals("applicationInfo", events.get(1).getString("cache"));
+            Assertions.assertTrue(events.get(1).getBoolean("hit"));
+        }
+    }
+
+    @Test
+    public void test_get_null() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+
+        Assertions.assertNull(cache.get());
+        Assertions.assertNull(cache.get());
+        Assertions.assertEquals(2, this.loads.get());
+    }
+
+    @Test
+    public void test_get_error() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        this.results.add(new RuntimeException("BOOM!"));
+
+        try {
+            cache.get();
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("BOOM!", ex.getMessage());
+        }
+        Assertions.assertNull(cache.getIfPresent());
+    }
+
+    @Test
+    public void test_refresh() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        ApplicationInfo info = new ApplicationInfo();
+        ApplicationInfo info2 = new ApplicationInfo();
+        cache.set(info);
+
+        this.results.add(info2);
+        cache.refresh();
+        Assertions.assertSame(info2, cache.getIfPresent());
+        Assertions.assertEquals(1, cache.getRefreshCount());
+        Assertions.assertEquals(0, cache.getRefreshFailureCount());
+    }
+
+    @Test
+    public void test_refresh_failureKeepsLastKnownGood() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        ApplicationInfo info = new ApplicationInfo();
+        cache.set(info);
+
+        this.results.add(new RuntimeException("BOOM!"));
+        cache.refresh();
+        cache.refresh();
+
+        Assertions.assertSame(info, cache.getIfPresent());
+        Assertions.assertEquals(2, cache.getRefreshCount());
+        Assertions.assertEquals(2, cache.getRefreshFailureCount());
+
+        cache.now = 121000;
+        cache.refresh();
+        Assertions.assertNull(cache.getIfPresent());
+        Assertions.assertEquals(3, cache.getRefreshFailureCount());
+    }
+
+    @Test
+    public void test_refresh_scheduled() {
+        TestCache cache = new TestCache(10, 60000, 10);
+        ApplicationInfo info = new ApplicationInfo();
+        ApplicationInfo info2 = new ApplicationInfo();
+        this.results.add(new RuntimeException("BOOM!"));
+        this.results.add(info2);
+        cache.set(info);
+
+        this.waitUntil(() -> cache.getIfPresent() == info2, 5000);
+        Assertions.assertEquals(1, cache.getRefreshFailureCount());
+        Assertions.assertEquals("Refresh", this.loadThread);
+        cache.close();
+    }
+
+    @Test
+    public void test_refresh_invalidatedWhileLoading() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        ApplicationInfo info = new ApplicationInfo();
+        ApplicationInfo info2 = new ApplicationInfo();
+        cache.set(info);
+
+        this.results.add((Supplier<ApplicationInfo>) () -> {
+            cache.invalidate();
+            return info2;
+        });
+        cache.refresh();
+        Assertions.assertNull(cache.getIfPresent());
+
+        /*
+         * nothing to refresh once invalidated
+         */
+        cache.refresh();
+        Assertions.assertEquals(1, cache.getRefreshCount());
+        Assertions.assertEquals(1, this.loads.get());
+    }
+
+    @Test
+    public void test_refresh_executorRejected() throws Exception {
+        this.executor.shutdownNow();
+        TestCache cache = new TestCache(10, 60000, 10);
+        ApplicationInfo info = new ApplicationInfo();
+        cache.set(info);
+
+        /*
+         * the scheduler has a single thread, the refresh timer has fired once this
+         * runs
+         */
+        this.scheduler.schedule(() -> null, 50, TimeUnit.MILLISECONDS).get();
+        Assertions.assertSame(info, cache.getIfPresent());
+        Assertions.assertEquals(0, cache.getRefreshCount());
+        Assertions.assertEquals(0, this.loads.get());
+        cache.close();
+    }
+
+    @Test
+    public void test_invalidate_close() {
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        ApplicationInfo info = new ApplicationInfo();
+        cache.set(info);
+
+        cache.invalidate();
+        Assertions.assertNull(cache.getIfPresent());
+        cache.refresh();
+        Assertions.assertNull(cache.getIfPresent());
+
+        cache.set(info);
+        cache.close();
+        Assertions.assertNull(cache.getIfPresent());
+        cache.set(info);
+        Assertions.assertNull(cache.getIfPresent());
+    }
+
+    @Test
+    public void test_set_rejected() {
+        this.scheduler.shutdownNow();
+        TestCache cache = new TestCache(60000, 120000, 1000);
+        ApplicationInfo info = new ApplicationInfo();
+
+        cache.set(info);
+        cache.set(null);
+        Assertions.assertSame(info, cache.getIfPresent());
+    }
+}
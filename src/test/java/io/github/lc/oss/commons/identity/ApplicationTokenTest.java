@@ -0,0 +1,31 @@
+package io.github.lc.oss.commons.identity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.Token;
+
+public class ApplicationTokenTest {
+    @Test
+    public void test_values() {
+        long expiration = System.currentTimeMillis() + 100000;
+
+        ApplicationToken token = new ApplicationToken(new Token(expiration, "token-value"), 30000, 7);
+
+        Assertions.assertEquals("token-value", token.getValue());
+        Assertions.assertEquals("Bearer token-value", token.getAuthorization());
+        Assertions.assertEquals(expiration, token.getExpiration());
+        Assertions.assertEquals(expiration - 30000, token.getValidUntil());
+        Assertions.assertEquals(7, token.getGeneration());
+        Assertions.assertTrue(token.getCreated() > 0);
+        Assertions.assertSame(token.getAuthorization(), token.getAuthorization());
+    }
+
+    @Test
+    public void test_values_noExpiration() {
+        ApplicationToken token = new ApplicationToken(new Token(null, "token-value"), 30000, 1);
+
+        Assertions.assertEquals(0, token.getExpiration());
+        Assertions.assertTrue(token.getValidUntil() < System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,139 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class BlockingAsyncHttpServiceTest extends AbstractMockTest {
+    private static class TestHttpService implements HttpService {
+        private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        private RuntimeException error;
+
+        private <T> T call(String call, T result) {
+            this.calls.add(call + " " + Thread.currentThread().getName());
+            if (this.error != null) {
+                throw this.error;
+            }
+            return result;
+        }
+
+        @Override
+        public void delete(String url, Map<String, String> headers) {
+            this.call("delete", null);
+        }
+
+        @Override
+        public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+            return this.call("get", responseType.cast("value"));
+        }
+
+        @Override
+        public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+            return this.call("post", responseType.cast("value"));
+        }
+
+        @Override
+        public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+            return this.call("signed", responseType.cast("value"));
+        }
+
+        @Override
+        public void put(String url, Map<String, String> headers, Jsonable requestBody) {
+            this.call("put", null);
+        }
+    }
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        this.executor = Executors.newSingleThreadExecutor(task -> new Thread(task, "Worker"));
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void test_calls() {
+        TestHttpService delegate = new TestHttpService();
+        BlockingAsyncHttpService service = new BlockingAsyncHttpService(delegate, () -> this.executor);
+
+        Assertions.assertNull(service.delete("url", null).join());
+        Assertions.assertEquals("value", service.get("url", null, String.class).join());
+        Assertions.assertEquals("value", service.post("url", null, String.class, new UserData()).join());
+        Assertions.assertEquals("value", service.post("url", null, String.class, new UserData(), "key").join());
+        Assertions.assertNull(service.put("url", null, new UserData()).join());
+
+        Assertions.assertEquals(List.of("delete Worker", "get Worker", "post Worker", "signed Worker", "put Worker"), delegate.calls);
+        Assertions.assertSame(delegate, service.getDelegate());
+    }
+
+    @Test
+    public void test_error() {
+        TestHttpService delegate = new TestHttpService();
+        delegate.error = new HttpException("Error making request", 503, null);
+        BlockingAsyncHttpService service = new BlockingAsyncHttpService(delegate, () -> this.executor);
+
+        try {
+            service.get("url", null, String.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertSame(delegate.error, ex.getCause());
+        }
+    }
+
+    @Test
+    public void test_rejected() {
+        this.executor.shutdownNow();
+        BlockingAsyncHttpService service = new BlockingAsyncHttpService(new TestHttpService(), () -> this.executor);
+
+        try {
+            service.get("url", null, String.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        BlockingAsyncHttpService service = new BlockingAsyncHttpService(new TestHttpService() {
+            @Override
+            public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException ex) {
+                    interrupted.countDown();
+                }
+                return null;
+            }
+        }, () -> this.executor);
+
+        CompletableFuture<String> result = service.get("url", null, String.class);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        result.cancel(true);
+
+        Assertions.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class BoundedInputStreamTest extends AbstractMockTest {
+    @Test
+    public void test_read_withinLimit() {
+        try (InputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), 3)) {
+            Assertions.assertFalse(in.markSupported());
+            Assertions.assertEquals(1, in.read());
+            Assertions.assertArrayEquals(new byte[] { 2, 3 }, in.readAllBytes());
+            Assertions.assertEquals(-1, in.read());
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_read_unbounded() {
+        try (InputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[1024]), 0)) {
+            Assertions.assertEquals(1024, in.readAllBytes().length);
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_read_exceedsLimit() {
+        try (InputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), 2)) {
+            in.readAllBytes();
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 2 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_read_single_exceedsLimit() {
+        try (InputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[] { 1, 2 }), 1)) {
+            Assertions.assertEquals(1, in.read());
+            in.read();
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 1 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_skip_exceedsLimit() {
+        try (InputStream in = new BoundedInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3 }), 2)) {
+            in.skip(3);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 2 bytes", ex.getMessage());
+        }
+    }
+}
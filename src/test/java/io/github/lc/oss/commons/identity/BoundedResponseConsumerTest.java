@@ -0,0 +1,85 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class BoundedResponseConsumerTest extends AbstractMockTest {
+    private ByteBuffer bytes(String value) {
+        return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void test_buildResult() throws Exception {
+        BoundedResponseConsumer consumer = new BoundedResponseConsumer(5);
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setHeader("X-Test", "true");
+
+        consumer.start(response, ContentType.APPLICATION_JSON);
+        consumer.data(this.bytes("he"), false);
+        consumer.data(ByteBuffer.allocateDirect(3).put("llo".getBytes(StandardCharsets.UTF_8)).flip(), true);
+
+        SimpleHttpResponse result = consumer.buildResult();
+        Assertions.assertEquals(200, result.getCode());
+        Assertions.assertEquals("true", result.getFirstHeader("X-Test").getValue());
+        Assertions.assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), result.getBodyBytes());
+        Assertions.assertEquals(ContentType.APPLICATION_JSON.getMimeType(), result.getContentType().getMimeType());
+    }
+
+    @Test
+    public void test_buildResult_noBody() throws Exception {
+        BoundedResponseConsumer consumer = new BoundedResponseConsumer(5);
+
+        consumer.start(new SimpleHttpResponse(204), null);
+
+        Assertions.assertNull(consumer.buildResult().getBodyBytes());
+    }
+
+    @Test
+    public void test_start_contentLengthTooLarge() throws Exception {
+        BoundedResponseConsumer consumer = new BoundedResponseConsumer(5);
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, "6");
+
+        try {
+            consumer.start(response, ContentType.APPLICATION_JSON);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 5 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_data_tooLarge() throws Exception {
+        BoundedResponseConsumer consumer = new BoundedResponseConsumer(5);
+        consumer.start(new SimpleHttpResponse(200), ContentType.APPLICATION_JSON);
+        consumer.data(this.bytes("hel"), false);
+
+        try {
+            consumer.data(this.bytes("lo!"), true);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 5 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_unbounded() throws Exception {
+        BoundedResponseConsumer consumer = new BoundedResponseConsumer(0);
+        SimpleHttpResponse response = new SimpleHttpResponse(200);
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, "1000");
+
+        consumer.start(response, ContentType.TEXT_PLAIN);
+        consumer.data(this.bytes("more than five"), true);
+
+        Assertions.assertEquals("more than five", new String(consumer.buildResult().getBodyBytes(), StandardCharsets.UTF_8));
+    }
+}
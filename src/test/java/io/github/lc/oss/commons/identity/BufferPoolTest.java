@@ -0,0 +1,94 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class BufferPoolTest extends AbstractMockTest {
+    @Test
+    public void test_sizeClass() {
+        Assertions.assertEquals(0, BufferPool.sizeClass(0));
+        Assertions.assertEquals(0, BufferPool.sizeClass(4096));
+        Assertions.assertEquals(1, BufferPool.sizeClass(4097));
+        Assertions.assertEquals(1, BufferPool.sizeClass(8192));
+        Assertions.assertEquals(6, BufferPool.sizeClass(BufferPool.MAX_BUFFER_SIZE));
+    }
+
+    @Test
+    public void test_acquire_release() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+
+        byte[] buffer = pool.acquire(5000);
+        Assertions.assertEquals(8192, buffer.length);
+        Assertions.assertEquals(0, pool.getHitCount());
+        Assertions.assertEquals(1, pool.getMissCount());
+        Assertions.assertEquals(0d, pool.getHitRatio());
+
+        pool.release(buffer);
+        Assertions.assertEquals(8192, pool.getRetainedBytes());
+        Assertions.assertEquals(1, pool.getPooledCount());
+
+        Assertions.assertEquals(4096, pool.acquire(10).length);
+        Assertions.assertSame(buffer, pool.acquire(8000));
+        Assertions.assertEquals(0, pool.getRetainedBytes());
+        Assertions.assertEquals(1, pool.getHitCount());
+        Assertions.assertEquals(2, pool.getMissCount());
+        Assertions.assertEquals(1d / 3, pool.getHitRatio());
+    }
+
+    @Test
+    public void test_oversized() {
+        BufferPool pool = new BufferPool(Long.MAX_VALUE, 1);
+
+        byte[] buffer = pool.acquire(BufferPool.MAX_BUFFER_SIZE + 1);
+        Assertions.assertEquals(BufferPool.MAX_BUFFER_SIZE + 1, buffer.length);
+
+        pool.release(buffer);
+        pool.release(new byte[BufferPool.MAX_BUFFER_SIZE * 2]);
+        pool.release(new byte[100]);
+        pool.release(new byte[5000]);
+        pool.release(null);
+        Assertions.assertEquals(0, pool.getRetainedBytes());
+        Assertions.assertEquals(0, pool.getPooledCount());
+    }
+
+    @Test
+    public void test_maxRetained() {
+        BufferPool pool = new BufferPool(10000, 4);
+
+        pool.release(new byte[4096]);
+        pool.release(new byte[4096]);
+        pool.release(new byte[4096]);
+        pool.release(new byte[8192]);
+        Assertions.assertEquals(8192, pool.getRetainedBytes());
+        Assertions.assertEquals(2, pool.getPooledCount());
+        Assertions.assertEquals(10000, pool.getMaxRetainedBytes());
+    }
+
+    @Test
+    public void test_readString() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+        char[] chars = new char[10000];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+
+        try {
+            Assertions.assertEquals(value, pool.readString(new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, -1));
+            Assertions.assertEquals(4096 + 8192 + 16384, pool.getRetainedBytes());
+
+            Assertions.assertEquals(value, pool.readString(new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, 10000));
+            Assertions.assertEquals(1, pool.getHitCount());
+
+            Assertions.assertEquals("", pool.readString(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_8, 0));
+            Assertions.assertEquals(2, pool.getHitCount());
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserInfo;
+import io.github.lc.oss.commons.identity.model.UserInfoSet;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class ChunkedUserInfoFetcherTest extends AbstractMockTest {
+    private List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("id" + i);
+        }
+        return ids;
+    }
+
+    private CompletableFuture<UserInfoSet> respond(Collection<String> ids) {
+        UserInfoSet userInfos = new UserInfoSet();
+        for (String id : ids) {
+            UserInfo userInfo = new UserInfo();
+            userInfo.setId(id);
+            userInfos.add(userInfo);
+        }
+        return CompletableFuture.completedFuture(userInfos);
+    }
+
+    @Test
+    public void test_fetch() {
+        List<Collection<String>> requests = new ArrayList<>();
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(10, 4, 0, ids -> {
+            requests.add(ids);
+            return this.respond(ids);
+        });
+
+        UserInfoSet result = fetcher.fetch(this.ids(25)).join();
+
+        Assertions.assertEquals(25, result.size());
+        Assertions.assertEquals(3, requests.size());
+        Assertions.assertEquals(10, requests.get(0).size());
+        Assertions.assertEquals(10, requests.get(1).size());
+        Assertions.assertEquals(5, requests.get(2).size());
+        Assertions.assertEquals(3, fetcher.getChunkCount());
+        Assertions.assertEquals(10, fetcher.getMaxChunkSize());
+    }
+
+    @Test
+    public void test_fetch_empty() {
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(10, 4, 0, ids -> {
+            Assertions.fail("Unexpected call");
+            return null;
+        });
+
+        Assertions.assertTrue(fetcher.fetch(new ArrayList<>()).join().isEmpty());
+    }
+
+    @Test
+    public void test_fetch_nullResponse() {
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(10, 4, 0, ids -> CompletableFuture.completedFuture(null));
+
+        Assertions.assertTrue(fetcher.fetch(this.ids(15)).join().isEmpty());
+    }
+
+    @Test
+    public void test_fetch_boundedParallelism() {
+        List<CompletableFuture<UserInfoSet>> pending = new ArrayList<>();
+        List<Collection<String>> requests = new ArrayList<>();
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(2, 2, 0, ids -> {
+            CompletableFuture<UserInfoSet> response = new CompletableFuture<>();
+            requests.add(ids);
+            pending.add(response);
+            return response;
+        });
+
+        CompletableFuture<UserInfoSet> result = fetcher.fetch(this.ids(7));
+        Assertions.assertEquals(2, pending.size());
+
+        pending.get(0).complete(this.respond(requests.get(0)).join());
+        Assertions.assertEquals(3, pending.size());
+        pending.get(1).complete(this.respond(requests.get(1)).join());
+        pending.get(2).complete(this.respond(requests.get(2)).join());
+        Assertions.assertEquals(4, pending.size());
+        Assertions.assertFalse(result.isDone());
+
+        pending.get(3).complete(this.respond(requests.get(3)).join());
+
+        Assertions.assertEquals(7, result.join().size());
+    }
+
+    @Test
+    public void test_fetch_chunkFails() {
+        List<Collection<String>> requests = new ArrayList<>();
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(5, 1, 0, ids -> {
+            requests.add(ids);
+            if (ids.contains("id5")) {
+                return CompletableFuture.failedFuture(new HttpException("Unavailable", 503, null));
+            }
+            return this.respond(ids);
+        });
+
+        try {
+            fetcher.fetch(this.ids(15)).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(503, ((HttpException) ex.getCause()).getStatus());
+        }
+
+        Assertions.assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void test_fetch_chunkFails_cancelsInFlight() {
+        List<CompletableFuture<UserInfoSet>> responses = new ArrayList<>();
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(5, 3, 0, ids -> {
+            CompletableFuture<UserInfoSet> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        });
+
+        CompletableFuture<UserInfoSet> result = fetcher.fetch(this.ids(50));
+        Assertions.assertEquals(3, responses.size());
+
+        responses.get(1).completeExceptionally(new HttpException("Unavailable", 503, null));
+
+        Assertions.assertTrue(result.isCompletedExceptionally());
+        Assertions.assertTrue(responses.get(0).isCancelled());
+        Assertions.assertTrue(responses.get(2).isCancelled());
+        Assertions.assertEquals(3, responses.size());
+        Assertions.assertEquals(3, fetcher.getChunkCount());
+    }
+
+    @Test
+    public void test_fetch_cancelled() {
+        List<CompletableFuture<UserInfoSet>> responses = new ArrayList<>();
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(5, 2, 0, ids -> {
+            CompletableFuture<UserInfoSet> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        });
+
+        CompletableFuture<UserInfoSet> result = fetcher.fetch(this.ids(50));
+        responses.get(0).complete(new UserInfoSet());
+        Assertions.assertEquals(3, responses.size());
+
+        result.cancel(true);
+
+        Assertions.assertTrue(responses.get(1).isCancelled());
+        Assertions.assertTrue(responses.get(2).isCancelled());
+        Assertions.assertEquals(3, responses.size());
+    }
+
+    @Test
+    public void test_fetch_fetchThrows() {
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(5, 1, 0, ids -> {
+            throw new HttpException("Unavailable", 503, null);
+        });
+
+        try {
+            fetcher.fetch(this.ids(10)).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(503, ((HttpException) ex.getCause()).getStatus());
+        }
+
+        Assertions.assertEquals(1, fetcher.getChunkCount());
+    }
+
+    @Test
+    public void test_fetch_adaptiveChunkSize() {
+        AtomicInteger delay = new AtomicInteger(50);
+        ChunkedUserInfoFetcher fetcher = new ChunkedUserInfoFetcher(64, 1, 20, ids -> {
+            waitFor(delay.get());
+            return this.respond(ids);
+        });
+
+        fetcher.fetch(this.ids(64 + 32)).join();
+        Assertions.assertEquals(16, fetcher.getChunkSize());
+
+        fetcher.fetch(this.ids(100)).join();
+        Assertions.assertEquals(4, fetcher.getChunkSize());
+
+        delay.set(0);
+        fetcher.fetch(this.ids(500)).join();
+        Assertions.assertEquals(64, fetcher.getChunkSize());
+    }
+}
@@ -0,0 +1,413 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class CircuitBreakerHttpServiceTest extends AbstractMockTest {
+    private static class TestHttpService implements HttpService {
+        private final List<String> calls = new ArrayList<>();
+        private RuntimeException error;
+        private boolean closed = false;
+
+        private <T> T call(String call, T result) {
+            this.calls.add(call);
+            if (this.error != null) {
+                throw this.error;
+            }
+            return result;
+        }
+
+        @Override
+        public void delete(String url, Map<String, String> headers) {
+            this.call("delete " + url, null);
+        }
+
+        @Override
+        public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+            return this.call("get " + url, responseType.cast("value"));
+        }
+
+        @Override
+        public <T> ConditionalResponse<T> getConditional(String url, Map<String, String> headers, Class<T> responseType, String etag) {
+            return this.call("getConditional " + url, ConditionalResponse.notModified(etag, null));
+        }
+
+        @Override
+        public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+            return this.call("post " + url, responseType.cast("value"));
+        }
+
+        @Override
+        public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+            return this.call("signed " + url, responseType.cast("value"));
+        }
+
+        @Override
+        public void put(String url, Map<String, String> headers, Jsonable requestBody) {
+            this.call("put " + url, null);
+        }
+
+        @Override
+        public void postStreaming(String url, Map<String, String> headers, Jsonable requestBody, ResponseReader responseReader) {
+            this.call("postStreaming " + url, null);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    private static class TestAsyncHttpService implements AsyncHttpService {
+        private final List<String> calls = new ArrayList<>();
+        private CompletableFuture<?> result;
+        private boolean closed = false;
+
+        @SuppressWarnings("unchecked")
+        private <T> CompletableFuture<T> call(String call) {
+            this.calls.add(call);
+            if (this.result == null) {
+                return (CompletableFuture<T>) CompletableFuture.completedFuture("value");
+            }
+            return (CompletableFuture<T>) this.result;
+        }
+
+        @Override
+        public CompletableFuture<Void> delete(String url, Map<String, String> headers) {
+            return this.call("delete " + url);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType) {
+            return this.call("get " + url);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+            return this.call("post " + url);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+            return this.call("signed " + url);
+        }
+
+        @Override
+        public CompletableFuture<Void> put(String url, Map<String, String> headers, Jsonable requestBody) {
+            return this.call("put " + url);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    private CircuitBreakerConfig newConfig() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowSize(2);
+        config.setMinimumCalls(2);
+        config.setOpenDuration(60000);
+        return config;
+    }
+
+    private void open(CircuitBreakerHttpService service, TestHttpService delegate, String url) {
+        delegate.error = new RuntimeException("Error making request", new IOException("BOOM!"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.get(url, null, String.class);
+                Assertions.fail("Expected exception");
+            } catch (RuntimeException ex) {
+                Assertions.assertSame(delegate.error, ex);
+            }
+        }
+        delegate.error = null;
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, service.getCircuitBreaker("GET", url).getState());
+    }
+
+    @Test
+    public void test_getEndpoint() {
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(new TestHttpService());
+
+        Assertions.assertEquals(IdentityMetrics.USER_INFO, service.getEndpoint("GET", "https://localhost:8080/svc/v1/userInfo/id?q=1"));
+        Assertions.assertEquals(IdentityMetrics.USER_INFOS, service.getEndpoint("POST", "https://localhost:8080/svc/v1/userInfo"));
+        Assertions.assertEquals(IdentityMetrics.TOKEN, service.getEndpoint("POST", "http://localhost/svc/v1/jwt/application"));
+        Assertions.assertEquals(IdentityMetrics.APPLICATION_INFO, service.getEndpoint("GET", "null/svc/v1/applicationInfo"));
+        Assertions.assertEquals(IdentityMetrics.USER_DATA_DELETE, service.getEndpoint("DELETE", "http://localhost/svc/v1/userData/id"));
+        Assertions.assertEquals("GET", service.getEndpoint("GET", "http://localhost"));
+    }
+
+    @Test
+    public void test_calls() {
+        TestHttpService delegate = new TestHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(delegate);
+        String url = "http://localhost/svc/v1/userInfo";
+
+        service.delete(url, null);
+        Assertions.assertEquals("value", service.get(url, null, String.class));
+        Assertions.assertTrue(service.getConditional(url, null, String.class, "etag").isNotModified());
+        Assertions.assertEquals("value", service.post(url, null, String.class, new UserData()));
+        Assertions.assertEquals("value", service.post(url, null, String.class, new UserData(), "key"));
+        service.put(url, null, new UserData());
+        service.postStreaming(url, null, new UserData(), reader -> Assertions.fail("Unexpected call"));
+
+        Assertions.assertEquals(7, delegate.calls.size());
+        Assertions.assertEquals(2, service.getCircuitBreakers().size());
+        Assertions.assertEquals(0d, service.getCircuitBreaker("GET", url).getFailureRate());
+
+        service.close();
+        Assertions.assertTrue(delegate.closed);
+    }
+
+    @Test
+    public void test_open() {
+        TestHttpService delegate = new TestHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(delegate, this.newConfig());
+        String url = "http://localhost/svc/v1/userInfo/a";
+
+        this.open(service, delegate, url);
+
+        try {
+            service.get("http://localhost/svc/v1/userInfo/b", null, String.class);
+            Assertions.fail("Expected exception");
+        } catch (CircuitBreakerOpenException ex) {
+            Assertions.assertEquals(IdentityMetrics.USER_INFO, ex.getEndpoint());
+            Assertions.assertTrue(ex.getRetryAfter() > 0);
+        }
+
+        try {
+            service.getConditional(url, null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (CircuitBreakerOpenException ex) {
+            Assertions.assertEquals(IdentityMetrics.USER_INFO, ex.getEndpoint());
+        }
+
+        try {
+            service.put(url, null, new UserData());
+            Assertions.fail("Expected exception");
+        } catch (CircuitBreakerOpenException ex) {
+            Assertions.assertEquals(IdentityMetrics.USER_INFO, ex.getEndpoint());
+        }
+        Assertions.assertEquals(2, delegate.calls.size());
+
+        /*
+         * other endpoints are not affected
+         */
+        Assertions.assertEquals("value", service.get("http://localhost/svc/v1/applicationInfo", null, String.class));
+        Assertions.assertEquals(2, service.getCircuitBreakers().size());
+    }
+
+    @Test
+    public void test_fallback() {
+        TestHttpService delegate = new TestHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(delegate, this.newConfig()) {
+            @Override
+            protected <T> T fallback(String url, Class<T> responseType, CircuitBreakerOpenException ex) {
+                return responseType == String.class ? responseType.cast("fallback") : null;
+            }
+        };
+        String url = "http://localhost/svc/v1/userInfo";
+
+        this.open(service, delegate, url);
+
+        Assertions.assertEquals("fallback", service.get(url, null, String.class));
+        Assertions.assertEquals("fallback", service.getConditional(url, null, String.class, null).getValue());
+        service.delete(url, null);
+        Assertions.assertEquals(2, delegate.calls.size());
+    }
+
+    @Test
+    public void test_isFailure() {
+        TestHttpService delegate = new TestHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(delegate, this.newConfig());
+        String url = "http://localhost/svc/v1/userInfo";
+
+        Assertions.assertTrue(service.isFailure(new RuntimeException("Error making request")));
+        Assertions.assertTrue(service.isFailure(new HttpException("Error making request", 500, null)));
+        Assertions.assertTrue(service.isFailure(new HttpException("Error making request", 503, null)));
+        Assertions.assertTrue(service.isFailure(new HttpException("Error making request", 429, null)));
+        Assertions.assertFalse(service.isFailure(new HttpException("Error making request", 401, null)));
+        Assertions.assertFalse(service.isFailure(new HttpException("Error making request", 404, null)));
+
+        delegate.error = new HttpException("Error making request", 404, null);
+        for (int i = 0; i < 4; i++) {
+            try {
+                service.get(url, null, String.class);
+                Assertions.fail("Expected exception");
+            } catch (HttpException ex) {
+                Assertions.assertEquals(404, ex.getStatus());
+            }
+        }
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitBreaker("GET", url).getState());
+    }
+
+    @Test
+    public void test_halfOpen() {
+        long[] now = new long[] { 1000 };
+        TestHttpService delegate = new TestHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(delegate, this.newConfig()) {
+            @Override
+            CircuitBreaker newCircuitBreaker(String endpoint) {
+                return new CircuitBreaker(endpoint, CircuitBreakerHttpServiceTest.this.newConfig()) {
+                    @Override
+                    long now() {
+                        return now[0];
+                    }
+                };
+            }
+        };
+        String url = "http://localhost/svc/v1/userInfo";
+
+        this.open(service, delegate, url);
+
+        now[0] += 60000;
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("value", service.get(url, null, String.class));
+        }
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitBreaker("GET", url).getState());
+        Assertions.assertEquals(5, delegate.calls.size());
+    }
+
+    @Test
+    public void test_async_calls() {
+        TestAsyncHttpService delegate = new TestAsyncHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(new TestHttpService());
+        AsyncHttpService async = service.async(delegate);
+        String url = "http://localhost/svc/v1/userData/id";
+
+        async.delete(url, null).join();
+        Assertions.assertEquals("value", async.get(url, null, String.class).join());
+        Assertions.assertEquals("value", async.post(url, null, String.class, new UserData()).join());
+        Assertions.assertEquals("value", async.post(url, null, String.class, new UserData(), "key").join());
+        async.put(url, null, new UserData()).join();
+
+        Assertions.assertEquals(5, delegate.calls.size());
+        Assertions.assertEquals(2, service.getCircuitBreakers().size());
+        Assertions.assertEquals(0d, service.getCircuitBreaker("PUT", url).getFailureRate());
+        Assertions.assertSame(delegate, CircuitBreakerHttpService.getDelegate(async));
+        Assertions.assertSame(delegate, CircuitBreakerHttpService.getDelegate(delegate));
+
+        async.close();
+        Assertions.assertTrue(delegate.closed);
+    }
+
+    @Test
+    public void test_async_open() {
+        TestHttpService syncDelegate = new TestHttpService();
+        TestAsyncHttpService delegate = new TestAsyncHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(syncDelegate, this.newConfig());
+        AsyncHttpService async = service.async(delegate);
+        String url = "http://localhost/svc/v1/userInfo/a";
+
+        delegate.result = CompletableFuture.failedFuture(new RuntimeException("Error making request"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                async.get(url, null, String.class).join();
+                Assertions.fail("Expected exception");
+            } catch (CompletionException ex) {
+                Assertions.assertEquals("Error making request", ex.getCause().getMessage());
+            }
+        }
+        delegate.result = null;
+
+        /*
+         * sync and async calls share the circuit
+         */
+        try {
+            async.get(url, null, String.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertTrue(ex.getCause() instanceof CircuitBreakerOpenException);
+        }
+        try {
+            service.get(url, null, String.class);
+            Assertions.fail("Expected exception");
+        } catch (CircuitBreakerOpenException ex) {
+            Assertions.assertEquals(IdentityMetrics.USER_INFO, ex.getEndpoint());
+        }
+        Assertions.assertEquals(2, delegate.calls.size());
+        Assertions.assertTrue(syncDelegate.calls.isEmpty());
+        Assertions.assertEquals(1, service.getCircuitBreakers().size());
+    }
+
+    @Test
+    public void test_async_fallback() {
+        TestAsyncHttpService delegate = new TestAsyncHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(new TestHttpService(), this.newConfig()) {
+            @Override
+            protected <T> T fallback(String url, Class<T> responseType, CircuitBreakerOpenException ex) {
+                return responseType == String.class ? responseType.cast("fallback") : null;
+            }
+        };
+        AsyncHttpService async = service.async(delegate);
+        String url = "http://localhost/svc/v1/userInfo";
+
+        delegate.result = CompletableFuture.failedFuture(new HttpException("Error making request", 503, null));
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertTrue(async.get(url, null, String.class).isCompletedExceptionally());
+        }
+        delegate.result = null;
+
+        Assertions.assertEquals("fallback", async.get(url, null, String.class).join());
+        Assertions.assertNull(async.delete(url, null).join());
+        Assertions.assertEquals(2, delegate.calls.size());
+    }
+
+    @Test
+    public void test_async_notFailures() {
+        TestAsyncHttpService delegate = new TestAsyncHttpService();
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(new TestHttpService(), this.newConfig());
+        AsyncHttpService async = service.async(delegate);
+        String url = "http://localhost/svc/v1/userInfo";
+
+        delegate.result = CompletableFuture.failedFuture(new HttpException("Error making request", 404, null));
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertTrue(async.get(url, null, String.class).isCompletedExceptionally());
+        }
+
+        /*
+         * the delegate's future is returned, cancelling it is not recorded
+         */
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        delegate.result = pending;
+        CompletableFuture<String> result = async.get(url, null, String.class);
+        Assertions.assertSame(pending, result);
+        result.cancel(true);
+
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitBreaker("GET", url).getState());
+        Assertions.assertEquals(0d, service.getCircuitBreaker("GET", url).getFailureRate());
+    }
+
+    @Test
+    public void test_async_callThrows() {
+        CircuitBreakerHttpService service = new CircuitBreakerHttpService(new TestHttpService(), this.newConfig());
+        AsyncHttpService async = service.async(new TestAsyncHttpService() {
+            @Override
+            public <T> CompletableFuture<T> get(String url, Map<String, String> headers, Class<T> responseType) {
+                throw new IllegalStateException("HttpService is closed");
+            }
+        });
+        String url = "http://localhost/svc/v1/userInfo";
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                async.get(url, null, String.class);
+                Assertions.fail("Expected exception");
+            } catch (IllegalStateException ex) {
+                Assertions.assertEquals("HttpService is closed", ex.getMessage());
+            }
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, service.getCircuitBreaker("GET", url).getState());
+    }
+}
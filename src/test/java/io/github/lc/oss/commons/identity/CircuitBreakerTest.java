@@ -0,0 +1,200 @@
+package io.github.lc.oss.commons.identity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class CircuitBreakerTest extends AbstractMockTest {
+    private static class TestCircuitBreaker extends CircuitBreaker {
+        private long now = 1000;
+
+        public TestCircuitBreaker(CircuitBreakerConfig config) {
+            super("localhost/svc/v1/userInfo", config);
+        }
+
+        @Override
+        long now() {
+            return this.now;
+        }
+    }
+
+    private CircuitBreakerConfig newConfig() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(0.5);
+        config.setSlowCallDuration(100);
+        config.setSlowCallRateThreshold(0.75);
+        config.setOpenDuration(1000);
+        config.setHalfOpenCalls(2);
+        return config;
+    }
+
+    private void expectOpen(CircuitBreaker circuitBreaker, long retryAfter) {
+        try {
+            circuitBreaker.acquire();
+            Assertions.fail("Expected exception");
+        } catch (CircuitBreakerOpenException ex) {
+            Assertions.assertEquals("Circuit breaker open for localhost/svc/v1/userInfo", ex.getMessage());
+            Assertions.assertEquals("localhost/svc/v1/userInfo", ex.getEndpoint());
+            Assertions.assertEquals(retryAfter, ex.getRetryAfter());
+        }
+    }
+
+    @Test
+    public void test_closed() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+        Assertions.assertEquals("localhost/svc/v1/userInfo", circuitBreaker.getEndpoint());
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(0d, circuitBreaker.getFailureRate());
+
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(1d / 3, circuitBreaker.getFailureRate(), 0.0001);
+
+        /*
+         * window is full, the oldest outcome is evicted as new ones are recorded
+         */
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        Assertions.assertEquals(0.25d, circuitBreaker.getFailureRate(), 0.0001);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(0, circuitBreaker.getOpenedCount());
+    }
+
+    @Test
+    public void test_open_failureRate() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assertions.assertEquals(1, circuitBreaker.getOpenedCount());
+
+        circuitBreaker.now += 400;
+        this.expectOpen(circuitBreaker, 600);
+        this.expectOpen(circuitBreaker, 600);
+        Assertions.assertEquals(2, circuitBreaker.getRejectedCount());
+    }
+
+    @Test
+    public void test_open_slowCallRate() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+
+        circuitBreaker.onResult(circuitBreaker.acquire(), 100, false);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 150, false);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 500, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assertions.assertEquals(0d, circuitBreaker.getSlowCallRate());
+    }
+
+    @Test
+    public void test_halfOpen_close() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        circuitBreaker.now += 1000;
+        long trial1 = circuitBreaker.acquire();
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        long trial2 = circuitBreaker.acquire();
+        this.expectOpen(circuitBreaker, 0);
+
+        circuitBreaker.onResult(trial1, 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onResult(trial2, 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(0d, circuitBreaker.getFailureRate());
+    }
+
+    @Test
+    public void test_halfOpen_reopen() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        }
+
+        circuitBreaker.now += 1000;
+        long trial1 = circuitBreaker.acquire();
+        long trial2 = circuitBreaker.acquire();
+        circuitBreaker.onResult(trial1, 200, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        Assertions.assertEquals(2, circuitBreaker.getOpenedCount());
+
+        /*
+         * outcome of a trial from before the circuit re-opened is ignored
+         */
+        circuitBreaker.onResult(trial2, 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        this.expectOpen(circuitBreaker, 1000);
+    }
+
+    @Test
+    public void test_halfOpen_release() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        }
+
+        circuitBreaker.now += 1000;
+        long trial1 = circuitBreaker.acquire();
+        long trial2 = circuitBreaker.acquire();
+        this.expectOpen(circuitBreaker, 0);
+
+        circuitBreaker.release(trial1);
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        long trial3 = circuitBreaker.acquire();
+        circuitBreaker.onResult(trial2, 10, false);
+        circuitBreaker.onResult(trial3, 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        /*
+         * nothing to return once closed
+         */
+        circuitBreaker.release(circuitBreaker.acquire());
+        Assertions.assertEquals(0d, circuitBreaker.getFailureRate());
+    }
+
+    @Test
+    public void test_staleResult() {
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(this.newConfig());
+        long stale = circuitBreaker.acquire();
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.onResult(circuitBreaker.acquire(), 10, true);
+        }
+
+        circuitBreaker.now += 1000;
+        long trial = circuitBreaker.acquire();
+        circuitBreaker.onResult(stale, 10, true);
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+
+        circuitBreaker.onResult(trial, 10, false);
+        circuitBreaker.onResult(circuitBreaker.acquire(), 10, false);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void test_thresholdsDisabled() {
+        CircuitBreakerConfig config = this.newConfig();
+        config.setFailureRateThreshold(0);
+        config.setSlowCallRateThreshold(0);
+        TestCircuitBreaker circuitBreaker = new TestCircuitBreaker(config);
+
+        for (int i = 0; i < 8; i++) {
+            circuitBreaker.onResult(circuitBreaker.acquire(), 500, true);
+        }
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        Assertions.assertEquals(1d, circuitBreaker.getFailureRate());
+        Assertions.assertEquals(1d, circuitBreaker.getSlowCallRate());
+    }
+}
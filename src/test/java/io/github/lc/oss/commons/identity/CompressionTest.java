@@ -0,0 +1,82 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class CompressionTest extends AbstractMockTest {
+    @Test
+    public void test_decode_identity() {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        try {
+            Assertions.assertSame(in, Compression.decode(in, null));
+            Assertions.assertSame(in, Compression.decode(in, ""));
+            Assertions.assertSame(in, Compression.decode(in, " Identity "));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_decode_gzip() {
+        byte[] compressed = Compression.gzip("{\"body\":[]}".getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream in = Compression.decode(new ByteArrayInputStream(compressed), "gzip")) {
+            Assertions.assertEquals("{\"body\":[]}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+
+        try (InputStream in = Compression.decode(new ByteArrayInputStream(compressed), "X-GZIP")) {
+            Assertions.assertEquals("{\"body\":[]}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_decode_deflate() {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed)) {
+            out.write("{\"body\":[]}".getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+
+        try (InputStream in = Compression.decode(new ByteArrayInputStream(compressed.toByteArray()), "deflate")) {
+            Assertions.assertEquals("{\"body\":[]}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_decode_unsupported() {
+        try {
+            Compression.decode(new ByteArrayInputStream(new byte[0]), "br");
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Unsupported content encoding: br", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_gzip_ratio() {
+        StringBuilder json = new StringBuilder("{\"body\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append("{\"id\":\"user-").append(i).append("\",\"permissions\":[\"Read\",\"Write\"],\"userData\":{}},");
+        }
+        json.append("{}]}");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+
+        Assertions.assertTrue(Compression.gzip(bytes).length * 10 < bytes.length);
+    }
+}
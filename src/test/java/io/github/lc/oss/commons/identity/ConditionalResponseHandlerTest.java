@@ -0,0 +1,116 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+
+import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class ConditionalResponseHandlerTest extends AbstractMockTest {
+    @Mock
+    private JsonService jsonService;
+    @Mock
+    private ClassicHttpResponse response;
+    @Mock
+    private HttpEntity entity;
+
+    private ConditionalResponseHandler<String> handler;
+
+    @BeforeEach
+    public void setup() {
+        this.handler = new ConditionalResponseHandler<>(new StringResponseHandler(this.jsonService), new AbstractHttpClientResponseHandler<String>() {
+            @Override
+            public String handleEntity(HttpEntity entity) throws IOException {
+                return "body";
+            }
+        }, "\"v1\"");
+    }
+
+    @Test
+    public void test_handleResponse_ok() {
+        Header etag = Mockito.mock(Header.class);
+        Header cacheControl = Mockito.mock(Header.class);
+        Mockito.when(etag.getValue()).thenReturn("\"v2\"");
+        Mockito.when(cacheControl.getValue()).thenReturn("max-age=10");
+        Mockito.when(this.response.getCode()).thenReturn(HttpStatus.SC_OK);
+        Mockito.when(this.response.getEntity()).thenReturn(this.entity);
+        Mockito.when(this.response.getFirstHeader(HttpHeaders.ETAG)).thenReturn(etag);
+        Mockito.when(this.response.getFirstHeader(HttpHeaders.CACHE_CONTROL)).thenReturn(cacheControl);
+
+        try {
+            ConditionalResponse<String> result = this.handler.handleResponse(this.response);
+            Assertions.assertEquals("body", result.getValue());
+            Assertions.assertEquals("\"v2\"", result.getETag());
+            Assertions.assertEquals(10000, result.getMaxAge());
+            Assertions.assertFalse(result.isNotModified());
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleResponse_ok_noEntity() {
+        Mockito.when(this.response.getCode()).thenReturn(HttpStatus.SC_OK);
+
+        try {
+            ConditionalResponse<String> result = this.handler.handleResponse(this.response);
+            Assertions.assertNull(result.getValue());
+            Assertions.assertNull(result.getETag());
+            Assertions.assertEquals(-1, result.getMaxAge());
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleResponse_notModified() {
+        Mockito.when(this.response.getCode()).thenReturn(HttpStatus.SC_NOT_MODIFIED);
+
+        try {
+            ConditionalResponse<String> result = this.handler.handleResponse(this.response);
+            Assertions.assertNull(result.getValue());
+            Assertions.assertEquals("\"v1\"", result.getETag());
+            Assertions.assertTrue(result.isNotModified());
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleResponse_noContent() {
+        Mockito.when(this.response.getCode()).thenReturn(HttpStatus.SC_NO_CONTENT);
+
+        try {
+            ConditionalResponse<String> result = this.handler.handleResponse(this.response);
+            Assertions.assertNull(result.getValue());
+            Assertions.assertFalse(result.isNotModified());
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleResponse_error() {
+        Mockito.when(this.response.getCode()).thenReturn(HttpStatus.SC_NOT_FOUND);
+
+        try {
+            this.handler.handleResponse(this.response);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(HttpStatus.SC_NOT_FOUND, ex.getStatus());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.lc.oss.commons.identity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class ConditionalResponseTest extends AbstractMockTest {
+    @Test
+    public void test_getMaxAge() {
+        Assertions.assertEquals(-1, ConditionalResponse.getMaxAge(null));
+        Assertions.assertEquals(-1, ConditionalResponse.getMaxAge("private"));
+        Assertions.assertEquals(-1, ConditionalResponse.getMaxAge("max-age=junk"));
+        Assertions.assertEquals(60000, ConditionalResponse.getMaxAge("private, Max-Age=60"));
+        Assertions.assertEquals(60000, ConditionalResponse.getMaxAge("max-age=\"60\""));
+        Assertions.assertEquals(0, ConditionalResponse.getMaxAge("max-age=-5"));
+        Assertions.assertEquals(0, ConditionalResponse.getMaxAge("max-age=60, no-cache"));
+    }
+
+    @Test
+    public void test_constructors() {
+        ConditionalResponse<String> response = new ConditionalResponse<>("value");
+        Assertions.assertEquals("value", response.getValue());
+        Assertions.assertNull(response.getETag());
+        Assertions.assertEquals(-1, response.getMaxAge());
+        Assertions.assertFalse(response.isNoStore());
+        Assertions.assertFalse(response.isNotModified());
+
+        response = new ConditionalResponse<>("value", "\"v1\"", "no-store");
+        Assertions.assertEquals("\"v1\"", response.getETag());
+        Assertions.assertTrue(response.isNoStore());
+        Assertions.assertFalse(response.isNotModified());
+
+        response = ConditionalResponse.notModified("\"v1\"", "max-age=5");
+        Assertions.assertNull(response.getValue());
+        Assertions.assertEquals("\"v1\"", response.getETag());
+        Assertions.assertEquals(5000, response.getMaxAge());
+        Assertions.assertTrue(response.isNotModified());
+    }
+}
@@ -0,0 +1,267 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class HedgingPolicyTest extends AbstractMockTest {
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    public void setup() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.scheduler.shutdownNow();
+    }
+
+    private HedgingPolicy newPolicy() {
+        HedgingPolicy policy = new HedgingPolicy();
+        policy.setMinSamples(10);
+        policy.setWindowSize(20);
+        policy.setMinDelay(1);
+        return policy;
+    }
+
+    private void warmUp(HedgingPolicy policy, String operation, int count) {
+        for (int i = 0; i < count; i++) {
+            policy.record(operation, 0);
+        }
+    }
+
+    @Test
+    public void test_getDelay() {
+        HedgingPolicy policy = this.newPolicy();
+        Assertions.assertEquals(-1, policy.getDelay("op"));
+
+        this.warmUp(policy, "op", 9);
+        Assertions.assertEquals(-1, policy.getDelay("op"));
+
+        this.warmUp(policy, "op", 1);
+        Assertions.assertEquals(1, policy.getDelay("op"));
+        Assertions.assertEquals(-1, policy.getDelay("other"));
+
+        policy.setMinDelay(50);
+        Assertions.assertEquals(50, policy.getDelay("op"));
+
+        policy.setMaxDelay(20);
+        Assertions.assertEquals(20, policy.getDelay("op"));
+
+        Assertions.assertEquals(0, policy.getCallCount());
+    }
+
+    @Test
+    public void test_getDelay_percentile() {
+        HedgingPolicy policy = this.newPolicy();
+        policy.setPercentile(0.9);
+        for (int i = 1; i <= 20; i++) {
+            policy.record("op", i * 10);
+        }
+        Assertions.assertEquals(180, policy.getDelay("op"));
+
+        /* window slides, old samples drop out */
+        for (int i = 0; i < 20; i++) {
+            policy.record("op", 5);
+        }
+        Assertions.assertEquals(5, policy.getDelay("op"));
+    }
+
+    @Test
+    public void test_hedge_notEnoughSamples() {
+        HedgingPolicy policy = this.newPolicy();
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = policy.hedge("op", () -> {
+            calls.incrementAndGet();
+            return slow;
+        }, this.scheduler);
+
+        Assertions.assertFalse(result.isDone());
+        slow.complete("slow");
+        Assertions.assertEquals("slow", Futures.await(result));
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void test_hedge_wins() {
+        HedgingPolicy policy = this.newPolicy();
+        this.warmUp(policy, "op", 10);
+
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> result = policy.hedge("op", () -> {
+            if (calls.incrementAndGet() == 1) {
+                return slow;
+            }
+            return CompletableFuture.completedFuture("hedge");
+        }, this.scheduler);
+
+        Assertions.assertEquals("hedge", Futures.await(result));
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertTrue(slow.isCancelled());
+        Assertions.assertEquals(1, policy.getHedgeCount());
+        Assertions.assertEquals(1, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void test_hedge_recordsCallLatency() {
+        HedgingPolicy policy = this.newPolicy();
+        policy.setMinDelay(50);
+        policy.setBudgetRatio(1);
+        this.warmUp(policy, "op", 10);
+
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            CompletableFuture<String> result = policy.hedge("op", () -> {
+                if (calls.incrementAndGet() % 2 == 1) {
+                    return new CompletableFuture<>();
+                }
+                return CompletableFuture.completedFuture("hedge");
+            }, this.scheduler);
+            Assertions.assertEquals("hedge", Futures.await(result));
+        }
+
+        /* the hedge answered at once but the calls took at least the hedge delay */
+        policy.setMinDelay(0);
+        Assertions.assertTrue(policy.getDelay("op") >= 50);
+        Assertions.assertEquals(10, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void test_hedge_firstWins() throws Exception {
+        HedgingPolicy policy = this.newPolicy();
+        this.warmUp(policy, "op", 10);
+
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> result = policy.hedge("op", () -> calls.incrementAndGet() == 1 ? first : hedge, this.scheduler);
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (calls.get() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(1);
+        }
+
+        first.complete("first");
+        Assertions.assertEquals("first", Futures.await(result));
+        Assertions.assertTrue(hedge.isCancelled());
+        Assertions.assertEquals(1, policy.getHedgeCount());
+        Assertions.assertEquals(0, policy.getHedgeWinCount());
+    }
+
+    @Test
+    public void test_hedge_failures() throws Exception {
+        HedgingPolicy policy = this.newPolicy();
+        this.warmUp(policy, "op", 10);
+
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> hedge = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> result = policy.hedge("op", () -> calls.incrementAndGet() == 1 ? first : hedge, this.scheduler);
+
+        long timeout = System.currentTimeMillis() + 5000;
+        while (calls.get() < 2 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(1);
+        }
+
+        first.completeExceptionally(new HttpException("Error making request", 503, null));
+        Assertions.assertFalse(result.isDone());
+
+        RuntimeException error = new RuntimeException("boom");
+        hedge.completeExceptionally(error);
+        try {
+            Futures.await(result);
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertSame(error, ex);
+        }
+    }
+
+    @Test
+    public void test_hedge_failureBeforeHedge() {
+        HedgingPolicy policy = this.newPolicy();
+        this.warmUp(policy, "op", 10);
+
+        RuntimeException error = new RuntimeException("boom");
+        CompletableFuture<String> result = policy.hedge("op", () -> {
+            throw error;
+        }, this.scheduler);
+
+        try {
+            Futures.await(result);
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertSame(error, ex);
+        }
+        Assertions.assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void test_hedge_budget() throws Exception {
+        HedgingPolicy policy = this.newPolicy();
+        policy.setBudgetCapacity(1);
+        policy.setBudgetRatio(0);
+        this.warmUp(policy, "op", 10);
+
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> result = policy.hedge("op", () -> calls.incrementAndGet() == 1 ? first : CompletableFuture.completedFuture("hedge"),
+                this.scheduler);
+        Assertions.assertEquals("hedge", Futures.await(result));
+
+        CompletableFuture<String> second = new CompletableFuture<>();
+        result = policy.hedge("op", () -> second, this.scheduler);
+        long timeout = System.currentTimeMillis() + 5000;
+        while (policy.getBudgetExhaustedCount() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(1);
+        }
+        Assertions.assertFalse(result.isDone());
+        second.complete("second");
+        Assertions.assertEquals("second", Futures.await(result));
+
+        Assertions.assertEquals(1, policy.getHedgeCount());
+        Assertions.assertEquals(1, policy.getBudgetExhaustedCount());
+    }
+
+    @Test
+    public void test_hedge_schedulerShutdown() {
+        HedgingPolicy policy = this.newPolicy();
+        this.warmUp(policy, "op", 10);
+        this.scheduler.shutdown();
+
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> result = policy.hedge("op", () -> slow, this.scheduler);
+        slow.complete("slow");
+        Assertions.assertEquals("slow", Futures.await(result));
+        Assertions.assertEquals(0, policy.getHedgeCount());
+    }
+
+    @Test
+    public void test_hedge_cancelsTimer() throws Exception {
+        HedgingPolicy policy = this.newPolicy();
+        policy.setMinDelay(TimeUnit.MINUTES.toMillis(1));
+        this.warmUp(policy, "op", 10);
+
+        CompletableFuture<String> slow = new CompletableFuture<>();
+        CompletableFuture<String> result = policy.hedge("op", () -> slow, this.scheduler);
+        slow.complete("slow");
+        Assertions.assertEquals("slow", Futures.await(result));
+
+        this.scheduler.shutdown();
+        Assertions.assertTrue(this.scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, policy.getHedgeCount());
+    }
+}
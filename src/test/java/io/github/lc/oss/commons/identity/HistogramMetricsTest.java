@@ -0,0 +1,78 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class HistogramMetricsTest extends AbstractMockTest {
+    @Test
+    public void test_endpoints() {
+        Assertions.assertEquals("GET", Endpoints.of("GET", null));
+        Assertions.assertEquals("GET", Endpoints.of("GET", "http://localhost/api"));
+        Assertions.assertEquals("POST", Endpoints.of("POST", "/svc/v1/other"));
+        Assertions.assertEquals(IdentityMetrics.TOKEN, Endpoints.of("POST", "http://localhost/svc/v1/jwt/application"));
+        Assertions.assertEquals(IdentityMetrics.REISSUE, Endpoints.of("POST", "/svc/v1/jwt/reissue"));
+        Assertions.assertEquals(IdentityMetrics.APPLICATION_INFO, Endpoints.of("GET", "/svc/v1/applicationInfo"));
+        Assertions.assertEquals(IdentityMetrics.USER_INFO, Endpoints.of("GET", "/svc/v1/userInfo/euid"));
+        Assertions.assertEquals(IdentityMetrics.USER_INFOS, Endpoints.of("POST", "/svc/v1/userInfo"));
+        Assertions.assertEquals(IdentityMetrics.USER_DATA_PUT, Endpoints.of("PUT", "/svc/v1/userData/euid"));
+        Assertions.assertEquals(IdentityMetrics.USER_DATA_DELETE, Endpoints.of("DELETE", "/svc/v1/userData/euid/key"));
+    }
+
+    @Test
+    public void test_record() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        Assertions.assertNull(metrics.getEndpoint(IdentityMetrics.USER_INFO));
+
+        metrics.onRequest(IdentityMetrics.USER_INFO, 200, 1000, 0, 100);
+        metrics.onRequest(IdentityMetrics.USER_INFO, 200, 3000, 0, -1);
+        metrics.onRequest(IdentityMetrics.USER_INFO, 503, 2000, 0, 10);
+        metrics.onRequest(IdentityMetrics.USER_INFO, 0, 5000, 0, -1);
+        metrics.onRequest(IdentityMetrics.USER_INFO, 999, 1000, 0, -1);
+        metrics.onRetry(IdentityMetrics.USER_INFO);
+        metrics.onTokenRefresh(IdentityMetrics.USER_INFO);
+        metrics.onRequest(IdentityMetrics.USER_DATA_PUT, 204, 1000, 50, 0);
+
+        EndpointMetrics userInfo = metrics.getEndpoint(IdentityMetrics.USER_INFO);
+        Assertions.assertEquals(5, userInfo.getLatency().getCount());
+        Assertions.assertEquals(5000, userInfo.getLatency().getMax());
+        Assertions.assertEquals(2, userInfo.getStatusCount(200));
+        Assertions.assertEquals(1, userInfo.getStatusCount(503));
+        Assertions.assertEquals(1, userInfo.getStatusCount(0));
+        Assertions.assertEquals(0, userInfo.getStatusCount(999));
+        Assertions.assertEquals(0, userInfo.getStatusCount(-1));
+        Assertions.assertEquals(1, userInfo.getRetryCount());
+        Assertions.assertEquals(1, userInfo.getTokenRefreshCount());
+        Assertions.assertEquals(0, userInfo.getRequestBytes());
+        Assertions.assertEquals(110, userInfo.getResponseBytes());
+
+        Map<Integer, Long> statuses = userInfo.getStatusCounts();
+        Assertions.assertEquals(3, statuses.size());
+        Assertions.assertEquals(Long.valueOf(2), statuses.get(200));
+
+        EndpointMetrics userData = metrics.getEndpoint(IdentityMetrics.USER_DATA_PUT);
+        Assertions.assertEquals(50, userData.getRequestBytes());
+        Assertions.assertEquals(0, userData.getRetryCount());
+        Assertions.assertEquals(2, metrics.getEndpoints().size());
+
+        try {
+            metrics.getEndpoints().clear();
+            Assertions.fail("Expected exception");
+        } catch (UnsupportedOperationException ex) {
+            /* expected */
+        }
+    }
+
+    @Test
+    public void test_defaults() {
+        IdentityMetrics metrics = new IdentityMetrics() {
+        };
+
+        metrics.onRequest(IdentityMetrics.TOKEN, 200, 1, 1, 1);
+        metrics.onRetry(IdentityMetrics.TOKEN);
+        metrics.onTokenRefresh(IdentityMetrics.TOKEN);
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.lc.oss.commons.identity;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class HttpExceptionTest extends AbstractMockTest {
+    @Test
+    public void test_constructors() {
+        HttpException ex = new HttpException("Error making request", 500, null);
+        Assertions.assertEquals("Error making request", ex.getMessage());
+        Assertions.assertEquals(500, ex.getStatus());
+        Assertions.assertNull(ex.getMessages());
+        Assertions.assertEquals(-1, ex.getRetryAfter());
+
+        ex = new HttpException("Error making request", 429, null, 2000);
+        Assertions.assertEquals(429, ex.getStatus());
+        Assertions.assertEquals(2000, ex.getRetryAfter());
+    }
+
+    @Test
+    public void test_parseRetryAfter() {
+        Assertions.assertEquals(-1, HttpException.parseRetryAfter(null));
+        Assertions.assertEquals(-1, HttpException.parseRetryAfter(" "));
+        Assertions.assertEquals(-1, HttpException.parseRetryAfter("soon"));
+        Assertions.assertEquals(-1, HttpException.parseRetryAfter("-5"));
+        Assertions.assertEquals(0, HttpException.parseRetryAfter("0"));
+        Assertions.assertEquals(120000, HttpException.parseRetryAfter(" 120 "));
+    }
+
+    @Test
+    public void test_parseRetryAfter_date() {
+        String future = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(60));
+        long retryAfter = HttpException.parseRetryAfter(future);
+        Assertions.assertTrue(retryAfter > 55000 && retryAfter <= 60000);
+
+        Assertions.assertEquals(0, HttpException.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+
+public class HttpExchangeTest extends AbstractMockTest {
+    @Test
+    public void test_end_metrics() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        HttpExchange exchange = new HttpExchange(metrics, "GET", "/svc/v1/userInfo/euid");
+        Assertions.assertTrue(exchange.isRecording());
+        EndpointMetrics endpoint = metrics.getEndpoint(IdentityMetrics.USER_INFO);
+        Assertions.assertEquals(1, endpoint.getInFlightCount());
+
+        exchange.end(200, 0, 12);
+
+        Assertions.assertEquals(0, endpoint.getInFlightCount());
+        Assertions.assertEquals(1, endpoint.getLatency().getCount());
+        Assertions.assertEquals(1, endpoint.getStatusCount(200));
+        Assertions.assertEquals(12, endpoint.getResponseBytes());
+    }
+
+    @Test
+    public void test_end_disabled() {
+        HttpExchange exchange = new HttpExchange(null, "GET", "/svc/v1/userInfo/euid");
+        Assertions.assertFalse(exchange.isRecording());
+        Assertions.assertNull(this.getField("event", exchange));
+
+        exchange.end(200, 0, 12);
+    }
+
+    @Test
+    public void test_events() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(HttpExchangeEvent.class);
+            recording.enable(TokenClearEvent.class);
+            recording.enable(CacheEvent.class);
+            recording.start();
+
+            HttpExchange exchange = new HttpExchange(null, "POST", "http://localhost/svc/v1/userInfo");
+            Assertions.assertTrue(exchange.isRecording());
+            exchange.end(503, 20, -1);
+            TokenClearEvent.commit(IdentityMetrics.USER_DATA_PUT);
+            CacheEvent.commit("userInfo", true);
+
+            List<RecordedEvent> events = RecordedEvents.read(recording);
+            Assertions.assertEquals(3, events.size());
+
+            RecordedEvent http = events.stream().filter(e -> e.getEventType().getName().endsWith(".HttpExchange")).findFirst().get();
+            Assertions.assertEquals(IdentityMetrics.USER_INFOS, http.getString("endpoint"));
+            Assertions.assertEquals("POST", http.getString("method"));
+            Assertions.assertEquals(503, http.getInt("status"));
+            Assertions.assertEquals(20, http.getLong("requestBytes"));
+            Assertions.assertEquals(-1, http.getLong("responseBytes"));
+
+            RecordedEvent clear = events.stream().filter(e -> e.getEventType().getName().endsWith(".TokenClear")).findFirst().get();
+            Assertions.assertEquals(IdentityMetrics.USER_DATA_PUT, clear.getString("endpoint"));
+
+            RecordedEvent cache = events.stream().filter(e -> e.getEventType().getName().endsWith(".Cache")).findFirst().get();
+            Assertions.assertEquals("userInfo", cache.getString("cache"));
+            Assertions.assertTrue(cache.getBoolean("hit"));
+        }
+    }
+
+    @Test
+    public void test_events_cacheDisabledByDefault() throws Exception {
+        try (Recording recording = new Recording()) {
+            recording.enable(TokenClearEvent.class);
+            recording.start();
+
+            CacheEvent.commit("userInfo", false);
+            TokenClearEvent.commit(IdentityMetrics.USER_INFO);
+
+            List<RecordedEvent> events = RecordedEvents.read(recording);
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertTrue(events.get(0).getEventType().getName().endsWith(".TokenClear"));
+        }
+    }
+}
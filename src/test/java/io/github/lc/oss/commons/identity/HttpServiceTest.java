@@ -0,0 +1,87 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class HttpServiceTest extends AbstractMockTest {
+    private static class TestService implements HttpService {
+        private String response;
+
+        public TestService(String response) {
+            this.response = response;
+        }
+
+        @Override
+        public void delete(String url, Map<String, String> headers) {
+        }
+
+        @Override
+        public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+            return null;
+        }
+
+        @Override
+        public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody) {
+            return responseType.cast(this.response);
+        }
+
+        @Override
+        public <T> T post(String url, Map<String, String> headers, Class<T> responseType, Jsonable requestBody, String privateKey) {
+            return null;
+        }
+
+        @Override
+        public void put(String url, Map<String, String> headers, Jsonable requestBody) {
+        }
+    }
+
+    @Test
+    public void test_getConditional() {
+        TestService service = new TestService("text") {
+            @Override
+            public <T> T get(String url, Map<String, String> headers, Class<T> responseType) {
+                return responseType.cast("text");
+            }
+        };
+
+        ConditionalResponse<String> result = service.getConditional("url", new HashMap<>(), String.class, "\"v1\"");
+        Assertions.assertEquals("text", result.getValue());
+        Assertions.assertNull(result.getETag());
+        Assertions.assertFalse(result.isNotModified());
+    }
+
+    @Test
+    public void test_postStreaming() {
+        StringWriter read = new StringWriter();
+
+        new TestService("text").postStreaming("url", new HashMap<>(), null, body -> body.transferTo(read));
+
+        Assertions.assertEquals("text", read.toString());
+    }
+
+    @Test
+    public void test_postStreaming_noContent() {
+        new TestService(null).postStreaming("url", new HashMap<>(), null, body -> Assertions.fail("Unexpected call"));
+    }
+
+    @Test
+    public void test_postStreaming_error() {
+        try {
+            new TestService("text").postStreaming("url", new HashMap<>(), null, body -> {
+                throw new IOException("BOOM!");
+            });
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("Error making request", ex.getMessage());
+            Assertions.assertEquals("BOOM!", ex.getCause().getMessage());
+        }
+    }
+}
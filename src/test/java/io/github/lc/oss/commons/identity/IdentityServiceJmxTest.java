@@ -0,0 +1,169 @@
+package io.github.lc.oss.commons.identity;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.Token;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class IdentityServiceJmxTest extends AbstractMockTest {
+    private static class TestService extends AbstractIdentityService {
+        @Override
+        protected String getApplicationId() {
+            return "jmx-test";
+        }
+
+        @Override
+        protected String getApplicationPrivateKey() {
+            return null;
+        }
+
+        @Override
+        protected String getIdentityId() {
+            return null;
+        }
+
+        @Override
+        protected String getIdentityUrl() {
+            return null;
+        }
+
+        @Override
+        protected boolean isJmxEnabled() {
+            return true;
+        }
+    }
+
+    private static class TestJmx extends IdentityServiceJmx {
+        private long now = 0;
+
+        public TestJmx(AbstractIdentityService service, IdentityMetrics metrics) {
+            super(service, metrics, 1000);
+        }
+
+        @Override
+        long now() {
+            return this.now;
+        }
+    }
+
+    @Test
+    public void test_register() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("io.github.lc.oss.commons.identity:type=IdentityService,name=\"jmx-test\"");
+        AbstractIdentityService service = new TestService();
+        Assertions.assertFalse(server.isRegistered(name));
+
+        service.init(null, null, null);
+        Assertions.assertTrue(server.isRegistered(name));
+
+        IdentityServiceMXBean bean = JMX.newMXBeanProxy(server, name, IdentityServiceMXBean.class);
+        Assertions.assertEquals(-1, bean.getApplicationTokenExpiration());
+        Assertions.assertEquals(-1, bean.getApplicationTokenTimeToExpiration());
+        Assertions.assertEquals(-1, bean.getTimeSinceLastApplicationTokenMint());
+        Assertions.assertEquals(-1, bean.getLeasedConnections());
+        Assertions.assertEquals(-1, bean.getMaxConnections());
+        Assertions.assertTrue(bean.getEndpoints().isEmpty());
+
+        long expiration = System.currentTimeMillis() + 100000;
+        service.setApplicationToken(new Token(expiration, "token"));
+        Assertions.assertEquals(expiration, bean.getApplicationTokenExpiration());
+        Assertions.assertTrue(bean.getApplicationTokenTimeToExpiration() > 0);
+        Assertions.assertTrue(bean.getTimeSinceLastApplicationTokenMint() >= 0);
+
+        bean.clearApplicationToken();
+        Assertions.assertEquals(-1, bean.getApplicationTokenExpiration());
+        Assertions.assertTrue(bean.getTimeSinceLastApplicationTokenMint() >= 0);
+
+        IdentityMetrics metrics = this.getField("metrics", service);
+        metrics.onRequestStart(IdentityMetrics.USER_INFO);
+        metrics.onRequest(IdentityMetrics.USER_INFO, 503, 2000000, 0, 0);
+        metrics.onRequestStart(IdentityMetrics.USER_INFO);
+
+        List<EndpointStatistics> endpoints = bean.getEndpoints();
+        Assertions.assertEquals(1, endpoints.size());
+        EndpointStatistics userInfo = endpoints.get(0);
+        Assertions.assertEquals(IdentityMetrics.USER_INFO, userInfo.getEndpoint());
+        Assertions.assertEquals(1, userInfo.getInFlight());
+        Assertions.assertEquals(1, userInfo.getCount());
+        Assertions.assertEquals(1, userInfo.getFailures());
+        Assertions.assertEquals(2d, userInfo.getP50());
+        Assertions.assertEquals(2d, userInfo.getMax());
+
+        try {
+            new TestService().init(null, null, null);
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("Error registering MBean", ex.getMessage());
+        }
+
+        service.close();
+        Assertions.assertFalse(server.isRegistered(name));
+        service.close();
+    }
+
+    @Test
+    public void test_disabled() throws Exception {
+        AbstractIdentityService service = new TestService() {
+            @Override
+            protected boolean isJmxEnabled() {
+                return false;
+            }
+        };
+
+        service.init(null, null, null);
+
+        Assertions.assertNull(this.getField("metrics", service));
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(service.getJmxName())));
+        service.close();
+    }
+
+    @Test
+    public void test_rollingPercentiles() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        TestJmx jmx = new TestJmx(new TestService(), metrics);
+
+        metrics.onRequest(IdentityMetrics.TOKEN, 200, 10000000, 0, 0);
+        Assertions.assertEquals(10d, jmx.getEndpoints().get(0).getP99(), 1);
+
+        jmx.now = 500;
+        metrics.onRequest(IdentityMetrics.TOKEN, 200, 1000000, 0, 0);
+        Assertions.assertEquals(10d, jmx.getEndpoints().get(0).getP99(), 1);
+        Assertions.assertEquals(1d, jmx.getEndpoints().get(0).getP50(), 0.2);
+
+        jmx.now = 1000;
+        EndpointStatistics token = jmx.getEndpoints().get(0);
+        Assertions.assertEquals(1d, token.getP99(), 0.2);
+        Assertions.assertEquals(2, token.getCount());
+
+        jmx.now = 2000;
+        token = jmx.getEndpoints().get(0);
+        Assertions.assertEquals(0d, token.getP99());
+        Assertions.assertEquals(2, token.getCount());
+    }
+
+    @Test
+    public void test_operations() {
+        AbstractIdentityService service = new TestService();
+        service.setApplicationToken(new Token(System.currentTimeMillis() + 100000, "token"));
+        IdentityServiceJmx jmx = new IdentityServiceJmx(service, new IdentityMetrics() {
+        }, 1000);
+
+        Assertions.assertTrue(jmx.getEndpoints().isEmpty());
+        Assertions.assertEquals(0, jmx.getCoalescedRequestCount());
+
+        jmx.clearApplicationInfo();
+        jmx.invalidateUserInfo("id");
+        jmx.invalidateUserInfos();
+        jmx.clearApplicationToken();
+        Assertions.assertNull(service.getCurrentApplicationToken());
+        service.close();
+    }
+}
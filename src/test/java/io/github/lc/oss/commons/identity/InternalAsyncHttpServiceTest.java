@@ -0,0 +1,393 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.encoding.Encodings;
+import io.github.lc.oss.commons.identity.model.ApiResponse;
+import io.github.lc.oss.commons.identity.model.SignedRequest;
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.identity.model.UserInfo;
+import io.github.lc.oss.commons.identity.model.UserInfoResponse;
+import io.github.lc.oss.commons.signing.Algorithms;
+import io.github.lc.oss.commons.signing.KeyGenerator;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+@SuppressWarnings("unchecked")
+public class InternalAsyncHttpServiceTest extends AbstractMockTest {
+    private interface Responder {
+        void respond(FutureCallback<SimpleHttpResponse> callback);
+    }
+
+    @Mock
+    private JsonService jsonService;
+    @Mock
+    private Future<SimpleHttpResponse> pending;
+
+    private KeyGenerator keyGenerator = new KeyGenerator();
+
+    private Responder responder;
+    private InternalAsyncHttpService service;
+
+    @BeforeEach
+    public void setup() {
+        this.service = new InternalAsyncHttpService(this.jsonService) {
+            @Override
+            protected Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+                InternalAsyncHttpServiceTest.this.responder.respond(callback);
+                return InternalAsyncHttpServiceTest.this.pending;
+            }
+        };
+    }
+
+    @Test
+    public void test_getPoolStats() {
+        InternalAsyncHttpService service = new InternalAsyncHttpService(this.jsonService);
+        Assertions.assertNull(service.getPoolStats());
+
+        service.getClient();
+        Assertions.assertEquals(0, service.getPoolStats().getLeased());
+        Assertions.assertEquals(new HttpServiceConfig().getMaxConnections(), service.getPoolStats().getMax());
+
+        service.close();
+        Assertions.assertNull(service.getPoolStats());
+    }
+
+    @Test
+    public void test_coverageFiller() {
+        InternalAsyncHttpService service = new InternalAsyncHttpService(this.jsonService);
+        Assertions.assertNotNull(service.getClient());
+        Assertions.assertSame(service.getClient(), service.getClient());
+        service.close();
+
+        try {
+            service.getClient();
+            Assertions.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_get() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-header", "junk");
+
+        UserInfoResponse<UserInfo> uiResponse = new UserInfoResponse<>();
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "{}", ContentType.APPLICATION_JSON));
+        Mockito.when(this.jsonService.from("{}", UserInfoResponse.class)).thenReturn(uiResponse);
+
+        UserInfoResponse<UserInfo> result = this.service.get("http://localhost", headers, UserInfoResponse.class).join();
+        Assertions.assertSame(uiResponse, result);
+    }
+
+    @Test
+    public void test_get_streaming() {
+        StreamingJsonService streamingJsonService = Mockito.mock(StreamingJsonService.class);
+        InternalAsyncHttpService service = new InternalAsyncHttpService(streamingJsonService) {
+            @Override
+            protected Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+                InternalAsyncHttpServiceTest.this.responder.respond(callback);
+                return InternalAsyncHttpServiceTest.this.pending;
+            }
+        };
+
+        UserInfoResponse<UserInfo> uiResponse = new UserInfoResponse<>();
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "{}", ContentType.APPLICATION_JSON));
+        try {
+            Mockito.when(streamingJsonService.from(ArgumentMatchers.any(InputStream.class), ArgumentMatchers.eq(StandardCharsets.UTF_8),
+                    ArgumentMatchers.eq(UserInfoResponse.class))).thenReturn(uiResponse);
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        UserInfoResponse<UserInfo> result = service.get("http://localhost", null, UserInfoResponse.class).join();
+        Assertions.assertSame(uiResponse, result);
+        Mockito.verify(streamingJsonService, Mockito.never()).from(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_get_streaming_error() {
+        StreamingJsonService streamingJsonService = Mockito.mock(StreamingJsonService.class);
+        InternalAsyncHttpService service = new InternalAsyncHttpService(streamingJsonService) {
+            @Override
+            protected Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+                InternalAsyncHttpServiceTest.this.responder.respond(callback);
+                return InternalAsyncHttpServiceTest.this.pending;
+            }
+        };
+
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "{", ContentType.APPLICATION_JSON));
+        try {
+            Mockito.when(streamingJsonService.from(ArgumentMatchers.any(InputStream.class), ArgumentMatchers.any(),
+                    ArgumentMatchers.eq(UserInfoResponse.class))).thenThrow(new IOException("BOOM!"));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            service.get("http://localhost", null, UserInfoResponse.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error making request", ex.getCause().getMessage());
+            Assertions.assertEquals("BOOM!", ex.getCause().getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_get_tooLarge() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMaxResponseSize(4);
+        InternalAsyncHttpService service = new InternalAsyncHttpService(this.jsonService, config) {
+            @Override
+            protected Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+                InternalAsyncHttpServiceTest.this.responder.respond(callback);
+                return InternalAsyncHttpServiceTest.this.pending;
+            }
+        };
+
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "too long", ContentType.TEXT_PLAIN));
+
+        try {
+            service.get("http://localhost", null, String.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error making request", ex.getCause().getMessage());
+            Assertions.assertEquals("Response exceeds maximum size of 4 bytes", ex.getCause().getCause().getMessage());
+        }
+
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "text", ContentType.TEXT_PLAIN));
+        Assertions.assertEquals("text", service.get("http://localhost", null, String.class).join());
+    }
+
+    @Test
+    public void test_get_gzip() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setCompressResponses(true);
+        config.setMaxResponseSize(4);
+        InternalAsyncHttpService service = new InternalAsyncHttpService(this.jsonService, config) {
+            @Override
+            protected Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+                Assertions.assertEquals("gzip, deflate", request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue());
+                InternalAsyncHttpServiceTest.this.responder.respond(callback);
+                return InternalAsyncHttpServiceTest.this.pending;
+            }
+        };
+
+        this.responder = callback -> {
+            SimpleHttpResponse response = SimpleHttpResponse.create(HttpStatus.SC_OK, Compression.gzip("text".getBytes(StandardCharsets.UTF_8)),
+                    ContentType.TEXT_PLAIN);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            callback.completed(response);
+        };
+        Assertions.assertEquals("text", service.get("http://localhost", null, String.class).join());
+
+        this.responder = callback -> {
+            SimpleHttpResponse response = SimpleHttpResponse.create(HttpStatus.SC_OK, Compression.gzip("too long".getBytes(StandardCharsets.UTF_8)),
+                    ContentType.TEXT_PLAIN);
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            callback.completed(response);
+        };
+        try {
+            service.get("http://localhost", null, String.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error making request", ex.getCause().getMessage());
+            Assertions.assertEquals("Response exceeds maximum size of 4 bytes", ex.getCause().getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_post_compressed() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setRequestCompressionThreshold(5);
+        InternalAsyncHttpService service = new InternalAsyncHttpService(this.jsonService, config) {
+            @Override
+            protected Future<SimpleHttpResponse> execute(SimpleHttpRequest request, FutureCallback<SimpleHttpResponse> callback) {
+                if (request.getFirstHeader(HttpHeaders.CONTENT_ENCODING) == null) {
+                    Assertions.assertArrayEquals("json".getBytes(StandardCharsets.UTF_8), request.getBodyBytes());
+                } else {
+                    Assertions.assertEquals("gzip", request.getFirstHeader(HttpHeaders.CONTENT_ENCODING).getValue());
+                    Assertions.assertArrayEquals(Compression.gzip("json-long".getBytes(StandardCharsets.UTF_8)), request.getBodyBytes());
+                }
+                InternalAsyncHttpServiceTest.this.responder.respond(callback);
+                return InternalAsyncHttpServiceTest.this.pending;
+            }
+        };
+
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json", "json-long");
+        this.responder = callback -> callback.completed(new SimpleHttpResponse(HttpStatus.SC_NO_CONTENT));
+
+        Assertions.assertNull(service.put("http://localhost", null, requestBody).join());
+        Assertions.assertNull(service.put("http://localhost", null, requestBody).join());
+    }
+
+    @Test
+    public void test_get_string() {
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "text", ContentType.TEXT_PLAIN));
+
+        String result = this.service.get("http://localhost", null, String.class).join();
+        Assertions.assertEquals("text", result);
+    }
+
+    @Test
+    public void test_get_noContent() {
+        this.responder = callback -> callback.completed(new SimpleHttpResponse(HttpStatus.SC_NO_CONTENT));
+
+        String result = this.service.get("http://localhost", null, String.class).join();
+        Assertions.assertNull(result);
+    }
+
+    @Test
+    public void test_get_error_withMessages() {
+        ApiResponse<?> apiResponse = new ApiResponse<>();
+        apiResponse.setMessages(new ArrayList<>());
+
+        this.responder = callback -> callback
+                .completed(SimpleHttpResponse.create(HttpStatus.SC_UNPROCESSABLE_CONTENT, "{}", ContentType.APPLICATION_JSON));
+        Mockito.when(this.jsonService.from("{}", ApiResponse.class)).thenReturn(apiResponse);
+
+        try {
+            this.service.get("http://localhost", null, UserInfoResponse.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            HttpException cause = (HttpException) ex.getCause();
+            Assertions.assertEquals("Error making request", cause.getMessage());
+            Assertions.assertEquals(HttpStatus.SC_UNPROCESSABLE_CONTENT, cause.getStatus());
+            Assertions.assertSame(apiResponse.getMessages(), cause.getMessages());
+        }
+    }
+
+    @Test
+    public void test_get_error_noBody() {
+        this.responder = callback -> callback.completed(new SimpleHttpResponse(HttpStatus.SC_NOT_FOUND));
+
+        try {
+            this.service.get("http://localhost", null, UserInfoResponse.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            HttpException cause = (HttpException) ex.getCause();
+            Assertions.assertEquals(HttpStatus.SC_NOT_FOUND, cause.getStatus());
+            Assertions.assertNull(cause.getMessages());
+        }
+    }
+
+    @Test
+    public void test_get_failed() {
+        this.responder = callback -> callback.failed(new IOException("BOOM!"));
+
+        try {
+            this.service.get("http://localhost", null, UserInfoResponse.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error making request", ex.getCause().getMessage());
+            Assertions.assertEquals("BOOM!", ex.getCause().getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_get_cancelled() {
+        this.responder = callback -> callback.cancelled();
+
+        CompletableFuture<String> result = this.service.get("http://localhost", null, String.class);
+        Assertions.assertTrue(result.isCancelled());
+    }
+
+    @Test
+    public void test_get_cancelledByCaller() {
+        this.responder = callback -> {
+        };
+
+        CompletableFuture<String> result = this.service.get("http://localhost", null, String.class);
+        Assertions.assertFalse(result.isDone());
+
+        result.cancel(true);
+
+        Mockito.verify(this.pending).cancel(true);
+    }
+
+    @Test
+    public void test_get_executeError() {
+        this.responder = callback -> {
+            throw new IllegalStateException("HttpService is closed");
+        };
+
+        CompletableFuture<String> result = this.service.get("http://localhost", null, String.class);
+        try {
+            result.join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_delete() {
+        this.responder = callback -> callback.completed(new SimpleHttpResponse(HttpStatus.SC_NO_CONTENT));
+
+        Assertions.assertNull(this.service.delete("http://localhost", null).join());
+    }
+
+    @Test
+    public void test_post() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-header", "junk");
+
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "text", ContentType.TEXT_PLAIN));
+
+        String result = this.service.post("http://localhost", headers, String.class, requestBody).join();
+        Assertions.assertEquals("text", result);
+    }
+
+    @Test
+    public void test_post_signedRequest() {
+        String privateKey = this.newPrivateKey();
+        SignedRequest requestBody = new SignedRequest(System.currentTimeMillis(), "app-id", "base64");
+
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+        this.responder = callback -> callback.completed(SimpleHttpResponse.create(HttpStatus.SC_OK, "text", ContentType.TEXT_PLAIN));
+
+        String result = this.service.post("http://localhost", new HashMap<>(), String.class, requestBody, privateKey).join();
+        Assertions.assertEquals("text", result);
+        Assertions.assertNotNull(requestBody.getSignature());
+    }
+
+    @Test
+    public void test_put() {
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+        this.responder = callback -> callback.completed(new SimpleHttpResponse(HttpStatus.SC_NO_CONTENT));
+
+        Assertions.assertNull(this.service.put("http://localhost", new HashMap<>(), requestBody).join());
+    }
+
+    private String newPrivateKey() {
+        KeyPair keys = this.keyGenerator.generate(Algorithms.ED448);
+        return Encodings.Base64.encode(keys.getPrivate().getEncoded());
+    }
+}
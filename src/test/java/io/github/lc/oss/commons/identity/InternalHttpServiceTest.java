@@ -4,20 +4,24 @@ import java.io.IOException;
 import java.security.KeyPair;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.entity.GzipCompressingEntity;
 import org.apache.hc.client5.http.impl.classic.AbstractHttpClientResponseHandler;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
 
 import io.github.lc.oss.commons.api.services.JsonService;
 import io.github.lc.oss.commons.encoding.Encodings;
@@ -31,6 +35,10 @@ import io.github.lc.oss.commons.testing.AbstractMockTest;
 
 @SuppressWarnings("unchecked")
 public class InternalHttpServiceTest extends AbstractMockTest {
+    private static class CallHelper {
+        public int count = 0;
+    }
+
     @Mock
     private JsonService jsonService;
     @Mock
@@ -50,10 +58,38 @@ public class InternalHttpServiceTest extends AbstractMockTest {
         };
     }
 
+    @Test
+    public void test_getPoolStats() {
+        InternalHttpService service = new InternalHttpService(this.jsonService);
+        Assertions.assertNull(service.getPoolStats());
+
+        service.getClient();
+        Assertions.assertEquals(0, service.getPoolStats().getLeased());
+        Assertions.assertEquals(new HttpServiceConfig().getMaxConnections(), service.getPoolStats().getMax());
+
+        service.close();
+        Assertions.assertNull(service.getPoolStats());
+    }
+
     @Test
     public void test_coverageFiller() {
         InternalHttpService service = new InternalHttpService(this.jsonService);
-        Assertions.assertNotNull(service.createClient());
+        Assertions.assertNotNull(service.getClient());
+        Assertions.assertSame(service.getClient(), service.getClient());
+        service.close();
+
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setConnectTimeout(0);
+        config.setConnectionRequestTimeout(0);
+        config.setResponseTimeout(0);
+        config.setKeepAlive(0);
+        config.setIdleTimeout(0);
+        config.setConnectionTimeToLive(60000);
+        config.setValidateAfterInactivity(0);
+        config.setEvictExpiredConnections(false);
+        service = new InternalHttpService(this.jsonService, config);
+        Assertions.assertNotNull(service.getClient());
+        service.close();
     }
 
     @Test
@@ -118,6 +154,94 @@ public class InternalHttpServiceTest extends AbstractMockTest {
         Assertions.assertNotNull(result);
     }
 
+    @Test
+    public void test_get_phases() {
+        List<RequestPhases> reported = new ArrayList<>();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(new IdentityMetrics() {
+            @Override
+            public void onPhases(RequestPhases phases) {
+                reported.add(phases);
+            }
+        });
+        InternalHttpService service = new InternalHttpService(this.jsonService, config) {
+            @Override
+            protected CloseableHttpClient createClient() {
+                return InternalHttpServiceTest.this.httpClient;
+            }
+        };
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.argThat((HttpClientContext c) -> PhaseTimer.get(c) != null), //
+                    ArgumentMatchers.any(AbstractHttpClientResponseHandler.class))). //
+                    thenReturn("{}");
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        UserInfoResponse<UserInfo> uiResponse = new UserInfoResponse<>();
+        Mockito.when(this.jsonService.from("{}", UserInfoResponse.class)).thenReturn(uiResponse);
+
+        UserInfoResponse<UserInfo> result = service.get("http://localhost/svc/v1/userInfo/euid", new HashMap<>(), UserInfoResponse.class);
+        Assertions.assertSame(uiResponse, result);
+
+        Assertions.assertEquals(1, reported.size());
+        RequestPhases phases = reported.get(0);
+        Assertions.assertEquals(IdentityMetrics.USER_INFO, phases.getEndpoint());
+        Assertions.assertTrue(phases.get(RequestPhase.DESERIALIZE) >= 0);
+        Assertions.assertEquals(-1, phases.get(RequestPhase.LEASE));
+    }
+
+    @Test
+    public void test_get_streaming() {
+        StreamingJsonService streamingJsonService = Mockito.mock(StreamingJsonService.class);
+        InternalHttpService service = new InternalHttpService(streamingJsonService) {
+            @Override
+            protected CloseableHttpClient createClient() {
+                return InternalHttpServiceTest.this.httpClient;
+            }
+        };
+
+        UserInfoResponse<UserInfo> uiResponse = new UserInfoResponse<>();
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(JsonResponseHandler.class))). //
+                    thenReturn(uiResponse);
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        UserInfoResponse<UserInfo> result = service.get("localhost", null, UserInfoResponse.class);
+        Assertions.assertSame(uiResponse, result);
+        Mockito.verify(streamingJsonService, Mockito.never()).from(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_get_streaming_string() {
+        StreamingJsonService streamingJsonService = Mockito.mock(StreamingJsonService.class);
+        InternalHttpService service = new InternalHttpService(streamingJsonService) {
+            @Override
+            protected CloseableHttpClient createClient() {
+                return InternalHttpServiceTest.this.httpClient;
+            }
+        };
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(StringResponseHandler.class))). //
+                    thenReturn("text");
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        Assertions.assertEquals("text", service.get("localhost", null, String.class));
+    }
+
     @Test
     public void test_get_string() {
         final String responseJson = "text";
@@ -154,37 +278,76 @@ public class InternalHttpServiceTest extends AbstractMockTest {
     }
 
     @Test
-    public void test_get_closeException() {
-        Map<String, String> headers = new HashMap<>();
-        headers.put("x-header", "junk");
+    public void test_get_clientReused() {
+        final CallHelper helper = new CallHelper();
+        InternalHttpService service = new InternalHttpService(this.jsonService) {
+            @Override
+            protected CloseableHttpClient createClient() {
+                helper.count++;
+                return InternalHttpServiceTest.this.httpClient;
+            }
+        };
 
         try {
             Mockito.when(this.httpClient.execute( //
                     ArgumentMatchers.any(HttpUriRequestBase.class), //
                     ArgumentMatchers.any(AbstractHttpClientResponseHandler.class))). //
-                    thenReturn(null);
+                    thenReturn("text");
         } catch (IOException ex) {
             Assertions.fail("Unexpected exception");
         }
 
+        Assertions.assertEquals("text", service.get("localhost", null, String.class));
+        Assertions.assertEquals("text", service.get("localhost", null, String.class));
+        service.delete("localhost", null);
+
+        Assertions.assertEquals(1, helper.count);
         try {
-            Mockito.doAnswer(new Answer<Void>() {
-                @Override
-                public Void answer(InvocationOnMock invocation) throws Throwable {
-                    throw new RuntimeException("BOOM!");
-                }
+            Mockito.verify(this.httpClient, Mockito.never()).close();
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
 
-            }).when(this.httpClient).close();
+    @Test
+    public void test_close() {
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(AbstractHttpClientResponseHandler.class))). //
+                    thenReturn("text");
         } catch (IOException ex) {
             Assertions.fail("Unexpected exception");
         }
 
+        Assertions.assertEquals("text", this.service.get("localhost", null, String.class));
+
+        this.service.close();
         try {
-            this.service.get("localhost", headers, String.class);
-            Assertions.fail("Expectex exception");
-        } catch (RuntimeException ex) {
-            Assertions.assertEquals("BOOM!", ex.getMessage());
-            Assertions.assertNull(ex.getCause());
+            Mockito.verify(this.httpClient).close();
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            this.service.get("localhost", null, String.class);
+            Assertions.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getMessage());
+        }
+
+        // closing again is a no-op
+        this.service.close();
+    }
+
+    @Test
+    public void test_close_neverUsed() {
+        this.service.close();
+
+        try {
+            Mockito.verify(this.httpClient, Mockito.never()).close();
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
         }
     }
 
@@ -277,6 +440,195 @@ public class InternalHttpServiceTest extends AbstractMockTest {
         Assertions.assertEquals("text", result);
     }
 
+    @Test
+    public void test_postStreaming() {
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(ReaderResponseHandler.class))). //
+                    thenReturn(null);
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        this.service.postStreaming("localhost", new HashMap<>(), requestBody, body -> Assertions.fail("Unexpected call"));
+    }
+
+    @Test
+    public void test_postStreaming_error() {
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(ReaderResponseHandler.class))). //
+                    thenThrow(new IOException("BOOM!"));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            this.service.postStreaming("localhost", new HashMap<>(), requestBody, body -> Assertions.fail("Unexpected call"));
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("Error making request", ex.getMessage());
+            Assertions.assertEquals("BOOM!", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_postStreaming_httpError() {
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(ReaderResponseHandler.class))). //
+                    thenThrow(new HttpException("Error making request", 404, null));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            this.service.postStreaming("localhost", new HashMap<>(), requestBody, body -> Assertions.fail("Unexpected call"));
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_getConditional() {
+        ConditionalResponse<String> response = new ConditionalResponse<>("text", "\"v2\"", null);
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(ConditionalResponseHandler.class))). //
+                    thenReturn(response);
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("x-header", "junk");
+        Assertions.assertSame(response, this.service.getConditional("localhost", headers, String.class, "\"v1\""));
+        Assertions.assertSame(response, this.service.getConditional("localhost", null, UserInfoResponse.class, null));
+    }
+
+    @Test
+    public void test_getConditional_error() {
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(ConditionalResponseHandler.class))). //
+                    thenThrow(new IOException("BOOM!"), new HttpException("Error making request", 404, null));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            this.service.getConditional("localhost", null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("Error making request", ex.getMessage());
+            Assertions.assertEquals("BOOM!", ex.getCause().getMessage());
+        }
+
+        try {
+            this.service.getConditional("localhost", null, String.class, null);
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_toEntity() {
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+
+        HttpEntity result = this.service.toEntity(requestBody);
+        Assertions.assertTrue(result instanceof StringEntity);
+    }
+
+    @Test
+    public void test_toEntity_pooled() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setBufferPool(new BufferPool(1024 * 1024));
+        InternalHttpService service = new InternalHttpService(this.jsonService, config);
+
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json");
+
+        HttpEntity result = service.toEntity(requestBody);
+        Assertions.assertTrue(result instanceof PooledStringEntity);
+        Assertions.assertEquals(4, result.getContentLength());
+    }
+
+    @Test
+    public void test_toEntity_compressed() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setRequestCompressionThreshold(5);
+        InternalHttpService service = new InternalHttpService(this.jsonService, config);
+
+        UserData requestBody = new UserData();
+        Mockito.when(this.jsonService.to(requestBody)).thenReturn("json", "json-long");
+
+        Assertions.assertTrue(service.toEntity(requestBody) instanceof StringEntity);
+        Assertions.assertTrue(service.toEntity(requestBody) instanceof GzipCompressingEntity);
+
+        StreamingJsonService streamingJsonService = Mockito.mock(StreamingJsonService.class);
+        service = new InternalHttpService(streamingJsonService, config);
+        Assertions.assertTrue(service.toEntity(requestBody) instanceof GzipCompressingEntity);
+    }
+
+    @Test
+    public void test_call_acceptEncoding() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setCompressResponses(true);
+        InternalHttpService service = new InternalHttpService(this.jsonService, config) {
+            @Override
+            protected CloseableHttpClient createClient() {
+                return InternalHttpServiceTest.this.httpClient;
+            }
+        };
+        HttpUriRequestBase request = Mockito.mock(HttpUriRequestBase.class);
+
+        try {
+            Mockito.when(this.httpClient.execute( //
+                    ArgumentMatchers.any(HttpUriRequestBase.class), //
+                    ArgumentMatchers.any(AbstractHttpClientResponseHandler.class))). //
+                    thenReturn("text");
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        Assertions.assertEquals("text", service.call(request, String.class));
+        Mockito.verify(request).setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+        request = Mockito.mock(HttpUriRequestBase.class);
+        this.service.call(request, String.class);
+        Mockito.verify(request, Mockito.never()).setHeader(ArgumentMatchers.eq(HttpHeaders.ACCEPT_ENCODING), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void test_toEntity_streaming() {
+        StreamingJsonService streamingJsonService = Mockito.mock(StreamingJsonService.class);
+        InternalHttpService service = new InternalHttpService(streamingJsonService);
+
+        UserData requestBody = new UserData();
+
+        HttpEntity result = service.toEntity(requestBody);
+        Assertions.assertTrue(result instanceof JsonableEntity);
+        Mockito.verify(streamingJsonService, Mockito.never()).to(requestBody);
+    }
+
     @Test
     public void test_put() {
         Map<String, String> headers = new HashMap<>();
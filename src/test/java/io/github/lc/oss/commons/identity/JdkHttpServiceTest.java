@@ -0,0 +1,575 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.net.ssl.SSLSession;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class JdkHttpServiceTest extends AbstractMockTest {
+    private static class TestJsonService implements JsonService {
+        protected final List<String> parsed = new ArrayList<>();
+
+        @Override
+        public String to(Jsonable value) {
+            return "{\"id\":\"\u00e9\"}";
+        }
+
+        @Override
+        public <T extends Jsonable> T from(String json, Class<T> type) {
+            this.parsed.add(json);
+            return type == UserData.class ? type.cast(new UserData()) : null;
+        }
+    }
+
+    private static class TestStreamingJsonService extends TestJsonService implements StreamingJsonService {
+        @Override
+        public void to(Jsonable value, OutputStream json) throws IOException {
+            json.write(this.to(value).getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public <T extends Jsonable> T from(InputStream json, Charset charset, Class<T> type) throws IOException {
+            return this.from(new String(json.readAllBytes(), charset), type);
+        }
+    }
+
+    private static class BodySubscriber implements Flow.Subscriber<ByteBuffer> {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            byte[] bytes = new byte[item.remaining()];
+            item.get(bytes);
+            this.body.write(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.result.complete(this.body.toByteArray());
+        }
+
+        public static byte[] read(HttpRequest request) {
+            BodySubscriber subscriber = new BodySubscriber();
+            request.bodyPublisher().get().subscribe(subscriber);
+            return subscriber.result.join();
+        }
+    }
+
+    private static class TestResponse<T> implements HttpResponse<T> {
+        private final int status;
+        private final HttpHeaders headers;
+        private final T body;
+
+        public TestResponse(int status, Map<String, String> headers, T body) {
+            this.status = status;
+            Map<String, List<String>> map = new HashMap<>();
+            headers.forEach((k, v) -> map.put(k, Collections.singletonList(v)));
+            this.headers = HttpHeaders.of(map, (k, v) -> true);
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return this.status;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return null;
+        }
+
+        @Override
+        public Optional<HttpResponse<T>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return this.headers;
+        }
+
+        @Override
+        public T body() {
+            return this.body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return null;
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_2;
+        }
+    }
+
+    private static class TestService extends JdkHttpService {
+        private final List<HttpRequest> requests = new ArrayList<>();
+        private final List<TestResponse<byte[]>> responses = new ArrayList<>();
+
+        public TestService(TestJsonService jsonService, HttpServiceConfig config) {
+            super(jsonService, config);
+        }
+
+        public void respond(int status, Map<String, String> headers, String body) {
+            this.responses.add(new TestResponse<>(status, headers, body.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        public void respond(int status, Map<String, String> headers, byte[] body) {
+            this.responses.add(new TestResponse<>(status, headers, body));
+        }
+
+        @Override
+        HttpResponse<InputStream> send(HttpRequest request) {
+            this.requests.add(request);
+            TestResponse<byte[]> response = this.responses.remove(0);
+            return new TestResponse<>(response.statusCode(), this.toMap(response), new ByteArrayInputStream(response.body()));
+        }
+
+        @Override
+        CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request) {
+            this.requests.add(request);
+            if (this.responses.isEmpty()) {
+                return CompletableFuture.failedFuture(new IOException("BOOM!"));
+            }
+            return CompletableFuture.completedFuture(this.responses.remove(0));
+        }
+
+        private Map<String, String> toMap(HttpResponse<?> response) {
+            Map<String, String> map = new HashMap<>();
+            response.headers().map().forEach((k, v) -> map.put(k, v.get(0)));
+            return map;
+        }
+    }
+
+    private static final Map<String, String> JSON = Collections.singletonMap("Content-Type", "application/json; charset=UTF-8");
+
+    @Test
+    public void test_createClient() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setConnectTimeout(1500);
+        JdkHttpService service = new JdkHttpService(new TestJsonService(), config);
+
+        HttpClient client = service.createClient();
+        Assertions.assertEquals(HttpClient.Version.HTTP_2, client.version());
+        Assertions.assertEquals(Duration.ofMillis(1500), client.connectTimeout().get());
+        Assertions.assertEquals(HttpClient.Redirect.NEVER, client.followRedirects());
+    }
+
+    @Test
+    public void test_getClient() {
+        JdkHttpService service = new JdkHttpService(new TestJsonService());
+
+        HttpClient client = service.getClient();
+        Assertions.assertSame(client, service.getClient());
+
+        service.close();
+        service.close();
+        try {
+            service.getClient();
+            Assertions.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_get() {
+        TestJsonService jsonService = new TestJsonService();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setResponseTimeout(2000);
+        TestService service = new TestService(jsonService, config);
+        service.respond(200, JSON, "{\"id\":\"\u00e9\"}");
+
+        UserData result = service.get("http://localhost/api", Collections.singletonMap("X-Test", "true"), UserData.class);
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(Collections.singletonList("{\"id\":\"\u00e9\"}"), jsonService.parsed);
+
+        HttpRequest request = service.requests.get(0);
+        Assertions.assertEquals("GET", request.method());
+        Assertions.assertEquals(URI.create("http://localhost/api"), request.uri());
+        Assertions.assertEquals(Duration.ofMillis(2000), request.timeout().get());
+        Assertions.assertEquals("true", request.headers().firstValue("X-Test").get());
+        Assertions.assertFalse(request.headers().firstValue("Accept-Encoding").isPresent());
+    }
+
+    @Test
+    public void test_get_streaming() {
+        TestStreamingJsonService jsonService = new TestStreamingJsonService();
+        TestService service = new TestService(jsonService, new HttpServiceConfig());
+        service.respond(200, JSON, "{}");
+
+        Assertions.assertNotNull(service.get("http://localhost/api", null, UserData.class));
+        Assertions.assertEquals(Collections.singletonList("{}"), jsonService.parsed);
+    }
+
+    @Test
+    public void test_get_string() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setBufferPool(new BufferPool(1024 * 1024));
+        TestService service = new TestService(new TestJsonService(), config);
+        service.respond(200, JSON, "text \u00e9");
+        service.respond(204, JSON, "");
+
+        Assertions.assertEquals("text \u00e9", service.get("http://localhost/api", null, String.class));
+        Assertions.assertNull(service.get("http://localhost/api", null, String.class));
+    }
+
+    @Test
+    public void test_get_compressed() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setCompressResponses(true);
+        TestService service = new TestService(new TestJsonService(), config);
+        Map<String, String> headers = new HashMap<>(JSON);
+        headers.put("Content-Encoding", "gzip");
+        service.respond(200, headers, Compression.gzip("compressed".getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals("compressed", service.get("http://localhost/api", null, String.class));
+        Assertions.assertEquals(Compression.ACCEPT_ENCODING, service.requests.get(0).headers().firstValue("Accept-Encoding").get());
+    }
+
+    @Test
+    public void test_get_tooLarge() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMaxResponseSize(4);
+        TestService service = new TestService(new TestJsonService(), config);
+        service.respond(200, JSON, "too large");
+
+        try {
+            service.get("http://localhost/api", null, String.class);
+            Assertions.fail("Expected exception");
+        } catch (RuntimeException ex) {
+            Assertions.assertEquals("Error making request", ex.getMessage());
+            Assertions.assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void test_get_error() {
+        TestJsonService jsonService = new TestJsonService();
+        TestService service = new TestService(jsonService, new HttpServiceConfig());
+        service.respond(404, JSON, "{\"messages\":[]}");
+        service.respond(500, JSON, "");
+
+        try {
+            service.get("http://localhost/api", null, UserData.class);
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+        Assertions.assertEquals(Collections.singletonList("{\"messages\":[]}"), jsonService.parsed);
+
+        try {
+            service.get("http://localhost/api", null, UserData.class);
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(500, ex.getStatus());
+            Assertions.assertNull(ex.getMessages());
+        }
+    }
+
+    @Test
+    public void test_getConditional() {
+        TestService service = new TestService(new TestJsonService(), new HttpServiceConfig());
+        Map<String, String> headers = new HashMap<>(JSON);
+        headers.put("ETag", "\"v2\"");
+        headers.put("Cache-Control", "max-age=60");
+        service.respond(200, headers, "{}");
+        service.respond(304, Collections.emptyMap(), "");
+
+        ConditionalResponse<UserData> response = service.getConditional("http://localhost/api", null, UserData.class, null);
+        Assertions.assertFalse(response.isNotModified());
+        Assertions.assertNotNull(response.getValue());
+        Assertions.assertEquals("\"v2\"", response.getETag());
+        Assertions.assertEquals(60000, response.getMaxAge());
+        Assertions.assertFalse(service.requests.get(0).headers().firstValue("If-None-Match").isPresent());
+
+        response = service.getConditional("http://localhost/api", null, UserData.class, "\"v2\"");
+        Assertions.assertTrue(response.isNotModified());
+        Assertions.assertNull(response.getValue());
+        Assertions.assertEquals("\"v2\"", response.getETag());
+        Assertions.assertEquals("\"v2\"", service.requests.get(1).headers().firstValue("If-None-Match").get());
+    }
+
+    @Test
+    public void test_post() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setRequestCompressionThreshold(4);
+        TestService service = new TestService(new TestStreamingJsonService(), config);
+        service.respond(200, JSON, "{}");
+        service.respond(204, JSON, "");
+
+        Assertions.assertNotNull(service.post("http://localhost/api", null, UserData.class, new UserData()));
+        service.put("http://localhost/api", null, new UserData());
+
+        HttpRequest request = service.requests.get(0);
+        Assertions.assertEquals("POST", request.method());
+        Assertions.assertEquals("gzip", request.headers().firstValue("Content-Encoding").get());
+        Assertions.assertTrue(request.headers().firstValue("Content-Type").get().startsWith("application/json"));
+        Assertions.assertEquals(-1, request.bodyPublisher().get().contentLength());
+        Assertions.assertEquals("PUT", service.requests.get(1).method());
+    }
+
+    @Test
+    public void test_post_streamedBody() throws IOException {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setRequestCompressionThreshold(4);
+        JdkHttpService service = new JdkHttpService(new TestStreamingJsonService(), config);
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost/api"));
+        HttpRequest.BodyPublisher body = service.toBody(request, new UserData());
+        HttpRequest built = request.POST(body).build();
+
+        Assertions.assertEquals(-1, body.contentLength());
+        for (int i = 0; i < 2; i++) {
+            InputStream in = Compression.decode(new ByteArrayInputStream(BodySubscriber.read(built)), "gzip");
+            Assertions.assertEquals("{\"id\":\"\u00e9\"}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        service.close();
+    }
+
+    @Test
+    public void test_post_streamedBody_writer() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMaxConnections(4);
+        JdkHttpService service = new JdkHttpService(new TestStreamingJsonService(), config);
+        service.toBody(HttpRequest.newBuilder(URI.create("http://localhost/api")), new UserData());
+
+        ExecutorService writer = this.getField("writer", service);
+        if (VirtualThreads.isSupported()) {
+            Assertions.assertFalse(writer instanceof ThreadPoolExecutor);
+        } else {
+            Assertions.assertEquals(4, ((ThreadPoolExecutor) writer).getMaximumPoolSize());
+        }
+
+        service.close();
+        Assertions.assertTrue(writer.isShutdown());
+    }
+
+    @Test
+    public void test_post_streamedBodyError() {
+        JdkHttpService service = new JdkHttpService(new TestStreamingJsonService() {
+            @Override
+            public void to(Jsonable value, OutputStream json) throws IOException {
+                json.write('{');
+                throw new IOException("BOOM!");
+            }
+        });
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost/api"));
+        HttpRequest built = request.POST(service.toBody(request, new UserData())).build();
+
+        try {
+            BodySubscriber.read(built);
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertNotNull(ex.getCause());
+        }
+
+        service.close();
+    }
+
+    @Test
+    public void test_post_closed() {
+        JdkHttpService service = new JdkHttpService(new TestStreamingJsonService());
+        service.close();
+
+        try {
+            service.post("http://localhost/api", null, UserData.class, new UserData());
+            Assertions.fail("Expected exception");
+        } catch (IllegalStateException ex) {
+            Assertions.assertEquals("HttpService is closed", ex.getMessage());
+        }
+
+        try {
+            service.async().put("http://localhost/api", null, new UserData()).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void test_delete() {
+        TestService service = new TestService(new TestJsonService(), new HttpServiceConfig());
+        service.respond(204, JSON, "");
+
+        service.delete("http://localhost/api", null);
+
+        HttpRequest request = service.requests.get(0);
+        Assertions.assertEquals("DELETE", request.method());
+        Assertions.assertFalse(request.headers().firstValue("Content-Encoding").isPresent());
+    }
+
+    @Test
+    public void test_postStreaming() {
+        TestService service = new TestService(new TestJsonService(), new HttpServiceConfig());
+        service.respond(200, JSON, "[1,2]");
+        service.respond(204, JSON, "");
+        service.respond(400, JSON, "");
+
+        StringBuilder sb = new StringBuilder();
+        service.postStreaming("http://localhost/api", null, new UserData(), reader -> {
+            char[] buffer = new char[16];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+        });
+        Assertions.assertEquals("[1,2]", sb.toString());
+
+        service.postStreaming("http://localhost/api", null, new UserData(), reader -> Assertions.fail("Unexpected call"));
+
+        try {
+            service.postStreaming("http://localhost/api", null, new UserData(), reader -> Assertions.fail("Unexpected call"));
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(400, ex.getStatus());
+        }
+    }
+
+    @Test
+    public void test_async() {
+        TestService service = new TestService(new TestJsonService(), new HttpServiceConfig());
+        service.respond(200, JSON, "{}");
+        service.respond(204, JSON, "");
+        service.respond(200, JSON, "{}");
+        service.respond(204, JSON, "");
+        AsyncHttpService async = service.async();
+
+        Assertions.assertNotNull(async.get("http://localhost/api", null, UserData.class).join());
+        Assertions.assertNull(async.delete("http://localhost/api", null).join());
+        Assertions.assertNotNull(async.post("http://localhost/api", null, UserData.class, new UserData()).join());
+        Assertions.assertNull(async.put("http://localhost/api", null, new UserData()).join());
+
+        Assertions.assertEquals("GET", service.requests.get(0).method());
+        Assertions.assertEquals("DELETE", service.requests.get(1).method());
+        Assertions.assertEquals("POST", service.requests.get(2).method());
+        Assertions.assertEquals("PUT", service.requests.get(3).method());
+    }
+
+    @Test
+    public void test_async_error() {
+        TestService service = new TestService(new TestJsonService(), new HttpServiceConfig());
+        service.respond(503, JSON, "");
+        AsyncHttpService async = service.async();
+
+        try {
+            async.get("http://localhost/api", null, UserData.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals(503, ((HttpException) ex.getCause()).getStatus());
+        }
+
+        try {
+            async.get("http://localhost/api", null, UserData.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error making request", ex.getCause().getMessage());
+            Assertions.assertEquals("BOOM!", ex.getCause().getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_async_closed() {
+        JdkHttpService service = new JdkHttpService(new TestJsonService());
+        AsyncHttpService async = service.async();
+        async.close();
+
+        try {
+            async.get("http://localhost/api", null, UserData.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void test_metrics() {
+        HistogramMetrics metrics = new HistogramMetrics();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(metrics);
+        TestService service = new TestService(new TestJsonService(), config);
+        service.respond(200, Collections.singletonMap("Content-Length", "2"), "{}");
+        service.respond(503, JSON, "");
+        service.respond(200, JSON, "{}");
+
+        Assertions.assertNotNull(service.get("http://localhost/svc/v1/userInfo/euid", null, UserData.class));
+        try {
+            service.get("http://localhost/svc/v1/userInfo/euid", null, UserData.class);
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(503, ex.getStatus());
+        }
+        Assertions.assertNotNull(service.async().post("http://localhost/svc/v1/userInfo", null, UserData.class, new UserData()).join());
+        try {
+            service.async().get("http://localhost/svc/v1/applicationInfo", null, UserData.class).join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("BOOM!", ex.getCause().getCause().getMessage());
+        }
+
+        EndpointMetrics userInfo = metrics.getEndpoint(IdentityMetrics.USER_INFO);
+        Assertions.assertEquals(2, userInfo.getLatency().getCount());
+        Assertions.assertEquals(1, userInfo.getStatusCount(200));
+        Assertions.assertEquals(1, userInfo.getStatusCount(503));
+        Assertions.assertEquals(0, userInfo.getRequestBytes());
+        Assertions.assertEquals(2, userInfo.getResponseBytes());
+
+        EndpointMetrics userInfos = metrics.getEndpoint(IdentityMetrics.USER_INFOS);
+        Assertions.assertEquals(1, userInfos.getStatusCount(200));
+        Assertions.assertEquals("{\"id\":\"\u00e9\"}".getBytes(StandardCharsets.UTF_8).length, userInfos.getRequestBytes());
+        Assertions.assertEquals(2, userInfos.getResponseBytes());
+
+        EndpointMetrics applicationInfo = metrics.getEndpoint(IdentityMetrics.APPLICATION_INFO);
+        Assertions.assertEquals(1, applicationInfo.getStatusCount(0));
+        Assertions.assertEquals(0, applicationInfo.getResponseBytes());
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class JsonArrayScannerTest extends AbstractMockTest {
+    private List<String> scan(String json) throws IOException {
+        return this.scan(new StringReader(json));
+    }
+
+    private List<String> scan(Reader reader) throws IOException {
+        JsonArrayScanner scanner = new JsonArrayScanner(reader);
+        List<String> elements = new ArrayList<>();
+        if (!scanner.findArray("body")) {
+            return null;
+        }
+
+        String element;
+        while ((element = scanner.nextElement()) != null) {
+            elements.add(element);
+        }
+        Assertions.assertNull(scanner.nextElement());
+        return elements;
+    }
+
+    @Test
+    public void test_scan() {
+        String json = "{ \"messages\" : [ {\"text\":\"]}\"} ], \"other\":{\"a\":[1,{\"b\":\"\\\"\"}]}, \"n\": -1.5e3, \"t\":true,"
+                + " \"body\" : [ {\"id\":\"a\",\"permissions\":[\"x\",\"y\"]} , {\"id\":\"b\\\"}\",\"userData\":{\"k\":\"v\"}}, \"str\", 12, null ], \"after\":1 }";
+
+        try {
+            Assertions.assertEquals(Arrays.asList( //
+                    "{\"id\":\"a\",\"permissions\":[\"x\",\"y\"]}", //
+                    "{\"id\":\"b\\\"}\",\"userData\":{\"k\":\"v\"}}", //
+                    "\"str\"", //
+                    "12", //
+                    "null"), this.scan(json));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_scan_emptyArray() {
+        try {
+            Assertions.assertEquals(new ArrayList<>(), this.scan("{\"body\":[ ]}"));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_scan_missing() {
+        try {
+            Assertions.assertNull(this.scan("{}"));
+            Assertions.assertNull(this.scan("{\"messages\":[]}"));
+            Assertions.assertNull(this.scan("{\"body\":null}"));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_scan_largeInput() {
+        StringBuilder json = new StringBuilder("{\"body\":[");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"user-").append(i).append("\"}");
+        }
+        json.append("]}");
+
+        Reader trickle = new StringReader(json.toString()) {
+            @Override
+            public int read(char[] cbuf) throws IOException {
+                return super.read(cbuf, 0, Math.min(cbuf.length, 7));
+            }
+        };
+
+        try {
+            List<String> elements = this.scan(trickle);
+            Assertions.assertEquals(5000, elements.size());
+            Assertions.assertEquals("{\"id\":\"user-4999\"}", elements.get(4999));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+    }
+
+    @Test
+    public void test_scan_malformed() {
+        for (String json : Arrays.asList("", "[]", "{\"body\":{}}", "{\"body\":[{\"id\":1}", "{\"body\":[1 2]}", "{\"body\":[\"abc", "{\"body\":[\"a\\",
+                "{\"a\":1 \"body\":[]}", "{\"body\" []}", "{\"body\":[,]}", "{\"body\":1}")) {
+            try {
+                this.scan(json);
+                Assertions.fail("Expected exception for " + json);
+            } catch (IOException ex) {
+                Assertions.assertEquals("Malformed JSON response", ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import io.github.lc.oss.commons.identity.model.ApiResponse;
+import io.github.lc.oss.commons.identity.model.UserInfoResponse;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+@SuppressWarnings("rawtypes")
+public class JsonResponseHandlerTest extends AbstractMockTest {
+    @Mock
+    private StreamingJsonService jsonService;
+
+    private JsonResponseHandler<UserInfoResponse> handler;
+
+    @BeforeEach
+    public void setup() {
+        this.handler = new JsonResponseHandler<>(this.jsonService, new StringResponseHandler(this.jsonService), UserInfoResponse.class, 16);
+    }
+
+    @Test
+    public void test_handleResponse_ok() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+        InputStream stream = new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_16));
+        UserInfoResponse<?> uiResponse = new UserInfoResponse<>();
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_OK);
+        Mockito.when(response.getEntity()).thenReturn(entity);
+        Mockito.when(entity.getContentLength()).thenReturn(6L);
+        Mockito.when(entity.getContentType()).thenReturn("application/json; charset=UTF-16");
+        try {
+            Mockito.when(entity.getContent()).thenReturn(stream);
+            Mockito.when(this.jsonService.from(ArgumentMatchers.any(InputStream.class), ArgumentMatchers.eq(StandardCharsets.UTF_16),
+                    ArgumentMatchers.eq(UserInfoResponse.class))).thenReturn(uiResponse);
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            Assertions.assertSame(uiResponse, this.handler.handleResponse(response));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleEntity_defaultCharset() {
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+        UserInfoResponse<?> uiResponse = new UserInfoResponse<>();
+
+        Mockito.when(entity.getContentLength()).thenReturn(-1L);
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+            Mockito.when(this.jsonService.from(ArgumentMatchers.any(InputStream.class), ArgumentMatchers.eq(StandardCharsets.UTF_8),
+                    ArgumentMatchers.eq(UserInfoResponse.class))).thenReturn(uiResponse);
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            Assertions.assertSame(uiResponse, this.handler.handleEntity(entity));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleEntity_contentLengthTooLarge() {
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(17L);
+
+        try {
+            this.handler.handleEntity(entity);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 16 bytes", ex.getMessage());
+        }
+
+        try {
+            Mockito.verify(entity, Mockito.never()).getContent();
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleEntity_streamTooLarge() {
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(-1L);
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream(new byte[32]));
+            Mockito.when(this.jsonService.from(ArgumentMatchers.any(InputStream.class), ArgumentMatchers.any(), ArgumentMatchers.eq(UserInfoResponse.class)))
+                    .thenAnswer(invocation -> {
+                        ((InputStream) invocation.getArgument(0)).readAllBytes();
+                        return null;
+                    });
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            this.handler.handleEntity(entity);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 16 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_handleResponse_error_withMessages() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+        InputStream stream = new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8));
+
+        ApiResponse<?> apiResponse = new ApiResponse<>();
+        apiResponse.setMessages(new ArrayList<>());
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_UNPROCESSABLE_CONTENT);
+        Mockito.when(response.getEntity()).thenReturn(entity);
+        try {
+            Mockito.when(entity.getContent()).thenReturn(stream);
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+        Mockito.when(this.jsonService.from("{}", ApiResponse.class)).thenReturn(apiResponse);
+
+        try {
+            this.handler.handleResponse(response);
+            Assertions.fail("Expected exception");
+        } catch (IOException e) {
+            Assertions.fail("Unexpected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals("Error making request", ex.getMessage());
+            Assertions.assertEquals(HttpStatus.SC_UNPROCESSABLE_CONTENT, ex.getStatus());
+            Assertions.assertSame(apiResponse.getMessages(), ex.getMessages());
+        }
+    }
+
+    @Test
+    public void test_handleResponse_noContent() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_NO_CONTENT);
+
+        try {
+            Assertions.assertNull(this.handler.handleResponse(response));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+}
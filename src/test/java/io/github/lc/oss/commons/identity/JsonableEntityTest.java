@@ -0,0 +1,77 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class JsonableEntityTest extends AbstractMockTest {
+    private static class TestJsonService implements StreamingJsonService {
+        private int streamed = 0;
+
+        @Override
+        public String to(Jsonable value) {
+            Assertions.fail("Unexpected call");
+            return null;
+        }
+
+        @Override
+        public <T extends Jsonable> T from(String json, Class<T> type) {
+            return null;
+        }
+
+        @Override
+        public <T extends Jsonable> T from(InputStream json, Charset charset, Class<T> type) throws IOException {
+            return null;
+        }
+
+        @Override
+        public void to(Jsonable value, OutputStream json) throws IOException {
+            this.streamed++;
+            json.write("{\"id\":\"\u00e9\"}".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void test_writeTo() {
+        TestJsonService jsonService = new TestJsonService();
+        JsonableEntity entity = new JsonableEntity(jsonService, new UserData());
+
+        Assertions.assertTrue(entity.isRepeatable());
+        Assertions.assertFalse(entity.isStreaming());
+        Assertions.assertEquals(-1, entity.getContentLength());
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            entity.writeTo(out);
+            Assertions.assertEquals("{\"id\":\"\u00e9\"}{\"id\":\"\u00e9\"}", out.toString(StandardCharsets.UTF_8));
+            entity.close();
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+        Assertions.assertEquals(2, jsonService.streamed);
+    }
+
+    @Test
+    public void test_getContent() {
+        TestJsonService jsonService = new TestJsonService();
+        JsonableEntity entity = new JsonableEntity(jsonService, new UserData());
+
+        try (InputStream in = entity.getContent()) {
+            Assertions.assertEquals("{\"id\":\"\u00e9\"}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+        Assertions.assertEquals(1, jsonService.streamed);
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.serialization.Jsonable;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class JsonablePublisherTest extends AbstractMockTest {
+    private static class TestJsonService implements StreamingJsonService {
+        private final byte[] body;
+        private final CountDownLatch written = new CountDownLatch(1);
+        private volatile IOException error;
+
+        public TestJsonService(int length) {
+            this.body = new byte[length];
+            Arrays.fill(this.body, (byte) 'a');
+        }
+
+        @Override
+        public void to(Jsonable value, OutputStream json) throws IOException {
+            try {
+                json.write(this.body);
+            } catch (IOException ex) {
+                this.error = ex;
+                throw ex;
+            } finally {
+                this.written.countDown();
+            }
+        }
+
+        @Override
+        public <T extends Jsonable> T from(InputStream json, Charset charset, Class<T> type) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String to(Jsonable value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T extends Jsonable> T from(String json, Class<T> type) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class TestSubscriber implements Flow.Subscriber<ByteBuffer> {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+        private final CountDownLatch received;
+        private volatile Flow.Subscription subscription;
+        private volatile int chunks = 0;
+
+        public TestSubscriber(int chunks) {
+            this.received = new CountDownLatch(chunks);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            byte[] bytes = new byte[item.remaining()];
+            item.get(bytes);
+            this.body.write(bytes, 0, bytes.length);
+            this.chunks++;
+            this.received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            this.result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            this.result.complete(this.body.toByteArray());
+        }
+    }
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void test_subscribe_demand() throws Exception {
+        TestJsonService jsonService = new TestJsonService(20 * 1024);
+        JsonablePublisher publisher = new JsonablePublisher(jsonService, new UserData(), false, this.executor);
+        TestSubscriber subscriber = new TestSubscriber(1);
+
+        publisher.subscribe(subscriber);
+        Assertions.assertEquals(-1, publisher.contentLength());
+
+        /*
+         * nothing is sent until it is requested
+         */
+        Thread.sleep(100);
+        Assertions.assertEquals(0, subscriber.chunks);
+
+        subscriber.subscription.request(1);
+        Assertions.assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assertions.assertEquals(1, subscriber.chunks);
+        Assertions.assertFalse(subscriber.result.isDone());
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        byte[] body = subscriber.result.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(3, subscriber.chunks);
+        Assertions.assertArrayEquals(jsonService.body, body);
+    }
+
+    @Test
+    public void test_close_releasesWriter() throws Exception {
+        TestJsonService jsonService = new TestJsonService(20 * 1024);
+        JsonablePublisher publisher = new JsonablePublisher(jsonService, new UserData(), false, this.executor);
+        TestSubscriber subscriber = new TestSubscriber(1);
+
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        Assertions.assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+
+        publisher.close();
+
+        Assertions.assertTrue(jsonService.written.await(5, TimeUnit.SECONDS));
+        Assertions.assertNotNull(jsonService.error);
+        try {
+            subscriber.result.get(5, TimeUnit.SECONDS);
+            Assertions.fail("Expected exception");
+        } catch (ExecutionException ex) {
+            Assertions.assertEquals("Error writing request body", ex.getCause().getMessage());
+            Assertions.assertEquals("Request body is closed", ex.getCause().getCause().getMessage());
+        }
+
+        /*
+         * a closed body cannot be sent again
+         */
+        TestSubscriber next = new TestSubscriber(1);
+        publisher.subscribe(next);
+        try {
+            next.result.get(5, TimeUnit.SECONDS);
+            Assertions.fail("Expected exception");
+        } catch (ExecutionException ex) {
+            Assertions.assertEquals("Request body is closed", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_cancel() throws Exception {
+        TestJsonService jsonService = new TestJsonService(20 * 1024);
+        JsonablePublisher publisher = new JsonablePublisher(jsonService, new UserData(), false, this.executor);
+        TestSubscriber subscriber = new TestSubscriber(1);
+
+        publisher.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        Assertions.assertTrue(subscriber.received.await(5, TimeUnit.SECONDS));
+        subscriber.subscription.cancel();
+
+        Assertions.assertTrue(jsonService.written.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("Request body cancelled", jsonService.error.getMessage());
+        Thread.sleep(100);
+        Assertions.assertFalse(subscriber.result.isDone());
+    }
+
+    @Test
+    public void test_subscribe_rejected() {
+        this.executor.shutdownNow();
+        JsonablePublisher publisher = new JsonablePublisher(new TestJsonService(1), new UserData(), false, this.executor);
+        TestSubscriber subscriber = new TestSubscriber(1);
+
+        publisher.subscribe(subscriber);
+
+        try {
+            subscriber.result.join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("Error writing request body", ex.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class LatencyHistogramTest extends AbstractMockTest {
+    @Test
+    public void test_empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Assertions.assertEquals(0, histogram.getCount());
+        Assertions.assertEquals(0, histogram.getMax());
+        Assertions.assertEquals(0d, histogram.getMean());
+        Assertions.assertEquals(0, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void test_getBucket() {
+        Assertions.assertEquals(0, LatencyHistogram.getBucket(0));
+        Assertions.assertEquals(15, LatencyHistogram.getBucket(15));
+        Assertions.assertEquals(16, LatencyHistogram.getBucket(16));
+        Assertions.assertEquals(16, LatencyHistogram.getBucket(17));
+        Assertions.assertEquals(17, LatencyHistogram.getBucket(18));
+        Assertions.assertEquals(24, LatencyHistogram.getBucket(32));
+
+        long previous = -1;
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            int bucket = LatencyHistogram.getBucket(value);
+            long upper = LatencyHistogram.getUpperBound(bucket);
+            Assertions.assertTrue(upper >= value);
+            Assertions.assertTrue(upper - value <= value / 8);
+            Assertions.assertTrue(upper > previous);
+            previous = upper;
+        }
+        Assertions.assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram.getBucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void test_record() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        histogram.record(-1);
+
+        Assertions.assertEquals(101, histogram.getCount());
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getMax());
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(5050) / 101d, histogram.getMean(), 1);
+
+        long p50 = histogram.getPercentile(0.5, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(p50 >= 50 && p50 <= 57, "p50 " + p50);
+        long p99 = histogram.getPercentile(0.99, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(p99 >= 99 && p99 <= 100, "p99 " + p99);
+        Assertions.assertEquals(0, histogram.getPercentile(0));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), histogram.getPercentile(1));
+    }
+
+    @Test
+    public void test_record_concurrent() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(40000, histogram.getCount());
+        Assertions.assertEquals(9999, histogram.getMax());
+    }
+}
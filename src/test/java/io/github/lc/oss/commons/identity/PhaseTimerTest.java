@@ -0,0 +1,147 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class PhaseTimerTest extends AbstractMockTest {
+    private static class TestMetrics implements IdentityMetrics {
+        private final List<RequestPhases> phases = new ArrayList<>();
+
+        @Override
+        public void onPhases(RequestPhases phases) {
+            this.phases.add(phases);
+        }
+    }
+
+    @Test
+    public void test_of_disabled() {
+        Assertions.assertNull(PhaseTimer.of(new HttpServiceConfig(), "GET", "/svc/v1/userInfo/euid"));
+
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setSlowCallThreshold(1);
+        Assertions.assertNotNull(PhaseTimer.of(config, "GET", "/svc/v1/userInfo/euid"));
+    }
+
+    @Test
+    public void test_context() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(new TestMetrics());
+        PhaseTimer timer = PhaseTimer.of(config, "GET", "/svc/v1/userInfo/euid");
+
+        Assertions.assertSame(timer, PhaseTimer.get(timer.newContext()));
+        Assertions.assertNull(PhaseTimer.get(HttpClientContext.create()));
+        Assertions.assertNull(PhaseTimer.get(null));
+    }
+
+    @Test
+    public void test_end() throws InterruptedException {
+        TestMetrics metrics = new TestMetrics();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(metrics);
+        PhaseTimer timer = PhaseTimer.of(config, "GET", "/svc/v1/userInfo/euid");
+
+        timer.enter(RequestPhase.LEASE);
+        timer.enter(RequestPhase.CONNECT);
+        Thread.sleep(5);
+        timer.enter(RequestPhase.FIRST_BYTE);
+        timer.enter(RequestPhase.READ);
+        timer.exit();
+        timer.setStatus(200);
+        timer.end();
+
+        Assertions.assertEquals(1, metrics.phases.size());
+        RequestPhases phases = metrics.phases.get(0);
+        Assertions.assertEquals(IdentityMetrics.USER_INFO, phases.getEndpoint());
+        Assertions.assertEquals(200, phases.getStatus());
+        Assertions.assertFalse(phases.isNewConnection());
+        Assertions.assertTrue(phases.get(RequestPhase.LEASE) >= 0);
+        Assertions.assertTrue(phases.get(RequestPhase.CONNECT) >= 5000000);
+        Assertions.assertEquals(-1, phases.get(RequestPhase.WRITE));
+        Assertions.assertTrue(phases.get(RequestPhase.FIRST_BYTE) >= 0);
+        Assertions.assertTrue(phases.get(RequestPhase.READ) >= 0);
+        Assertions.assertEquals(-1, phases.get(RequestPhase.DESERIALIZE));
+        Assertions.assertTrue(phases.getTotal() >= phases.get(RequestPhase.CONNECT));
+        Assertions.assertTrue(phases.toString().startsWith("userInfo status=200 total="));
+        Assertions.assertFalse(phases.toString().contains("write="));
+    }
+
+    @Test
+    public void test_end_failed() throws InterruptedException {
+        TestMetrics metrics = new TestMetrics();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(metrics);
+        config.setSlowCallThreshold(1);
+        PhaseTimer timer = PhaseTimer.of(config, "POST", "/svc/v1/jwt/application");
+
+        timer.enter(RequestPhase.LEASE);
+        timer.enter(RequestPhase.CONNECT);
+        Thread.sleep(2);
+        timer.end();
+
+        RequestPhases phases = metrics.phases.get(0);
+        Assertions.assertEquals(IdentityMetrics.TOKEN, phases.getEndpoint());
+        Assertions.assertEquals(0, phases.getStatus());
+        Assertions.assertTrue(phases.get(RequestPhase.CONNECT) >= 2000000);
+        Assertions.assertEquals(-1, phases.get(RequestPhase.FIRST_BYTE));
+    }
+
+    @Test
+    public void test_retry() {
+        TestMetrics metrics = new TestMetrics();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(metrics);
+        PhaseTimer timer = PhaseTimer.of(config, "GET", "/svc/v1/applicationInfo");
+
+        timer.enter(RequestPhase.LEASE);
+        timer.enter(RequestPhase.CONNECT);
+        timer.exit();
+        timer.exit();
+        timer.enter(RequestPhase.LEASE);
+        timer.end();
+
+        RequestPhases phases = metrics.phases.get(0);
+        Assertions.assertTrue(phases.get(RequestPhase.LEASE) >= 0);
+        Assertions.assertTrue(phases.get(RequestPhase.CONNECT) >= 0);
+        Assertions.assertEquals(-1, phases.get(RequestPhase.READ));
+    }
+
+    @Test
+    public void test_wrap() throws IOException {
+        TestMetrics metrics = new TestMetrics();
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setMetrics(metrics);
+        PhaseTimer timer = PhaseTimer.of(config, "PUT", "/svc/v1/userData/euid");
+
+        HttpEntity entity = timer.wrap(new StringEntity("{}", StandardCharsets.UTF_8));
+        timer.enter(RequestPhase.WRITE);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        timer.end();
+
+        RequestPhases phases = metrics.phases.get(0);
+        Assertions.assertTrue(phases.get(RequestPhase.WRITE) >= 0);
+        Assertions.assertTrue(phases.get(RequestPhase.FIRST_BYTE) >= 0);
+    }
+
+    @Test
+    public void test_slowCallLog() {
+        HttpServiceConfig config = new HttpServiceConfig();
+        config.setSlowCallThreshold(1);
+        config.setSlowCallSampleRate(0);
+        PhaseTimer timer = PhaseTimer.of(config, "GET", "/svc/v1/userInfo/euid");
+
+        timer.enter(RequestPhase.LEASE);
+        timer.end();
+    }
+}
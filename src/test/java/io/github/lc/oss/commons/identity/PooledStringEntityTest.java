@@ -0,0 +1,93 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class PooledStringEntityTest extends AbstractMockTest {
+    @Test
+    public void test_writeTo() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+        PooledStringEntity entity = new PooledStringEntity("{\"id\":\"\u00e9\"}", pool);
+
+        Assertions.assertTrue(entity.isRepeatable());
+        Assertions.assertFalse(entity.isStreaming());
+        Assertions.assertEquals(11, entity.getContentLength());
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            Assertions.assertEquals("{\"id\":\"\u00e9\"}", out.toString(StandardCharsets.UTF_8));
+
+            try (InputStream in = entity.getContent()) {
+                Assertions.assertEquals("{\"id\":\"\u00e9\"}", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+
+        Assertions.assertEquals(0, pool.getRetainedBytes());
+        entity.close();
+        Assertions.assertEquals(4096, pool.getRetainedBytes());
+        entity.close();
+        Assertions.assertEquals(4096, pool.getRetainedBytes());
+
+        try {
+            entity.writeTo(new ByteArrayOutputStream());
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Entity is closed", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_overflow() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+        char[] chars = new char[4096];
+        Arrays.fill(chars, '\u00e9');
+        String value = new String(chars);
+
+        PooledStringEntity entity = new PooledStringEntity(value, pool);
+        Assertions.assertEquals(8192, entity.getContentLength());
+        Assertions.assertEquals(4096, pool.getRetainedBytes());
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            Assertions.assertEquals(value, out.toString(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+
+        entity.close();
+        Assertions.assertEquals(4096 + 8192, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void test_unpairedSurrogate() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+        String value = "{\"id\":\"a\ud800b\",\"name\":\"\udc00\"}";
+
+        PooledStringEntity entity = new PooledStringEntity(value, pool);
+        byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(expected.length, entity.getContentLength());
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            Assertions.assertArrayEquals(expected, out.toByteArray());
+            Assertions.assertEquals("{\"id\":\"a?b\",\"name\":\"?\"}", out.toString(StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception", ex);
+        }
+
+        entity.close();
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+
+import io.github.lc.oss.commons.api.services.JsonService;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class ReaderResponseHandlerTest extends AbstractMockTest {
+    @Mock
+    private JsonService jsonService;
+
+    @Test
+    public void test_handleResponse_ok() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+        InputStream stream = new ByteArrayInputStream("t\u00e9xt".getBytes(StandardCharsets.UTF_16));
+        StringBuilder read = new StringBuilder();
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_OK);
+        Mockito.when(response.getEntity()).thenReturn(entity);
+        Mockito.when(entity.getContentType()).thenReturn("text/plain; charset=UTF-16");
+        try {
+            Mockito.when(entity.getContent()).thenReturn(stream);
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        ReaderResponseHandler handler = new ReaderResponseHandler(new StringResponseHandler(this.jsonService), body -> {
+            int c;
+            while ((c = body.read()) != -1) {
+                read.append((char) c);
+            }
+        });
+
+        try {
+            Assertions.assertNull(handler.handleResponse(response));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        Assertions.assertEquals("t\u00e9xt", read.toString());
+    }
+
+    @Test
+    public void test_handleResponse_noContent() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_NO_CONTENT);
+
+        ReaderResponseHandler handler = new ReaderResponseHandler(new StringResponseHandler(this.jsonService), body -> {
+            Assertions.fail("Unexpected call");
+        });
+
+        try {
+            Assertions.assertNull(handler.handleResponse(response));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleResponse_error() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_NOT_FOUND);
+        Mockito.when(response.getEntity()).thenReturn(null);
+
+        ReaderResponseHandler handler = new ReaderResponseHandler(new StringResponseHandler(this.jsonService), body -> {
+            Assertions.fail("Unexpected call");
+        });
+
+        try {
+            handler.handleResponse(response);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(HttpStatus.SC_NOT_FOUND, ex.getStatus());
+        }
+    }
+}
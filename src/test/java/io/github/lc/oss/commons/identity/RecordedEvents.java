@@ -0,0 +1,39 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/*
+ * Stops the recording and returns the identity events it captured, or only
+ * those of the named type.
+ */
+final class RecordedEvents {
+    static List<RecordedEvent> read(Recording recording) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("identity", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream() //
+                    .filter(event -> event.getEventType().getName().startsWith("io.github.lc.oss.commons.identity.")) //
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static List<RecordedEvent> read(Recording recording, String name) throws IOException {
+        return RecordedEvents.read(recording).stream() //
+                .filter(event -> event.getEventType().getName().equals("io.github.lc.oss.commons.identity." + name)) //
+                .collect(Collectors.toList());
+    }
+
+    private RecordedEvents() {
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.lc.oss.commons.identity;
+
+import java.security.KeyPair;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.encoding.Encodings;
+import io.github.lc.oss.commons.identity.model.SignedRequest;
+import io.github.lc.oss.commons.identity.model.UserData;
+import io.github.lc.oss.commons.signing.Algorithms;
+import io.github.lc.oss.commons.signing.KeyGenerator;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+
+public class RequestSignerTest extends AbstractMockTest {
+    @Test
+    public void test_sign_event() throws Exception {
+        KeyPair keys = new KeyGenerator().generate(Algorithms.ED448);
+        String privateKey = Encodings.Base64.encode(keys.getPrivate().getEncoded());
+        SignedRequest request = new SignedRequest(System.currentTimeMillis(), "app-id", "base64");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(SigningEvent.class);
+            recording.start();
+
+            RequestSigner.sign(request, privateKey);
+            RequestSigner.sign(new UserData(), privateKey);
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "Signing");
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertFalse(events.get(0).getDuration().isNegative());
+            Assertions.assertEquals("Identity Request Signing", events.get(0).getEventType().getLabel());
+        }
+        Assertions.assertNotNull(request.getSignature());
+    }
+}
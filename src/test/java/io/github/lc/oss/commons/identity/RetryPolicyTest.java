@@ -0,0 +1,190 @@
+package io.github.lc.oss.commons.identity;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.zip.ZipException;
+
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.core5.http.NoHttpResponseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class RetryPolicyTest extends AbstractMockTest {
+    private static class TestPolicy extends RetryPolicy {
+        private long now = 1000;
+
+        @Override
+        long random(long bound) {
+            return bound - 1;
+        }
+
+        @Override
+        long now() {
+            return this.now;
+        }
+    }
+
+    private static RuntimeException io(IOException cause) {
+        return new RuntimeException("Error making request", cause);
+    }
+
+    @Test
+    public void test_isRetryable() {
+        RetryPolicy policy = new RetryPolicy();
+
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new ConnectException()), false));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new UnknownHostException()), false));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new ConnectTimeoutException("timeout")), false));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new HttpConnectTimeoutException("timeout")), false));
+        Assertions.assertFalse(policy.isRetryable(RetryPolicyTest.io(new SocketTimeoutException()), false));
+        Assertions.assertFalse(policy.isRetryable(new HttpException("Error making request", 503, null), false));
+
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new ConnectException()), true));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new SocketTimeoutException()), true));
+        Assertions.assertTrue(policy.isRetryable(new HttpException("Error making request", 429, null), true));
+        Assertions.assertTrue(policy.isRetryable(new HttpException("Error making request", 502, null), true));
+        Assertions.assertTrue(policy.isRetryable(new HttpException("Error making request", 503, null), true));
+        Assertions.assertTrue(policy.isRetryable(new HttpException("Error making request", 504, null), true));
+        Assertions.assertFalse(policy.isRetryable(new HttpException("Error making request", 500, null), true));
+        Assertions.assertFalse(policy.isRetryable(new HttpException("Error making request", 404, null), true));
+        Assertions.assertFalse(policy.isRetryable(new IllegalStateException("HttpService is closed"), true));
+        Assertions.assertFalse(policy.isRetryable(new CircuitBreakerOpenException("localhost", 1000), true));
+    }
+
+    @Test
+    public void test_isRetryable_io() {
+        RetryPolicy policy = new RetryPolicy();
+
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new SocketException("Connection reset")), true));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new HttpTimeoutException("request timed out")), true));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new NoHttpResponseException("localhost failed to respond")), true));
+        Assertions.assertTrue(policy.isRetryable(RetryPolicyTest.io(new IOException("Error reading entity response.", new EOFException())), true));
+        Assertions.assertFalse(policy.isRetryable(RetryPolicyTest.io(new SocketException("Connection reset")), false));
+
+        /*
+         * these fail the same way on every attempt
+         */
+        Assertions.assertFalse(policy.isRetryable(RetryPolicyTest.io(BoundedInputStream.tooLarge(10)), true));
+        Assertions.assertFalse(
+                policy.isRetryable(RetryPolicyTest.io(new IOException("Error reading entity response.", BoundedInputStream.tooLarge(10))), true));
+        Assertions.assertFalse(policy.isRetryable(RetryPolicyTest.io(new ZipException("Not in GZIP format")), true));
+        Assertions.assertFalse(policy.isRetryable(RetryPolicyTest.io(new IOException("Unsupported content encoding: br")), true));
+        Assertions.assertFalse(policy.isRetryable(RetryPolicyTest.io(new IOException("Error reading entity response.", new IOException("Unexpected character"))), true));
+    }
+
+    @Test
+    public void test_getRetryDelay_responseTooLarge() {
+        TestPolicy policy = new TestPolicy();
+        RuntimeException tooLarge = RetryPolicyTest.io(new IOException("Error reading entity response.", BoundedInputStream.tooLarge(10)));
+
+        Assertions.assertEquals(-1, policy.getRetryDelay(tooLarge, true, 1, policy.now));
+        Assertions.assertEquals(0, policy.getRetryCount());
+        Assertions.assertEquals(0, policy.getBudgetExhaustedCount());
+    }
+
+    @Test
+    public void test_getBackoff() {
+        TestPolicy policy = new TestPolicy();
+        policy.setBaseDelay(100);
+        policy.setMaxDelay(1000);
+
+        Assertions.assertEquals(100, policy.getBackoff(1));
+        Assertions.assertEquals(200, policy.getBackoff(2));
+        Assertions.assertEquals(400, policy.getBackoff(3));
+        Assertions.assertEquals(800, policy.getBackoff(4));
+        Assertions.assertEquals(1000, policy.getBackoff(5));
+        Assertions.assertEquals(1000, policy.getBackoff(100));
+
+        policy.setMaxDelay(0);
+        Assertions.assertEquals(100l << 30, policy.getBackoff(100));
+
+        policy.setBaseDelay(Long.MAX_VALUE / 2);
+        Assertions.assertEquals(Long.MAX_VALUE - 1, policy.getBackoff(5));
+
+        policy.setBaseDelay(0);
+        Assertions.assertEquals(0, policy.getBackoff(3));
+    }
+
+    @Test
+    public void test_getBackoff_jitter() {
+        RetryPolicy policy = new RetryPolicy();
+        for (int i = 0; i < 100; i++) {
+            long backoff = policy.getBackoff(3);
+            Assertions.assertTrue(backoff >= 0 && backoff <= 400);
+        }
+    }
+
+    @Test
+    public void test_getRetryDelay() {
+        TestPolicy policy = new TestPolicy();
+        policy.setMaxAttempts(3);
+        HttpException unavailable = new HttpException("Error making request", 503, null);
+
+        Assertions.assertEquals(100, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(200, policy.getRetryDelay(unavailable, true, 2, policy.now));
+        Assertions.assertEquals(-1, policy.getRetryDelay(unavailable, true, 3, policy.now));
+        Assertions.assertEquals(-1, policy.getRetryDelay(unavailable, false, 1, policy.now));
+        Assertions.assertEquals(2, policy.getRetryCount());
+    }
+
+    @Test
+    public void test_getRetryDelay_retryAfter() {
+        TestPolicy policy = new TestPolicy();
+
+        Assertions.assertEquals(3000, policy.getRetryDelay(new HttpException("Error making request", 429, null, 3000), true, 1, policy.now));
+        Assertions.assertEquals(0, policy.getRetryDelay(new HttpException("Error making request", 429, null, 0), true, 1, policy.now));
+    }
+
+    @Test
+    public void test_getRetryDelay_deadline() {
+        TestPolicy policy = new TestPolicy();
+        policy.setDeadline(5000);
+        long started = policy.now;
+
+        Assertions.assertEquals(-1, policy.getRetryDelay(new HttpException("Error making request", 429, null, 5000), true, 1, started));
+
+        policy.now += 4850;
+        Assertions.assertEquals(100, policy.getRetryDelay(new HttpException("Error making request", 503, null), true, 1, started));
+        policy.now += 50;
+        Assertions.assertEquals(-1, policy.getRetryDelay(new HttpException("Error making request", 503, null), true, 1, started));
+
+        policy.setDeadline(0);
+        Assertions.assertEquals(60000, policy.getRetryDelay(new HttpException("Error making request", 429, null, 60000), true, 1, started));
+    }
+
+    @Test
+    public void test_budget() {
+        TestPolicy policy = new TestPolicy();
+        policy.setBudgetCapacity(2);
+        policy.setBudgetRatio(0.5);
+        HttpException unavailable = new HttpException("Error making request", 503, null);
+
+        policy.onCall();
+        Assertions.assertEquals(100, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(100, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(-1, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(1, policy.getBudgetExhaustedCount());
+
+        policy.onCall();
+        Assertions.assertEquals(-1, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        policy.onCall();
+        Assertions.assertEquals(100, policy.getRetryDelay(unavailable, true, 1, policy.now));
+
+        for (int i = 0; i < 10; i++) {
+            policy.onCall();
+        }
+        Assertions.assertEquals(100, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(100, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(-1, policy.getRetryDelay(unavailable, true, 1, policy.now));
+        Assertions.assertEquals(5, policy.getRetryCount());
+        Assertions.assertEquals(3, policy.getBudgetExhaustedCount());
+    }
+}
@@ -0,0 +1,105 @@
+package io.github.lc.oss.commons.identity;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class RevalidationCacheTest extends AbstractMockTest {
+    private static class TestCache extends RevalidationCache {
+        private long now = 1000;
+
+        public TestCache(int maxOwners) {
+            super(maxOwners);
+        }
+
+        @Override
+        long now() {
+            return this.now;
+        }
+    }
+
+    @Test
+    public void test_put_get() {
+        TestCache cache = new TestCache(10);
+
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", "\"v1\"", null), cache.getStamp());
+
+        RevalidationCache.Entry entry = cache.get("user", String.class);
+        Assertions.assertEquals("value", entry.getValue());
+        Assertions.assertEquals("\"v1\"", entry.getETag());
+        Assertions.assertFalse(entry.isFresh(cache.now));
+        Assertions.assertNull(cache.get("user", Integer.class));
+        Assertions.assertNull(cache.get("other", String.class));
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_put_maxAge() {
+        TestCache cache = new TestCache(10);
+
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", null, "max-age=5"), cache.getStamp());
+
+        RevalidationCache.Entry entry = cache.get("user", String.class);
+        Assertions.assertNull(entry.getETag());
+        Assertions.assertTrue(entry.isFresh(5999));
+        Assertions.assertFalse(entry.isFresh(6000));
+    }
+
+    @Test
+    public void test_put_notKept() {
+        TestCache cache = new TestCache(10);
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", "\"v1\"", null), cache.getStamp());
+
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", "\"v2\"", "no-store"), cache.getStamp());
+        Assertions.assertNull(cache.get("user", String.class));
+
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value"), cache.getStamp());
+        cache.put("other", String.class, null, new ConditionalResponse<>(null, "\"v1\"", null), cache.getStamp());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_put_staleStamp() {
+        TestCache cache = new TestCache(10);
+
+        long stamp = cache.getStamp();
+        cache.invalidate("user");
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", "\"v1\"", null), stamp);
+        Assertions.assertNull(cache.get("user", String.class));
+
+        stamp = cache.getStamp();
+        cache.invalidateAll();
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", "\"v1\"", null), stamp);
+        Assertions.assertNull(cache.get("user", String.class));
+    }
+
+    @Test
+    public void test_invalidate() {
+        TestCache cache = new TestCache(10);
+        cache.put("user", String.class, "value", new ConditionalResponse<>("value", "\"v1\"", null), cache.getStamp());
+        cache.put("user", Integer.class, 1, new ConditionalResponse<>(1, "\"v1\"", null), cache.getStamp());
+        cache.put("other", String.class, "value", new ConditionalResponse<>("value", "\"v1\"", null), cache.getStamp());
+        Assertions.assertEquals(3, cache.size());
+
+        cache.invalidate("user");
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertNotNull(cache.get("other", String.class));
+
+        cache.invalidateAll();
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_evictsLeastRecentlyUsedOwner() {
+        TestCache cache = new TestCache(2);
+        cache.put("a", String.class, "a", new ConditionalResponse<>("a", "\"v1\"", null), cache.getStamp());
+        cache.put("b", String.class, "b", new ConditionalResponse<>("b", "\"v1\"", null), cache.getStamp());
+        cache.get("a", String.class);
+        cache.put("c", String.class, "c", new ConditionalResponse<>("c", "\"v1\"", null), cache.getStamp());
+
+        Assertions.assertNotNull(cache.get("a", String.class));
+        Assertions.assertNull(cache.get("b", String.class));
+        Assertions.assertNotNull(cache.get("c", String.class));
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class SingleFlightTest extends AbstractMockTest {
+    @Test
+    public void test_execute() {
+        SingleFlight singleFlight = new SingleFlight();
+
+        Assertions.assertEquals("a", singleFlight.execute("key", () -> "a"));
+        Assertions.assertEquals("b", singleFlight.execute("key", () -> "b"));
+        Assertions.assertEquals(2, singleFlight.getCallCount());
+        Assertions.assertEquals(0, singleFlight.getCoalescedCount());
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void test_execute_error() {
+        SingleFlight singleFlight = new SingleFlight();
+
+        try {
+            singleFlight.execute("key", () -> {
+                throw new HttpException("NotFound", 404, null);
+            });
+            Assertions.fail("Expected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(404, ex.getStatus());
+        }
+
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void test_execute_concurrent() {
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger invocations = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    invocations.incrementAndGet();
+                    this.await(release);
+                    return "value";
+                })));
+            }
+
+            this.waitUntil(() -> singleFlight.getCoalescedCount() == 7);
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                Assertions.assertEquals("value", result.get(10, TimeUnit.SECONDS));
+            }
+        } catch (Exception ex) {
+            Assertions.fail("Unexpected exception", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertEquals(1, invocations.get());
+        Assertions.assertEquals(1, singleFlight.getCallCount());
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void test_execute_concurrent_error() {
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    try {
+                        return singleFlight.execute("key", () -> {
+                            this.await(release);
+                            throw new HttpException("Unavailable", 503, null);
+                        });
+                    } catch (HttpException ex) {
+                        return ex;
+                    }
+                }));
+            }
+
+            this.waitUntil(() -> singleFlight.getCoalescedCount() == 3);
+            release.countDown();
+
+            Object first = results.get(0).get(10, TimeUnit.SECONDS);
+            Assertions.assertTrue(first instanceof HttpException);
+            for (Future<Object> result : results) {
+                Assertions.assertSame(first, result.get(10, TimeUnit.SECONDS));
+            }
+        } catch (Exception ex) {
+            Assertions.fail("Unexpected exception", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void test_execute_sharesAsyncCall() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> async = singleFlight.executeAsync("key", () -> pending);
+
+        CompletableFuture<Object> sync = CompletableFuture.supplyAsync(() -> singleFlight.execute("key", () -> "other"));
+        this.waitUntil(() -> singleFlight.getCoalescedCount() == 1);
+        pending.complete("value");
+
+        Assertions.assertEquals("value", async.join());
+        Assertions.assertEquals("value", sync.join());
+        Assertions.assertEquals(1, singleFlight.getCallCount());
+    }
+
+    @Test
+    public void test_executeAsync() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        AtomicInteger invocations = new AtomicInteger();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> {
+            invocations.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> {
+            invocations.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        CompletableFuture<String> other = singleFlight.executeAsync("other", () -> CompletableFuture.completedFuture("other"));
+
+        Assertions.assertEquals("other", other.join());
+        Assertions.assertFalse(first.isDone());
+        Assertions.assertEquals(1, singleFlight.getInFlightCount());
+
+        second.cancel(true);
+        Assertions.assertFalse(first.isDone());
+
+        pending.complete("value");
+
+        Assertions.assertEquals("value", first.join());
+        Assertions.assertEquals(1, invocations.get());
+        Assertions.assertEquals(1, singleFlight.getCoalescedCount());
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void test_executeAsync_error() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.executeAsync("key", () -> pending);
+        CompletableFuture<String> second = singleFlight.executeAsync("key", () -> pending);
+
+        pending.completeExceptionally(new CompletionException(new HttpException("NotFound", 404, null)));
+
+        for (CompletableFuture<String> result : Arrays.asList(first, second)) {
+            try {
+                result.join();
+                Assertions.fail("Expected exception");
+            } catch (CompletionException ex) {
+                Assertions.assertEquals(404, ((HttpException) ex.getCause()).getStatus());
+            }
+        }
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void test_executeAsync_supplierThrows() {
+        SingleFlight singleFlight = new SingleFlight();
+
+        CompletableFuture<String> result = singleFlight.executeAsync("key", () -> {
+            throw new IllegalStateException("BOOM!");
+        });
+
+        try {
+            result.join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("BOOM!", ex.getCause().getMessage());
+        }
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+}
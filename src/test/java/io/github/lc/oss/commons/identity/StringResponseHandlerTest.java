@@ -7,7 +7,9 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 
 import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
 import org.apache.hc.core5.http.HttpStatus;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -71,6 +73,162 @@ public class StringResponseHandlerTest extends AbstractMockTest {
         }
     }
 
+    @Test
+    public void test_handleEntity_bounded() {
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService, 4);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(4L);
+        Mockito.when(entity.getContentType()).thenReturn("text/plain; charset=ISO-8859-1");
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream("t\u00e9xt".getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            Assertions.assertEquals("t\u00e9xt", handler.handleEntity(entity));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleEntity_bounded_contentLengthTooLarge() {
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService, 4);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(5L);
+
+        try {
+            handler.handleEntity(entity);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Response exceeds maximum size of 4 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void test_handleEntity_bounded_streamTooLarge() {
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService, 4);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(-1L);
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream("too long".getBytes(StandardCharsets.UTF_8)));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            handler.handleEntity(entity);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Error reading entity response.", ex.getMessage());
+            Assertions.assertEquals("Response exceeds maximum size of 4 bytes", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_handleEntity_pooled() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService, 0, pool);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(4L);
+        Mockito.when(entity.getContentType()).thenReturn("text/plain; charset=ISO-8859-1");
+        try {
+            Mockito.when(entity.getContent()).thenReturn( //
+                    new ByteArrayInputStream("t\u00e9xt".getBytes(StandardCharsets.ISO_8859_1)), //
+                    new ByteArrayInputStream("t\u00e9xt".getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            Assertions.assertEquals("t\u00e9xt", handler.handleEntity(entity));
+            Assertions.assertEquals("t\u00e9xt", handler.handleEntity(entity));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+        Assertions.assertEquals(1, pool.getHitCount());
+        Assertions.assertEquals(1, pool.getMissCount());
+    }
+
+    @Test
+    public void test_handleResponse_error_pooled() {
+        BufferPool pool = new BufferPool(1024 * 1024, 1);
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService, 0, pool);
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+        final String responseJson = "{}";
+
+        ApiResponse<?> apiResponse = new ApiResponse<>();
+        apiResponse.setMessages(new ArrayList<>());
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_UNPROCESSABLE_CONTENT);
+        Mockito.when(response.getEntity()).thenReturn(entity);
+        Mockito.when(entity.getContentLength()).thenReturn(-1L);
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream(responseJson.getBytes(StandardCharsets.UTF_8)));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+        Mockito.when(this.jsonService.from(responseJson, ApiResponse.class)).thenReturn(apiResponse);
+
+        try {
+            handler.handleResponse(response);
+            Assertions.fail("Expected exception");
+        } catch (IOException e) {
+            Assertions.fail("Unexpected exception");
+        } catch (HttpException ex) {
+            Assertions.assertSame(apiResponse.getMessages(), ex.getMessages());
+        }
+        Assertions.assertEquals(4096, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void test_handleEntity_gzip() {
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(100L);
+        Mockito.when(entity.getContentEncoding()).thenReturn("gzip");
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream(Compression.gzip("text".getBytes(StandardCharsets.UTF_8))));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            Assertions.assertEquals("text", handler.handleEntity(entity));
+        } catch (IOException ex) {
+            Assertions.fail("Unexpected exception");
+        }
+    }
+
+    @Test
+    public void test_handleEntity_gzip_decodedTooLarge() {
+        StringResponseHandler handler = new StringResponseHandler(this.jsonService, 4);
+        HttpEntity entity = Mockito.mock(HttpEntity.class);
+
+        Mockito.when(entity.getContentLength()).thenReturn(3L);
+        Mockito.when(entity.getContentEncoding()).thenReturn("gzip");
+        try {
+            Mockito.when(entity.getContent()).thenReturn(new ByteArrayInputStream(Compression.gzip("too long".getBytes(StandardCharsets.UTF_8))));
+        } catch (UnsupportedOperationException | IOException e) {
+            Assertions.fail("Unexpected exception");
+        }
+
+        try {
+            handler.handleEntity(entity);
+            Assertions.fail("Expected exception");
+        } catch (IOException ex) {
+            Assertions.assertEquals("Error reading entity response.", ex.getMessage());
+            Assertions.assertEquals("Response exceeds maximum size of 4 bytes", ex.getCause().getMessage());
+        }
+    }
+
     @Test
     public void test_handleResponse_error_noEntity() {
         ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
@@ -151,6 +309,26 @@ public class StringResponseHandlerTest extends AbstractMockTest {
         }
     }
 
+    @Test
+    public void test_handleResponse_retryAfter() {
+        ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
+        Header retryAfter = Mockito.mock(Header.class);
+
+        Mockito.when(response.getCode()).thenReturn(HttpStatus.SC_SERVICE_UNAVAILABLE);
+        Mockito.when(response.getFirstHeader(HttpHeaders.RETRY_AFTER)).thenReturn(retryAfter);
+        Mockito.when(retryAfter.getValue()).thenReturn("30");
+
+        try {
+            this.handler.handleResponse(response);
+            Assertions.fail("Expected exception");
+        } catch (IOException e) {
+            Assertions.fail("Unexpected exception");
+        } catch (HttpException ex) {
+            Assertions.assertEquals(HttpStatus.SC_SERVICE_UNAVAILABLE, ex.getStatus());
+            Assertions.assertEquals(30000, ex.getRetryAfter());
+        }
+    }
+
     @Test
     public void test_handleResponse_serverError() {
         ClassicHttpResponse response = Mockito.mock(ClassicHttpResponse.class);
@@ -0,0 +1,57 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class TraceParentTest extends AbstractMockTest {
+    @Test
+    public void test_format() {
+        Assertions.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01",
+                TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", true));
+        Assertions.assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-00",
+                TraceParent.format("4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902b7", false));
+    }
+
+    @Test
+    public void test_format_invalid() {
+        String[][] invalid = new String[][] { //
+                { null, "00f067aa0ba902b7" }, //
+                { "4bf92f3577b34da6a3ce929d0e0e4736", null }, //
+                { "4bf92f3577b34da6a3ce929d0e0e473", "00f067aa0ba902b7" }, //
+                { "4BF92F3577B34DA6A3CE929D0E0E4736", "00f067aa0ba902b7" }, //
+                { "00000000000000000000000000000000", "00f067aa0ba902b7" }, //
+                { "4bf92f3577b34da6a3ce929d0e0e4736", "0000000000000000" }, //
+                { "4bf92f3577b34da6a3ce929d0e0e4736", "00f067aa0ba902bg" } };
+        for (String[] ids : invalid) {
+            try {
+                TraceParent.format(ids[0], ids[1], true);
+                Assertions.fail("Expected exception");
+            } catch (IllegalArgumentException ex) {
+                Assertions.assertEquals("Invalid trace context", ex.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void test_newIds() {
+        String traceId = TraceParent.newTraceId();
+        String spanId = TraceParent.newSpanId();
+        Assertions.assertTrue(TraceParent.isValidId(traceId, 32));
+        Assertions.assertTrue(TraceParent.isValidId(spanId, 16));
+        Assertions.assertNotEquals(traceId, TraceParent.newTraceId());
+        Assertions.assertEquals(55, TraceParent.format(traceId, spanId, true).length());
+    }
+
+    @Test
+    public void test_noop() {
+        Map<String, String> headers = new HashMap<>();
+        IdentitySpan.NOOP.inject(headers);
+        IdentitySpan.NOOP.end(null);
+        Assertions.assertTrue(headers.isEmpty());
+    }
+}
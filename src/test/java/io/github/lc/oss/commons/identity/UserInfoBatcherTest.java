@@ -0,0 +1,200 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserInfo;
+import io.github.lc.oss.commons.identity.model.UserInfoSet;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class UserInfoBatcherTest extends AbstractMockTest {
+    private ScheduledExecutorService scheduler;
+    private List<Collection<String>> requests;
+    private List<CompletableFuture<UserInfoSet>> responses;
+
+    @BeforeEach
+    public void setup() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+        this.requests = new ArrayList<>();
+        this.responses = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        this.scheduler.shutdownNow();
+    }
+
+    private UserInfoBatcher newBatcher(long window, int maxSize) {
+        return new UserInfoBatcher(window, maxSize, () -> this.scheduler, ids -> {
+            CompletableFuture<UserInfoSet> response = new CompletableFuture<>();
+            synchronized (this.requests) {
+                this.requests.add(ids);
+                this.responses.add(response);
+            }
+            return response;
+        });
+    }
+
+    private UserInfo newUserInfo(String id) {
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId(id);
+        return userInfo;
+    }
+
+    @Test
+    public void test_submit_window() {
+        UserInfoBatcher batcher = this.newBatcher(50, 100);
+
+        CompletableFuture<UserInfo> a = batcher.submit("a");
+        CompletableFuture<UserInfo> b = batcher.submit("b");
+        CompletableFuture<UserInfo> b2 = batcher.submit("b");
+        CompletableFuture<UserInfo> c = batcher.submit("c");
+
+        this.waitUntil(() -> {
+            synchronized (this.requests) {
+                return this.requests.size() == 1;
+            }
+        }, 5000);
+        Assertions.assertEquals(1, batcher.getBatchCount());
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), this.requests.get(0));
+
+        UserInfo userA = this.newUserInfo("a");
+        UserInfo userB = this.newUserInfo("b");
+        UserInfoSet userInfos = new UserInfoSet();
+        userInfos.add(userA);
+        userInfos.add(userB);
+        this.responses.get(0).complete(userInfos);
+
+        Assertions.assertSame(userA, a.join());
+        Assertions.assertSame(userB, b.join());
+        Assertions.assertSame(userB, b2.join());
+        Assertions.assertNull(c.join());
+        Assertions.assertEquals(4, batcher.getRequestCount());
+    }
+
+    @Test
+    public void test_submit_maxSize() {
+        UserInfoBatcher batcher = this.newBatcher(60 * 1000, 2);
+
+        CompletableFuture<UserInfo> a = batcher.submit("a");
+        Assertions.assertEquals(0, batcher.getBatchCount());
+        CompletableFuture<UserInfo> b = batcher.submit("b");
+        Assertions.assertEquals(1, batcher.getBatchCount());
+        CompletableFuture<UserInfo> c = batcher.submit("c");
+
+        Assertions.assertEquals(1, this.requests.size());
+        Assertions.assertEquals(Arrays.asList("a", "b"), this.requests.get(0));
+
+        this.responses.get(0).complete(null);
+        Assertions.assertNull(a.join());
+        Assertions.assertNull(b.join());
+        Assertions.assertFalse(c.isDone());
+
+        batcher.flush();
+        Assertions.assertEquals(Arrays.asList("c"), this.requests.get(1));
+    }
+
+    @Test
+    public void test_submit_error() {
+        UserInfoBatcher batcher = this.newBatcher(60 * 1000, 100);
+
+        CompletableFuture<UserInfo> a = batcher.submit("a");
+        CompletableFuture<UserInfo> b = batcher.submit("b");
+        batcher.flush();
+        this.responses.get(0).completeExceptionally(new CompletionException(new HttpException("Unavailable", 503, null)));
+
+        for (CompletableFuture<UserInfo> result : Arrays.asList(a, b)) {
+            try {
+                result.join();
+                Assertions.fail("Expected exception");
+            } catch (CompletionException ex) {
+                Assertions.assertEquals(503, ((HttpException) ex.getCause()).getStatus());
+            }
+        }
+    }
+
+    @Test
+    public void test_submit_fetchThrows() {
+        UserInfoBatcher batcher = new UserInfoBatcher(60 * 1000, 1, () -> this.scheduler, ids -> {
+            throw new IllegalStateException("BOOM!");
+        });
+
+        try {
+            batcher.submit("a").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("BOOM!", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void test_submit_schedulerRejects() {
+        this.scheduler.shutdownNow();
+        UserInfoBatcher batcher = this.newBatcher(60 * 1000, 100);
+
+        batcher.submit("a");
+
+        Assertions.assertEquals(1, batcher.getBatchCount());
+        Assertions.assertEquals(Arrays.asList("a"), this.requests.get(0));
+    }
+
+    @Test
+    public void test_submit_cancelDoesNotAffectOthers() {
+        UserInfoBatcher batcher = this.newBatcher(60 * 1000, 100);
+
+        CompletableFuture<UserInfo> first = batcher.submit("a");
+        CompletableFuture<UserInfo> second = batcher.submit("a");
+        first.cancel(true);
+        batcher.flush();
+
+        UserInfo userA = this.newUserInfo("a");
+        UserInfoSet userInfos = new UserInfoSet();
+        userInfos.add(userA);
+        this.responses.get(0).complete(userInfos);
+
+        Assertions.assertSame(userA, second.join());
+    }
+
+    @Test
+    public void test_flush_empty() {
+        UserInfoBatcher batcher = this.newBatcher(60 * 1000, 100);
+
+        batcher.flush();
+
+        Assertions.assertEquals(0, batcher.getBatchCount());
+    }
+
+    @Test
+    public void test_close() {
+        UserInfoBatcher batcher = this.newBatcher(60 * 1000, 100);
+
+        CompletableFuture<UserInfo> pending = batcher.submit("a");
+        batcher.close();
+
+        try {
+            pending.join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("UserInfoBatcher is closed", ex.getCause().getMessage());
+        }
+
+        try {
+            batcher.submit("b").join();
+            Assertions.fail("Expected exception");
+        } catch (CompletionException ex) {
+            Assertions.assertEquals("UserInfoBatcher is closed", ex.getCause().getMessage());
+        }
+        Assertions.assertEquals(0, batcher.getBatchCount());
+    }
+}
@@ -0,0 +1,321 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.identity.model.UserInfo;
+import io.github.lc.oss.commons.identity.model.UserInfoResponse;
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+
+public class UserInfoCacheTest extends AbstractMockTest {
+    private static class TypedResponse extends UserInfoResponse<UserInfo> {
+    }
+
+    private long now;
+
+    private UserInfoCache newCache(UserInfoCacheConfig config) {
+        return new UserInfoCache(config) {
+            @Override
+            long now() {
+                return UserInfoCacheTest.this.now;
+            }
+        };
+    }
+
+    @BeforeEach
+    public void setup() {
+        this.now = 1000;
+    }
+
+    @Test
+    public void test_getPut() {
+        UserInfoCache cache = this.newCache(new UserInfoCacheConfig());
+        UserInfo userInfo = new UserInfo();
+
+        Assertions.assertNull(cache.get("euid", UserInfoResponse.class));
+
+        cache.put("euid", UserInfoResponse.class, userInfo, cache.getStamp("euid"));
+
+        Assertions.assertSame(userInfo, cache.get("euid", UserInfoResponse.class));
+        Assertions.assertNull(cache.get("euid", TypedResponse.class));
+        Assertions.assertNull(cache.get("other", UserInfoResponse.class));
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void test_get_event() throws Exception {
+        UserInfoCache cache = this.newCache(new UserInfoCacheConfig());
+        cache.put("euid", UserInfoResponse.class, new UserInfo(), cache.getStamp("euid"));
+
+        try (Recording recording = new Recording()) {
+            recording.enable(CacheEvent.class);
+            recording.start();
+
+            cache.get("other", UserInfoResponse.class);
+            cache.get("euid", UserInfoResponse.class);
+
+            List<RecordedEvent> events = RecordedEvents.read(recording, "Cache");
+            Assertions.assertEquals(2, events.size());
+            Assertions.assertEquals("userInfo", events.get(0).getString("cache"));
+            Assertions.assertFalse(events.get(0).getBoolean("hit"));
+            Assertions.assertEquals("userInfo", events.get(1).getString("cache"));
+            Assertions.assertTrue(events.get(1).getBoolean("hit"));
+        }
+    }
+
+    @Test
+    public void test_put_nulls() {
+        UserInfoCache cache = this.newCache(new UserInfoCacheConfig());
+
+        cache.put(null, UserInfoResponse.class, new UserInfo(), 0);
+        cache.put("euid", UserInfoResponse.class, null, 0);
+
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_put_replace() {
+        UserInfoCache cache = this.newCache(new UserInfoCacheConfig());
+        UserInfo first = new UserInfo();
+        UserInfo second = new UserInfo();
+
+        cache.put("euid", UserInfoResponse.class, first, cache.getStamp("euid"));
+        cache.put("euid", UserInfoResponse.class, second, cache.getStamp("euid"));
+
+        Assertions.assertSame(second, cache.get("euid", UserInfoResponse.class));
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_put_staleStamp() {
+        UserInfoCache cache = this.newCache(new UserInfoCacheConfig());
+
+        long stamp = cache.getStamp("euid");
+        cache.invalidate("euid");
+        cache.put("euid", UserInfoResponse.class, new UserInfo(), stamp);
+
+        Assertions.assertNull(cache.get("euid", UserInfoResponse.class));
+
+        stamp = cache.getStamp("euid");
+        cache.invalidateAll();
+        cache.put("euid", UserInfoResponse.class, new UserInfo(), stamp);
+
+        Assertions.assertNull(cache.get("euid", UserInfoResponse.class));
+    }
+
+    @Test
+    public void test_maxEntries() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setConcurrencyLevel(1);
+        config.setMaxEntries(2);
+        UserInfoCache cache = this.newCache(config);
+
+        cache.put("a", UserInfoResponse.class, new UserInfo(), cache.getStamp("a"));
+        cache.put("b", UserInfoResponse.class, new UserInfo(), cache.getStamp("b"));
+        Assertions.assertNotNull(cache.get("a", UserInfoResponse.class));
+        cache.put("c", UserInfoResponse.class, new UserInfo(), cache.getStamp("c"));
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertNotNull(cache.get("a", UserInfoResponse.class));
+        Assertions.assertNull(cache.get("b", UserInfoResponse.class));
+        Assertions.assertNotNull(cache.get("c", UserInfoResponse.class));
+        Assertions.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void test_maxEntries_neverExceeded() {
+        int[][] cases = { { 16, 10 }, { 8, 100 }, { 64, 1 }, { 4, 3 } };
+        for (int[] c : cases) {
+            UserInfoCacheConfig config = new UserInfoCacheConfig();
+            config.setConcurrencyLevel(c[0]);
+            config.setMaxEntries(c[1]);
+            UserInfoCache cache = this.newCache(config);
+
+            for (int i = 0; i < 1000; i++) {
+                String id = "id" + i;
+                cache.put(id, UserInfoResponse.class, new UserInfo(), cache.getStamp(id));
+                Assertions.assertTrue(cache.size() <= c[1]);
+            }
+            Assertions.assertTrue(cache.size() > 0);
+        }
+    }
+
+    @Test
+    public void test_maxWeight_neverExceeded() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setConcurrencyLevel(16);
+        config.setMaxEntries(0);
+        config.setMaxWeight(20);
+        config.setWeigher(value -> 1);
+        UserInfoCache cache = this.newCache(config);
+
+        for (int i = 0; i < 1000; i++) {
+            String id = "id" + i;
+            cache.put(id, UserInfoResponse.class, new UserInfo(), cache.getStamp(id));
+            Assertions.assertTrue(cache.size() <= 20);
+        }
+        Assertions.assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void test_maxEntries_unbounded() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setConcurrencyLevel(1);
+        config.setMaxEntries(0);
+        UserInfoCache cache = this.newCache(config);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("id" + i, UserInfoResponse.class, new UserInfo(), cache.getStamp("id" + i));
+        }
+
+        Assertions.assertEquals(100, cache.size());
+        Assertions.assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void test_maxWeight() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setConcurrencyLevel(1);
+        config.setMaxEntries(0);
+        config.setMaxWeight(10);
+        config.setWeigher(userInfo -> userInfo.getUserData().size());
+        UserInfoCache cache = this.newCache(config);
+
+        UserInfo heavy = new UserInfo();
+        for (int i = 0; i < 6; i++) {
+            heavy.getUserData().put("k" + i, "v");
+        }
+        UserInfo light = new UserInfo();
+        light.getUserData().put("k", "v");
+
+        cache.put("heavy1", UserInfoResponse.class, heavy, cache.getStamp("heavy1"));
+        cache.put("light", UserInfoResponse.class, light, cache.getStamp("light"));
+        Assertions.assertEquals(2, cache.size());
+
+        cache.put("heavy2", UserInfoResponse.class, heavy, cache.getStamp("heavy2"));
+
+        Assertions.assertNull(cache.get("heavy1", UserInfoResponse.class));
+        Assertions.assertSame(light, cache.get("light", UserInfoResponse.class));
+        Assertions.assertSame(heavy, cache.get("heavy2", UserInfoResponse.class));
+    }
+
+    @Test
+    public void test_maxWeight_noWeigher() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setConcurrencyLevel(1);
+        config.setMaxEntries(0);
+        config.setMaxWeight(1);
+        UserInfoCache cache = this.newCache(config);
+
+        cache.put("a", UserInfoResponse.class, new UserInfo(), cache.getStamp("a"));
+        cache.put("b", UserInfoResponse.class, new UserInfo(), cache.getStamp("b"));
+
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void test_expireAfterWrite() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setExpireAfterWrite(100);
+        UserInfoCache cache = this.newCache(config);
+
+        cache.put("euid", UserInfoResponse.class, new UserInfo(), cache.getStamp("euid"));
+
+        this.now += 99;
+        Assertions.assertNotNull(cache.get("euid", UserInfoResponse.class));
+
+        this.now += 1;
+        Assertions.assertNull(cache.get("euid", UserInfoResponse.class));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_expireAfterAccess() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setExpireAfterWrite(0);
+        config.setExpireAfterAccess(100);
+        UserInfoCache cache = this.newCache(config);
+
+        cache.put("euid", UserInfoResponse.class, new UserInfo(), cache.getStamp("euid"));
+
+        for (int i = 0; i < 5; i++) {
+            this.now += 99;
+            Assertions.assertNotNull(cache.get("euid", UserInfoResponse.class));
+        }
+
+        this.now += 100;
+        Assertions.assertNull(cache.get("euid", UserInfoResponse.class));
+    }
+
+    @Test
+    public void test_invalidate() {
+        UserInfoCache cache = this.newCache(new UserInfoCacheConfig());
+
+        cache.put("euid", UserInfoResponse.class, new UserInfo(), cache.getStamp("euid"));
+        cache.put("euid", TypedResponse.class, new UserInfo(), cache.getStamp("euid"));
+        cache.put("other", UserInfoResponse.class, new UserInfo(), cache.getStamp("other"));
+
+        cache.invalidate(null);
+        Assertions.assertEquals(3, cache.size());
+
+        cache.invalidate("euid");
+
+        Assertions.assertNull(cache.get("euid", UserInfoResponse.class));
+        Assertions.assertNull(cache.get("euid", TypedResponse.class));
+        Assertions.assertNotNull(cache.get("other", UserInfoResponse.class));
+
+        cache.invalidateAll();
+
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_threading() {
+        UserInfoCacheConfig config = new UserInfoCacheConfig();
+        config.setConcurrencyLevel(8);
+        config.setMaxEntries(64);
+        UserInfoCache cache = new UserInfoCache(config);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    String id = "id" + ((i * 7 + offset) % 256);
+                    if (cache.get(id, UserInfoResponse.class) == null) {
+                        cache.put(id, UserInfoResponse.class, new UserInfo(), cache.getStamp(id));
+                    }
+                    if (i % 1000 == 0) {
+                        cache.invalidate(id);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } catch (Exception ex) {
+            Assertions.fail("Unexpected exception");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assertions.assertTrue(cache.size() <= 64);
+        Assertions.assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.lc.oss.commons.identity;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.github.lc.oss.commons.testing.AbstractMockTest;
+
+public class VirtualThreadsTest extends AbstractMockTest {
+    @Test
+    public void test_isSupported() {
+        Assertions.assertEquals(Runtime.version().feature() >= 21, VirtualThreads.isSupported());
+    }
+
+    @Test
+    public void test_newThreadPerTaskExecutor() {
+        if (!VirtualThreads.isSupported()) {
+            try {
+                VirtualThreads.newThreadPerTaskExecutor();
+                Assertions.fail("Expected exception");
+            } catch (UnsupportedOperationException ex) {
+                Assertions.assertEquals("Virtual threads are not supported", ex.getMessage());
+            }
+            return;
+        }
+
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+        Future<Object> isVirtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+        Assertions.assertEquals(Boolean.TRUE, Futures.await(isVirtual));
+        executor.shutdown();
+    }
+}